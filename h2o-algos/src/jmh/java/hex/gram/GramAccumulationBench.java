@@ -0,0 +1,107 @@
+package hex.gram;
+
+import hex.DataInfo;
+import hex.pca.JMHConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static water.TestUtil.ard;
+import static water.TestUtil.stall_till_cloudsize;
+
+/**
+ * Compares row-by-row accumulation of the Gram matrix with the blocked accumulation used by GLM
+ * for dense rows (see {@link Gram#addRowBlocked(DataInfo.Row, double)}).
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Timeout(time = JMHConfiguration.TIMEOUT_MINUTES, timeUnit = TimeUnit.MINUTES)
+public class GramAccumulationBench {
+
+  @Param({"100", "500", "2000"})
+  private int _nums;
+
+  @Param({"10"})
+  private int _catLevels;
+
+  @Param({"1000"})
+  private int _rows;
+
+  private Frame _fr;
+  private DataInfo _dinfo;
+  private DataInfo.Row[] _data;
+  private double[] _weights;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+            .include(GramAccumulationBench.class.getSimpleName())
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    water.util.Log.setLogLevel("ERRR");
+    stall_till_cloudsize(1);
+    // rows are inner classes of DataInfo, the instance is not used otherwise
+    _fr = new TestFrameBuilder()
+            .withColNames("x")
+            .withVecTypes(Vec.T_NUM)
+            .withDataForCol(0, ard(1, 2))
+            .build();
+    _dinfo = new DataInfo(_fr, null, true, DataInfo.TransformType.NONE, false, false, false);
+
+    Random r = new Random(42);
+    _data = new DataInfo.Row[_rows];
+    _weights = new double[_rows];
+    for (int i = 0; i < _rows; i++) {
+      double[] nums = new double[_nums];
+      for (int j = 0; j < _nums; j++)
+        nums[j] = r.nextGaussian();
+      _data[i] = _dinfo.new Row(false, nums, new int[]{r.nextInt(_catLevels)}, new double[1], i, 0);
+      _weights[i] = r.nextDouble();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    _dinfo.remove();
+    _fr.remove();
+  }
+
+  private Gram makeGram() {
+    return new Gram(_catLevels + _nums, _catLevels, _nums, 1, true);
+  }
+
+  @Benchmark
+  public Gram rowByRow() {
+    Gram gram = makeGram();
+    for (int i = 0; i < _rows; i++)
+      gram.addRow(_data[i], _weights[i]);
+    return gram;
+  }
+
+  @Benchmark
+  public Gram blocked() {
+    Gram gram = makeGram();
+    for (int i = 0; i < _rows; i++)
+      gram.addRowBlocked(_data[i], _weights[i]);
+    gram.flushRows();
+    return gram;
+  }
+
+}
@@ -0,0 +1,98 @@
+package hex.tree.gbm;
+
+import hex.genmodel.algos.tree.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GBM MOJO contributions (TreeSHAP) micro-benchmark
+ */
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GbmMojoContributionsBench {
+
+  @Param({"1000", "100000"})
+  private int rows;
+
+  private TreeSHAPPredictor<double[]> _treeSHAP;
+  private ContributionsPredictor<double[]> _predictor;
+  private int _ncontribs;
+  private double[][] _batch;
+  private float[][] _batchContribs;
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+            .include(GbmMojoContributionsBench.class.getSimpleName())
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setup() throws IOException {
+    SharedTreeMojoModelWithContributions mojo =
+            (SharedTreeMojoModelWithContributions) ClasspathReaderBackend.loadMojo("prostate");
+    // recursive implementation
+    SharedTreeGraph graph = mojo.computeGraph(-1);
+    List<TreeSHAPPredictor<double[]>> treeSHAPs = new ArrayList<>();
+    for (SharedTreeSubgraph tree : graph.subgraphArray) {
+      SharedTreeNode[] nodes = tree.nodesArray.toArray(new SharedTreeNode[0]);
+      treeSHAPs.add(new TreeSHAP<>(nodes, nodes, 0));
+    }
+    _treeSHAP = new TreeSHAPEnsemble<>(treeSHAPs, (float) mojo.getInitF());
+    // path-based implementation
+    _predictor = (ContributionsPredictor<double[]>) mojo.makeContributionsPredictor();
+    _ncontribs = _predictor.getContributionNames().length;
+    _batch = new double[rows][];
+    _batchContribs = new float[rows][_ncontribs];
+    for (int i = 0; i < rows; i++)
+      _batch[i] = ProstateData.ROWS[i % ProstateData.ROWS.length];
+  }
+
+  @Benchmark
+  public double measureRecursiveTreeSHAP() {
+    double sum = 0;
+    Object workspace = _treeSHAP.makeWorkspace();
+    float[] contribs = new float[_ncontribs];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < contribs.length; j++)
+        contribs[j] = 0;
+      sum += _treeSHAP.calculateContributions(_batch[i], contribs, 0, -1, workspace)[0];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double measureFastTreeSHAP() {
+    double sum = 0;
+    for (int i = 0; i < rows; i++) {
+      sum += _predictor.calculateContributions(_batch[i])[0];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double measureFastTreeSHAPBatch() {
+    double sum = 0;
+    float[][] contribs = _predictor.calculateContributions(_batch, rows, _batchContribs);
+    for (int i = 0; i < rows; i++) {
+      sum += contribs[i][0];
+    }
+    return sum;
+  }
+
+}
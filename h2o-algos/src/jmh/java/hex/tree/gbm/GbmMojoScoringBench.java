@@ -26,7 +26,11 @@ public class GbmMojoScoringBench {
   private int rows;
 
   private SharedTreeMojoModel _mojo;
+  private SharedTreeMojoModel _flatMojo;
+  private SharedTreeMojoModel _compiledMojo;
   private double[][] _data;
+  private double[][] _batch;
+  private double[][] _batchPreds;
 
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
@@ -39,7 +43,15 @@ public class GbmMojoScoringBench {
   @Setup(Level.Invocation)
   public void setup() throws IOException {
     _mojo = (SharedTreeMojoModel) ClasspathReaderBackend.loadMojo("prostate");
+    _flatMojo = (SharedTreeMojoModel) ClasspathReaderBackend.loadMojo("prostate");
+    _flatMojo.compileFlatTrees();
+    _compiledMojo = (SharedTreeMojoModel) ClasspathReaderBackend.loadMojo("prostate");
+    _compiledMojo.compileBytecode();
     _data = ProstateData.ROWS;
+    _batch = new double[rows][];
+    _batchPreds = new double[rows][3];
+    for (int i = 0; i < rows; i++)
+      _batch[i] = _data[i % _data.length];
   }
 
   @Benchmark
@@ -54,10 +66,58 @@ public class GbmMojoScoringBench {
     return sum;
   }
 
+  @Benchmark
+  public double measureGbmScore0FlatTrees() throws Exception {
+    double sum = 0;
+    double[] pred = new double[3];
+    for (int i = 0; i < rows; i++) {
+      double[] row = _data[i % _data.length];
+      pred[0] = 0.0; pred[1] = 0.0; pred[2] = 0.0;
+      sum += _flatMojo.score0(row, pred)[1];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double measureGbmScoreBatchFlatTrees() throws Exception {
+    double sum = 0;
+    double[][] preds = _flatMojo.scoreBatch(_batch, rows, _batchPreds);
+    for (int i = 0; i < rows; i++) {
+      sum += preds[i][1];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double measureGbmScore0CompiledTrees() throws Exception {
+    double sum = 0;
+    double[] pred = new double[3];
+    for (int i = 0; i < rows; i++) {
+      double[] row = _data[i % _data.length];
+      pred[0] = 0.0; pred[1] = 0.0; pred[2] = 0.0;
+      sum += _compiledMojo.score0(row, pred)[1];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double measureGbmScoreBatchCompiledTrees() throws Exception {
+    double sum = 0;
+    double[][] preds = _compiledMojo.scoreBatch(_batch, rows, _batchPreds);
+    for (int i = 0; i < rows; i++) {
+      sum += preds[i][1];
+    }
+    return sum;
+  }
+
   @TearDown(Level.Invocation)
   public void tearDown() {
     _mojo = null;
+    _flatMojo = null;
+    _compiledMojo = null;
     _data = null;
+    _batch = null;
+    _batchPreds = null;
   }
 
 
@@ -26,6 +26,7 @@ abstract class CPHBaseTask<T extends CPHBaseTask<T>> extends MRTask<T> {
         continue;
       processRow(row);
     }
+    chunkDone();
   }
 
   abstract protected void processRow(DataInfo.Row row);
@@ -37,4 +38,6 @@ abstract class CPHBaseTask<T extends CPHBaseTask<T>> extends MRTask<T> {
 
   protected void chunkInit() {}
 
+  protected void chunkDone() {}
+
 }
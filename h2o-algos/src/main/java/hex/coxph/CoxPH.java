@@ -551,6 +551,15 @@ public class CoxPH extends ModelBuilder<CoxPHModel,CoxPHModel.CoxPHParameters,Co
       o._var_cumhaz_2_matrix.toFrame(o._var_cumhaz_2);
     }
 
+    // per-time statistics for the counts and the cumulative hazard in the sorted risk sets mode,
+    // Efron's version of the task doesn't need the (Breslow only) cumulative sums of the squares
+    private CoxPHTask perTimeStats(DataInfo dinfo, double[] coef, double[] time, int n_offsets,
+                                   boolean has_start_column, boolean has_weights_column) {
+      return new CoxPHTask(dinfo, coef, time, (long) response().min() /* min event */,
+              n_offsets, has_start_column, dinfo._adaptedFrame.vec(_parms._strata_column), has_weights_column,
+              CoxPHModel.CoxPHParameters.CoxPHTies.efron).doAll(dinfo._adaptedFrame, _parms._single_node_mode);
+    }
+
     @Override
     public void computeImpl() {
       CoxPHModel model = null;
@@ -563,6 +572,9 @@ public class CoxPH extends ModelBuilder<CoxPHModel,CoxPHModel.CoxPHParameters,Co
 
         IcedHashMap<AstGroup.G, IcedInt> strataMap = new IcedHashMap<>();
         Frame f = reorderTrainFrameColumns(strataMap, time);
+        final boolean sortedRiskSets = SortedRiskSets.isEnabled(_parms);
+        if (sortedRiskSets)
+          f = Scope.track(SortedRiskSets.sortByStopTime(f, _parms._stop_column));
 
         int nResponses = (_parms.startVec() == null ? 2 : 3) + (_parms.isStratified() ? 1 : 0);
         final DataInfo dinfo = new DataInfo(f, null, nResponses, _parms._use_all_factor_levels, 
@@ -594,21 +606,36 @@ public class CoxPH extends ModelBuilder<CoxPHModel,CoxPHModel.CoxPHParameters,Co
         final ComputationState cs = new ComputationState(n_coef);
         Timer iterTimer = null;
         CoxPHTask coxMR = null;
+        double[] lastCoef = null; // coefficients of the last evaluated iteration (sorted risk sets)
         _job.update(1, "Running iteration 0");
         for (int i = 0; i <= model._parms._max_iterations; ++i) {
           iterTimer = new Timer();
           model._output._iter = i;
 
           Timer aggregTimer = new Timer();
-          coxMR = new CoxPHTask(dinfo, newCoef, time, (long) response().min() /* min event */,
-                  n_offsets, has_start_column, dinfo._adaptedFrame.vec(_parms._strata_column), has_weights_column,
-                  _parms._ties).doAll(dinfo._adaptedFrame, _parms._single_node_mode);
-          Log.info("CoxPHTask: iter=" + i + ", time=" + aggregTimer.toString());
-          _job.update(1);
-
-          Timer loglikTimer = new Timer();
-          final double newLoglik = calcLoglik(dinfo, cs, _parms, coxMR)._logLik;
-          Log.info("LogLik: iter=" + i + ", time=" + loglikTimer.toString() + ", logLig=" + newLoglik);
+          final double newLoglik;
+          if (sortedRiskSets) {
+            // risk set sums over the sorted frame, the task only carries the parameters
+            final CoxPHTask params = new CoxPHTask(dinfo, newCoef, time, (long) response().min() /* min event */,
+                    n_offsets, has_start_column, dinfo._adaptedFrame.vec(_parms._strata_column), has_weights_column,
+                    _parms._ties);
+            cs.reset();
+            newLoglik = SortedRiskSets.calcLoglik(dinfo, params, cs, _parms._single_node_mode)._logLik;
+            lastCoef = newCoef.clone();
+            coxMR = i == 0 ? perTimeStats(dinfo, newCoef, time, n_offsets, has_start_column, has_weights_column) : null;
+            Log.info("CoxPH sorted risk sets: iter=" + i + ", time=" + aggregTimer.toString() + ", logLik=" + newLoglik);
+            _job.update(1);
+          } else {
+            coxMR = new CoxPHTask(dinfo, newCoef, time, (long) response().min() /* min event */,
+                    n_offsets, has_start_column, dinfo._adaptedFrame.vec(_parms._strata_column), has_weights_column,
+                    _parms._ties).doAll(dinfo._adaptedFrame, _parms._single_node_mode);
+            Log.info("CoxPHTask: iter=" + i + ", time=" + aggregTimer.toString());
+            _job.update(1);
+
+            Timer loglikTimer = new Timer();
+            newLoglik = calcLoglik(dinfo, cs, _parms, coxMR)._logLik;
+            Log.info("LogLik: iter=" + i + ", time=" + loglikTimer.toString() + ", logLig=" + newLoglik);
+          }
           model._output._scoring_history = sc.addIterationScore(i, newLoglik).to2dTable(i);
 
           if (newLoglik > logLik) {
@@ -648,6 +675,8 @@ public class CoxPH extends ModelBuilder<CoxPHModel,CoxPHModel.CoxPHParameters,Co
             Log.info("CoxPH Iteration: iter=" + i + ", " + iterTimer.toString());
         }
 
+        if (sortedRiskSets && _parms._calc_cumhaz && lastCoef != null)
+          coxMR = perTimeStats(dinfo, lastCoef, time, n_offsets, has_start_column, has_weights_column);
         if (_parms._calc_cumhaz && coxMR != null) {
           calcCumhaz_0(model, coxMR);
         }
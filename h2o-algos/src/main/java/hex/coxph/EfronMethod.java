@@ -89,9 +89,13 @@ class EfronDJKTermTask extends CPHBaseTask<EfronDJKTermTask> {
   double[][] _djkTerm;
 
   EfronDJKTermTask(DataInfo dinfo, CoxPHTask coxMR, EfronDJKSetupFun setup) {
+    this(dinfo, coxMR, setup._riskTermT2, setup._cumsumRiskTerm);
+  }
+
+  EfronDJKTermTask(DataInfo dinfo, CoxPHTask coxMR, double[] riskTermT2, double[] cumsumRiskTerm) {
     super(dinfo);
-    _cumsumRiskTerm = setup._cumsumRiskTerm;
-    _riskTermT2 = setup._riskTermT2;
+    _cumsumRiskTerm = cumsumRiskTerm;
+    _riskTermT2 = riskTermT2;
     _beta = coxMR._beta;
     _n_offsets = coxMR._n_offsets;
     _n_time = coxMR._time.length;
@@ -0,0 +1,465 @@
+package hex.coxph;
+
+import hex.DataInfo;
+import water.H2O;
+import water.Iced;
+import water.MemoryManager;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.rapids.Merge;
+import water.util.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static hex.coxph.CoxPH.CoxPHTask;
+import static hex.coxph.CoxPH.ComputationState;
+
+/**
+ * Log-likelihood, gradient and Hessian of the partial likelihood computed on a training frame sorted by the
+ * discretized stop time in descending order.
+ *
+ * The discretized stop time includes the offset of the stratum, the rows of a stratum form a contiguous block of
+ * the sorted frame and the risk set of a time is the part of the block up to the end of the tie group of the time.
+ * The risk set sums are running sums over the sorted rows instead of per-time arrays:
+ * <ol>
+ *   <li>{@link ChunkSummaryTask} sums up every chunk, the driver turns the sums into the running sums at the start
+ *   of each chunk and into the partial sums of the tie groups that continue into the next chunk,</li>
+ *   <li>{@link RiskSetTask} computes the log-likelihood, the gradient and the risk-set-mean part of the Hessian,
+ *   a tie group is finished in the chunk of its last row,</li>
+ *   <li>{@link EfronDJKTermTask} adds the remaining part of the Hessian (a sum over the rows).</li>
+ * </ol>
+ * Only per-chunk vectors and per-time scalars are exchanged, the cost of an iteration is linear in the number of rows
+ * (instead of the number of times times the number of coefficients squared). Right-censored data (no start column)
+ * only.
+ */
+final class SortedRiskSets {
+
+  public static final String ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "coxph.sortedRiskSets.enabled";
+
+  private SortedRiskSets() {}
+
+  static boolean isEnabled(CoxPHModel.CoxPHParameters parms) {
+    return Boolean.getBoolean(ENABLED_PROP) && parms._start_column == null;
+  }
+
+  /**
+   * Sorts the (reordered) training frame by the discretized stop time, descending.
+   */
+  static Frame sortByStopTime(Frame f, String stopColumn) {
+    Frame sorted = Merge.sort(f, new int[]{f.find(stopColumn)}, new int[]{Merge.DESCENDING});
+    sorted.setNames(f.names()); // sort doesn't change the order of the columns, only the names might differ
+    return sorted;
+  }
+
+  /**
+   * @param coxMR parameters of the computation (beta, times, strata...), the task itself is not executed
+   */
+  static ComputationState calcLoglik(DataInfo dinfo, CoxPHTask coxMR, ComputationState cs, boolean runLocal) {
+    final Frame fr = dinfo._adaptedFrame;
+    ChunkSummaryTask summaryTask = new ChunkSummaryTask(dinfo, coxMR).doAll(fr, runLocal);
+    ChunkStart[] starts = chunkStarts(summaryTask._summaries, fr.anyVec().nChunks(), coxMR);
+    RiskSetTask riskSetTask = new RiskSetTask(dinfo, coxMR, starts).doAll(fr, runLocal);
+
+    final int nTime = coxMR._time.length * coxMR._num_strata;
+    final double[] riskTerm = MemoryManager.malloc8d(nTime);
+    final double[] riskTermT2 = MemoryManager.malloc8d(nTime);
+    if (riskSetTask._riskTerm != null) {
+      System.arraycopy(riskSetTask._riskTerm, 0, riskTerm, riskSetTask._tLo, riskSetTask._riskTerm.length);
+      System.arraycopy(riskSetTask._riskTermT2, 0, riskTermT2, riskSetTask._tLo, riskSetTask._riskTermT2.length);
+    }
+    // cumulative sum over the times of a stratum, same as EfronDJKSetupFun
+    final int timeLen = coxMR._time.length;
+    for (int t = 1; t < riskTerm.length; t++)
+      riskTerm[t] += (t % timeLen) == 0 ? 0 : riskTerm[t - 1];
+    EfronDJKTermTask djkTermTask = new EfronDJKTermTask(dinfo, coxMR, riskTermT2, riskTerm).doAll(fr, runLocal);
+
+    cs._logLik = riskSetTask._logLik;
+    for (int j = 0; j < cs._n_coef; j++) {
+      cs._gradient[j] = riskSetTask._gradient[j];
+      for (int k = 0; k < cs._n_coef; k++)
+        cs._hessian[j][k] = riskSetTask._hessian[j][k] + djkTermTask._djkTerm[j][k];
+    }
+    return cs;
+  }
+
+  /**
+   * Running sums at the start of each chunk, derived from the sums of the preceding chunks.
+   */
+  static ChunkStart[] chunkStarts(ChunkSummary[] summaries, int nChunks, CoxPHTask coxMR) {
+    final int n_coef = coxMR._beta.length;
+    final int timeLen = coxMR._time.length;
+    ChunkSummary[] nonEmpty = summaries == null ? new ChunkSummary[0] : summaries.clone();
+    Arrays.sort(nonEmpty, new Comparator<ChunkSummary>() {
+      @Override
+      public int compare(ChunkSummary o1, ChunkSummary o2) {
+        return Integer.compare(o1._cidx, o2._cidx);
+      }
+    });
+    ChunkStart[] starts = new ChunkStart[nChunks];
+    double runRisk = 0;
+    double[] runXRisk = MemoryManager.malloc8d(n_coef);
+    EventSums carry = null;
+    ChunkSummary prev = null;
+    for (int i = 0; i < nonEmpty.length; i++) {
+      final ChunkSummary s = nonEmpty[i];
+      if (prev == null || prev._last / timeLen != s._first / timeLen) { // new stratum
+        runRisk = 0;
+        runXRisk = MemoryManager.malloc8d(n_coef);
+      }
+      ChunkStart start = new ChunkStart(s._first, s._last, runRisk, runXRisk.clone());
+      if (prev != null && prev._last == s._first)
+        start._carry = carry;
+      start._continues = i + 1 < nonEmpty.length && nonEmpty[i + 1]._first == s._last;
+      starts[s._cidx] = start;
+
+      if (s._first / timeLen != s._last / timeLen) {
+        runRisk = s._tailRisk;
+        runXRisk = s._tailXRisk.clone();
+      } else {
+        runRisk += s._tailRisk;
+        ArrayUtils.add(runXRisk, s._tailXRisk);
+      }
+      if (start._carry != null && s._first == s._last) { // the whole chunk is a part of the carried tie group
+        carry = start._carry.copy();
+        carry.add(s._lastEvents);
+      } else {
+        carry = s._lastEvents;
+      }
+      prev = s;
+    }
+    return starts;
+  }
+
+  /** Sums over the events of a tie group. */
+  static final class EventSums extends Iced<EventSums> {
+    long _count;
+    double _size;
+    double _logRisk;
+    double _risk;
+    double[] _xRisk;
+
+    EventSums(int n_coef) {
+      _xRisk = MemoryManager.malloc8d(n_coef);
+    }
+
+    void add(EventSums o) {
+      _count += o._count;
+      _size += o._size;
+      _logRisk += o._logRisk;
+      _risk += o._risk;
+      ArrayUtils.add(_xRisk, o._xRisk);
+    }
+
+    EventSums copy() {
+      EventSums c = new EventSums(_xRisk.length);
+      c.add(this);
+      return c;
+    }
+  }
+
+  /** Sums of a single chunk. */
+  static final class ChunkSummary extends Iced<ChunkSummary> {
+    final int _cidx;
+    int _first = -1; // time of the first row
+    int _last = -1;  // time of the last row
+    double _tailRisk;      // rows of the stratum of the last row
+    double[] _tailXRisk;
+    EventSums _lastEvents; // events of the tie group of the last row
+
+    ChunkSummary(int cidx, int n_coef) {
+      _cidx = cidx;
+      _tailXRisk = MemoryManager.malloc8d(n_coef);
+      _lastEvents = new EventSums(n_coef);
+    }
+  }
+
+  /** Running sums at the start of a chunk. */
+  static final class ChunkStart extends Iced<ChunkStart> {
+    final int _first;
+    final int _last;
+    final double _risk;     // risk set of the first row, excluding the rows of this chunk
+    final double[] _xRisk;
+    EventSums _carry;       // events of the tie group of the first row in the preceding chunks (if any)
+    boolean _continues;     // tie group of the last row continues in the next chunk
+
+    ChunkStart(int first, int last, double risk, double[] xRisk) {
+      _first = first;
+      _last = last;
+      _risk = risk;
+      _xRisk = xRisk;
+    }
+  }
+
+  private static abstract class SortedTask<T extends SortedTask<T>> extends CPHBaseTask<T> {
+    final double[] _beta;
+    final int _n_time;
+    final int _n_offsets;
+    final long _min_event;
+    final boolean _has_weights_column;
+    final boolean _has_strata_column;
+
+    transient int _cidx;
+
+    SortedTask(DataInfo dinfo, CoxPHTask coxMR) {
+      super(dinfo);
+      _beta = coxMR._beta;
+      _n_time = coxMR._time.length;
+      _n_offsets = coxMR._n_offsets;
+      _min_event = coxMR._min_event;
+      _has_weights_column = coxMR._has_weights_column;
+      _has_strata_column = coxMR._has_strata_column;
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      _cidx = cs[0].cidx();
+      super.map(cs);
+    }
+
+    @Override
+    protected void processRow(DataInfo.Row row) {
+      double[] response = row.response;
+      final double weight = _has_weights_column ? row.weight : 1.0;
+      if (weight <= 0)
+        throw new IllegalArgumentException("weights must be positive values");
+      int respIdx = response.length - 1;
+      final long event = (long) (response[respIdx--] - _min_event);
+      final int t = (int) response[respIdx--];
+      final double strata = _has_strata_column ? response[respIdx--] : 0;
+      assert respIdx == -1 : "expected to use all response data";
+      if (Double.isNaN(strata))
+        return; // skip this row
+
+      final int numStart = _dinfo.numStart();
+      final double[] nums = row.numVals;
+      double logRisk = 0;
+      for (int j = 0; j < row.nBins; ++j)
+        logRisk += _beta[row.binIds[j]];
+      for (int j = 0; j < nums.length - _n_offsets; ++j)
+        logRisk += nums[j] * _beta[numStart + j];
+      for (int j = nums.length - _n_offsets; j < nums.length; ++j)
+        logRisk += nums[j];
+      processRow(row, t, event > 0, weight, logRisk);
+    }
+
+    abstract void processRow(DataInfo.Row row, int t, boolean event, double weight, double logRisk);
+
+    // res += mult * x
+    void addX(DataInfo.Row row, double mult, double[] res) {
+      for (int j = 0; j < row.nBins; ++j)
+        res[row.binIds[j]] += mult;
+      final int numStart = _dinfo.numStart();
+      for (int j = 0; j < row.numVals.length - _n_offsets; ++j)
+        res[numStart + j] += mult * row.numVals[j];
+    }
+  }
+
+  static class ChunkSummaryTask extends SortedTask<ChunkSummaryTask> {
+    // OUT
+    ChunkSummary[] _summaries;
+
+    private transient ChunkSummary _summary;
+
+    ChunkSummaryTask(DataInfo dinfo, CoxPHTask coxMR) {
+      super(dinfo, coxMR);
+    }
+
+    @Override
+    protected void chunkInit() {
+      _summary = new ChunkSummary(_cidx, _beta.length);
+    }
+
+    @Override
+    void processRow(DataInfo.Row row, int t, boolean event, double weight, double logRisk) {
+      final ChunkSummary s = _summary;
+      if (s._first < 0)
+        s._first = t;
+      if (s._last >= 0 && s._last / _n_time != t / _n_time) { // new stratum
+        s._tailRisk = 0;
+        Arrays.fill(s._tailXRisk, 0);
+      }
+      if (s._last != t)
+        s._lastEvents = new EventSums(_beta.length);
+      s._last = t;
+      final double risk = weight * Math.exp(logRisk);
+      s._tailRisk += risk;
+      addX(row, risk, s._tailXRisk);
+      if (event) {
+        final EventSums e = s._lastEvents;
+        e._count++;
+        e._size += weight;
+        e._logRisk += weight * logRisk;
+        e._risk += risk;
+        addX(row, risk, e._xRisk);
+      }
+    }
+
+    @Override
+    protected void chunkDone() {
+      if (_summary._first >= 0)
+        _summaries = new ChunkSummary[]{_summary};
+      _summary = null;
+    }
+
+    @Override
+    public void reduce(ChunkSummaryTask mrt) {
+      if (_summaries == null)
+        _summaries = mrt._summaries;
+      else if (mrt._summaries != null)
+        _summaries = ArrayUtils.append(_summaries, mrt._summaries);
+    }
+  }
+
+  static class RiskSetTask extends SortedTask<RiskSetTask> {
+    private ChunkStart[] _starts;
+    private final boolean _isBreslow;
+
+    // OUT
+    double _logLik;
+    double[] _gradient;
+    double[][] _hessian;
+    int _tLo;             // time of the first element of the arrays below
+    double[] _riskTerm;   // sum over the events of a time of avgSize / term
+    double[] _riskTermT2; // sum over the events of a time of avgSize * frac / term
+
+    private transient double _runRisk;
+    private transient double[] _runXRisk;
+    private transient int _curTime;
+    private transient EventSums _group;
+    private transient boolean _continues;
+
+    RiskSetTask(DataInfo dinfo, CoxPHTask coxMR, ChunkStart[] starts) {
+      super(dinfo, coxMR);
+      _starts = starts;
+      _isBreslow = coxMR._isBreslow;
+    }
+
+    @Override
+    protected void chunkInit() {
+      final int n_coef = _beta.length;
+      _gradient = MemoryManager.malloc8d(n_coef);
+      _hessian = MemoryManager.malloc8d(n_coef, n_coef);
+      _curTime = -1;
+      final ChunkStart start = _starts[_cidx];
+      if (start == null) // no rows to process
+        return;
+      // the chunk finishes the groups between its last and first time
+      _tLo = start._last;
+      _riskTerm = MemoryManager.malloc8d(start._first - start._last + 1);
+      _riskTermT2 = MemoryManager.malloc8d(start._first - start._last + 1);
+      _runRisk = start._risk;
+      _runXRisk = start._xRisk.clone();
+      _group = start._carry != null ? start._carry.copy() : null;
+      _curTime = start._carry != null ? start._first : -1;
+      _continues = start._continues;
+    }
+
+    @Override
+    void processRow(DataInfo.Row row, int t, boolean event, double weight, double logRisk) {
+      if (t != _curTime) {
+        if (_curTime >= 0) {
+          finishGroup();
+          if (_curTime / _n_time != t / _n_time) { // new stratum
+            _runRisk = 0;
+            Arrays.fill(_runXRisk, 0);
+          }
+        }
+        _curTime = t;
+        _group = new EventSums(_beta.length);
+      }
+      final double risk = weight * Math.exp(logRisk);
+      _runRisk += risk;
+      addX(row, risk, _runXRisk);
+      if (event) {
+        _group._count++;
+        _group._size += weight;
+        _group._logRisk += weight * logRisk;
+        _group._risk += risk;
+        addX(row, risk, _group._xRisk);
+        addX(row, weight, _gradient);
+      }
+    }
+
+    @Override
+    protected void chunkDone() {
+      if (_curTime >= 0 && !_continues)
+        finishGroup();
+      _runXRisk = null;
+      _group = null;
+    }
+
+    private void finishGroup() {
+      final EventSums g = _group;
+      if (g._count == 0)
+        return;
+      final int n_coef = _beta.length;
+      final int ti = _curTime - _tLo;
+      final double[] d = new double[n_coef];
+      _logLik += g._logRisk;
+      if (_isBreslow) {
+        _logLik -= g._size * Math.log(_runRisk);
+        for (int j = 0; j < n_coef; j++)
+          d[j] = _runXRisk[j] / _runRisk;
+        addMeanTerms(g._size, d);
+        _riskTerm[ti] += g._size / _runRisk;
+      } else {
+        final double avgSize = g._size / g._count;
+        for (long e = 0; e < g._count; ++e) {
+          final double frac = ((double) e) / ((double) g._count);
+          final double term = _runRisk - frac * g._risk;
+          _logLik -= avgSize * Math.log(term);
+          for (int j = 0; j < n_coef; j++)
+            d[j] = (_runXRisk[j] - frac * g._xRisk[j]) / term;
+          addMeanTerms(avgSize, d);
+          _riskTerm[ti] += avgSize / term;
+          _riskTermT2[ti] += avgSize * frac / term;
+        }
+      }
+    }
+
+    private void addMeanTerms(double size, double[] d) {
+      for (int j = 0; j < d.length; j++) {
+        _gradient[j] -= size * d[j];
+        final double sdj = size * d[j];
+        final double[] hj = _hessian[j];
+        for (int k = 0; k < d.length; k++)
+          hj[k] += sdj * d[k];
+      }
+    }
+
+    @Override
+    protected void closeLocal() {
+      _starts = null; // no need to send them back
+    }
+
+    @Override
+    public void reduce(RiskSetTask mrt) {
+      _logLik += mrt._logLik;
+      ArrayUtils.add(_gradient, mrt._gradient);
+      ArrayUtils.add(_hessian, mrt._hessian);
+      if (_riskTerm == null) {
+        _tLo = mrt._tLo;
+        _riskTerm = mrt._riskTerm;
+        _riskTermT2 = mrt._riskTermT2;
+      } else if (mrt._riskTerm != null) {
+        final int lo = Math.min(_tLo, mrt._tLo);
+        final int hi = Math.max(_tLo + _riskTerm.length, mrt._tLo + mrt._riskTerm.length);
+        double[] riskTerm = MemoryManager.malloc8d(hi - lo);
+        double[] riskTermT2 = MemoryManager.malloc8d(hi - lo);
+        for (int i = 0; i < _riskTerm.length; i++) {
+          riskTerm[_tLo - lo + i] += _riskTerm[i];
+          riskTermT2[_tLo - lo + i] += _riskTermT2[i];
+        }
+        for (int i = 0; i < mrt._riskTerm.length; i++) {
+          riskTerm[mrt._tLo - lo + i] += mrt._riskTerm[i];
+          riskTermT2[mrt._tLo - lo + i] += mrt._riskTermT2[i];
+        }
+        _tLo = lo;
+        _riskTerm = riskTerm;
+        _riskTermT2 = riskTermT2;
+      }
+    }
+  }
+
+}
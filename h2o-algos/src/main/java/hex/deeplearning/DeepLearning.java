@@ -32,6 +32,12 @@ import static water.util.MRUtils.sampleFrameStratified;
  * Deep Learning Neural Net implementation based on MRTask
  */
 public class DeepLearning extends ModelBuilder<DeepLearningModel,DeepLearningModel.DeepLearningParameters,DeepLearningModel.DeepLearningModelOutput> {
+  /**
+   * Enables training with mini-batch size &gt; 1: every layer processes the whole mini-batch at once (matrix-matrix
+   * products) and the weights are updated once per mini-batch. Without it, the mini-batch size is always reset to 1.
+   */
+  public static final String MINI_BATCH_ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "deeplearning.miniBatch.enabled";
+
   /** Main constructor from Deep Learning parameters */
   public DeepLearning( DeepLearningParameters parms ) { super(parms); init(false); }
   public DeepLearning( DeepLearningParameters parms, Key<DeepLearningModel> key ) { super(parms,key); init(false); }
@@ -512,6 +518,7 @@ public class DeepLearning extends ModelBuilder<DeepLearningModel,DeepLearningMod
         }
         if (model != null) {
           model.deleteElasticAverageModels();
+          DeltaCompression.clearResiduals(model._key);
           model.unlock(_job);
           if (model.actual_best_model_key != null) {
             assert (model.actual_best_model_key != model._key);
@@ -2159,8 +2159,13 @@ public class DeepLearningModel extends Model<DeepLearningModel,DeepLearningModel
           toParms._categorical_encoding = CategoricalEncodingScheme.OneHotInternal;
          }
         if (fromParms._mini_batch_size > 1) {
-          Log.warn("_mini_batch_size", "Only mini-batch size = 1 is supported right now.");
-          toParms._mini_batch_size = 1;
+          if (!Boolean.getBoolean(DeepLearning.MINI_BATCH_ENABLED_PROP)) {
+            Log.warn("_mini_batch_size", "Only mini-batch size = 1 is supported right now.");
+            toParms._mini_batch_size = 1;
+          } else if (fromParms._autoencoder && fromParms._sparsity_beta > 0) {
+            Log.warn("_mini_batch_size", "Sparsity constraint is not supported for mini-batch size > 1, using mini-batch size = 1.");
+            toParms._mini_batch_size = 1;
+          }
         }
         if (fromParms._adaptive_rate) {
           if (!fromParms._quiet_mode)
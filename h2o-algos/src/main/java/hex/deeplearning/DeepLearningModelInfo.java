@@ -10,7 +10,9 @@ import water.*;
 import water.fvec.Frame;
 import water.util.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 
@@ -504,6 +506,32 @@ final public class DeepLearningModelInfo extends Iced<DeepLearningModelInfo> {
     add_processed_local(other.get_processed_local());
   }
 
+  /**
+   * Float arrays which are averaged between the nodes by {@link #add(DeepLearningModelInfo)}, in a fixed order:
+   * weights, weight momenta and the AdaDelta helpers
+   */
+  float[][] averagedFloatArrays() {
+    List<float[]> res = new ArrayList<>();
+    for (Storage.DenseRowMatrix w : dense_row_weights) res.add(w.raw());
+    if (has_momenta())
+      for (Storage.DenseRowMatrix wm : dense_row_weights_momenta) res.add(wm.raw());
+    if (adaDelta())
+      for (Storage.DenseRowMatrix ada : dense_row_ada_dx_g) res.add(ada.raw());
+    return res.toArray(new float[0][]);
+  }
+
+  /**
+   * Double arrays which are averaged between the nodes by {@link #add(DeepLearningModelInfo)}, in a fixed order:
+   * biases and bias momenta
+   */
+  double[][] averagedDoubleArrays() {
+    List<double[]> res = new ArrayList<>();
+    for (Storage.DenseVector b : biases) res.add(b.raw());
+    if (has_momenta())
+      for (Storage.DenseVector bm : biases_momenta) res.add(bm.raw());
+    return res.toArray(new double[0][]);
+  }
+
   /**
    * Multiply all weights/biases by a real-valued number
    * @param N multiplication factor
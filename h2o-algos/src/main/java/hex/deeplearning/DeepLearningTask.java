@@ -214,8 +214,8 @@ public class DeepLearningTask extends FrameTask<DeepLearningTask> {
         _warnCount++;
       }
     }
-    // Check that we're not inside a DeepLearningTask2
-    assert ((!dlp._replicate_training_data || H2O.CLOUD.size() == 1) == !_run_local);
+    // Check that we're inside a DeepLearningTask2 only with replicated data (it can run on a single node as well)
+    assert (!_run_local || dlp._replicate_training_data);
     if (!_run_local) {
       _localmodel.add_processed_global(_localmodel.get_processed_local()); //move local sample counts to global ones
       _localmodel.set_processed_local(0l);
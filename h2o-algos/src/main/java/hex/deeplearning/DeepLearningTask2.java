@@ -3,6 +3,10 @@ package hex.deeplearning;
 import water.Key;
 import water.MRTask;
 import water.fvec.Frame;
+import water.util.Log;
+import water.util.PrettyPrint;
+
+import java.util.Arrays;
 
 /**
  * DRemoteTask-based Deep Learning.
@@ -23,6 +27,13 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
     _sharedmodel = model_info;
     _sync_fraction = sync_fraction;
     _iteration = iteration;
+    if (!model_info.get_params()._single_node_mode && !model_info.get_params()._elastic_averaging) {
+      _deltaMode = DeltaCompression.mode();
+      _topkFraction = DeltaCompression.topkFraction();
+    } else {
+      _deltaMode = DeltaCompression.Mode.None;
+      _topkFraction = 0;
+    }
   }
 
   /**
@@ -38,6 +49,15 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
   private DeepLearningTask _res;
   private final int _iteration;
 
+  // compressed model averaging (only the deltas of the per-node models are sent back)
+  private final DeltaCompression.Mode _deltaMode;
+  private final float _topkFraction;
+  private DeltaCompression.ModelDelta[] _deltas;
+  private long _processed;
+  private boolean _unstable;
+  private transient DeltaCompression.Snapshot _snapshot;
+  private transient DeepLearningModelInfo _trained;
+
   /**
    * Do the local computation: Perform one DeepLearningTask (with run_local=true) iteration.
    * Pass over all the data (will be replicated in dfork() here), and use _sync_fraction random rows.
@@ -47,11 +67,28 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
   @Override
   public void setupLocal() {
     super.setupLocal();
+    if (_deltaMode != DeltaCompression.Mode.None)
+      _snapshot = DeltaCompression.snapshot(_sharedmodel);
     _res = new DeepLearningTask(_jobKey, _sharedmodel, _sync_fraction, _iteration, this);
     addToPendingCount(1);
     _res.dfork(null, _fr, true /*run_local*/);
   }
 
+  /**
+   * With compressed model averaging, replace the per-node model by its compressed delta before it is sent back
+   */
+  @Override
+  protected void closeLocal() {
+    if (_deltaMode == DeltaCompression.Mode.None) return;
+    _trained = _res.model_info();
+    _deltas = new DeltaCompression.ModelDelta[]{
+        DeltaCompression.encode(_trained._model_id, _trained, _snapshot, _deltaMode, _topkFraction)};
+    _processed = _trained.get_processed_local();
+    _unstable = _trained.isUnstable();
+    _res = null;
+    _sharedmodel = null; //avoid serialization overhead
+  }
+
   /**
    * Reduce between worker nodes, with network traffic (if greater than 1 nodes)
    * After all reduce()'s are done, postGlobal() will be called
@@ -59,6 +96,15 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
    */
   @Override
   public void reduce(DeepLearningTask2 drt) {
+    if (_deltaMode != DeltaCompression.Mode.None) {
+      // keep the compressed deltas, they are only decoded on the driver
+      DeltaCompression.ModelDelta[] deltas = Arrays.copyOf(_deltas, _deltas.length + drt._deltas.length);
+      System.arraycopy(drt._deltas, 0, deltas, _deltas.length, drt._deltas.length);
+      _deltas = deltas;
+      _processed += drt._processed;
+      _unstable |= drt._unstable;
+      return;
+    }
     if (_res == null) _res = drt._res;
     else {
       _res._chunk_node_count += drt._res._chunk_node_count;
@@ -74,6 +120,10 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
    */
   @Override
   protected void postGlobal() {
+    if (_deltaMode != DeltaCompression.Mode.None) {
+      postGlobalDeltas();
+      return;
+    }
     assert(_res.model_info().get_params()._replicate_training_data);
     super.postGlobal();
     // model averaging (DeepLearningTask only computed the per-node models, each on all the data)
@@ -86,4 +136,25 @@ public class DeepLearningTask2 extends MRTask<DeepLearningTask2> {
     else
       _sharedmodel = nodeAverageModel;
   }
+
+  /**
+   * Model averaging from the compressed deltas: starting model + average delta.
+   * The driver trained its own copy in place, it is reset to the starting model before the deltas are applied.
+   */
+  private void postGlobalDeltas() {
+    super.postGlobal();
+    DeltaCompression.applyAverage(_trained, _snapshot, _deltas);
+    _trained.add_processed_global(_processed); //switch from local counters to global counters
+    _trained.set_processed_local(0l);
+    if (_unstable) _trained.setUnstable();
+    if (!_trained.get_params()._quiet_mode) {
+      long bytes = 0;
+      for (DeltaCompression.ModelDelta d : _deltas) bytes += d.byteSize();
+      Log.info("Averaged " + _deltas.length + " compressed model deltas (" + _deltaMode + "), "
+          + PrettyPrint.bytes(bytes) + " received.");
+    }
+    _sharedmodel = _trained;
+    _snapshot = null;
+    _deltas = null;
+  }
 }
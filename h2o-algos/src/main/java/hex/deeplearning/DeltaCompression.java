@@ -0,0 +1,307 @@
+package hex.deeplearning;
+
+import water.H2O;
+import water.Iced;
+import water.Key;
+import water.MRTask;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compressed model averaging for Deep Learning with replicated training data ({@link DeepLearningTask2}).
+ *
+ * Instead of the full model, every node sends back only the change of the averaged arrays (weights, biases and the
+ * learning rate helpers, see {@link DeepLearningModelInfo#averagedFloatArrays()}) since the last synchronization,
+ * either quantized to 8 or 16 bits per value or sparsified to the largest values (top-k). The compression error is
+ * kept on the node and added to the delta of the next iteration (error feedback), so no update is lost, only delayed.
+ * All nodes start an iteration from the same model, the average model is then the starting model plus the average
+ * of the deltas.
+ * The AdaDelta accumulators are always sent uncompressed: they are positive and span several orders of magnitude, a
+ * quantization or sparsification error pushes the small ones to zero (or below) and the learning rate explodes.
+ */
+final class DeltaCompression {
+
+  public static final String MODE_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "deeplearning.deltaSync.mode";
+  public static final String TOPK_FRACTION_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "deeplearning.deltaSync.topkFraction";
+
+  static final float DEFAULT_TOPK_FRACTION = 0.01f;
+
+  enum Mode {
+    None, Int8, Int16, TopK;
+
+    static Mode fromString(String s) {
+      if (s == null) return None;
+      for (Mode m : values())
+        if (m.name().equalsIgnoreCase(s)) return m;
+      throw new IllegalArgumentException("Unknown value of " + MODE_PROP + ": " + s + ", expected one of " + Arrays.toString(values()));
+    }
+  }
+
+  // node-local compression errors of the last iteration, per model
+  private static final ConcurrentHashMap<Key, float[][]> RESIDUALS = new ConcurrentHashMap<>();
+
+  private DeltaCompression() {}
+
+  static Mode mode() {
+    return Mode.fromString(System.getProperty(MODE_PROP));
+  }
+
+  static float topkFraction() {
+    String s = System.getProperty(TOPK_FRACTION_PROP);
+    return s == null ? DEFAULT_TOPK_FRACTION : Float.parseFloat(s);
+  }
+
+  /**
+   * Snapshot of the averaged arrays, taken before the local training starts.
+   */
+  static Snapshot snapshot(DeepLearningModelInfo minfo) {
+    float[][] f = minfo.averagedFloatArrays();
+    double[][] d = minfo.averagedDoubleArrays();
+    float[][] fcopy = new float[f.length][];
+    for (int i = 0; i < f.length; ++i) fcopy[i] = f[i].clone();
+    double[][] dcopy = new double[d.length][];
+    for (int i = 0; i < d.length; ++i) dcopy[i] = d[i].clone();
+    return new Snapshot(fcopy, dcopy);
+  }
+
+  static final class Snapshot {
+    final float[][] _floats;
+    final double[][] _doubles;
+    Snapshot(float[][] floats, double[][] doubles) {
+      _floats = floats;
+      _doubles = doubles;
+    }
+  }
+
+  /**
+   * Compresses the difference between the trained model and the snapshot, including the compression error of the
+   * previous iteration on this node. The new compression error is kept for the next iteration.
+   */
+  static ModelDelta encode(Key modelKey, DeepLearningModelInfo trained, Snapshot snapshot, Mode mode, float topkFraction) {
+    final float[][] f = trained.averagedFloatArrays();
+    final double[][] d = trained.averagedDoubleArrays();
+    final int narrays = f.length + d.length;
+    final int firstExact = trained.adaDelta() ? f.length - trained.get_params()._hidden.length - 1 : f.length;
+    float[][] residuals = RESIDUALS.get(modelKey);
+    if (residuals != null && !sameShape(residuals, f, d))
+      residuals = null; // model changed (e.g. checkpoint restart with different architecture)
+    if (residuals == null) {
+      residuals = new float[narrays][];
+      for (int i = 0; i < narrays; ++i)
+        residuals[i] = new float[i < f.length ? f[i].length : d[i - f.length].length];
+    }
+    CompressedArray[] arrays = new CompressedArray[narrays];
+    for (int i = 0; i < narrays; ++i) {
+      final float[] delta = residuals[i]; // delta += residual, in place
+      if (i < f.length) {
+        final float[] cur = f[i], old = snapshot._floats[i];
+        for (int j = 0; j < delta.length; ++j) delta[j] += cur[j] - old[j];
+      } else {
+        final double[] cur = d[i - f.length], old = snapshot._doubles[i - f.length];
+        for (int j = 0; j < delta.length; ++j) delta[j] += (float) (cur[j] - old[j]);
+      }
+      arrays[i] = CompressedArray.compress(delta, i >= firstExact && i < f.length ? Mode.None : mode, topkFraction);
+      arrays[i].subtractFrom(delta); // what's left is the compression error
+    }
+    RESIDUALS.put(modelKey, residuals);
+    return new ModelDelta(arrays);
+  }
+
+  private static boolean sameShape(float[][] residuals, float[][] f, double[][] d) {
+    if (residuals.length != f.length + d.length) return false;
+    for (int i = 0; i < residuals.length; ++i)
+      if (residuals[i].length != (i < f.length ? f[i].length : d[i - f.length].length)) return false;
+    return true;
+  }
+
+  /**
+   * Sets the averaged arrays of the model to the snapshot plus the average of the given deltas.
+   */
+  static void applyAverage(DeepLearningModelInfo minfo, Snapshot snapshot, ModelDelta[] deltas) {
+    final float[][] f = minfo.averagedFloatArrays();
+    final double[][] d = minfo.averagedDoubleArrays();
+    final double scale = 1.0 / deltas.length;
+    for (int i = 0; i < f.length; ++i) {
+      System.arraycopy(snapshot._floats[i], 0, f[i], 0, f[i].length);
+      for (ModelDelta delta : deltas) delta._arrays[i].addTo(f[i], scale);
+    }
+    for (int i = 0; i < d.length; ++i) {
+      System.arraycopy(snapshot._doubles[i], 0, d[i], 0, d[i].length);
+      for (ModelDelta delta : deltas) delta._arrays[f.length + i].addTo(d[i], scale);
+    }
+  }
+
+  static boolean hasResiduals(Key modelKey) {
+    return RESIDUALS.containsKey(modelKey);
+  }
+
+  /**
+   * Drops the compression errors of the given model on all nodes.
+   */
+  static void clearResiduals(Key modelKey) {
+    if (mode() != Mode.None)
+      new ClearResiduals(modelKey).doAllNodes();
+  }
+
+  private static class ClearResiduals extends MRTask<ClearResiduals> {
+    private final Key _modelKey;
+    ClearResiduals(Key modelKey) { _modelKey = modelKey; }
+    @Override protected void setupLocal() { RESIDUALS.remove(_modelKey); }
+  }
+
+  /** Compressed delta of all of the averaged arrays of a model (from a single node). */
+  static final class ModelDelta extends Iced<ModelDelta> {
+    final CompressedArray[] _arrays;
+    ModelDelta(CompressedArray[] arrays) { _arrays = arrays; }
+
+    long byteSize() {
+      long size = 0;
+      for (CompressedArray a : _arrays) size += a.byteSize();
+      return size;
+    }
+  }
+
+  /**
+   * A single array compressed either as quantized values (value = q * scale) or as sparse index/value pairs,
+   * or not compressed at all (Mode.None).
+   */
+  static final class CompressedArray extends Iced<CompressedArray> {
+    final int _len;
+    float _scale;
+    byte[] _q;     // quantized values, 1 or 2 bytes per value (big-endian)
+    byte _qbytes;
+    int[] _idx;
+    float[] _vals;
+    float[] _raw;
+
+    private CompressedArray(int len) { _len = len; }
+
+    static CompressedArray compress(float[] delta, Mode mode, float topkFraction) {
+      CompressedArray res = new CompressedArray(delta.length);
+      switch (mode) {
+        case Int8:
+        case Int16:
+          final int maxq = mode == Mode.Int8 ? Byte.MAX_VALUE : Short.MAX_VALUE;
+          float maxabs = 0;
+          for (float v : delta) maxabs = Math.max(maxabs, Math.abs(v));
+          if (maxabs == 0 || Float.isNaN(maxabs)) break; // nothing to send
+          res._scale = maxabs / maxq;
+          if (mode == Mode.Int8) {
+            res._qbytes = 1;
+            res._q = new byte[delta.length];
+            for (int i = 0; i < delta.length; ++i) res._q[i] = (byte) Math.round(delta[i] / res._scale);
+          } else {
+            res._qbytes = 2;
+            res._q = new byte[2 * delta.length];
+            for (int i = 0; i < delta.length; ++i) {
+              final int q = Math.round(delta[i] / res._scale);
+              res._q[2 * i] = (byte) (q >> 8);
+              res._q[2 * i + 1] = (byte) q;
+            }
+          }
+          break;
+        case TopK:
+          final int k = Math.min(delta.length, Math.max(1, (int) Math.ceil(topkFraction * delta.length)));
+          final float threshold = kthLargestAbs(delta, k);
+          if (threshold == 0) { // fewer than k non-zeros, send all of them
+            int nnz = 0;
+            for (float v : delta) if (v != 0) nnz++;
+            res.allocSparse(nnz);
+            for (int i = 0, j = 0; i < delta.length; ++i)
+              if (delta[i] != 0) { res._idx[j] = i; res._vals[j++] = delta[i]; }
+          } else {
+            res.allocSparse(k);
+            int j = 0;
+            for (int i = 0; i < delta.length && j < k; ++i)
+              if (Math.abs(delta[i]) > threshold) { res._idx[j] = i; res._vals[j++] = delta[i]; }
+            for (int i = 0; i < delta.length && j < k; ++i) // ties at the threshold
+              if (Math.abs(delta[i]) == threshold) { res._idx[j] = i; res._vals[j++] = delta[i]; }
+            if (j < k) { // only if NaNs are present
+              res._idx = Arrays.copyOf(res._idx, j);
+              res._vals = Arrays.copyOf(res._vals, j);
+            }
+          }
+          break;
+        case None:
+          res._raw = delta.clone();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown compression mode " + mode);
+      }
+      return res;
+    }
+
+    private void allocSparse(int n) {
+      _idx = new int[n];
+      _vals = new float[n];
+    }
+
+    // quantized value
+    private float get(int i) {
+      return (_qbytes == 1 ? _q[i] : (short) ((_q[2 * i] << 8) | (_q[2 * i + 1] & 0xFF))) * _scale;
+    }
+
+    void subtractFrom(float[] x) {
+      if (_raw != null) {
+        for (int i = 0; i < _len; ++i) x[i] -= _raw[i];
+      } else if (_idx != null) {
+        for (int j = 0; j < _idx.length; ++j) x[_idx[j]] -= _vals[j];
+      } else if (_q != null) {
+        for (int i = 0; i < _len; ++i) x[i] -= get(i);
+      }
+    }
+
+    void addTo(float[] x, double mult) {
+      if (_raw != null) {
+        for (int i = 0; i < _len; ++i) x[i] += (float) (mult * _raw[i]);
+      } else if (_idx != null) {
+        for (int j = 0; j < _idx.length; ++j) x[_idx[j]] += (float) (mult * _vals[j]);
+      } else if (_q != null) {
+        for (int i = 0; i < _len; ++i) x[i] += (float) (mult * get(i));
+      }
+    }
+
+    void addTo(double[] x, double mult) {
+      if (_raw != null) {
+        for (int i = 0; i < _len; ++i) x[i] += mult * _raw[i];
+      } else if (_idx != null) {
+        for (int j = 0; j < _idx.length; ++j) x[_idx[j]] += mult * _vals[j];
+      } else if (_q != null) {
+        for (int i = 0; i < _len; ++i) x[i] += mult * get(i);
+      }
+    }
+
+    long byteSize() {
+      if (_raw != null) return 4L * _raw.length;
+      if (_idx != null) return 8L * _idx.length;
+      if (_q != null) return _q.length;
+      return 0;
+    }
+  }
+
+  // k-th largest absolute value (quickselect on a copy)
+  static float kthLargestAbs(float[] x, int k) {
+    float[] a = new float[x.length];
+    for (int i = 0; i < x.length; ++i) a[i] = Math.abs(x[i]);
+    int lo = 0, hi = a.length - 1;
+    final int target = k - 1; // index in descending order
+    while (lo < hi) {
+      final float pivot = a[(lo + hi) >>> 1];
+      int i = lo, j = hi;
+      while (i <= j) {
+        while (a[i] > pivot) i++;
+        while (a[j] < pivot) j--;
+        if (i <= j) {
+          float tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+          i++; j--;
+        }
+      }
+      if (target <= j) hi = j;
+      else if (target >= i) lo = i;
+      else break;
+    }
+    return a[target];
+  }
+
+}
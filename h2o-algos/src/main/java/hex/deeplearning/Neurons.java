@@ -92,6 +92,11 @@ public abstract class Neurons {
    */
   private boolean _shortcut = false;
 
+  /**
+   * Mini-batch gradient of the incoming weights of a single neuron (re-used for all neurons)
+   */
+  private transient double[] _grad;
+
   public Storage.DenseVector _avg_a;
 
   /**
@@ -188,6 +193,18 @@ public abstract class Neurons {
    */
   protected abstract void bprop(int n);
 
+  /**
+   * Linear part of the forward propagation for the whole mini-batch: a = W * previous.a + b
+   * @param row_bits if not null, check bits of this byte[] to determine whether a row is used or not
+   * @param n number of actually trained samples in this mini-batch
+   */
+  final void fpropLinear(byte[] row_bits, int n) {
+    if (n == 1)
+      gemv(_a[0], _w, _previous._a[0], _b, row_bits);
+    else
+      gemm(_a, _w, _previous._a, _b, row_bits, n);
+  }
+
   /**
    * Back-propagate gradient in output layer
    */
@@ -238,6 +255,10 @@ public abstract class Neurons {
     final boolean fast_mode = params._fast_mode;
     final int cols = _previous._a[0].size();
     assert(partial_grad.length == n);
+    if (n > 1 && _k == 0) {
+      bpropMiniBatch(row, partial_grad, rate, momentum, n);
+      return;
+    }
 
     double avg_grad2 = 0;
 
@@ -302,6 +323,97 @@ public abstract class Neurons {
     }
   }
 
+  /**
+   * Backpropagation of a whole mini-batch for the weights feeding to a single neuron.
+   * The error is propagated to the previous layer with the weights before the update, the gradients of all samples
+   * are summed up and the weights are updated only once per mini-batch.
+   * The output layer gradients are already divided by the mini-batch size (see setOutputLayerGradient), so the sum is
+   * the average gradient of the mini-batch, a mini-batch of n identical samples makes the same step as a single sample.
+   * The l1/l2 and elastic averaging terms are added once per mini-batch.
+   * @param row row index (update weights feeding to this neuron)
+   * @param partial_grad partial derivatives dE/dnet of the samples in the mini-batch
+   * @param rate learning rate
+   * @param momentum momentum factor (needed only if ADADELTA isn't used)
+   * @param n Actual mini-batch size
+   */
+  private void bpropMiniBatch(final int row, final double[] partial_grad, final float rate, final float momentum, final int n) {
+    final float rho = (float)params._rho;
+    final float eps = (float)params._epsilon;
+    final float l1 = (float)params._l1;
+    final float l2 = (float)params._l2;
+    final float max_w2 = params._max_w2;
+    final boolean have_momenta = _minfo.has_momenta();
+    final boolean have_ada = _minfo.adaDelta();
+    final boolean nesterov = params._nesterov_accelerated_gradient;
+    final boolean fast_mode = params._fast_mode;
+    final int cols = _previous._a[0].size();
+    final int idx = row * cols;
+    final float[] w = _w.raw();
+
+    double bias_grad = 0;
+    for (int mb = 0; mb < n; mb++)
+      bias_grad += partial_grad[mb];
+    if (_shortcut && bias_grad == 0 && ArrayUtils.l1norm(partial_grad, false) == 0) return;
+
+    // propagate the error dE/dnet to the previous layer and sum up dE/dw over the mini-batch
+    if (_grad == null || _grad.length < cols) _grad = new double[cols];
+    final double[] grad = _grad;
+    Arrays.fill(grad, 0, cols, 0);
+    for (int mb = 0; mb < n; mb++) {
+      final double g = partial_grad[mb];
+      if (g == 0) continue;
+      if (_previous._e != null && _previous._e[mb] != null) {
+        final double[] e = _previous._e[mb].raw();
+        for (int col = 0; col < cols; col++)
+          e[col] += g * w[idx + col];
+      }
+      final double[] a = _previous._a[mb].raw();
+      for (int col = 0; col < cols; col++)
+        grad[col] += g * a[col];
+    }
+
+    double avg_grad2 = 0;
+    for (int col = 0; col < cols; col++) {
+      if (fast_mode && grad[col] == 0) continue;
+      final int wi = idx + col;
+      final double weight = w[wi];
+      double gr = grad[col] + Math.signum(weight) * l1 + weight * l2;
+      if (_wEA != null)
+        gr += params._elastic_averaging_regularization * (weight - _wEA.raw()[wi]);
+
+      // store the gradient
+      if (DeepLearningModelInfo.gradientCheck != null)
+        DeepLearningModelInfo.gradientCheck.apply(_index, row, col, gr);
+
+      if (have_ada) {
+        avg_grad2 += gr * gr;
+        float brate = computeAdaDeltaRateForWeight(gr, wi, _ada_dx_g, rho, eps);
+        w[wi] -= brate * gr;
+      } else {
+        if (!nesterov) {
+          final double delta = -rate * gr;
+          w[wi] += delta;
+          if (have_momenta) {
+            w[wi] += momentum * _wm.raw()[wi];
+            _wm.raw()[wi] = (float)delta;
+          }
+        } else {
+          double tmp = -gr;
+          if (have_momenta) {
+            _wm.raw()[wi] *= momentum;
+            _wm.raw()[wi] += tmp;
+            tmp = _wm.raw()[wi];
+          }
+          w[wi] += rate * tmp;
+        }
+      }
+    }
+    if (max_w2 != Float.POSITIVE_INFINITY)
+      rescale_weights(_w, row, max_w2, 0);
+    if (have_ada) avg_grad2 /= cols;
+    update_bias(_b, _bEA, _bm, row, bias_grad, avg_grad2, rate, momentum, 0);
+  }
+
   private void rescale_weights(final Storage.DenseRowMatrix w, final int row, final float max_w2, int mb) {
     final int cols = _previous._a[0].size();
     int start;
@@ -403,6 +515,15 @@ public abstract class Neurons {
    */
   private void update_bias(final Storage.DenseVector _b, final Storage.DenseVector _bEA, final Storage.DenseVector _bm, final int row,
                    double[/*actual mini-batch size*/] partial_grad, final double avg_grad2, double rate, final double momentum, int mb) {
+    partial_grad[mb] = update_bias(_b, _bEA, _bm, row, partial_grad[mb], avg_grad2, rate, momentum, mb);
+  }
+
+  /**
+   * Update the bias of a single neuron by a single gradient value, used by the mini-batch backpropagation
+   * @return the gradient including the regularization terms
+   */
+  private double update_bias(final Storage.DenseVector _b, final Storage.DenseVector _bEA, final Storage.DenseVector _bm, final int row,
+                   double grad, final double avg_grad2, double rate, final double momentum, int mb) {
     final boolean have_momenta = _minfo.has_momenta();
     final boolean have_ada = _minfo.adaDelta();
     final float l1 = (float)params._l1;
@@ -410,12 +531,12 @@ public abstract class Neurons {
     final int b = _k != 0 ? _k*row+_maxIncoming[mb][row] : row;
     final double bias = _b.get(b);
 
-    partial_grad[mb] += Math.signum(bias) * l1 + bias * l2;
-    if (_bEA != null) partial_grad[mb] += (bias - _bEA.get(b)) * params._elastic_averaging_regularization;
+    grad += Math.signum(bias) * l1 + bias * l2;
+    if (_bEA != null) grad += (bias - _bEA.get(b)) * params._elastic_averaging_regularization;
 
     // store the gradient
     if (DeepLearningModelInfo.gradientCheck != null)
-      DeepLearningModelInfo.gradientCheck.apply(_index, row, -1, partial_grad[mb]);
+      DeepLearningModelInfo.gradientCheck.apply(_index, row, -1, grad);
 
     if (have_ada) {
       final float rho = (float)params._rho;
@@ -423,14 +544,14 @@ public abstract class Neurons {
       rate = computeAdaDeltaRateForBias(avg_grad2, b, _bias_ada_dx_g, rho, eps);
     }
     if (!params._nesterov_accelerated_gradient) {
-      final double delta = -rate * partial_grad[mb];
+      final double delta = -rate * grad;
       _b.add(b, delta);
       if (have_momenta) {
         _b.add(b, momentum * _bm.get(b));
         _bm.set(b, delta);
       }
     } else {
-      double d = -partial_grad[mb];
+      double d = -grad;
       if (have_momenta) {
         _bm.set(b, _bm.get(b) * momentum);
         _bm.add(b, d);
@@ -443,6 +564,7 @@ public abstract class Neurons {
       _b.add(b, -(rate * params._sparsity_beta * (_avg_a.raw()[b] - params._average_activation)));
     }
     if (Double.isInfinite(_b.get(b))) _minfo.setUnstable();
+    return grad;
   }
 
 
@@ -633,9 +755,7 @@ public abstract class Neurons {
   public static class Tanh extends Neurons {
     public Tanh(int units) { super(units); }
     @Override protected void fprop(long seed, boolean training, int n) {
-      // TODO: implement GEMM
-      for (int mb=0;mb<n;++mb)
-        gemv(_a[mb], _w, _previous._a[mb], _b, _dropout != null ? _dropout.bits() : null);
+      fpropLinear(_dropout != null ? _dropout.bits() : null, n);
       final int rows = _a[0].size();
       for (int mb=0;mb<n;++mb)
         for( int row = 0; row < rows; row++ )
@@ -758,9 +878,7 @@ public abstract class Neurons {
   public static class Rectifier extends Neurons {
     public Rectifier(int units) { super(units); }
     @Override protected void fprop(long seed, boolean training, int n) {
-      // TODO: implement GEMM
-      for (int mb=0;mb<n;++mb)
-        gemv(_a[mb], _w, _previous._a[mb], _b, _dropout != null ? _dropout.bits() : null);
+      fpropLinear(_dropout != null ? _dropout.bits() : null, n);
       final int rows = _a[0].size();
       for (int mb=0;mb<n;++mb) {
         for( int row = 0; row < rows; row++ ) {
@@ -808,8 +926,7 @@ public abstract class Neurons {
   public static class ExpRectifier extends Neurons {
     public ExpRectifier(int units) { super(units); }
     @Override protected void fprop(long seed, boolean training, int n) {
-      for (int mb=0;mb<n;++mb)
-        gemv(_a[mb], _w, _previous._a[mb], _b, _dropout != null ? _dropout.bits() : null);
+      fpropLinear(_dropout != null ? _dropout.bits() : null, n);
       final int rows = _a[0].size();
       for( int row = 0; row < rows; row++ ) {
         for (int mb=0;mb<n;++mb) {
@@ -871,8 +988,7 @@ public abstract class Neurons {
   public static class Softmax extends Output {
     public Softmax(int units) { super(units); }
     protected void fprop(long seed, boolean training, int n) {
-      for (int mb=0;mb<n;++mb)
-        gemv(_a[mb], _w, _previous._a[mb], _b, null);
+      fpropLinear(null, n);
       for (int mb=0;mb<n;++mb) {
         final double max = ArrayUtils.maxValue(_a[mb].raw());
         double scaling = 0;
@@ -928,8 +1044,7 @@ public abstract class Neurons {
       super(1);
     }
     protected void fprop(long seed, boolean training, int n) {
-      for (int mb=0;mb<n;++mb)
-        gemv(_a[mb], _w, _previous._a[mb], _b, _dropout != null ? _dropout.bits() : null);
+      fpropLinear(_dropout != null ? _dropout.bits() : null, n);
     }
 
     /**
@@ -1018,6 +1133,71 @@ public abstract class Neurons {
     gemv_row_optimized(res.raw(), a.raw(), x.raw(), y.raw(), row_bits);
   }
 
+  /**
+   * Mat-Mat Plus Add for a mini-batch (with optional row dropout): res[mb] = a*x[mb]+y for all mb &lt; n
+   * Optimization: every row of the matrix is streamed once for 4 samples at a time (instead of once per sample)
+   * @param res results of length rows (pre-allocated, will be overwritten)
+   * @param a matrix of size rows x cols
+   * @param x mini-batch of vectors of length cols
+   * @param y vector of length rows
+   * @param row_bits if not null, check bits of this byte[] to determine whether a row is used or not
+   * @param n number of samples in the mini-batch
+   */
+  static void gemm(final double[][] res, final float[] a, final double[][] x, final double[] y, final byte[] row_bits, final int n) {
+    final int cols = x[0].length;
+    final int rows = y.length;
+    int idx = 0;
+    for (int row = 0; row < rows; row++, idx += cols) {
+      if (row_bits != null && (row_bits[row / 8] & (1 << (row % 8))) == 0) {
+        for (int mb = 0; mb < n; mb++)
+          res[mb][row] = 0;
+        continue;
+      }
+      int mb = 0;
+      for (; mb + 4 <= n; mb += 4) {
+        final double[] x0 = x[mb], x1 = x[mb + 1], x2 = x[mb + 2], x3 = x[mb + 3];
+        double psum0 = 0, psum1 = 0, psum2 = 0, psum3 = 0;
+        for (int col = 0; col < cols; col++) {
+          final double w = a[idx + col];
+          psum0 += w * x0[col];
+          psum1 += w * x1[col];
+          psum2 += w * x2[col];
+          psum3 += w * x3[col];
+        }
+        res[mb    ][row] = psum0 + y[row];
+        res[mb + 1][row] = psum1 + y[row];
+        res[mb + 2][row] = psum2 + y[row];
+        res[mb + 3][row] = psum3 + y[row];
+      }
+      for (; mb < n; mb++) {
+        final double[] x0 = x[mb];
+        double psum0 = 0;
+        for (int col = 0; col < cols; col++)
+          psum0 += a[idx + col] * x0[col];
+        res[mb][row] = psum0 + y[row];
+      }
+    }
+  }
+
+  /**
+   * Helper to do a generic gemm for a mini-batch: res[mb] = a*x[mb] + y
+   * @param res Dense results
+   * @param a DenseMatrix
+   * @param x Dense vectors of the mini-batch
+   * @param y Dense vector to add to result
+   * @param row_bits Bit mask for which rows to use
+   * @param n number of samples in the mini-batch
+   */
+  static void gemm(final Storage.DenseVector[] res, final Storage.DenseRowMatrix a, final Storage.DenseVector[] x, final Storage.DenseVector y, byte[] row_bits, int n) {
+    final double[][] resRaw = new double[n][];
+    final double[][] xRaw = new double[n][];
+    for (int mb = 0; mb < n; mb++) {
+      resRaw[mb] = res[mb].raw();
+      xRaw[mb] = x[mb].raw();
+    }
+    gemm(resRaw, a.raw(), xRaw, y.raw(), row_bits, n);
+  }
+
   static void gemv_naive(final Storage.DenseVector res, final Storage.DenseRowMatrix a, final Storage.DenseVector x, final Storage.DenseVector y, byte[] row_bits) {
     gemv_naive(res.raw(), a.raw(), x.raw(), y.raw(), row_bits);
   }
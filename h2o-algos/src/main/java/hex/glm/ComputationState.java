@@ -797,32 +797,63 @@ public final class ComputationState {
   protected GramXY computeNewGram(DataInfo activeData, double [] beta, GLMParameters.Solver s){
     double obj_reg = _parms._obj_reg;
     if(_glmw == null) _glmw = new GLMModel.GLMWeightsFun(_parms);
-    GLMTask.GLMIterationTask gt = new GLMTask.GLMIterationTask(_job._key, activeData, _glmw, beta,
-            _activeClass).doAll(activeData._adaptedFrame);
-    gt._gram.mul(obj_reg);
+    final Gram gram;
+    final double [] xy;
+    final double yy, likelihood;
+    if(_suffStats != null && _parms._family == Family.gaussian && _parms._link == GLMParameters.Link.identity) {
+      // cross-validation model with precomputed statistics - no need to touch the data
+      GLMSufficientStats.Derived d = _suffStats.derive(_dinfo, activeData, beta);
+      gram = d._gram;
+      xy = d._xy;
+      yy = d._yy;
+      likelihood = d._likelihood;
+    } else if (gramCache() != null) {
+      // lambda path with fixed weights - only the newly active columns are computed from the data
+      GLMSufficientStats.Derived d = _gramCache.gram(_job._key, _glmw, activeData, beta);
+      gram = d._gram;
+      xy = d._xy;
+      yy = d._yy;
+      likelihood = d._likelihood;
+    } else {
+      GLMTask.GLMIterationTask gt = new GLMTask.GLMIterationTask(_job._key, activeData, _glmw, beta,
+              _activeClass).doAll(activeData._adaptedFrame);
+      gram = gt._gram;
+      xy = gt._xy;
+      yy = gt._yy;
+      likelihood = gt._likelihood;
+    }
+    gram.mul(obj_reg);
     if (_parms._glmType.equals(GLMParameters.GLMType.gam)) { // add contribution from GAM smoothness factor
         Integer[] activeCols=null;
         int[] activeColumns = activeData.activeCols();
         if (activeColumns.length<_dinfo.fullN()) { // columns are deleted
           activeCols = ArrayUtils.toIntegers(activeColumns, 0, activeColumns.length);
         }
-        gt._gram.addGAMPenalty(activeCols , _penaltyMatrix, _gamBetaIndices);
+        gram.addGAMPenalty(activeCols , _penaltyMatrix, _gamBetaIndices);
     }
-    ArrayUtils.mult(gt._xy,obj_reg);
+    ArrayUtils.mult(xy,obj_reg);
     int [] activeCols = activeData.activeCols();
-    int [] zeros = gt._gram.findZeroCols();
+    int [] zeros = gram.findZeroCols();
     GramXY res;
     if(_parms._family != Family.multinomial && zeros.length > 0) {
-      gt._gram.dropCols(zeros);
+      gram.dropCols(zeros);
       removeCols(zeros);
-      res = new ComputationState.GramXY(gt._gram,ArrayUtils.removeIds(gt._xy, zeros),null,gt._beta == null?null:ArrayUtils.removeIds(gt._beta, zeros),activeData().activeCols(),null,gt._yy,gt._likelihood);
-    } else res = new GramXY(gt._gram,gt._xy,null,beta == null?null:beta,activeCols,null,gt._yy,gt._likelihood);
+      res = new ComputationState.GramXY(gram,ArrayUtils.removeIds(xy, zeros),null,beta == null?null:ArrayUtils.removeIds(beta, zeros),activeData().activeCols(),null,yy,likelihood);
+    } else res = new GramXY(gram,xy,null,beta == null?null:beta,activeCols,null,yy,likelihood);
 
     return res;
   }
 
   GramXY _currGram;
   GLMModel.GLMWeightsFun _glmw;
+  GLMSufficientStats _suffStats; // precomputed statistics of the training data (cross-validation models only)
+  GramColumnCache _gramCache; // gram entries of the predictors seen so far on the lambda path
+
+  private GramColumnCache gramCache() {
+    if (_gramCache == null && GramColumnCache.isApplicable(_parms))
+      _gramCache = new GramColumnCache(_dinfo);
+    return _gramCache;
+  }
 
 
   // get cached gram or incrementally update or compute new one
@@ -845,6 +876,8 @@ public final class ComputationState {
     if (Arrays.equals(_currGram.activeCols,activeCols))
       return (!weighted || Arrays.equals(_currGram.beta, beta)) ? _currGram : (_currGram = computeNewGram(activeData,
               beta, s));
+    if(_suffStats != null || _gramCache != null) // new columns are derived from precomputed or cached statistics
+      return _currGram = computeNewGram(activeData,beta,s);
     if(_glmw == null) _glmw = new GLMModel.GLMWeightsFun(_parms);
     // check if we need full or just incremental update
     if(_currGram != null){
@@ -52,6 +52,7 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
   static NumberFormat devFormatter = new DecimalFormat(".##");
 
   public static final int SCORING_INTERVAL_MSEC = 15000; // scoreAndUpdateModel every minute unless score every iteration is set
+  public static final String CV_SUFFICIENT_STATS_DISABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "glm.cv.sufficientStats.disabled";
   public int[] _randC;  // contains categorical column levels for random columns for HGLM
   public String _generatedWeights = null;
   public String[] _randCoeffNames = null;
@@ -106,6 +107,7 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
   private boolean _doInit = true;  // flag setting whether or not to run init
   private double [] _xval_deviances;
   private double [] _xval_sd;
+  private GLMSufficientStats _cvSuffStats; // training statistics of a cross-validation model (gaussian family only)
 
   /**
    * GLM implementation of N-fold cross-validation.
@@ -123,6 +125,57 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
     super.computeCrossValidation();
   }
 
+  /**
+   * Gaussian GLM with identity link only needs t(X) W X and t(X) W y of the training data, both are additive over rows.
+   * We compute them for the holdout rows of every fold in a single pass, the statistics of each fold's training data
+   * (and of the main model) are then obtained by subtraction and the models are fitted without recomputing the gram.
+   */
+  @Override
+  public void cv_buildModels(int N, ModelBuilder<GLMModel, GLMParameters, GLMOutput>[] cvModelBuilders) {
+    GLMSufficientStats total = canUseSufficientStatsCV(N) ? computeFoldSufficientStats(cvModelBuilders) : null;
+    super.cv_buildModels(N, cvModelBuilders);
+    if (total != null && _state != null && total.isCompatible(_state._dinfo))
+      _state._suffStats = total;
+  }
+
+  private boolean canUseSufficientStatsCV(int N) {
+    if (Boolean.getBoolean(CV_SUFFICIENT_STATS_DISABLED_PROP) || _dinfo == null)
+      return false;
+    boolean gramSolver = _parms._solver == Solver.IRLSM || _parms._solver == Solver.COORDINATE_DESCENT ||
+            (_parms._solver == Solver.AUTO && _dinfo.fullN() < 5000);
+    if (_parms._family != Family.gaussian || _parms._link != Link.identity || !gramSolver || _parms._HGLM ||
+            _parms._glmType != GLMType.glm || !_parms._intercept || _dinfo._interactions != null)
+      return false;
+    // one gram per fold and thread
+    long gramBytes = 8L * (_dinfo.fullN() + 1) * (_dinfo.fullN() + 2) / 2;
+    long memUsage = (H2O.SELF._heartbeat._cpus_allowed + 1) * N * gramBytes;
+    if (memUsage > H2O.SELF._heartbeat.get_free_mem()) {
+      Log.info(LogMsg("Per-fold gram matrices won't fit in memory (" + PrettyPrint.bytes(memUsage) +
+              "), cross-validation models will compute their own gram matrices."));
+      return false;
+    }
+    return true;
+  }
+
+  private GLMSufficientStats computeFoldSufficientStats(ModelBuilder<GLMModel, GLMParameters, GLMOutput>[] cvModelBuilders) {
+    long t0 = System.currentTimeMillis();
+    Vec[] holdoutWeights = new Vec[cvModelBuilders.length];
+    for (int i = 0; i < cvModelBuilders.length; ++i) {
+      GLMParameters cvParms = cvModelBuilders[i]._parms;
+      holdoutWeights[i] = cvParms._valid.get().vec(cvParms._weights_column);
+    }
+    DataInfo dinfo = IcedUtils.deepCopy(_dinfo);
+    dinfo.setPredictorTransform(DataInfo.TransformType.NONE);
+    GLMFoldGramTask gt = new GLMFoldGramTask(_job._key, dinfo, holdoutWeights).doAll(dinfo._adaptedFrame);
+    GLMSufficientStats[] holdout = gt.holdoutStats();
+    GLMSufficientStats total = GLMSufficientStats.sum(holdout);
+    for (int i = 0; i < cvModelBuilders.length; ++i)
+      ((GLM) cvModelBuilders[i])._cvSuffStats = total.subtract(holdout[i]);
+    Log.info(LogMsg("Computed gram matrices of " + cvModelBuilders.length + " cross-validation folds in " +
+            (System.currentTimeMillis() - t0) + "ms"));
+    return total;
+  }
+
   /**
    * If run with lambda search, we need to take extra action performed after cross-val models are built.
    * Each of the folds have been computed with ots own private validation dataset and it performed early stopping based on it.
@@ -578,6 +631,8 @@ public class GLM extends ModelBuilder<GLMModel,GLMParameters,GLMOutput> {
       if (_valid != null)
         _validDinfo = _dinfo.validDinfo(_valid);
       _state = new ComputationState(_job, _parms, _dinfo, null, nclasses(), _penaltyMatrix, _gamColIndices);
+      if (_cvSuffStats != null && _cvSuffStats.isCompatible(_dinfo))
+        _state._suffStats = _cvSuffStats;
         
       // skipping extra rows? (outside of weights == 0)GLMT
       boolean skippingRows = (_parms.missingValuesHandling() == GLMParameters.MissingValuesHandling.Skip && _train.hasNAs());
@@ -0,0 +1,138 @@
+package hex.glm;
+
+import hex.DataInfo;
+import hex.gram.Gram;
+import water.MemoryManager;
+import water.util.ArrayUtils;
+
+/**
+ * Sufficient statistics of a gaussian GLM with identity link computed on untransformed predictors:
+ * t(X) %*% W %*% X (including the intercept column), t(X) %*% W %*% z with z = y - offset, sum(y^2) and sum(w*z^2).
+ *
+ * All of the statistics are additive over the rows, the statistics of a subset of the rows can be obtained by
+ * subtracting the statistics of the complement (used to get the training statistics of cross-validation folds).
+ * The Gram matrix and the xy vector of any standardized/filtered {@link DataInfo} with the same column expansion
+ * can then be derived without another pass over the data.
+ */
+final class GLMSufficientStats {
+
+  final Gram _gram; // raw gram, always with the intercept row/column
+  final double[] _xy; // last element is sum(w*z)
+  final double _yy;
+  final double _wzz;
+
+  GLMSufficientStats(Gram gram, double[] xy, double yy, double wzz) {
+    _gram = gram;
+    _xy = xy;
+    _yy = yy;
+    _wzz = wzz;
+  }
+
+  static GLMSufficientStats sum(GLMSufficientStats[] stats) {
+    Gram gram = stats[0]._gram.deep_clone();
+    double[] xy = stats[0]._xy.clone();
+    double yy = stats[0]._yy, wzz = stats[0]._wzz;
+    for (int i = 1; i < stats.length; ++i) {
+      gram.add(stats[i]._gram);
+      ArrayUtils.add(xy, stats[i]._xy);
+      yy += stats[i]._yy;
+      wzz += stats[i]._wzz;
+    }
+    return new GLMSufficientStats(gram, xy, yy, wzz);
+  }
+
+  GLMSufficientStats subtract(GLMSufficientStats other) {
+    Gram gram = other._gram.deep_clone();
+    gram.mul(-1);
+    gram.add(_gram);
+    double[] xy = _xy.clone();
+    for (int i = 0; i < xy.length; ++i)
+      xy[i] -= other._xy[i];
+    return new GLMSufficientStats(gram, xy, _yy - other._yy, _wzz - other._wzz);
+  }
+
+  /**
+   * @param dinfo data info of the model (no column filtering)
+   * @return true if the statistics were computed with the same column expansion as used by the given data info
+   */
+  boolean isCompatible(DataInfo dinfo) {
+    return dinfo._interactions == null && dinfo._intercept && _gram.fullN() == dinfo.fullN() + 1;
+  }
+
+  /**
+   * Derives the output of {@link GLMTask.GLMIterationTask} (gaussian family, identity link) for the given active data.
+   *
+   * @param dinfo full data info, defines the transformation of the numeric predictors
+   * @param activeData data info restricted to the active columns
+   * @param beta current coefficients (in the space of the active data), only needed for the likelihood
+   * @return derived gram, xy, yy and likelihood
+   */
+  Derived derive(DataInfo dinfo, DataInfo activeData, double[] beta) {
+    final int fullN = dinfo.fullN();
+    final int activeN = activeData.fullN();
+    final int ns = dinfo.numStart();
+    // map active column index -> full column index, intercept is always last
+    final int[] cols = new int[activeN + 1];
+    if (activeData._activeCols == null) {
+      for (int i = 0; i < activeN; ++i)
+        cols[i] = i;
+    } else {
+      System.arraycopy(activeData._activeCols, 0, cols, 0, activeN);
+    }
+    cols[activeN] = fullN;
+    // transformed x = (x - sub) * mul for the numeric columns
+    final double[] sub = MemoryManager.malloc8d(fullN + 1);
+    final double[] mul = MemoryManager.malloc8d(fullN + 1);
+    for (int i = 0; i <= fullN; ++i) {
+      boolean transformed = i >= ns && i < fullN && dinfo._normMul != null && dinfo._normSub != null;
+      sub[i] = transformed ? dinfo._normSub[i - ns] : 0;
+      mul[i] = transformed ? dinfo._normMul[i - ns] : 1;
+    }
+    final Gram raw = _gram;
+    final double wsum = raw.get(fullN, fullN);
+    Gram gram = new Gram(activeN, activeData.largestCat(), activeData.numNums(), activeData._cats, true);
+    for (int a = 0; a <= activeN; ++a) {
+      final int i = cols[a];
+      final double ri = raw.get(fullN, i);
+      for (int b = (a < gram._diagN ? a : 0); b <= a; ++b) {
+        final int j = cols[b];
+        double v = mul[i] * mul[j] * (raw.get(i, j) - sub[i] * raw.get(fullN, j) - sub[j] * ri + sub[i] * sub[j] * wsum);
+        if (a < gram._diagN)
+          gram._diag[a] = v;
+        else
+          gram._xx[a - gram._diagN][b] = v;
+      }
+    }
+    final double wz = _xy[fullN];
+    final double[] xy = MemoryManager.malloc8d(activeN + 1);
+    for (int a = 0; a < activeN; ++a) {
+      final int i = cols[a];
+      xy[a] = mul[i] * (_xy[i] - sub[i] * wz);
+    }
+    xy[activeN] = wz;
+    double likelihood = 0;
+    if (beta != null) { // 0.5 * sum(w * (z - x*beta)^2)
+      double bxy = 0;
+      for (int a = 0; a <= activeN; ++a)
+        bxy += beta[a] * xy[a];
+      double[] gb = gram.mul(beta);
+      likelihood = .5 * (_wzz - 2 * bxy + ArrayUtils.innerProduct(gb, beta));
+    }
+    return new Derived(gram, xy, _yy, likelihood);
+  }
+
+  static final class Derived {
+    final Gram _gram;
+    final double[] _xy;
+    final double _yy;
+    final double _likelihood;
+
+    Derived(Gram gram, double[] xy, double yy, double likelihood) {
+      _gram = gram;
+      _xy = xy;
+      _yy = yy;
+      _likelihood = likelihood;
+    }
+  }
+
+}
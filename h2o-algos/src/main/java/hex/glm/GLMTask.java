@@ -14,6 +14,7 @@ import water.H2O.H2OCountedCompleter;
 import water.fvec.C0DChunk;
 import water.fvec.Chunk;
 import water.fvec.Frame;
+import water.fvec.Vec;
 import water.util.ArrayUtils;
 import water.util.FrameUtils;
 import water.util.MathUtils;
@@ -31,6 +32,7 @@ import static hex.glm.GLMUtils.updateGradGamMultinomial;
  * GLMGradientTask   - computes gradient at given Beta, used by L-BFGS, for KKT condition check
  * GLMLineSearchTask - computes residual deviance(s) at given beta(s), used by line search (both L-BFGS and IRLSM)
  * GLMIterationTask  - used by IRLSM to compute Gram matrix and response t(X) W X, t(X)Wz
+ * GLMFoldGramTask   - computes t(X) W X, t(X)Wz per cross-validation fold in a single pass (gaussian family)
  *
  * @author tomasnykodym
  */
@@ -1257,6 +1259,7 @@ public abstract class GLMTask  {
     public double[] _xy;
     public Gram _gram;
     final int numStart;
+    final boolean _blockedGram = Gram.isBlockedEnabled();
 
     public LSTask(H2OCountedCompleter cmp, DataInfo dinfo, Key jobKey) {
       super(cmp, dinfo, jobKey);
@@ -1283,7 +1286,15 @@ public abstract class GLMTask  {
       }
       if (_dinfo._intercept)
         _xy[_xy.length - 1] += wz;
-      _gram.addRow(r, r.weight);
+      if (_blockedGram)
+        _gram.addRowBlocked(r, r.weight);
+      else
+        _gram.addRow(r, r.weight);
+    }
+
+    @Override
+    public void chunkDone() {
+      _gram.flushRows();
     }
 
     @Override
@@ -1320,6 +1331,97 @@ public abstract class GLMTask  {
     }
   }
 
+  /**
+   * Computes t(X) %*% W %*% X and t(X) %*% W %*% (y - offset) of the holdout rows of each cross-validation fold
+   * in a single pass (gaussian family with identity link). The fold of a row is given by the fold's holdout weight.
+   * Expects data info without any predictor transformation, see {@link GLMSufficientStats}.
+   */
+  public static class GLMFoldGramTask extends FrameTask2<GLMFoldGramTask> {
+    final Vec[] _holdoutWeights;
+    final int numStart;
+    // OUT
+    Gram[] _gram;
+    double[][] _xy; // last element is sum(w*z)
+    double[] _yy;
+    double[] _wzz;
+    private transient Chunk[] _holdoutChks;
+
+    public GLMFoldGramTask(Key<Job> jobKey, DataInfo dinfo, Vec[] holdoutWeights) {
+      super(null, dinfo, jobKey);
+      _holdoutWeights = holdoutWeights;
+      numStart = _dinfo.numStart();
+    }
+
+    @Override
+    public void map(Chunk[] chks) {
+      _holdoutChks = new Chunk[_holdoutWeights.length];
+      for (int f = 0; f < _holdoutChks.length; ++f)
+        _holdoutChks[f] = _holdoutWeights[f].chunkForChunkIdx(chks[0].cidx());
+      super.map(chks);
+    }
+
+    @Override
+    public void chunkInit() {
+      _gram = new Gram[_holdoutWeights.length];
+      _xy = new double[_holdoutWeights.length][];
+      _yy = MemoryManager.malloc8d(_holdoutWeights.length);
+      _wzz = MemoryManager.malloc8d(_holdoutWeights.length);
+    }
+
+    @Override
+    protected void processRow(Row r) {
+      int fold = 0;
+      while (fold < _holdoutChks.length && _holdoutChks[fold].atd(r.cid) == 0) ++fold;
+      if (fold == _holdoutChks.length) return;
+      if (_gram[fold] == null) {
+        _gram[fold] = new Gram(_dinfo.fullN(), _dinfo.largestCat(), _dinfo.numNums(), _dinfo._cats, true);
+        _xy[fold] = MemoryManager.malloc8d(_dinfo.fullN() + 1);
+      }
+      final double y = r.response(0);
+      final double z = y - r.offset;
+      final double wz = r.weight * z;
+      final double[] xy = _xy[fold];
+      for (int i = 0; i < r.nBins; ++i)
+        xy[r.binIds[i]] += wz;
+      for (int i = 0; i < r.nNums; ++i)
+        xy[i + numStart] += wz * r.numVals[i];
+      xy[xy.length - 1] += wz;
+      _yy[fold] += y * y;
+      _wzz[fold] += wz * z;
+      _gram[fold].addRow(r, r.weight);
+    }
+
+    @Override
+    public void reduce(GLMFoldGramTask git) {
+      for (int f = 0; f < _gram.length; ++f) {
+        if (_gram[f] == null) {
+          _gram[f] = git._gram[f];
+          _xy[f] = git._xy[f];
+        } else if (git._gram[f] != null) {
+          _gram[f].add(git._gram[f]);
+          ArrayUtils.add(_xy[f], git._xy[f]);
+        }
+      }
+      ArrayUtils.add(_yy, git._yy);
+      ArrayUtils.add(_wzz, git._wzz);
+    }
+
+    /**
+     * @return statistics of the holdout rows of each fold
+     */
+    GLMSufficientStats[] holdoutStats() {
+      GLMSufficientStats[] res = new GLMSufficientStats[_gram.length];
+      for (int f = 0; f < _gram.length; ++f) {
+        if (_gram[f] == null) { // no rows in this fold
+          _gram[f] = new Gram(_dinfo.fullN(), _dinfo.largestCat(), _dinfo.numNums(), _dinfo._cats, true);
+          _xy[f] = MemoryManager.malloc8d(_dinfo.fullN() + 1);
+        }
+        res[f] = new GLMSufficientStats(_gram[f], _xy[f], _yy[f], _wzz[f]);
+      }
+      return res;
+    }
+  }
+
   public static class GLMWLSTask extends LSTask {
     final GLMWeightsFun _glmw;
     final double [] _beta;
@@ -1509,6 +1611,7 @@ public abstract class GLMTask  {
     double wsum, wsumu;
     double _sumsqe;
     int _c = -1;
+    final boolean _blockedGram = Gram.isBlockedEnabled();
 
     public  GLMIterationTask(Key jobKey, DataInfo dinfo, GLMWeightsFun glmw,double [] beta) {
       super(null,dinfo,jobKey);
@@ -1589,11 +1692,17 @@ public abstract class GLMTask  {
       }
       if(_dinfo._intercept)
         _xy[_xy.length-1] += wz;
-      _gram.addRow(r,w);
+      if(_blockedGram)
+        _gram.addRowBlocked(r,w);
+      else
+        _gram.addRow(r,w);
     }
 
     @Override
-    public void chunkDone(){adjustForSparseStandardizedZeros();}
+    public void chunkDone(){
+      _gram.flushRows();
+      adjustForSparseStandardizedZeros();
+    }
 
     @Override
     public void reduce(GLMIterationTask git){
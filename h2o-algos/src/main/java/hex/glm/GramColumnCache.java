@@ -0,0 +1,147 @@
+package hex.glm;
+
+import hex.DataInfo;
+import hex.glm.GLMModel.GLMParameters;
+import hex.glm.GLMModel.GLMWeightsFun;
+import hex.gram.Gram;
+import water.H2O;
+import water.Key;
+import water.MemoryManager;
+import water.util.ArrayUtils;
+import water.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Gram matrix entries of the expanded predictors cached across the lambda steps of a GLM lambda path.
+ *
+ * Only used when the weights of the least squares problem do not depend on the coefficients (gaussian family with
+ * identity link), the entries of a pair of predictors are the same for all lambdas then. The first request computes
+ * the Gram matrix of the active predictors in a full pass, later requests only compute the predictors that entered
+ * the active set since ({@link GLMTask.GLMIncrementalGramTask}). Predictors leaving the active set stay in the cache,
+ * re-entering the active set is free.
+ */
+final class GramColumnCache {
+
+  public static final String DISABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "glm.gramCache.disabled";
+
+  private final DataInfo _dinfo;
+  private int[] _cols;     // cached expanded column ids (sorted), the last one is the intercept
+  private double[][] _xx;  // lower triangle, indexed by position in _cols, not scaled by obj_reg
+  private double[] _xy;
+  private double _yy;
+  private double _wzz; // sum(w*z^2), needed for the likelihood
+
+  // stats
+  int _passes;
+  int _computedCols;
+
+  GramColumnCache(DataInfo dinfo) {
+    _dinfo = dinfo;
+  }
+
+  static boolean isApplicable(GLMParameters parms) {
+    return parms._family == GLMParameters.Family.gaussian && parms._link == GLMParameters.Link.identity
+        && !parms._HGLM && (parms._lambda_search || parms._lambda != null && parms._lambda.length > 1)
+        && !Boolean.getBoolean(DISABLED_PROP);
+  }
+
+  int[] cachedCols() {
+    return _cols;
+  }
+
+  /**
+   * Computes the output of {@link GLMTask.GLMIterationTask} for the given active data, only the predictors that are
+   * not in the cache yet are computed from the data.
+   *
+   * @param activeData data info restricted to the active columns (subset of the data info of the cache)
+   * @param beta current coefficients (in the space of the active data), only needed for the likelihood
+   * @return gram, xy, yy and likelihood
+   */
+  GLMSufficientStats.Derived gram(Key jobKey, GLMWeightsFun glmw, DataInfo activeData, double[] beta) {
+    final int[] activeCols = activeData.activeCols();
+    if (_cols == null) {
+      // the weights do not depend on the coefficients, computing with zero coefficients gives the same gram and xy
+      // and the likelihood 0.5*wzz, regardless of the coefficients we got
+      GLMTask.GLMIterationTask gt = new GLMTask.GLMIterationTask(jobKey, activeData, glmw,
+          MemoryManager.malloc8d(activeData.fullN() + 1)).doAll(activeData._adaptedFrame);
+      _cols = activeCols.clone();
+      _xx = gt._gram.getXX(true, false);
+      _xy = gt._xy;
+      _yy = gt._yy;
+      _wzz = 2 * gt._likelihood;
+      _passes++;
+      _computedCols += _cols.length;
+    } else {
+      int[] newCols = ArrayUtils.sorted_set_diff(activeCols, _cols);
+      if (newCols.length > 0)
+        addCols(jobKey, glmw, newCols);
+    }
+    return select(activeData, activeCols, beta);
+  }
+
+  private void addCols(Key jobKey, GLMWeightsFun glmw, int[] newCols) {
+    final int[] cols = ArrayUtils.sortedMerge(_cols, newCols);
+    final int[] newIds = new int[newCols.length];
+    for (int k = 0; k < newCols.length; ++k)
+      newIds[k] = Arrays.binarySearch(cols, newCols[k]);
+    // the new predictors are computed against all of the cached ones, not just the active ones
+    DataInfo data = _dinfo.filterExpandedColumns(cols);
+    GLMTask.GLMIncrementalGramTask gt = new GLMTask.GLMIncrementalGramTask(newIds, data, glmw,
+        MemoryManager.malloc8d(cols.length)).doAll(data._adaptedFrame);
+    final int n = cols.length;
+    final int[] oldIds = new int[n];
+    for (int i = 0; i < n; ++i)
+      oldIds[i] = Arrays.binarySearch(_cols, cols[i]);
+    double[][] xx = new double[n][];
+    double[] xy = MemoryManager.malloc8d(n);
+    for (int i = 0; i < n; ++i) {
+      xx[i] = MemoryManager.malloc8d(i + 1);
+      if (oldIds[i] < 0) continue;
+      xy[i] = _xy[oldIds[i]];
+      final double[] oldRow = _xx[oldIds[i]];
+      for (int j = 0; j <= i; ++j)
+        if (oldIds[j] >= 0)
+          xx[i][j] = oldRow[oldIds[j]]; // the order is preserved, oldIds[j] <= oldIds[i]
+    }
+    for (int k = 0; k < newIds.length; ++k) {
+      final int i = newIds[k];
+      xy[i] = gt._xy[k];
+      for (int j = 0; j < n; ++j)
+        if (j <= i) xx[i][j] = gt._gram[k][j];
+        else xx[j][i] = gt._gram[k][j];
+    }
+    Log.info("GLM Gram cache: computed " + newCols.length + " new columns, " + n + " columns cached.");
+    _cols = cols;
+    _xx = xx;
+    _xy = xy;
+    _passes++;
+    _computedCols += newCols.length;
+  }
+
+  private GLMSufficientStats.Derived select(DataInfo activeData, int[] activeCols, double[] beta) {
+    final int activeN = activeData.fullN();
+    final int[] ids = new int[activeN + 1];
+    for (int a = 0; a <= activeN; ++a)
+      ids[a] = Arrays.binarySearch(_cols, activeCols[a]);
+    Gram gram = new Gram(activeN, activeData.largestCat(), activeData.numNums(), activeData._cats, true);
+    for (int a = 0; a <= activeN; ++a) {
+      final double[] row = _xx[ids[a]];
+      if (a < gram._diagN) {
+        gram._diag[a] = row[ids[a]];
+      } else {
+        final double[] xrow = gram._xx[a - gram._diagN];
+        for (int b = 0; b <= a; ++b)
+          xrow[b] = row[ids[b]]; // ids are increasing, ids[b] <= ids[a]
+      }
+    }
+    final double[] xy = MemoryManager.malloc8d(activeN + 1);
+    for (int a = 0; a <= activeN; ++a)
+      xy[a] = _xy[ids[a]];
+    double likelihood = Double.NaN;
+    if (beta != null)
+      likelihood = .5 * (_wzz - 2 * ArrayUtils.innerProduct(beta, xy) + ArrayUtils.innerProduct(gram.mul(beta), beta));
+    return new GLMSufficientStats.Derived(gram, xy, _yy, likelihood);
+  }
+
+}
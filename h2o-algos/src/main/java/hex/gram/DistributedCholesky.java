@@ -0,0 +1,183 @@
+package hex.gram;
+
+import water.*;
+import water.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Cholesky decomposition of a dense symmetric positive definite matrix with the rows of the lower triangle
+ * distributed across the cloud.
+ *
+ * The rows are split into panels of consecutive rows, the panels are assigned to the nodes in round-robin fashion
+ * (rows further down are longer, round-robin keeps the work balanced) and stored in DKV homed at their node.
+ * The decomposition is left-looking by panels, same as {@link Gram.InPlaceCholesky#decompose_2}: the driver factors
+ * the diagonal block of the current panel and broadcasts the finished panel to all nodes, each node then updates
+ * the columns of the finished panel in all of its panels below. The owner of the next panel sends it back to the
+ * driver with the result of the update. At the end, the driver holds the complete factor.
+ *
+ * Only the O(N^3) arithmetic is distributed, the memory footprint on the driver is not reduced: {@link Gram} keeps
+ * the full dense lower triangle on the driver, the decomposition writes the factor back into it and the O(N^2)
+ * triangular solves with the factor stay on the driver as well.
+ */
+public final class DistributedCholesky {
+
+  public static final String ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "gram.cholesky.distributed.enabled";
+  public static final String MIN_SIZE_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "gram.cholesky.distributed.minSize";
+  public static final String PANEL_SIZE_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "gram.cholesky.distributed.panelSize";
+
+  static final int DEFAULT_MIN_SIZE = 10000;
+  static final int DEFAULT_PANEL_SIZE = 256;
+
+  private DistributedCholesky() {}
+
+  /**
+   * @param n dimension of the dense part of the Gram matrix
+   * @return true if the distributed decomposition should be used for a matrix of the given size
+   */
+  public static boolean useFor(int n) {
+    return Boolean.getBoolean(ENABLED_PROP) && n >= Integer.getInteger(MIN_SIZE_PROP, DEFAULT_MIN_SIZE);
+  }
+
+  static int panelSize() {
+    return Math.max(1, Integer.getInteger(PANEL_SIZE_PROP, DEFAULT_PANEL_SIZE));
+  }
+
+  /**
+   * Decomposes the given lower triangle in place.
+   *
+   * @param xx lower triangle of the matrix, row i has (at least) i+1 elements
+   * @param panelSize number of rows in a panel
+   * @return true if the matrix is positive definite
+   */
+  public static boolean decompose(double[][] xx, int panelSize) {
+    final int N = xx.length;
+    final int npanels = (N + panelSize - 1) / panelSize;
+    final H2ONode[] nodes = H2O.CLOUD.members();
+    final Key[] keys = new Key[npanels];
+    long start = System.currentTimeMillis();
+    Futures fs = new Futures();
+    for (int p = 1; p < npanels; ++p) { // first panel needs no update, it never leaves the driver
+      keys[p] = Key.make((byte) 1, Key.HIDDEN_USER_KEY, true, nodes[p % nodes.length]);
+      DKV.put(keys[p], new Panel(panelRows(xx, p, panelSize)), fs, true);
+    }
+    fs.blockForPending();
+    boolean isspd = true;
+    try {
+      double[][] panel = panelRows(xx, 0, panelSize);
+      for (int p = 0; p < npanels; ++p) {
+        final int j = p * panelSize;
+        final int tjR = Math.min(j + panelSize, N);
+        // rows of the panel arrive updated by all of the previous panels, copy them over
+        for (int i = j; i < tjR; ++i)
+          if (xx[i] != panel[i - j])
+            System.arraycopy(panel[i - j], 0, xx[i], 0, i + 1);
+        isspd &= factorDiagonalBlock(xx, j, tjR);
+        if (tjR == N) break;
+        panel = new UpdatePanels(keys, p, panelSize, panelRows(xx, p, panelSize))
+            .doAll(Arrays.copyOfRange(keys, p + 1, npanels))._next;
+      }
+    } finally {
+      for (Key k : keys)
+        if (k != null) DKV.remove(k, fs);
+      fs.blockForPending();
+    }
+    Log.info("Distributed Cholesky of dimension " + N + " (" + npanels + " panels on " + nodes.length + " nodes) done in "
+        + (System.currentTimeMillis() - start) + "ms");
+    return isspd;
+  }
+
+  private static double[][] panelRows(double[][] xx, int p, int panelSize) {
+    final int j = p * panelSize;
+    final int tjR = Math.min(j + panelSize, xx.length);
+    double[][] rows = new double[tjR - j][];
+    for (int i = j; i < tjR; ++i)
+      rows[i - j] = xx[i];
+    return rows;
+  }
+
+  // same as the diagonal block update in InPlaceCholesky.decompose_2
+  private static boolean factorDiagonalBlock(double[][] xx, int j, int tjR) {
+    boolean isspd = true;
+    for (int i = j; i < tjR; i++) {
+      double rowi[] = xx[i];
+      double d = 0.0;
+      for (int k = j; k < i; k++) {
+        double rowk[] = xx[k];
+        double s = 0.0;
+        for (int jj = 0; jj < k; jj++) s += rowk[jj] * rowi[jj];
+        rowi[k] = s = (rowi[k] - s) / rowk[k];
+        d += s * s;
+      }
+      for (int jj = 0; jj < j; jj++) { double s = rowi[jj]; d += s * s; }
+      d = rowi[i] - d;
+      isspd = isspd && (d > 0.0);
+      rowi[i] = Math.sqrt(Math.max(0.0, d));
+    }
+    return isspd;
+  }
+
+  /** Rows of the lower triangle belonging to a single panel. */
+  static final class Panel extends Iced<Panel> {
+    final double[][] _rows;
+    Panel(double[][] rows) { _rows = rows; }
+  }
+
+  /**
+   * Applies a finished panel to all of the panels below it. Runs over the keys of the remaining panels, each panel
+   * is updated at its home node and the panels of a node are updated in parallel.
+   */
+  static final class UpdatePanels extends MRTask<UpdatePanels> {
+    final Key[] _keys;
+    final int _p;
+    final int _panelSize;
+    double[][] _panel; // finished rows of panel _p
+    // OUT
+    double[][] _next; // updated rows of panel _p + 1
+
+    UpdatePanels(Key[] keys, int p, int panelSize, double[][] panel) {
+      _keys = keys;
+      _p = p;
+      _panelSize = panelSize;
+      _panel = panel;
+    }
+
+    @Override
+    public void map(Key key) {
+      Panel panel = DKV.getGet(key);
+      update(panel._rows);
+      // re-publish the updated panel so that DKV never serves a stale serialized copy
+      DKV.put(key, panel, _fs);
+      if (key.equals(_keys[_p + 1]))
+        _next = panel._rows;
+      _panel = null; // every key gets its own copy of the task, no need to send the panel back
+    }
+
+    // same as InPlaceCholesky.BlockTask for columns [j, tjR) of the finished panel
+    private void update(double[][] rows) {
+      final int j = _p * _panelSize;
+      final int tjR = j + _panel.length;
+      for (int i = 0; i < rows.length; i++) {
+        double rowi[] = rows[i];
+        for (int k = j; k < tjR; k++) {
+          double rowk[] = _panel[k - j];
+          double s = 0.0;
+          for (int jj = 0; jj < k; jj++) s += rowk[jj] * rowi[jj];
+          rowi[k] = (rowi[k] - s) / rowk[k];
+        }
+      }
+    }
+
+    @Override
+    protected void closeLocal() {
+      _panel = null; // no need to send the panel back
+    }
+
+    @Override
+    public void reduce(UpdatePanels mrt) {
+      if (_next == null)
+        _next = mrt._next;
+    }
+  }
+
+}
@@ -37,6 +37,24 @@ public final class Gram extends Iced<Gram> {
   }
   public transient XXCache _xxCache;
 
+  /** Number of rows buffered before the dense numeric block is updated, see {@link #addRowBlocked}. */
+  public static final int BLOCK_ROWS = 64;
+  /** Dense numeric block is updated in square tiles of this size to keep the buffered columns in cache. */
+  static final int BLOCK_TILE = 32;
+  /** Blocked accumulation only pays off once the dense numeric block is reasonably large. */
+  static final int MIN_BLOCKED_DENSE = 64;
+
+  public static final String BLOCKED_ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "glm.gram.blocked.enabled";
+
+  public static boolean isBlockedEnabled() {
+    return Boolean.getBoolean(BLOCKED_ENABLED_PROP);
+  }
+
+  // buffered numeric values of dense rows (column-major, BLOCK_ROWS values per column), plain and weighted
+  private transient double[] _blockX;
+  private transient double[] _blockWX;
+  private transient int _blockRows;
+
 
 
   public Gram(DataInfo dinfo) {
@@ -467,6 +485,8 @@ public final class Gram extends Iced<Gram> {
    *  2. The diagonal*dense part is simply divided by the sqrt of diagonal.
    *  3. Compute Cholesky of dense*dense - outer product of Cholesky of diagonal*dense computed in previous step
    *
+   * The dense*dense part of very wide problems can be decomposed across the whole cloud, see {@link DistributedCholesky}.
+   *
    * @param chol
    * @return the Cholesky decomposition
    */
@@ -535,10 +555,14 @@ public final class Gram extends Iced<Gram> {
     double[][] arr = new double[denseN][];
     for( int i = 0; i < arr.length; ++i )
       arr[i] = Arrays.copyOfRange(fchol._xx[i], sparseN, sparseN + denseN);
-    int p = Runtime.getRuntime().availableProcessors();
-    InPlaceCholesky d = InPlaceCholesky.decompose_2(arr, 10, p);
-    fchol.setSPD(d.isSPD());
-    arr = d.getL();
+    if (parallelize && DistributedCholesky.useFor(denseN)) {
+      fchol.setSPD(DistributedCholesky.decompose(arr, DistributedCholesky.panelSize()));
+    } else {
+      int p = Runtime.getRuntime().availableProcessors();
+      InPlaceCholesky d = InPlaceCholesky.decompose_2(arr, 10, p);
+      fchol.setSPD(d.isSPD());
+      arr = d.getL();
+    }
     for( int i = 0; i < arr.length; ++i ) {
       // See PUBDEV-5585: we use a manual array copy instead of System.arraycopy because of behavior on Java 10
       // Used to be: System.arraycopy(arr[i], 0, fchol._xx[i], sparseN, i + 1);
@@ -596,6 +620,7 @@ public final class Gram extends Iced<Gram> {
   }
 
   public void add(Gram grm) {
+    assert _blockRows == 0 && grm._blockRows == 0 : "buffered rows need to be flushed first";
     ArrayUtils.add(_xx,grm._xx);
     ArrayUtils.add(_diag,grm._diag);
   }
@@ -777,6 +802,10 @@ public final class Gram extends Iced<Gram> {
   }
 
   public final void   addRowDense(DataInfo.Row row, double w) {
+    addRowDense(row, w, true);
+  }
+
+  private void addRowDense(DataInfo.Row row, double w, boolean numsBlock) {
     final int intercept = _hasIntercept?1:0;
     final int denseRowStart = _fullN - _denseN - _diagN - intercept; // we keep dense numbers at the right bottom of the matrix, -1 is for intercept
     final int denseColStart = _fullN - _denseN - intercept;
@@ -787,8 +816,9 @@ public final class Gram extends Iced<Gram> {
     for(int i = 0; i < _denseN; ++i) if(row.numVals[i] != 0) {
       final double [] mrow = _xx[i+denseRowStart];
       final double d = w * row.numVals[i];
-      for(int j = 0; j <= i; ++j) if(row.numVals[j] != 0)
-        mrow[j+denseColStart] += d* row.numVals[j];
+      if(numsBlock)
+        for(int j = 0; j <= i; ++j) if(row.numVals[j] != 0)
+          mrow[j+denseColStart] += d* row.numVals[j];
       if(_hasIntercept)
         interceptRow[i+denseColStart] += d; // intercept*x[i]
       // nums * cats
@@ -813,6 +843,82 @@ public final class Gram extends Iced<Gram> {
     if(hasDiag)
       _diag[row.binIds[0]] += w;
   }
+
+  /**
+   * Same as {@link #addRow(DataInfo.Row, double)} but the nums x nums part of dense rows is not added right away.
+   * The numeric values are buffered and the block is updated with a rank-k update once {@link #BLOCK_ROWS} rows
+   * are collected, reading each row of the gram once per block instead of once per row.
+   * Sparse rows and the categorical and intercept parts of dense rows are added immediately.
+   *
+   * {@link #flushRows()} has to be called before the gram is used (eg. at the end of the chunk).
+   */
+  public final void addRowBlocked(DataInfo.Row row, double w) {
+    if(row.numIds != null || _denseN < MIN_BLOCKED_DENSE) {
+      addRow(row, w);
+      return;
+    }
+    if(_blockX == null) {
+      _blockX = MemoryManager.malloc8d(_denseN * BLOCK_ROWS);
+      _blockWX = MemoryManager.malloc8d(_denseN * BLOCK_ROWS);
+    }
+    final int b = _blockRows;
+    for(int i = 0; i < _denseN; ++i) {
+      final double x = row.numVals[i];
+      _blockX[i * BLOCK_ROWS + b] = x;
+      _blockWX[i * BLOCK_ROWS + b] = w * x;
+    }
+    addRowDense(row, w, false);
+    if(++_blockRows == BLOCK_ROWS)
+      flushRows();
+  }
+
+  /**
+   * Adds the rows buffered by {@link #addRowBlocked(DataInfo.Row, double)} to the dense numeric block.
+   */
+  public final void flushRows() {
+    final int nb = _blockRows;
+    if(nb == 0) return;
+    final int intercept = _hasIntercept?1:0;
+    final int denseRowStart = _fullN - _denseN - _diagN - intercept;
+    final int denseColStart = _fullN - _denseN - intercept;
+    final double[] x = _blockX;
+    final double[] wx = _blockWX;
+    // lower triangle in square tiles: columns i0..i1 and j0..j1 of the buffer stay in cache while the tile is updated
+    for(int i0 = 0; i0 < _denseN; i0 += BLOCK_TILE) {
+      final int i1 = Math.min(i0 + BLOCK_TILE, _denseN);
+      for(int j0 = 0; j0 <= i0; j0 += BLOCK_TILE) {
+        for(int i = i0; i < i1; ++i) {
+          final double[] mrow = _xx[i + denseRowStart];
+          final int iOff = i * BLOCK_ROWS;
+          final int j1 = Math.min(j0 + BLOCK_TILE, i + 1);
+          int j = j0;
+          for(; j + 3 < j1; j += 4) { // 4 dot products at once, the weighted column is read once for all of them
+            final int jOff = j * BLOCK_ROWS;
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for(int k = 0; k < nb; ++k) {
+              final double d = wx[iOff + k];
+              s0 += d * x[jOff + k];
+              s1 += d * x[jOff + BLOCK_ROWS + k];
+              s2 += d * x[jOff + 2 * BLOCK_ROWS + k];
+              s3 += d * x[jOff + 3 * BLOCK_ROWS + k];
+            }
+            mrow[j + denseColStart] += s0;
+            mrow[j + 1 + denseColStart] += s1;
+            mrow[j + 2 + denseColStart] += s2;
+            mrow[j + 3 + denseColStart] += s3;
+          }
+          for(; j < j1; ++j) {
+            final int jOff = j * BLOCK_ROWS;
+            double s = 0;
+            for(int k = 0; k < nb; ++k)
+              s += wx[iOff + k] * x[jOff + k];
+            mrow[j + denseColStart] += s;
+          }
+        }
+      }
+    }
+    _blockRows = 0;
+  }
   public void mul(double x){
     if(_diag != null)for(int i = 0; i < _diag.length; ++i)
       _diag[i] *= x;
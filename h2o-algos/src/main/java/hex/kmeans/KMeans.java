@@ -27,6 +27,12 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
   @Override public ToEigenVec getToEigenVec() { return LinearAlgebraUtils.toEigen; }
   // Convergence tolerance
   final static private double TOLERANCE = 1e-4;
+  // Mini-batch mode: smoothing of the mini-batch inertia and number of mini-batches without improvement before stopping
+  final static private double MINI_BATCH_SMOOTHING = 0.3;
+  final static private int MINI_BATCH_PATIENCE = 10;
+
+  /** Disables skipping of distance computations in Lloyd's iterations based on the triangle inequality */
+  public static final String TRIANGLE_INEQUALITY_DISABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "kmeans.triangleInequality.disabled";
 
   @Override public ModelCategory[] can_build() { return new ModelCategory[]{ ModelCategory.Clustering }; }
 
@@ -98,6 +104,14 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
         }
       }
     }
+    if (_parms._mini_batch_fraction < 0 || _parms._mini_batch_fraction > 1)
+      error("_mini_batch_fraction", "mini_batch_fraction must be between 0 and 1.");
+    if (_parms._mini_batch_fraction > 0) {
+      if (_parms._estimate_k)
+        error("_mini_batch_fraction", "Mini-batch mode cannot be used to estimate k.");
+      if (_parms._cluster_size_constraints != null)
+        error("_mini_batch_fraction", "Mini-batch mode cannot be used with cluster_size_constraints.");
+    }
     if(_parms._cluster_size_constraints != null){
       if(_parms._cluster_size_constraints.length != _parms._k){
         error("_cluster_size_constraints", "\"The number of cluster size constraints is not equal to k = \" + _parms._k");
@@ -218,6 +232,19 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
     // Compute all interesting KMeans stats (errors & variances of clusters,
     // etc).  Return new centers.
     double[][] computeStatsFillModel(IterationTask task, KMeansModel model, final Vec[] vecs, final double[] means, final double[] mults, final int[] modes, int k) {
+      // Sum-of-square distance from grand mean
+      final double totss;
+      if(k == 1) {
+        totss = ArrayUtils.sum(task._cSqr);
+      }
+      else {
+        // If data already standardized, grand mean is just the origin
+        totss = new TotSS(means,mults,modes, train().domains(), train().cardinality()).doAll(vecs)._tss;
+      }
+      return computeStatsFillModel(task, model, means, mults, k, totss);
+    }
+
+    double[][] computeStatsFillModel(IterationTask task, KMeansModel model, final double[] means, final double[] mults, int k, double totss) {
       // Fill in the model based on original destandardized centers
       if (model._parms._standardize) {
         model._output._centers_std_raw = task._cMeans;
@@ -229,16 +256,7 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
       for( int i=0; i<k; i++ )
         ssq += model._output._withinss[i]; // sum squared error all clusters
       model._output._tot_withinss = ssq;
-
-      // Sum-of-square distance from grand mean
-      if(k == 1) {
-        model._output._totss = model._output._tot_withinss;
-      }
-      else {
-        // If data already standardized, grand mean is just the origin
-        TotSS totss = new TotSS(means,mults,modes, train().domains(), train().cardinality()).doAll(vecs);
-        model._output._totss = totss._tss;
-      }
+      model._output._totss = totss;
       model._output._betweenss = model._output._totss - model._output._tot_withinss;  // MSE between-cluster
       model._output._iterations++;
 
@@ -302,10 +320,13 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
           Log.info("Cutoff for relative improvement in within_cluster_sum_of_squares: " + rel_improvement_cutoff);
 
         Vec[] vecs2;
+        Vec lowerBounds = null; // distance of each row to its second closest center (lower bound)
         long csum = 0;
         if(!constrained) {
           vecs2 = Arrays.copyOf(vecs, vecs.length+1);
           vecs2[vecs2.length-1] = vecs2[0].makeCon(-1);
+          if (!Boolean.getBoolean(TRIANGLE_INEQUALITY_DISABLED_PROP))
+            lowerBounds = vecs2[0].makeCon(0);
         } else {
           int newVecLength = vecs.length + 2 * centers.length + 3; // data (+ weight column) + distances + edge indices + result distance + old assignment + new assignment
           vecs2 = Arrays.copyOf(vecs, newVecLength);
@@ -320,7 +341,10 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
           }
         }
         
-        for (int k = startK; k <= _parms._k; ++k) {
+        final boolean miniBatch = _parms._mini_batch_fraction > 0;
+        if (miniBatch)
+          miniBatchKMeans(model, centers, vecs, vecs2, means, mults, impute_cat);
+        for (int k = startK; !miniBatch && k <= _parms._k; ++k) {
           if(!constrained){
             Log.info("Running Lloyds iteration for " + k + " centroids.");
           } else {
@@ -328,13 +352,23 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
           }
           model._output._iterations = 0;  // Loop ends only when iterations > max_iterations with strict inequality
           double[][] lo=null, hi=null;
+          double[][] boundCenters = null; // centers of the previous iteration
+          CenterBounds bounds = null;
           boolean stop = false;
           do {
             assert(centers.length == k);
             IterationTask task;
             if(!constrained) {
               //Lloyds algorithm
-              task = new LloydsIterationTask(centers, means, mults, impute_cat, _isCats, k, hasWeightCol()).doAll(vecs2); //1 PASS OVER THE DATA
+              if (lowerBounds == null) {
+                task = new LloydsIterationTask(centers, means, mults, impute_cat, _isCats, k, hasWeightCol(), null).doAll(vecs2); //1 PASS OVER THE DATA
+              } else {
+                bounds = new CenterBounds(boundCenters, centers, _isCats, bounds);
+                task = new LloydsIterationTask(centers, means, mults, impute_cat, _isCats, k, hasWeightCol(), bounds).doAll(ArrayUtils.append(vecs2, lowerBounds)); //1 PASS OVER THE DATA
+                boundCenters = ArrayUtils.deepClone(centers);
+                if (Log.isLoggingFor(Log.DEBUG))
+                  Log.debug("KMeans: distances to all centers computed for " + ((LloydsIterationTask) task)._full_scans + " rows.");
+              }
             }  else {
               // Constrained K-means
               
@@ -413,13 +447,14 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
             centers = splitLargestCluster(centers, lo, hi, means, mults, impute_cat, vecs2, k);
         } //k-finder
         vecs2[vecs2.length-1].remove();
+        if (lowerBounds != null) lowerBounds.remove();
         
         // Create metrics by scoring on training set otherwise scores are based on last Lloyd iteration
         // These lines cause the training metrics are recalculated on strange model values.
         // Especially for Constrained Kmeans, it returns a result that does not meet the constraints set
         // because scoring is based on calculated centroids and does not preserve the constraints
         // There is a JIRA to explore this part of code: https://0xdata.atlassian.net/browse/PUBDEV-7097
-        if(!constrained) {
+        if(!constrained && !miniBatch) {
           model.score(_parms.train()).delete();
           model._output._training_metrics = ModelMetrics.getFromDKV(model,_parms.train());
         }
@@ -427,7 +462,8 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
         model.update(_job); // Update model in K/V store
         Log.info(model._output._model_summary);
         Log.info(model._output._scoring_history);
-        Log.info(((ModelMetricsClustering)model._output._training_metrics).createCentroidStatsTable().toString());
+        if (model._output._training_metrics != null) // not computed if mini-batch K-means was stopped early
+          Log.info(((ModelMetricsClustering)model._output._training_metrics).createCentroidStatsTable().toString());
 
         // At the end: validation scoring (no need to gather scoring history)
         if (_valid != null) {
@@ -442,6 +478,85 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
       }
     }
 
+    /**
+     * Mini-batch K-means (Sculley, Web-Scale K-Means Clustering): every iteration assigns a random sample of the rows
+     * to the closest centers and moves each center towards the mean of its sampled rows, with a per-center learning
+     * rate of (rows assigned in this mini-batch) / (rows assigned in all mini-batches so far). Stops after
+     * max_iterations or when the smoothed average within-cluster sum of squares of the mini-batches stops improving.
+     * The model statistics are either computed in a final pass over all of the data or estimated from the last
+     * mini-batch.
+     */
+    void miniBatchKMeans(KMeansModel model, double[][] centers, Vec[] vecs, Vec[] vecs2, double[] means, double[] mults, int[] modes) {
+      final int k = centers.length;
+      final int N = centers[0].length;
+      final double[] gc = Arrays.copyOf(new TotSS(means, mults, modes, train().domains(), train().cardinality())._gc, N);
+      final long nrows = Math.round(_train.numRows() * (hasWeightCol() ? _train.lastVec().mean() : 1));
+      final double[] seen = new double[k];  // number of rows assigned to each center in all mini-batches
+      final long[][][] cats = new long[k][N][];
+      for (int clu = 0; clu < k; clu++)
+        for (int col = 0; col < N; col++)
+          cats[clu][col] = _isCats[col] == null ? null : new long[vecs[col].cardinality()];
+      Random rand = RandomUtils.getRNG(_parms.getOrMakeRealSeed());
+      double smoothed = Double.NaN, best = Double.POSITIVE_INFINITY;
+      int noImprovement = 0;
+      int emptyBatches = 0;
+      model._output._iterations = 0;
+      while (model._output._iterations < _parms._max_iterations && !stop_requested()) {
+        MiniBatchTask task = (MiniBatchTask) new MiniBatchTask(centers, means, mults, modes, _isCats, k, hasWeightCol(), gc,
+            _parms._mini_batch_fraction, rand.nextLong()).doAll(vecs);
+        if (task._nrows == 0) { // empty mini-batch, still counts as an iteration
+          if (emptyBatches++ == 0)
+            Log.warn("Mini-batch K-means didn't sample any rows in iteration " + (model._output._iterations + 1) +
+                    ", consider increasing mini_batch_fraction (" + _parms._mini_batch_fraction + ").");
+          model._output._iterations++;
+          _job.update(1);
+          continue;
+        }
+        // move the centers towards the means of the mini-batch
+        for (int clu = 0; clu < k; clu++) {
+          if (task._size[clu] == 0) continue;
+          seen[clu] += task._size[clu];
+          final double eta = task._size[clu] / seen[clu];
+          for (int col = 0; col < N; col++) {
+            if (_isCats[col] == null) {
+              centers[clu][col] += eta * (task._cMeans[clu][col] - centers[clu][col]);
+            } else {
+              ArrayUtils.add(cats[clu][col], task._cats[clu][col]);
+              centers[clu][col] = ArrayUtils.maxIndex(cats[clu][col]);
+            }
+          }
+        }
+        // statistics of the mini-batch, scaled up to the whole training frame
+        final double inertia = ArrayUtils.sum(task._cSqr) / task._nrows;
+        task.scaleTo(nrows);
+        task._cMeans = ArrayUtils.deepClone(centers);
+        computeStatsFillModel(task, model, means, mults, k, task._totss);
+        model.update(_job);
+        _job.update(1);
+        // convergence on the smoothed mini-batch inertia
+        smoothed = Double.isNaN(smoothed) ? inertia : (1 - MINI_BATCH_SMOOTHING) * smoothed + MINI_BATCH_SMOOTHING * inertia;
+        if (smoothed < best * (1 - TOLERANCE)) {
+          best = smoothed;
+          noImprovement = 0;
+        } else if (++noImprovement >= MINI_BATCH_PATIENCE) {
+          Log.info("Mini-batch K-means converged after " + model._output._iterations + " iterations.");
+          break;
+        }
+      }
+      // without a single non-empty mini-batch there are no statistics to estimate from, the final pass is required
+      final boolean finalPass = _parms._mini_batch_final_pass || model._output._training_metrics == null;
+      if (finalPass && !stop_requested()) {
+        // exact assignments and statistics for the final centers (the centers don't move, not an iteration)
+        final int iterations = model._output._iterations;
+        IterationTask full = new LloydsIterationTask(centers, means, mults, modes, _isCats, k, hasWeightCol(), null).doAll(vecs2);
+        full._cMeans = centers;
+        computeStatsFillModel(full, model, vecs, means, mults, modes, k);
+        model._output._iterations = iterations;
+        model._output._model_summary = createModelSummaryTable(model._output);
+        model.update(_job);
+      }
+    }
+
     double[][] splitLargestCluster(double[][] centers, double[][] lo, double[][] hi, double[] means, double[] mults, int[] impute_cat, Vec[] vecs2, int k) {
       double[][] newCenters = Arrays.copyOf(centers, centers.length + 1);
       for (int i = 0; i < centers.length; ++i)
@@ -724,12 +839,18 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
 
   private static class LloydsIterationTask extends IterationTask {
     
-    LloydsIterationTask(double[][] centers, double[] means, double[] mults, int[] modes, String[][] isCats, int k, boolean hasWeight ) {
+    // IN
+    CenterBounds _bounds;       // null if the lower bounds are not kept
+    // OUT
+    long _full_scans;           // Number of rows with distances computed to all centers
+
+    LloydsIterationTask(double[][] centers, double[] means, double[] mults, int[] modes, String[][] isCats, int k, boolean hasWeight, CenterBounds bounds ) {
       super(centers, means, mults, modes, isCats, k, hasWeight);
+      _bounds = bounds;
     }
 
     @Override public void map(Chunk[] cs) {
-      int N = cs.length - (_hasWeight ? 1:0) - 1 /*clusterassignment*/;
+      int N = cs.length - (_hasWeight ? 1:0) - 1 /*clusterassignment*/ - (_bounds != null ? 1:0) /*lower bounds*/;
       assert _centers[0].length==N;
       _lo = new double[_k][N];
       for( int clu=0; clu< _k; clu++ )
@@ -747,7 +868,8 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
           _cats[clu][col] = _isCats[col]==null ? null : new long[cs[col].vec().cardinality()];
       _worst_err = 0;
 
-      Chunk assignment = cs[cs.length-1];
+      Chunk assignment = cs[N + (_hasWeight ? 1:0)];
+      Chunk lowerBounds = _bounds != null ? cs[cs.length-1] : null;
       // Find closest cluster center for each row
       double[] values = new double[N]; // Temp data to hold row as doubles
       ClusterDist cd = new ClusterDist();
@@ -756,7 +878,12 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
         if (weight == 0) continue; //skip holdout rows
         assert(weight == 1); //K-Means only works for weight 1 (or weight 0 for holdout)
         data(values, cs, row, _means, _mults, _modes); // Load row as doubles
-        closest(_centers, values, _isCats, cd); // Find closest cluster center
+        if (lowerBounds == null) {
+          closest(_centers, values, _isCats, cd); // Find closest cluster center
+        } else if (!_bounds.closestAssigned(_centers, values, _isCats, (int) assignment.at8(row), lowerBounds, row, cd)) {
+          _bounds.closest(_centers, values, _isCats, lowerBounds, row, cd); // Find closest cluster center, update the lower bound
+          _full_scans++;
+        }
         if (cd._cluster != assignment.at8(row)) {
           _reassigned_count+=weight;
           assignment.set(row, cd._cluster);
@@ -789,10 +916,12 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
       _centers = null;
       _means = _mults = null;
       _modes = null;
+      _bounds = null;
     }
 
     @Override public void reduce(IterationTask mr) {
       _reassigned_count += mr._reassigned_count;
+      _full_scans += ((LloydsIterationTask) mr)._full_scans;
       for( int clu = 0; clu < _k; clu++ ) {
         long ra =    _size[clu];
         long rb = mr._size[clu];
@@ -815,6 +944,192 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
     }
   }
 
+  /**
+   * Bounds for skipping distance computations in Lloyd's iterations (Hamerly's algorithm). Square root of the KMeans
+   * distance is a metric (categorical columns act as one-hot encoded columns scaled by 1/sqrt(2)), the triangle
+   * inequality applies.
+   *
+   * For every row, a lower bound on the distance to the second closest center is kept in a temporary Vec. After the
+   * centers move, the bound is decreased by the largest movement of the other centers. The decrease is not written to
+   * the Vec: every center keeps the sum of the decreases since the first iteration (offset), the Vec holds the bound
+   * plus the offset of the assigned center at the time the bound was computed. A row only changes (and a chunk is only
+   * written) when all of its distances are computed, which is also the only time its assignment can change.
+   *
+   * The distance to the assigned center is always computed (needed for the within-cluster sum of squares); if it is
+   * below the lower bound, or below half of the distance of the assigned center to its closest other center, no other
+   * center can be closer and the distances to the other centers are not computed. Otherwise all distances are computed, same as in
+   * {@link #closest(double[][], double[], String[][], ClusterDist)}, so the assignments are the same as without bounds.
+   */
+  static final class CenterBounds extends Iced<CenterBounds> {
+    // safety margin for rounding errors of the bounds, ties always lead to computing all distances
+    private static final double EPS = 1e-9;
+
+    final boolean _valid;       // false if the lower bounds were not computed for the previous centers
+    final double[] _halfMinSep; // half distance to the closest other center
+    final double[] _offsets;    // per center, sum of the decreases of the bounds of its rows
+
+    /**
+     * @param boundCenters centers of the previous iteration, null if none
+     * @param centers centers of this iteration
+     * @param previous bounds of the previous iteration, null if none
+     */
+    CenterBounds(double[][] boundCenters, double[][] centers, String[][] isCats, CenterBounds previous) {
+      final int k = centers.length;
+      _halfMinSep = new double[k];
+      Arrays.fill(_halfMinSep, Double.POSITIVE_INFINITY);
+      for (int i = 0; i < k; i++)
+        for (int j = i + 1; j < k; j++) {
+          double d = 0.5 * Math.sqrt(hex.genmodel.GenModel.KMeans_distance(centers[i], centers[j], isCats));
+          _halfMinSep[i] = Math.min(_halfMinSep[i], d);
+          _halfMinSep[j] = Math.min(_halfMinSep[j], d);
+        }
+      _valid = boundCenters != null && boundCenters.length == k && previous != null && previous._offsets.length == k;
+      _offsets = new double[k]; // the bounds are computed from scratch with zero offsets
+      if (!_valid)
+        return;
+      int maxCenter = -1;
+      double max = 0, second = 0;
+      for (int i = 0; i < k; i++) {
+        final double drift = Math.sqrt(hex.genmodel.GenModel.KMeans_distance(boundCenters[i], centers[i], isCats));
+        if (drift > max) {
+          second = max;
+          max = drift;
+          maxCenter = i;
+        } else if (drift > second) {
+          second = drift;
+        }
+      }
+      for (int i = 0; i < k; i++)
+        _offsets[i] = previous._offsets[i] + (i == maxCenter ? second : max);
+    }
+
+    /**
+     * Checks whether the assigned center is still the closest one without computing the other distances.
+     * @return true if the assigned center is the closest (cd is filled in), false if all distances have to be computed
+     */
+    boolean closestAssigned(double[][] centers, double[] point, String[][] isCats, int assigned, Chunk lowerBounds, int row, ClusterDist cd) {
+      if (!_valid || assigned < 0) return false;
+      final double dist = hex.genmodel.GenModel.KMeans_distance(centers[assigned], point, isCats);
+      final double upper = Math.sqrt(dist);
+      final double lower = lowerBounds.atd(row) - _offsets[assigned];
+      final double bound = Math.max(lower, _halfMinSep[assigned]);
+      if (!(upper < bound - EPS * (1 + _offsets[assigned] + bound))) return false;
+      cd._cluster = assigned;
+      cd._dist = dist;
+      return true;
+    }
+
+    /** Same as {@link KMeans#closest(double[][], double[], String[][], ClusterDist)}, also stores the new lower bound (plus offset). */
+    void closest(double[][] centers, double[] point, String[][] isCats, Chunk lowerBounds, int row, ClusterDist cd) {
+      int min = -1;
+      double minSqr = Double.MAX_VALUE;
+      double secondSqr = Double.POSITIVE_INFINITY;
+      for( int cluster = 0; cluster < centers.length; cluster++ ) {
+        double sqr = hex.genmodel.GenModel.KMeans_distance(centers[cluster],point,isCats);
+        if( sqr < minSqr ) {      // Record nearest cluster
+          if (min >= 0) secondSqr = minSqr;
+          min = cluster;
+          minSqr = sqr;
+        } else if( sqr < secondSqr ) {
+          secondSqr = sqr;
+        }
+      }
+      lowerBounds.set(row, Math.sqrt(secondSqr) + _offsets[min]);
+      cd._cluster = min;          // Record nearest cluster
+      cd._dist = minSqr;          // Record square-distance
+    }
+  }
+
+  /**
+   * One mini-batch of mini-batch K-means: samples the given fraction of the rows of every chunk (skipping over the rows
+   * which are not sampled) and assigns them to the closest centers. Same outputs as a Lloyd's pass, computed from the
+   * sampled rows only; the cluster assignment column is not used.
+   */
+  private static class MiniBatchTask extends LloydsIterationTask {
+    // IN
+    final double[] _gc;     // Grand center, for the total sum of squares
+    final double _fraction;
+    final long _seed;
+    // OUT
+    long _nrows;            // Number of sampled rows
+    double _totss;          // Total sum of squares of the sampled rows
+
+    MiniBatchTask(double[][] centers, double[] means, double[] mults, int[] modes, String[][] isCats, int k, boolean hasWeight,
+                  double[] gc, double fraction, long seed) {
+      super(centers, means, mults, modes, isCats, k, hasWeight, null);
+      _gc = gc;
+      _fraction = fraction;
+      _seed = seed;
+    }
+
+    @Override public void map(Chunk[] cs) {
+      final int N = cs.length - (_hasWeight ? 1:0);
+      _lo = new double[_k][N];
+      for( int clu=0; clu< _k; clu++ )
+        Arrays.fill(_lo[clu], Double.MAX_VALUE);
+      _hi = new double[_k][N];
+      for( int clu=0; clu< _k; clu++ )
+        Arrays.fill(_hi[clu], -Double.MAX_VALUE);
+      _cMeans = new double[_k][N];
+      _cSqr = new double[_k];
+      _size = new long[_k];
+      _cats = new long[_k][N][];
+      for( int clu=0; clu< _k; clu++ )
+        for( int col=0; col<N; col++ )
+          _cats[clu][col] = _isCats[col]==null ? null : new long[cs[col].vec().cardinality()];
+      Random rand = RandomUtils.getRNG(_seed + cs[0].start());
+      double[] values = new double[N];
+      ClusterDist cd = new ClusterDist();
+      for( int row = skip(rand); row < cs[0]._len; row += 1 + skip(rand) ) {
+        if (_hasWeight && cs[N].atd(row) == 0) continue; //skip holdout rows
+        data(values, cs, row, _means, _mults, _modes);
+        closest(_centers, values, _isCats, cd);
+        final int clu = cd._cluster;
+        _cSqr[clu] += cd._dist;
+        _totss += hex.genmodel.GenModel.KMeans_distance(_gc, values, _isCats);
+        for( int col = 0; col < N; col++ ) {
+          _lo[clu][col] = Math.min(values[col], _lo[clu][col]);
+          _hi[clu][col] = Math.max(values[col], _hi[clu][col]);
+          if( _isCats[col] != null )
+            _cats[clu][col][(int)values[col]]++;
+          else
+            _cMeans[clu][col] += values[col];
+        }
+        _size[clu]++;
+        _nrows++;
+        if( cd._dist > _worst_err) { _worst_err = cd._dist; _worst_row = cs[0].start()+row; }
+      }
+      for( int clu = 0; clu < _k; clu++ )
+        if( _size[clu] != 0 ) ArrayUtils.div(_cMeans[clu], _size[clu]);
+      _centers = null;
+      _means = _mults = null;
+      _modes = null;
+    }
+
+    // number of rows to skip before the next sampled row (geometric distribution)
+    private int skip(Random rand) {
+      if (_fraction >= 1) return 0;
+      return (int) Math.min(Integer.MAX_VALUE / 2, Math.floor(Math.log(rand.nextDouble()) / Math.log1p(-_fraction)));
+    }
+
+    @Override public void reduce(IterationTask mr) {
+      super.reduce(mr);
+      _nrows += ((MiniBatchTask) mr)._nrows;
+      _totss += ((MiniBatchTask) mr)._totss;
+    }
+
+    /** Scales the statistics of the sampled rows up to the given number of rows */
+    void scaleTo(long nrows) {
+      final double scale = (double) nrows / _nrows;
+      for( int clu = 0; clu < _k; clu++ ) {
+        _cSqr[clu] *= scale;
+        _size[clu] = Math.round(_size[clu] * scale);
+      }
+      _totss *= scale;
+      _reassigned_count = Double.NaN; // not tracked for mini-batches
+    }
+  }
+
   private static class CalculateDistancesTask extends MRTask<CalculateDistancesTask> {
     // IN
     double[][] _centers;
@@ -962,7 +1277,7 @@ public class KMeans extends ClusteringModelBuilder<KMeansModel,KMeansModel.KMean
   }
 
   // A pair result: nearest cluster center and the square distance
-  private static final class ClusterDist { int _cluster; double _dist;  }
+  static final class ClusterDist { int _cluster; double _dist;  }
 
   private static double minSqr(double[][] centers, double[] point, String[][] isCats, ClusterDist cd) {
     return closest(centers, point, isCats, cd, centers.length)._dist;
@@ -38,6 +38,8 @@ public class KMeansModel extends ClusteringModel<KMeansModel,KMeansModel.KMeansP
                                               // Ex: k = 4, cluster = 3 -> [0, 0, 1, 0]
     public boolean _estimate_k = false;       // If enabled, iteratively find up to _k clusters
     public int[] _cluster_size_constraints = null;
+    public double _mini_batch_fraction = 0;   // If > 0, update the centers from mini-batches of sampled rows (fraction of the rows per iteration)
+    public boolean _mini_batch_final_pass = true; // Mini-batch mode: compute the final statistics from a full pass over the data
   }
 
   public static class KMeansOutput extends ClusteringModel.ClusteringOutput {
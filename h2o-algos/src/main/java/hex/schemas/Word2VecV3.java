@@ -34,7 +34,7 @@ public class Word2VecV3 extends ModelBuilderSchema<Word2Vec,Word2VecV3,Word2VecV
             "\t\twill be randomly down-sampled; useful range is (0, 1e-5)")
     public float sent_sample_rate;
 
-    @API(help="Use Hierarchical Softmax", values = {"HSM"})
+    @API(help="Use Hierarchical Softmax (HSM) or Negative Sampling (NS)", values = {"HSM", "NS"})
     public Word2Vec.NormModel norm_model;
 
     @API(help="Number of training iterations to run")
@@ -1,7 +1,9 @@
 package hex.tree;
 
+import java.lang.ref.SoftReference;
 import java.util.Random;
 
+import hex.genmodel.algos.tree.FlatForest;
 import hex.genmodel.algos.tree.SharedTreeMojoModel;
 import hex.genmodel.algos.tree.SharedTreeSubgraph;
 import water.*;
@@ -30,6 +32,7 @@ public class CompressedTree extends Keyed<CompressedTree> {
 
   final byte [] _bits;
   final long _seed;
+  private transient volatile SoftReference<FlatForest> _flat; // lazily compiled, node-local scoring structure
 
   public CompressedTree(byte[] bits, long seed, int tid, int cls) {
     super(makeTreeKey(tid, cls));
@@ -38,7 +41,22 @@ public class CompressedTree extends Keyed<CompressedTree> {
   }
 
   public double score(final double row[], final String[][] domains) {
-    return SharedTreeMojoModel.scoreTree(_bits, row, false, domains);
+    return flat().scoreTree(0, row, domains);
+  }
+
+  /**
+   * Flattened version of this tree, used for scoring. It is compiled on first use on each node and only softly
+   * referenced, the GC can reclaim it under memory pressure (it is compiled again on the next use).
+   * @return flat tree
+   */
+  public FlatForest flat() {
+    final SoftReference<FlatForest> ref = _flat;
+    FlatForest flat = ref != null ? ref.get() : null;
+    if (flat == null) {
+      flat = FlatForest.compile(new byte[][]{_bits});
+      _flat = new SoftReference<>(flat);
+    }
+    return flat;
   }
 
   @Deprecated
@@ -513,6 +513,32 @@ public final class DHistogram extends Iced {
     }
   }
 
+  /**
+   * Sparse histograms only visit non-zero values of a column, contribution of the zeros is derived
+   * from the totals of the leaf. This is only possible if the per-bin values don't depend on the histogram.
+   * @return true if the histogram can be updated using {@link #updateHistoZeros}
+   */
+  boolean supportsSparseUpdates() {
+    return !hasPreds();
+  }
+
+  /**
+   * Update the bin of value zero with the rows that were skipped by a sparse update (see {@link FeatureBundles}).
+   * Not thread safe, assumed to have private copy.
+   * @param w sum of weights of the zero rows
+   * @param wY weighted sum of responses of the zero rows
+   * @param wYY weighted sum of squared responses of the zero rows
+   */
+  void updateHistoZeros(double w, double wY, double wYY) {
+    assert supportsSparseUpdates();
+    if (0 < _min2) _min2 = 0;
+    if (0 > _maxIn) _maxIn = 0;
+    final int binDimStart = _vals_dim*bin(0);
+    _vals[binDimStart + 0] += w;
+    _vals[binDimStart + 1] += wY;
+    _vals[binDimStart + 2] += wYY;
+  }
+
   /**
    * Cast bin values *except for sums of weights and Na-bucket counters to floats to drop least significant bits.
    * Improves reproducibility (drop bits most affected by floating point error).
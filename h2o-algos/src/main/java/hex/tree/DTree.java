@@ -569,6 +569,15 @@ public class DTree extends Iced {
       }
     }
 
+    // Decided node with a split that was found without histograms (eg. by a local tree builder),
+    // children are connected by the caller
+    public DecidedNode(DTree tree, int pid, Split split, float splat) {
+      super(tree, pid);
+      _split = split;
+      _splat = splat;
+      _nids = new int[2];
+    }
+
     public int getChildNodeID(Chunk [] chks, int row ) {
       double d = chks[_split._col].atd(row);
       int bin = -1;
@@ -0,0 +1,226 @@
+package hex.tree;
+
+import water.H2O;
+import water.Iced;
+import water.MRTask;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Exclusive Feature Bundling (EFB) of sparse predictors.
+ *
+ * <p>Wide frames (eg. one-hot encoded categoricals) typically contain many columns that are almost always zero and
+ * that are never non-zero in the same row. Such mutually exclusive columns can be merged into a single "bundle":
+ * for every row at most one member of the bundle is non-zero, the bundle can therefore be materialized as a single
+ * column holding the value of the (unique) non-zero member.
+ *
+ * <p>{@link ScoreBuildHistogram2} uses the bundles to build the histograms of all bundle members in a single pass
+ * over the non-zero values of the bundle. The contribution of the zero rows is not computed row by row, it is
+ * derived from per-leaf totals instead ("unbundling"). Histogram build time of the bundled columns is therefore
+ * proportional to the number of non-zeros and not to the number of rows times number of columns.
+ *
+ * <p>Bundles are only exact, no conflicts are tolerated - the resulting histograms are identical (up to floating
+ * point rounding) to the histograms built from the individual columns.
+ */
+public class FeatureBundles extends Iced<FeatureBundles> {
+
+  public static final String ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "sharedtree.efb.enabled";
+  static final String MAX_DENSITY_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "sharedtree.efb.maxDensity";
+
+  static final double DEFAULT_MAX_DENSITY = 0.05;   // only columns with less than 5% non-zeros are bundled
+  static final int MAX_CANDIDATES = 4096;           // limits size of the conflict matrix (2MB)
+  static final int MAX_BUNDLE_SIZE = 256;
+
+  final int[][] _bundles;   // column indices of bundle members
+  final int[] _bundleOf;    // column index -> bundle index, -1 for columns that are not bundled
+
+  FeatureBundles(int ncols, int[][] bundles) {
+    _bundles = bundles;
+    _bundleOf = new int[ncols];
+    Arrays.fill(_bundleOf, -1);
+    for (int b = 0; b < bundles.length; b++)
+      for (int c : bundles[b])
+        _bundleOf[c] = b;
+  }
+
+  public int numBundles() {
+    return _bundles.length;
+  }
+
+  public int[] bundle(int b) {
+    return _bundles[b];
+  }
+
+  public int bundleOf(int col) {
+    return _bundleOf[col];
+  }
+
+  public static boolean isEnabled() {
+    return Boolean.getBoolean(ENABLED_PROP);
+  }
+
+  /**
+   * Finds bundles of mutually exclusive sparse columns.
+   *
+   * @param fr training frame, predictors are expected to be the first columns of the frame
+   * @param ncols number of predictors
+   * @return bundles or null if there is nothing to bundle
+   */
+  public static FeatureBundles findBundles(Frame fr, int ncols) {
+    double maxDensity = Double.parseDouble(System.getProperty(MAX_DENSITY_PROP, String.valueOf(DEFAULT_MAX_DENSITY)));
+    return findBundles(fr, ncols, maxDensity, MAX_BUNDLE_SIZE);
+  }
+
+  static FeatureBundles findBundles(Frame fr, int ncols, double maxDensity, int maxBundleSize) {
+    final Vec[] vecs = fr.vecs();
+    List<Integer> candidates = new ArrayList<>();
+    for (int c = 0; c < ncols; c++) {
+      Vec v = vecs[c];
+      if (v.isNumeric() && !v.isConst() && v.sparseRatio() <= maxDensity)
+        candidates.add(c);
+    }
+    if (candidates.isEmpty())
+      return null;
+    // densest columns first (greedy graph coloring heuristic), limit the number of candidates
+    candidates.sort(new Comparator<Integer>() {
+      @Override
+      public int compare(Integer c1, Integer c2) {
+        return Long.compare(vecs[c2].nzCnt(), vecs[c1].nzCnt());
+      }
+    });
+    if (candidates.size() > MAX_CANDIDATES)
+      candidates = candidates.subList(candidates.size() - MAX_CANDIDATES, candidates.size());
+    final int[] cands = new int[candidates.size()];
+    for (int i = 0; i < cands.length; i++)
+      cands[i] = candidates.get(i);
+
+    Vec[] candVecs = new Vec[cands.length];
+    for (int i = 0; i < cands.length; i++)
+      candVecs[i] = vecs[cands[i]];
+    ConflictsTask ct = new ConflictsTask(cands.length).doAll(candVecs);
+
+    List<List<Integer>> bundles = new ArrayList<>();
+    for (int i = 0; i < cands.length; i++) {
+      List<Integer> target = null;
+      for (List<Integer> bundle : bundles) {
+        if (bundle.size() >= maxBundleSize)
+          continue;
+        boolean conflict = false;
+        for (int j : bundle) {
+          if (ct.isConflict(i, j)) {
+            conflict = true;
+            break;
+          }
+        }
+        if (!conflict) {
+          target = bundle;
+          break;
+        }
+      }
+      if (target == null) {
+        target = new ArrayList<>();
+        bundles.add(target);
+      }
+      target.add(i);
+    }
+
+    int[][] result = new int[bundles.size()][];
+    for (int b = 0; b < result.length; b++) {
+      List<Integer> bundle = bundles.get(b);
+      result[b] = new int[bundle.size()];
+      for (int k = 0; k < result[b].length; k++)
+        result[b][k] = cands[bundle.get(k)];
+      Arrays.sort(result[b]);
+    }
+    Log.info("Exclusive Feature Bundling: " + cands.length + " sparse columns were bundled into " + result.length + " bundles.");
+    return new FeatureBundles(ncols, result);
+  }
+
+  /**
+   * Extracts values of a chunk that are (potentially) non-zero. NAs are considered to be non-zero values.
+   * @return number of extracted values
+   */
+  static int nonZeroValues(Chunk c, double[] vals, int[] ids) {
+    if (c.isSparseNA()) { // NAs are implicit in NA-sparse chunks, we need to see them
+      c.getDoubles(vals, 0, c._len);
+      for (int i = 0; i < c._len; i++)
+        ids[i] = i;
+      return c._len;
+    }
+    return c.getSparseDoubles(vals, ids);
+  }
+
+  /**
+   * Collects pairs of columns that are both non-zero in at least one row. The conflicts are represented
+   * by a (symmetric) bit matrix.
+   */
+  static class ConflictsTask extends MRTask<ConflictsTask> {
+    private final int _n;
+    long[] _conflicts;
+
+    ConflictsTask(int n) {
+      _n = n;
+    }
+
+    boolean isConflict(int i, int j) {
+      long idx = (long) i * _n + j;
+      return (_conflicts[(int) (idx >> 6)] & (1L << (idx & 63))) != 0;
+    }
+
+    private void setConflict(int i, int j) {
+      long idx1 = (long) i * _n + j;
+      long idx2 = (long) j * _n + i;
+      _conflicts[(int) (idx1 >> 6)] |= 1L << (idx1 & 63);
+      _conflicts[(int) (idx2 >> 6)] |= 1L << (idx2 & 63);
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      _conflicts = new long[(int) (((long) _n * _n + 63) >> 6)];
+      final int len = cs[0]._len;
+      double[] vals = new double[len];
+      int[] ids = new int[len];
+      // non-zero entries are kept in a linked list per row
+      int[] head = new int[len];
+      Arrays.fill(head, -1);
+      int[] next = new int[len];
+      int[] cols = new int[len];
+      int nentries = 0;
+      for (int c = 0; c < cs.length; c++) {
+        int nzs = nonZeroValues(cs[c], vals, ids);
+        for (int k = 0; k < nzs; k++) {
+          if (vals[k] == 0)
+            continue;
+          int row = ids[k];
+          for (int e = head[row]; e != -1; e = next[e])
+            setConflict(cols[e], c);
+          if (nentries == next.length) {
+            next = Arrays.copyOf(next, next.length * 2);
+            cols = Arrays.copyOf(cols, cols.length * 2);
+          }
+          next[nentries] = head[row];
+          cols[nentries] = c;
+          head[row] = nentries++;
+        }
+      }
+    }
+
+    @Override
+    public void reduce(ConflictsTask mrt) {
+      if (_conflicts == null) {
+        _conflicts = mrt._conflicts;
+      } else if (mrt._conflicts != null) {
+        for (int i = 0; i < _conflicts.length; i++)
+          _conflicts[i] |= mrt._conflicts[i];
+      }
+    }
+  }
+
+}
@@ -56,6 +56,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  *    exp(nthreads-pre-column) = max(1,H2O.NUMCPUS - num_cols)
  *
+ * Exclusive Feature Bundling:
+ *
+ * Sparse columns can be grouped in bundles of mutually exclusive columns (see {@link FeatureBundles}). Histograms of all
+ * columns in a bundle are built by a single task that only visits the non-zero values of the bundle. Contribution of the zero
+ * values is derived from the per-leaf totals calculated in phase 1.
+ *
  */
 public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
   transient int []   _cids;
@@ -64,18 +70,27 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
   transient double [][] _ws;
   transient int [][] _nhs;
   transient int [][] _rss;
+  transient int [][] _leafOf;      // row -> leaf, only used with feature bundles
+  transient double [][] _leafTots; // per-leaf sums of weights, responses, squared responses and row counts, only used with feature bundles
   Frame _fr2;
   final int _numLeafs;
   final IcedBitSet _activeCols;
   final int _respIdx;
   final int _predsIdx;
+  final FeatureBundles _bundles;
 
   public ScoreBuildHistogram2(H2O.H2OCountedCompleter cc, int k, int ncols, int nbins, int nbins_cats, DTree tree, int leaf, DHistogram[][] hcs, DistributionFamily family, 
                               int respIdx, int weightIdx, int predsIdx, int workIdx, int nidIdxs) {
+    this(cc, k, ncols, nbins, nbins_cats, tree, leaf, hcs, family, respIdx, weightIdx, predsIdx, workIdx, nidIdxs, null);
+  }
+
+  public ScoreBuildHistogram2(H2O.H2OCountedCompleter cc, int k, int ncols, int nbins, int nbins_cats, DTree tree, int leaf, DHistogram[][] hcs, DistributionFamily family,
+                              int respIdx, int weightIdx, int predsIdx, int workIdx, int nidIdxs, FeatureBundles bundles) {
     super(cc, k, ncols, nbins, nbins_cats, tree, leaf, hcs, family, weightIdx, workIdx, nidIdxs);
     _numLeafs = _hcs.length;
     _respIdx = respIdx;
     _predsIdx = predsIdx;
+    _bundles = bundles != null && supportsSparseUpdates(_hcs) ? bundles : null;
 
     int hcslen = _hcs.length;
     IcedBitSet activeCols = new IcedBitSet(ncols);
@@ -93,6 +108,16 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
     _hcs = ArrayUtils.transpose(_hcs);
   }
 
+  private static boolean supportsSparseUpdates(DHistogram[][] hcs) {
+    for (DHistogram[] hs : hcs) {
+      if (hs == null) continue;
+      for (DHistogram h : hs)
+        if (h != null && !h.supportsSparseUpdates())
+          return false;
+    }
+    return true;
+  }
+
   @Override
   public ScoreBuildHistogram dfork2(byte[] types, Frame fr, boolean run_local) {
     _fr2 = fr;
@@ -164,6 +189,10 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
     _ws = new double[_cids.length][];
     _nhs = new int[_cids.length][];
     _rss = new int[_cids.length][];
+    if (_bundles != null) {
+      _leafOf = new int[_cids.length][];
+      _leafTots = new double[_cids.length][];
+    }
     long [] espc = v.espc();
     int largestChunkSz = 0;
     for(int i = 1; i < espc.length; ++i){
@@ -232,22 +261,29 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
           if(_weightIdx != -1){
             _ws[id] = chks[_weightIdx].getDoubles(MemoryManager.malloc8d(len), 0, len);
           }
+          if (_bundles != null)
+            computeLeafTotals(id, len);
         }
       }
     },new H2O.H2OCountedCompleter(this){
       public void onCompletion(CountedCompleter cc){
         final int ncols = _ncols;
-        final int [] active_cols = _activeCols == null?null:new int[Math.max(1,_activeCols.cardinality())];
-        int nactive_cols = active_cols == null?ncols:active_cols.length;
-        final int numWrks = _hcs.length*nactive_cols < 16*1024?H2O.NUMCPUS:Math.min(H2O.NUMCPUS,Math.max(4*H2O.NUMCPUS/nactive_cols,1));
-        final int rem = H2O.NUMCPUS-numWrks*ncols;
-        ScoreBuildHistogram2.this.addToPendingCount(1+nactive_cols);
-        if(active_cols != null) {
+        int [] cols = _activeCols == null?null:new int[Math.max(1,_activeCols.cardinality())];
+        if(cols != null) {
           int j = 0;
           for (int i = 0; i < ncols; ++i)
             if (_activeCols.contains(i))
-              active_cols[j++] = i;
+              cols[j++] = i;
         }
+        final int [] active_bundles = _bundles == null ? new int[0] : activeBundles(cols);
+        if (active_bundles.length > 0) // bundled columns are processed by the bundle tasks
+          cols = unbundledColumns(cols);
+        final int [] active_cols = cols;
+        final int nactive_cols = active_cols == null?ncols:active_cols.length;
+        final int nunits = nactive_cols + active_bundles.length;
+        final int numWrks = _hcs.length*nunits < 16*1024?H2O.NUMCPUS:Math.min(H2O.NUMCPUS,Math.max(4*H2O.NUMCPUS/nunits,1));
+        final int rem = H2O.NUMCPUS-numWrks*ncols;
+        ScoreBuildHistogram2.this.addToPendingCount(1+nunits);
         // MRTask (over columns) launching MrTasks (over number of workers) for each column.
         // We want FJ to start processing all the columns before parallelizing within column to reduce memory overhead.
         // (running single column in n threads means n-copies of the histogram)
@@ -260,14 +296,75 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
         new LocalMR(new MrFun() {
           @Override
           protected void map(int c) {
+            if (c >= nactive_cols) {
+              int b = active_bundles[c - nactive_cols];
+              new LocalMR(new ComputeBundleHistoThread(b,fLargestChunkSz,new AtomicInteger()),numWrks,ScoreBuildHistogram2.this).fork();
+              return;
+            }
             c = active_cols == null?c:active_cols[c];
             new LocalMR(new ComputeHistoThread(_hcs.length == 0?new DHistogram[0]:_hcs[c],c,fLargestChunkSz,new AtomicInteger()),numWrks + (c < rem?1:0),ScoreBuildHistogram2.this).fork();
           }
-        },nactive_cols,ScoreBuildHistogram2.this).fork();
+        },nunits,ScoreBuildHistogram2.this).fork();
       }
     }).fork();
   }
 
+  // Phase 1 for feature bundles: remember leaf assignment of each row and calculate per-leaf totals
+  private void computeLeafTotals(int id, int len) {
+    final int [] nh = _nhs[id];
+    final int [] rs = _rss[id];
+    final double [] ws = _ws[id];
+    final double [] ys = _ys[id];
+    int [] leafOf = _leafOf[id] = new int[len];
+    double [] tots = _leafTots[id] = new double[4 * _numLeafs];
+    Arrays.fill(leafOf, -1);
+    for (int n = 0; n < _numLeafs; n++) {
+      int lo = n == 0 ? 0 : nh[n - 1];
+      int hi = nh[n];
+      for (int r = lo; r < hi; r++) {
+        final int k = rs[r];
+        leafOf[k] = n;
+        final double weight = ws[k];
+        if (weight == 0)
+          continue;
+        double wy = weight * ys[k];
+        tots[4*n] += weight;
+        tots[4*n + 1] += wy;
+        tots[4*n + 2] += wy * ys[k];
+        tots[4*n + 3]++;
+      }
+    }
+  }
+
+  // Bundles with at least one active column
+  private int [] activeBundles(int [] active_cols) {
+    boolean [] active = new boolean[_bundles.numBundles()];
+    int cnt = 0;
+    for (int c = 0; c < _ncols; c++) {
+      int b = _bundles.bundleOf(c);
+      if (b < 0 || active[b] || (active_cols != null && ArrayUtils.find(active_cols, c) < 0))
+        continue;
+      active[b] = true;
+      cnt++;
+    }
+    int [] res = new int[cnt];
+    for (int b = 0, j = 0; b < active.length; b++)
+      if (active[b])
+        res[j++] = b;
+    return res;
+  }
+
+  private int [] unbundledColumns(int [] active_cols) {
+    int [] res = new int[active_cols == null ? _ncols : active_cols.length];
+    int j = 0;
+    for (int i = 0; i < res.length; i++) {
+      int c = active_cols == null ? i : active_cols[i];
+      if (_bundles.bundleOf(c) < 0)
+        res[j++] = c;
+    }
+    return Arrays.copyOf(res, j);
+  }
+
   private static void mergeHistos(DHistogram [] hcs, DHistogram [] hcs2){
     // Distributed histograms need a little work
     for( int i=0; i< hcs.length; i++ ) {
@@ -354,6 +451,161 @@ public class ScoreBuildHistogram2 extends ScoreBuildHistogram {
     }
   }
 
+  /**
+   * Builds histograms of all columns of one feature bundle. Only non-zero values of the bundled columns are visited,
+   * the columns are mutually exclusive and the whole bundle can be materialized in a single dense (per-row) array.
+   * Zero values are accounted for at the end using the leaf totals.
+   */
+  private class ComputeBundleHistoThread extends MrFun<ComputeBundleHistoThread> {
+    final int _bundle;
+    final int [] _cols;
+    final DHistogram [][] _lh; // member x leaf
+    final boolean [][] _active; // member x leaf
+    final int _maxChunkSz;
+
+    AtomicInteger _cidx;
+
+    ComputeBundleHistoThread(int bundle, int maxChunkSz, AtomicInteger cidx) {
+      _bundle = bundle;
+      _cols = _bundles.bundle(bundle);
+      _maxChunkSz = maxChunkSz;
+      _cidx = cidx;
+      _lh = new DHistogram[_cols.length][];
+      _active = new boolean[_cols.length][_numLeafs];
+      for (int m = 0; m < _cols.length; m++) {
+        _lh[m] = _hcs.length == 0 ? new DHistogram[0] : _hcs[_cols[m]];
+        for (int n = 0; n < _lh[m].length; n++) {
+          int sCols[] = _tree.undecided(n + _leaf)._scoreCols;
+          _active[m][n] = _lh[m][n] != null && (sCols == null || ArrayUtils.find(sCols, _cols[m]) >= 0);
+        }
+      }
+    }
+
+    private ComputeBundleHistoThread(ComputeBundleHistoThread src) {
+      _bundle = src._bundle;
+      _cols = src._cols;
+      _maxChunkSz = src._maxChunkSz;
+      _cidx = src._cidx;
+      _active = src._active;
+      _lh = new DHistogram[_cols.length][];
+      for (int m = 0; m < _cols.length; m++)
+        _lh[m] = ArrayUtils.deepClone(src._lh[m]);
+    }
+
+    @Override
+    public ComputeBundleHistoThread makeCopy() {
+      return new ComputeBundleHistoThread(this);
+    }
+
+    @Override
+    protected void map(int id) {
+      double [] cs = null;
+      double [] vals = null;
+      int [] ids = null;
+      int [] rows = null;
+      int [] members = null;
+      int [] sorted = null;
+      double [] leafTots = null;
+      double [] nzTots = null;
+      for(int i = _cidx.getAndIncrement(); i < _cids.length; i = _cidx.getAndIncrement()) {
+        if (cs == null) {
+          cs = MemoryManager.malloc8d(_maxChunkSz);
+          vals = MemoryManager.malloc8d(_maxChunkSz);
+          ids = MemoryManager.malloc4(_maxChunkSz);
+          rows = MemoryManager.malloc4(_maxChunkSz);
+          members = MemoryManager.malloc4(_maxChunkSz);
+          sorted = MemoryManager.malloc4(_maxChunkSz);
+          leafTots = MemoryManager.malloc8d(4 * _numLeafs);
+          nzTots = MemoryManager.malloc8d(4 * _numLeafs * _cols.length);
+        }
+        computeChunk(i, cs, vals, ids, rows, members, sorted, nzTots);
+        ArrayUtils.add(leafTots, _leafTots[i]);
+      }
+      if (leafTots != null)
+        addZeros(leafTots, nzTots);
+    }
+
+    private void computeChunk(int id, double [] cs, double [] vals, int [] ids, int [] rows, int [] members, int [] sorted, double [] nzTots) {
+      final int [] leafOf = _leafOf[id];
+      final double [] ws = _ws[id];
+      final double [] ys = ScoreBuildHistogram2.this._ys[id];
+      // Materialize the bundle: collect non-zero values of all members, at most one value per row
+      int nentries = 0;
+      for (int m = 0; m < _cols.length; m++) {
+        int nzs = FeatureBundles.nonZeroValues(_chks[id][_cols[m]], vals, ids);
+        for (int k = 0; k < nzs; k++) {
+          if (vals[k] == 0) continue;
+          int row = ids[k];
+          int n = leafOf[row];
+          if (n < 0 || !_active[m][n]) continue;
+          assert nentries < rows.length : "Columns of feature bundle " + _bundle + " are not exclusive";
+          cs[row] = vals[k];
+          rows[nentries] = row;
+          members[nentries++] = m;
+        }
+      }
+      if (nentries == 0)
+        return;
+      // Stable sort of the entries by leaf (entries stay grouped by member within each leaf)
+      int [] nh = new int[_numLeafs + 1];
+      for (int e = 0; e < nentries; e++)
+        nh[leafOf[rows[e]] + 1]++;
+      for (int n = 0; n < _numLeafs; n++) nh[n + 1] += nh[n];
+      int [] pos = Arrays.copyOf(nh, _numLeafs);
+      for (int e = 0; e < nentries; e++)
+        sorted[pos[leafOf[rows[e]]]++] = e;
+      // Update member histograms, one run of entries (same leaf, same member) at a time
+      for (int n = 0; n < _numLeafs; n++) {
+        int lo = nh[n];
+        int hi = nh[n + 1];
+        while (lo < hi) {
+          final int m = members[sorted[lo]];
+          int end = lo;
+          final int nzOff = 4 * (m * _numLeafs + n);
+          for (; end < hi && members[sorted[end]] == m; end++) {
+            final int row = rows[sorted[end]];
+            sorted[end] = row; // entry index is no longer needed, replace it with the row so that we can use updateHisto
+            final double weight = ws[row];
+            if (weight == 0) continue;
+            double wy = weight * ys[row];
+            nzTots[nzOff] += weight;
+            nzTots[nzOff + 1] += wy;
+            nzTots[nzOff + 2] += wy * ys[row];
+            nzTots[nzOff + 3]++;
+          }
+          DHistogram h = _lh[m][n];
+          if (h._vals == null) h.init();
+          h.updateHisto(ws, null, cs, ys, null, sorted, end, lo);
+          lo = end;
+        }
+      }
+    }
+
+    // "Unbundling": everything that wasn't seen as a non-zero value of a column is a zero
+    private void addZeros(double [] leafTots, double [] nzTots) {
+      for (int m = 0; m < _cols.length; m++) {
+        for (int n = 0; n < _numLeafs; n++) {
+          if (!_active[m][n]) continue;
+          final int nzOff = 4 * (m * _numLeafs + n);
+          final double zeroCnt = leafTots[4*n + 3] - nzTots[nzOff + 3];
+          if (zeroCnt <= 0) continue;
+          DHistogram h = _lh[m][n];
+          if (h._vals == null) h.init();
+          h.updateHistoZeros(leafTots[4*n] - nzTots[nzOff],
+                  leafTots[4*n + 1] - nzTots[nzOff + 1],
+                  leafTots[4*n + 2] - nzTots[nzOff + 2]);
+        }
+      }
+    }
+
+    @Override
+    protected void reduce(ComputeBundleHistoThread cc) {
+      assert _lh != cc._lh;
+      for (int m = 0; m < _lh.length; m++)
+        mergeHistos(_lh[m], cc._lh[m]);
+    }
+  }
+
   @Override public void postGlobal(){
     _hcs = ArrayUtils.transpose(_hcs);
     for(DHistogram [] ary:_hcs)
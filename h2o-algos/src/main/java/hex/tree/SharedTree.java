@@ -63,6 +63,9 @@ public abstract class SharedTree<
   // Initially predicted value (for zero trees)
   protected double _initialPrediction;
 
+  // Bundles of mutually exclusive sparse columns (optional)
+  protected transient FeatureBundles _featureBundles;
+
   // Sum of variable empirical improvement in squared-error.  The value is not scaled.
   private transient float[/*nfeatures*/] _improvPerVar;
 
@@ -326,6 +329,11 @@ public abstract class SharedTree<
           DKV.remove(rndKey);
         }
 
+        // Exclusive Feature Bundling of sparse predictors (needs to see only the predictors, find bundles before adding workspace)
+        if (FeatureBundles.isEnabled()) {
+          _featureBundles = FeatureBundles.findBundles(_train, _ncols);
+        }
+
         // Also add to the basic working Frame these sets:
         //   nclass Vecs of current forest results (sum across all trees)
         //   nclass Vecs of working/temp data
@@ -401,6 +409,13 @@ public abstract class SharedTree<
 
     // Common methods for all tree builders
 
+    /**
+     * Tree builders that build several trees at once but add them to the model one by one can return false while
+     * the model holds only a part of such a batch. Scoring and stopping are postponed until the batch is complete.
+     * @return true if the state of the training frame corresponds to the trees of the model
+     */
+    protected boolean isAtBatchBoundary() { return true; }
+
     protected Frame makeValidWorkspace() { return null; }
 
     // Helpers to store quantiles in DKV - keep a cache on each node (instead of sending around over and over)
@@ -441,7 +456,7 @@ public abstract class SharedTree<
     protected final void scoreAndBuildTrees(boolean oob) {
       for( int tid=0; tid< _ntrees; tid++) {
         // During first iteration model contains 0 trees, then 1-tree, ...
-        boolean scored = doScoringAndSaveModel(false, oob, _parms._build_tree_one_node);
+        boolean scored = isAtBatchBoundary() && doScoringAndSaveModel(false, oob, _parms._build_tree_one_node);
         if (scored && ScoreKeeper.stopEarly(_model._output.scoreKeepers(), _parms._stopping_rounds, getProblemType(), _parms._stopping_metric, _parms._stopping_tolerance, "model's last", true)) {
           doScoringAndSaveModel(true, oob, _parms._build_tree_one_node);
           _job.update(_ntrees-_model._output._ntrees); //finish
@@ -454,7 +469,7 @@ public abstract class SharedTree<
         if (_model._output._treeStats._max_depth==0) {
           Log.warn("Nothing to split on: Check that response and distribution are meaningful (e.g., you are not using laplace/quantile regression with a binary response).");
         }
-        if (converged || timeout()) {
+        if (converged || (timeout() && isAtBatchBoundary())) {
           _job.update(_parms._ntrees-tid-1); // add remaining trees to progress bar
           break; // If timed out, do the final scoring
         }
@@ -599,7 +614,7 @@ public abstract class SharedTree<
       // per column.
 //      new ScoreBuildHistogram(this,_k, _st._ncols, _nbins, _nbins_cats, _tree, _leafOffsets[_k], _hcs[_k], _family, _weightIdx, _workIdx, _nidIdx).dfork2(null,_fr2,_build_tree_one_node);
       new ScoreBuildHistogram2(this,_k, _st._ncols, _nbins, _nbins_cats, _tree, _leafOffsets[_k], _hcs[_k], _family, 
-              _respIdx, _weightIdx, _predsIdx, _workIdx, _nidIdx).dfork2(null,_fr2,_build_tree_one_node);
+              _respIdx, _weightIdx, _predsIdx, _workIdx, _nidIdx, _st._featureBundles).dfork2(null,_fr2,_build_tree_one_node);
     }
     @Override public void onCompletion(CountedCompleter caller) {
       ScoreBuildHistogram sbh = (ScoreBuildHistogram) caller;
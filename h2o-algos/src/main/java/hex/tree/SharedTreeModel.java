@@ -6,6 +6,7 @@ import static hex.genmodel.GenModel.createAuxKey;
 import static hex.genmodel.algos.tree.SharedTreeMojoModel.__INTERNAL_MAX_TREE_DEPTH;
 
 import hex.genmodel.CategoricalEncoding;
+import hex.genmodel.algos.tree.FlatForest;
 import hex.genmodel.algos.tree.SharedTreeMojoModel;
 import hex.genmodel.algos.tree.SharedTreeNode;
 import hex.genmodel.algos.tree.SharedTreeSubgraph;
@@ -42,6 +43,9 @@ public abstract class SharedTreeModel<
     return res;
   }
 
+  /** Disables scoring of frames using flattened trees, see {@link #setupBigScorePredict} */
+  public static final String FLAT_BIG_SCORE_DISABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "sharedtree.flatBigScore.disabled";
+
   @Override public ToEigenVec getToEigenVec() { return LinearAlgebraUtils.toEigen; }
 
   public abstract static class SharedTreeParameters extends Model.Parameters implements Model.GetNTrees, PlattScalingHelper.ParamsWithCalibration {
@@ -546,7 +550,17 @@ public abstract class SharedTreeModel<
 
   protected double[] score0(double[] data, double[] preds, double offset, int ntrees) {
     Arrays.fill(preds,0);
-    return score0(data, preds, offset, 0, ntrees);
+    score0(data, preds, offset, 0, ntrees);
+    return unifyPreds(data, preds, offset, ntrees);
+  }
+
+  /**
+   * Transforms the sums of the tree predictions (filled in by {@link #score0(double[], double[], double, int, int)})
+   * into the predictions of the model, eg. applies the link function or averages the trees.
+   * @param ntrees number of trees the predictions were summed over
+   */
+  protected double[] unifyPreds(double[] data, double[] preds, double offset, int ntrees) {
+    return preds;
   }
 
   protected double[] score0(double[] data, double[] preds, double offset, int startTree, int ntrees) {
@@ -557,6 +571,95 @@ public abstract class SharedTreeModel<
     return preds;
   }
 
+  /**
+   * Scores frames (see {@link BigScore}) using flattened trees: all trees are fetched from DKV once per node and compiled
+   * into a single {@link FlatForest}. Chunks are read in blocks of rows using the bulk chunk API and each block is scored
+   * by one tree at a time (tree-major order), the predictions are identical to {@link #score0}.
+   * The fast path can be disabled by setting {@link #FLAT_BIG_SCORE_DISABLED_PROP}.
+   */
+  @Override
+  protected BigScorePredict setupBigScorePredict(BigScore bs) {
+    final Key<CompressedTree>[][] treeKeys = _output._treeKeys;
+    if (Boolean.getBoolean(FLAT_BIG_SCORE_DISABLED_PROP) || treeKeys.length == 0)
+      return bs;
+    final int width = treeKeys[0].length;
+    final byte[][] trees = new byte[treeKeys.length * width][];
+    for (int tidx = 0; tidx < treeKeys.length; tidx++) {
+      if (treeKeys[tidx].length != width)
+        return bs;
+      for (int c = 0; c < width; c++)
+        if (treeKeys[tidx][c] != null)
+          trees[tidx * width + c] = DKV.get(treeKeys[tidx][c]).<CompressedTree>get()._bits;
+    }
+    return new FlatBigScorePredict(FlatForest.compile(trees), width);
+  }
+
+  private class FlatBigScorePredict implements BigScorePredict {
+    private final FlatForest _forest;
+    private final int _width; // number of trees in a tree group
+
+    FlatBigScorePredict(FlatForest forest, int width) {
+      _forest = forest;
+      _width = width;
+    }
+
+    @Override
+    public BigScoreChunkPredict initMap(Frame fr, Chunk[] chks) {
+      return new FlatBigScoreChunkPredict(_forest, _width, chks);
+    }
+  }
+
+  private class FlatBigScoreChunkPredict implements BigScoreChunkPredict {
+    private final int _width;
+    private final double[] _sums; // sums of the tree predictions, [row * width + class]
+
+    FlatBigScoreChunkPredict(FlatForest forest, int width, Chunk[] chks) {
+      final int nfeatures = _output.nfeatures();
+      final int ntrees = _output._treeKeys.length;
+      final int len = chks[0]._len;
+      final int blockSize = Math.min(FlatForest.DEFAULT_BLOCK_SIZE, len);
+      final double[][] rows = new double[blockSize][nfeatures];
+      final double[][] preds = new double[blockSize][width];
+      final double[] col = new double[blockSize];
+      _width = width;
+      _sums = new double[len * width];
+      for (int from = 0; from < len; from += blockSize) {
+        final int n = Math.min(len - from, blockSize);
+        for (int i = 0; i < nfeatures; i++) {
+          chks[i].getDoubles(col, from, from + n);
+          for (int r = 0; r < n; r++)
+            rows[r][i] = col[r];
+        }
+        for (int r = 0; r < n; r++)
+          Arrays.fill(preds[r], 0);
+        for (int tidx = 0; tidx < ntrees; tidx++)
+          for (int c = 0; c < width; c++)
+            forest.scoreTree(tidx * width + c, rows, 0, n, preds, c, _output._domains);
+        for (int r = 0; r < n; r++)
+          System.arraycopy(preds[r], 0, _sums, (from + r) * width, width);
+      }
+    }
+
+    @Override
+    public double[] score0(Chunk[] chks, double offset, int row_in_chunk, double[] tmp, double[] preds) {
+      for (int i = 0; i < tmp.length; i++)
+        tmp[i] = chks[i].atd(row_in_chunk);
+      Arrays.fill(preds, 0);
+      final int off = row_in_chunk * _width;
+      for (int c = 0; c < _width; c++)
+        preds[_width == 1 ? 0 : c + 1] = _sums[off + c];
+      unifyPreds(tmp, preds, offset, _output._treeKeys.length);
+      if (needsPostProcess() && isSupervised())
+        score0PostProcessSupervised(preds, tmp);
+      return preds;
+    }
+
+    @Override
+    public void close() {
+      // nothing to do
+    }
+  }
+
   // Score per line per tree
   private void score0(double[] data, double[] preds, int treeIdx) {
     Key[] keys = _output._treeKeys[treeIdx];
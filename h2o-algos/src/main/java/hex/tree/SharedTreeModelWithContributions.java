@@ -11,6 +11,7 @@ import water.fvec.Vec;
 import water.util.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import hex.Model;
 import water.Key;
@@ -56,11 +57,13 @@ public abstract class SharedTreeModelWithContributions<
   protected abstract ScoreContributionsTask getScoreContributionsTask(SharedTreeModel model);
   
   public class ScoreContributionsTask extends MRTask<ScoreContributionsTask> {
+    private static final int BATCH_SIZE = 256;
+
     private final Key<SharedTreeModel> _modelKey;
     
     private transient SharedTreeModel _model;
     private transient SharedTreeOutput _output;
-    private transient TreeSHAPPredictor<double[]> _treeSHAP;
+    private transient TreeSHAPEnsemble<double[]> _treeSHAP;
 
     public ScoreContributionsTask(SharedTreeModel model) {
       _modelKey = model._key;
@@ -75,6 +78,7 @@ public abstract class SharedTreeModelWithContributions<
       assert _output != null;
       final SharedTreeNode[] empty = new SharedTreeNode[0];
       List<TreeSHAPPredictor<double[]>> treeSHAPs = new ArrayList<>(_output._ntrees);
+      final int maxPrecomputedWeights = FastTreeSHAP.precomputedWeightsLimit(_output._ntrees);
       for (int treeIdx = 0; treeIdx < _output._ntrees; treeIdx++) {
         for (int treeClass = 0; treeClass < _output._treeKeys[treeIdx].length; treeClass++) {
           if (_output._treeKeys[treeIdx][treeClass] == null) {
@@ -82,7 +86,7 @@ public abstract class SharedTreeModelWithContributions<
           }
           SharedTreeSubgraph tree = _model.getSharedTreeSubgraph(treeIdx, treeClass);
           SharedTreeNode[] nodes = tree.nodesArray.toArray(empty);
-          treeSHAPs.add(new TreeSHAP<>(nodes, nodes, 0));
+          treeSHAPs.add(new FastTreeSHAP<>(nodes, nodes, 0, maxPrecomputedWeights));
         }
       }
       assert treeSHAPs.size() == _output._ntrees; // for now only regression and binomial to keep the output sane
@@ -92,24 +96,35 @@ public abstract class SharedTreeModelWithContributions<
     @Override
     public void map(Chunk chks[], NewChunk[] nc) {
       assert chks.length == nc.length - 1; // calculate contribution for each feature + the model bias
-      double[] input = MemoryManager.malloc8d(chks.length);
-      float[] contribs = MemoryManager.malloc4f(nc.length);
+      final int len = chks[0]._len;
+      final int batchSize = Math.min(len, BATCH_SIZE);
+      double[][] input = new double[batchSize][];
+      float[][] contribs = new float[batchSize][];
+      for (int r = 0; r < batchSize; r++) {
+        input[r] = MemoryManager.malloc8d(chks.length);
+        contribs[r] = MemoryManager.malloc4f(nc.length);
+      }
 
       Object workspace = _treeSHAP.makeWorkspace();
 
-      for (int row = 0; row < chks[0]._len; row++) {
+      for (int start = 0; start < len; start += batchSize) {
+        final int nrows = Math.min(batchSize, len - start);
         for (int i = 0; i < chks.length; i++) {
-          input[i] = chks[i].atd(row);
+          for (int r = 0; r < nrows; r++) {
+            input[r][i] = chks[i].atd(start + r);
+          }
         }
-        for (int i = 0; i < contribs.length; i++) {
-          contribs[i] = 0;
+        for (int r = 0; r < nrows; r++) {
+          Arrays.fill(contribs[r], 0);
         }
 
-        // calculate Shapley values
-        _treeSHAP.calculateContributions(input, contribs, 0, -1, workspace);
-        
+        // calculate Shapley values for the whole batch (tree by tree)
+        _treeSHAP.calculateContributions(input, nrows, contribs, workspace);
+
         // Add contribs to new chunk
-        addContribToNewChunk(contribs, nc);
+        for (int r = 0; r < nrows; r++) {
+          addContribToNewChunk(contribs[r], nc);
+        }
       }
     }
 
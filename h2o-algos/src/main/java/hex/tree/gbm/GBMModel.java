@@ -202,12 +202,8 @@ public class GBMModel extends SharedTreeModelWithContributions<GBMModel, GBMMode
     return preds;
   }
 
-  /** Bulk scoring API for one row.  Chunks are all compatible with the model,
-   *  and expect the last Chunks are for the final distribution and prediction.
-   *  Default method is to just load the data into the tmp array, then call
-   *  subclass scoring logic. */
-  @Override protected double[] score0(double data[/*ncols*/], double preds[/*nclasses+1*/], double offset, int ntrees) {
-    super.score0(data, preds, offset, ntrees);    // These are f_k(x) in Algorithm 10.4
+  /** Transforms f_k(x) of Algorithm 10.4 (sums of the tree predictions) into the predictions. */
+  @Override protected double[] unifyPreds(double[] data, double[] preds, double offset, int ntrees) {
     return score0Probabilities(preds, offset);
   }
 
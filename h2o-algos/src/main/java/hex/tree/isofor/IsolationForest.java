@@ -11,14 +11,18 @@ import hex.tree.DTree.LeafNode;
 import hex.tree.DTree.UndecidedNode;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import water.H2O;
 import water.Iced;
 import water.Job;
 import water.Key;
+import water.LocalMR;
 import water.MRTask;
 import water.fvec.Chunk;
 import water.fvec.Frame;
 import water.fvec.Vec;
+import water.util.Log;
 import water.util.PrettyPrint;
+import water.util.Timer;
 import water.util.TwoDimTable;
 
 import java.util.*;
@@ -32,6 +36,17 @@ import static hex.tree.isofor.IsolationForestModel.IsolationForestOutput;
  */
 public class IsolationForest extends SharedTree<IsolationForestModel, IsolationForestParameters, IsolationForestOutput> {
 
+  /**
+   * Build trees locally from in-memory subsamples instead of using the distributed histogram-based algorithm.
+   * Each batch of trees costs only 2 passes over the training frame (sampling, path lengths) regardless of the depth.
+   */
+  public static final String LOCAL_TREES_ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "isofor.localTrees.enabled";
+
+  // Larger samples are processed by the distributed algorithm
+  static final long MAX_LOCAL_SAMPLE_SIZE = 100_000;
+  // Upper bound on the size of the sampled data of a batch of locally built trees
+  private static final long MAX_LOCAL_BATCH_BYTES = 256L << 20;
+
   @Override public ModelCategory[] can_build() {
     return new ModelCategory[]{
       ModelCategory.AnomalyDetection
@@ -188,6 +203,9 @@ public class IsolationForest extends SharedTree<IsolationForestModel, IsolationF
 
   // ----------------------
   private class IsolationForestDriver extends Driver {
+    private transient Deque<LocalTree> _localTrees; // locally built trees that were not yet added to the model
+    private int _localTreesBuilt;
+
     @Override protected boolean doOOBScoring() { return true; }
 
     @Override protected void initializeModelSpecifics() {
@@ -211,11 +229,30 @@ public class IsolationForest extends SharedTree<IsolationForestModel, IsolationF
         _model._output._defaultThreshold = 0.5;
         assert _model.outputAnomalyFlag();
       }
+
+      if (useLocalTrees()) {
+        _localTrees = new ArrayDeque<>();
+      }
+    }
+
+    private boolean useLocalTrees() {
+      if (!Boolean.getBoolean(LOCAL_TREES_ENABLED_PROP))
+        return false;
+      double expectedSampleSize = _parms._sample_rate * _train.numRows();
+      if (expectedSampleSize > MAX_LOCAL_SAMPLE_SIZE) {
+        Log.info("Expected sample size (" + (long) expectedSampleSize + " rows) is too large to build trees locally, " +
+                "using distributed tree building instead.");
+        return false;
+      }
+      return true;
     }
 
     // --------------------------------------------------------------------------
     // Build the next random k-trees representing tid-th tree
     @Override protected boolean buildNextKTrees() {
+      if (_localTrees != null)
+        return addNextLocalTree();
+
       // Create a Random response
       randomResp(_parms._seed, _model._output._ntrees);
 
@@ -295,6 +332,61 @@ public class IsolationForest extends SharedTree<IsolationForestModel, IsolationF
       updatePerFeatureInfo(tree, depths);
     }
 
+    private boolean addNextLocalTree() {
+      if (_localTrees.isEmpty())
+        buildLocalTrees();
+      final LocalTree lt = _localTrees.poll();
+      updatePerFeatureInfo(lt._tree, lt._depths);
+      _model._output.addKTrees(new DTree[]{lt._tree});
+      _model._output._min_path_length = lt._minPathLength;
+      _model._output._max_path_length = lt._maxPathLength;
+      return false; // never stop early
+    }
+
+    // Builds a batch of trees: a single pass draws the samples of all trees, the trees are then built concurrently
+    // on the local cores and the path lengths of all trees are recorded in a single pass over the training frame
+    private void buildLocalTrees() {
+      final int ntrees = localBatchSize();
+      final long[] seeds = new long[ntrees];
+      final DTree[] trees = new DTree[ntrees];
+      for (int t = 0; t < ntrees; t++) {
+        seeds[t] = _rand.nextLong();
+        trees[t] = new DTree(_train, _ncols, _mtry, _mtry_per_tree, seeds[t], _parms);
+      }
+      Timer timer = new Timer();
+      Frame features = new Frame(Arrays.copyOf(_train.vecs(), _ncols));
+      IsolationTreeBuilder.SampleRows sample = new IsolationTreeBuilder.SampleRows(seeds, _parms._sample_rate)
+              .doAll(features, _parms._build_tree_one_node);
+      boolean[] isCat = new boolean[_ncols];
+      for (int c = 0; c < _ncols; c++)
+        isCat[c] = _train.vec(c).isCategorical();
+      IsolationTreeBuilder.BuildTrees build = new IsolationTreeBuilder.BuildTrees(
+              trees, sample._data, sample._nrows, isCat, _parms._max_depth, _parms._min_rows);
+      H2O.submitTask(new LocalMR(build, ntrees)).join();
+      CalculateLocalPaths paths = new CalculateLocalPaths(trees, seeds, _parms._sample_rate)
+              .doAll(_train, _parms._build_tree_one_node);
+      for (int t = 0; t < ntrees; t++) {
+        _localTrees.add(new LocalTree(trees[t], build._depths[t], paths._minPathLength[t], paths._maxPathLength[t]));
+      }
+      _localTreesBuilt += ntrees;
+      Log.info("Built a batch of " + ntrees + " trees locally in " + timer + ".");
+    }
+
+    // path lengths of a batch are recorded for all of its trees at once, the model can only be scored once it holds
+    // all trees of the batch
+    @Override protected boolean isAtBatchBoundary() {
+      return _localTrees == null || _localTrees.isEmpty();
+    }
+
+    private int localBatchSize() {
+      int remaining = _ntrees - _localTreesBuilt;
+      if (_parms._score_tree_interval > 0) // end the batch where the model is supposed to be scored
+        remaining = Math.min(remaining, _parms._score_tree_interval - _model._output._ntrees % _parms._score_tree_interval);
+      final double sampleBytes = 8.0 * _ncols * Math.max(1, _parms._sample_rate * _train.numRows());
+      final int maxByMemory = (int) Math.max(1, MAX_LOCAL_BATCH_BYTES / sampleBytes);
+      return Math.max(1, Math.min(remaining, Math.min(maxByMemory, 8 * H2O.NUMCPUS)));
+    }
+
     private void updatePerFeatureInfo(DTree tree, int[] depths) {
       for (int i = 0; i < tree._len; i++) {
         DTree.Node n = tree.node(i);
@@ -356,6 +448,55 @@ public class IsolationForest extends SharedTree<IsolationForestModel, IsolationF
       }
     }
 
+    // Records path lengths of a batch of locally built trees. Path lengths are recorded for all trees of the batch
+    // at once, min/max path lengths are tracked for each prefix of the batch (= model with the first t trees)
+    private class CalculateLocalPaths extends MRTask<CalculateLocalPaths> {
+      private final DTree[] _trees;
+      private final long[] _seeds;
+      private final double _rate;
+      // OUT
+      private int[] _minPathLength;
+      private int[] _maxPathLength;
+      private CalculateLocalPaths(DTree[] trees, long[] seeds, double rate) {
+        _trees = trees;
+        _seeds = seeds;
+        _rate = rate;
+      }
+      @Override public void map(Chunk[] chks) {
+        final Chunk tree = chk_tree(chks, 0);
+        final Chunk oobt = chk_oobt(chks);
+        final Random rand = getRNG(0);
+        _minPathLength = new int[_trees.length];
+        _maxPathLength = new int[_trees.length];
+        Arrays.fill(_minPathLength, Integer.MAX_VALUE);
+        for (int row = 0; row < tree._len; row++) {
+          for (int t = 0; t < _trees.length; t++) {
+            final boolean wasOOBRow = !IsolationTreeBuilder.isSampled(rand, _seeds[t], tree.start() + row, _rate);
+            final int depth = getLeafDepth(_trees[t], chks, row);
+            if (wasOOBRow) {
+              oobt.set(row, oobt.atd(row) + 1);
+            }
+            final int total_len = PathTracker.encodeNewPathLength(tree, row, depth, wasOOBRow);
+            _maxPathLength[t] = total_len > _maxPathLength[t] ? total_len : _maxPathLength[t];
+            _minPathLength[t] = total_len < _minPathLength[t] ? total_len : _minPathLength[t];
+          }
+        }
+      }
+      @Override public void reduce(CalculateLocalPaths mrt) {
+        for (int t = 0; t < _trees.length; t++) {
+          _minPathLength[t] = Math.min(_minPathLength[t], mrt._minPathLength[t]);
+          _maxPathLength[t] = Math.max(_maxPathLength[t], mrt._maxPathLength[t]);
+        }
+      }
+      private int getLeafDepth(DTree tree, Chunk[] chks, int row) {
+        DTree.Node n = tree.root();
+        while (n instanceof DecidedNode) {
+          n = tree.node(((DecidedNode) n).getChildNodeID(chks, row));
+        }
+        return (int) ((LeafNode) n).pred();
+      }
+    }
+
     @Override protected IsolationForestModel makeModel(Key modelKey, IsolationForestParameters parms) {
       return new IsolationForestModel(modelKey, parms, new IsolationForestOutput(IsolationForest.this));
     }
@@ -363,6 +504,20 @@ public class IsolationForest extends SharedTree<IsolationForestModel, IsolationF
   }
 
   
+  private static class LocalTree {
+    final DTree _tree;
+    final int[] _depths;
+    final int _minPathLength;
+    final int _maxPathLength;
+
+    LocalTree(DTree tree, int[] depths, int minPathLength, int maxPathLength) {
+      _tree = tree;
+      _depths = depths;
+      _minPathLength = minPathLength;
+      _maxPathLength = maxPathLength;
+    }
+  }
+
   @Override protected double score1(Chunk chks[], double weight, double offset, double fs[/*2*/], int row) {
     assert weight == 1;
     int len = PathTracker.decodeOOBPathLength(chk_tree(chks, 0), row);
@@ -137,12 +137,8 @@ public class IsolationForestModel extends SharedTreeModel<IsolationForestModel,
     return domains;
   }
 
-  /** Bulk scoring API for one row.  Chunks are all compatible with the model,
-   *  and expect the last Chunks are for the final distribution and prediction.
-   *  Default method is to just load the data into the tmp array, then call
-   *  subclass scoring logic. */
-  @Override protected double[] score0(double[] data, double[] preds, double offset, int ntrees) {
-    super.score0(data, preds, offset, ntrees);
+  /** Transforms the sum of the path lengths into the normalized anomaly score and the mean path length. */
+  @Override protected double[] unifyPreds(double[] data, double[] preds, double offset, int ntrees) {
     boolean outputAnomalyFlag = outputAnomalyFlag();
     int off = outputAnomalyFlag ? 1 : 0;
     if (ntrees >= 1) 
@@ -0,0 +1,313 @@
+package hex.tree.isofor;
+
+import hex.tree.DHistogram;
+import hex.tree.DTree;
+import water.MRTask;
+import water.MrFun;
+import water.fvec.Chunk;
+import water.util.IcedBitSet;
+import water.util.RandomUtils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Builds an isolation tree from an in-memory subsample of the training frame.
+ *
+ * The tree is grown on a single core without any histograms: each node picks a random splittable column
+ * (out of the per-tree column sample) and a random split point between the minimum and the maximum of the column
+ * observed in the node. Categorical columns are split into two random groups of the observed levels. The result is
+ * a regular {@link DTree} that can be compressed and scored the same way as trees built by the distributed
+ * algorithm.
+ */
+class IsolationTreeBuilder {
+
+  private final DTree _tree;
+  private final double[] _data; // row-major sample
+  private final int _ncols;
+  private final boolean[] _isCat;
+  private final int _maxDepth;
+  private final double _minRows;
+  private final int[] _rows;
+  private float _splat; // split point of the most recently found split
+
+  IsolationTreeBuilder(DTree tree, double[] data, int nrows, boolean[] isCat, int maxDepth, double minRows) {
+    _tree = tree;
+    _data = data;
+    _ncols = isCat.length;
+    _isCat = isCat;
+    _maxDepth = maxDepth;
+    _minRows = Math.max(1, minRows);
+    _rows = new int[nrows];
+    for (int i = 0; i < nrows; i++)
+      _rows[i] = i;
+  }
+
+  /**
+   * Grows the tree, leaves predict the depth of their parent node (same as the distributed algorithm).
+   * @return depths of the decided nodes of the tree (indexed by node id)
+   */
+  int[] build() {
+    int[] depths = new int[16];
+    Deque<int[]> work = new ArrayDeque<>(); // {parent nid, way, from, to, depth}
+    work.push(new int[]{DTree.NO_PARENT, -1, 0, _rows.length, 0});
+    while (!work.isEmpty()) {
+      final int[] w = work.pop();
+      final int pid = w[0], way = w[1], from = w[2], to = w[3], depth = w[4];
+      DTree.Split split = depth < _maxDepth && to - from >= 2 * _minRows ? findSplit(from, to) : null;
+      final int nid;
+      if (split == null) {
+        DTree.LeafNode ln = new DTree.LeafNode(_tree, pid);
+        ln._pred = pid == DTree.NO_PARENT ? 0 : depths[pid];
+        nid = ln.nid();
+      } else {
+        DTree.DecidedNode dn = new DTree.DecidedNode(_tree, pid, split, _splat);
+        nid = dn.nid();
+        if (nid >= depths.length)
+          depths = Arrays.copyOf(depths, Math.max(depths.length * 2, nid + 1));
+        depths[nid] = depth;
+        _tree._depth = Math.max(_tree._depth, depth + 1);
+        final int mid = from + (int) split.n0();
+        work.push(new int[]{nid, 1, mid, to, depth + 1});
+        work.push(new int[]{nid, 0, from, mid, depth + 1});
+      }
+      if (pid != DTree.NO_PARENT)
+        _tree.decided(pid)._nids[way] = nid;
+    }
+    return Arrays.copyOf(depths, _tree.len());
+  }
+
+  /**
+   * Finds a random split of the rows in range [from, to) and partitions the rows accordingly (left rows first).
+   * @return split or null if the node cannot be split
+   */
+  private DTree.Split findSplit(int from, int to) {
+    // try the columns in random order and take the first one that can split the node
+    int[] candidates = Arrays.copyOf(_tree._cols, _tree._cols.length);
+    int len = candidates.length;
+    while (len > 0) {
+      int idx = _tree._rand.nextInt(len);
+      int col = candidates[idx];
+      candidates[idx] = candidates[--len];
+      DTree.Split split = _isCat[col] ? findCatSplit(col, from, to) : findNumSplit(col, from, to);
+      if (split != null)
+        return split;
+    }
+    return null;
+  }
+
+  private DTree.Split findNumSplit(int col, int from, int to) {
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    boolean hasNAs = false;
+    for (int i = from; i < to; i++) {
+      double v = value(i, col);
+      if (Double.isNaN(v)) { hasNAs = true; continue; }
+      if (v < min) min = v;
+      if (v > max) max = v;
+    }
+    if (min > max) // all NAs
+      return null;
+    if (min == max)
+      return hasNAs ? naVsRestSplit(col, from, to) : null;
+    float splat = (float) (min + _tree._rand.nextDouble() * (max - min));
+    DHistogram.NASplitDir nasplit = naSplitDir(hasNAs);
+    final boolean naLeft = nasplit == DHistogram.NASplitDir.NALeft || nasplit == DHistogram.NASplitDir.Left;
+    int mid = partition(from, to, col, splat, null, naLeft);
+    if (!isValidSplit(from, mid, to))
+      return null;
+    _splat = splat;
+    return makeSplit(col, nasplit, null, (byte) 0, from, mid, to);
+  }
+
+  private DTree.Split findCatSplit(int col, int from, int to) {
+    int minLevel = Integer.MAX_VALUE, maxLevel = -1;
+    boolean hasNAs = false;
+    for (int i = from; i < to; i++) {
+      double v = value(i, col);
+      if (Double.isNaN(v)) { hasNAs = true; continue; }
+      minLevel = Math.min(minLevel, (int) v);
+      maxLevel = Math.max(maxLevel, (int) v);
+    }
+    if (maxLevel < 0) // all NAs
+      return null;
+    boolean[] present = new boolean[maxLevel - minLevel + 1];
+    int nlevels = 0;
+    for (int i = from; i < to; i++) {
+      double v = value(i, col);
+      if (!Double.isNaN(v) && !present[(int) v - minLevel]) {
+        present[(int) v - minLevel] = true;
+        nlevels++;
+      }
+    }
+    if (nlevels == 1)
+      return hasNAs ? naVsRestSplit(col, from, to) : null;
+    // random non-trivial group of the observed levels goes right
+    int[] levels = new int[nlevels];
+    for (int l = 0, k = 0; l < present.length; l++)
+      if (present[l]) levels[k++] = l + minLevel;
+    int nright = 1 + _tree._rand.nextInt(nlevels - 1);
+    IcedBitSet bs = new IcedBitSet(maxLevel - minLevel + 1, minLevel);
+    for (int i = 0; i < nright; i++) {
+      int idx = i + _tree._rand.nextInt(nlevels - i);
+      int level = levels[idx];
+      levels[idx] = levels[i];
+      levels[i] = level;
+      bs.set(level);
+    }
+    DHistogram.NASplitDir nasplit = naSplitDir(hasNAs);
+    final boolean naLeft = nasplit == DHistogram.NASplitDir.NALeft || nasplit == DHistogram.NASplitDir.Left;
+    int mid = partition(from, to, col, Float.NaN, bs, naLeft);
+    if (!isValidSplit(from, mid, to))
+      return null;
+    _splat = -1;
+    return makeSplit(col, nasplit, bs, (byte) (bs.max() <= 32 ? 2 : 3), from, mid, to);
+  }
+
+  private DTree.Split naVsRestSplit(int col, int from, int to) {
+    int mid = partition(from, to, col, Float.NaN, null, false);
+    if (!isValidSplit(from, mid, to))
+      return null;
+    _splat = -1;
+    return makeSplit(col, DHistogram.NASplitDir.NAvsREST, null, (byte) 0, from, mid, to);
+  }
+
+  private DHistogram.NASplitDir naSplitDir(boolean hasNAs) {
+    boolean left = _tree._rand.nextBoolean();
+    if (hasNAs)
+      return left ? DHistogram.NASplitDir.NALeft : DHistogram.NASplitDir.NARight;
+    else
+      return left ? DHistogram.NASplitDir.Left : DHistogram.NASplitDir.Right;
+  }
+
+  private boolean isValidSplit(int from, int mid, int to) {
+    return mid - from >= _minRows && to - mid >= _minRows;
+  }
+
+  private DTree.Split makeSplit(int col, DHistogram.NASplitDir nasplit, IcedBitSet bs, byte equal, int from, int mid, int to) {
+    return new DTree.Split(col, 0, nasplit, bs, equal, 0, 0, 0, mid - from, to - mid, 0, 0, 0, 0);
+  }
+
+  // Moves the rows going left to the beginning of the range, decisions follow DecidedNode#getChildNodeID
+  private int partition(int from, int to, int col, float splat, IcedBitSet bs, boolean naLeft) {
+    int lo = from, hi = to - 1;
+    while (lo <= hi) {
+      if (goesRight(value(lo, col), splat, bs, naLeft)) {
+        int tmp = _rows[lo];
+        _rows[lo] = _rows[hi];
+        _rows[hi--] = tmp;
+      } else {
+        lo++;
+      }
+    }
+    return lo;
+  }
+
+  private static boolean goesRight(double d, float splat, IcedBitSet bs, boolean naLeft) {
+    if (!Double.isNaN(d)) {
+      if (bs != null) {
+        if (bs.isInRange((int) d))
+          return bs.contains((int) d);
+      } else if (Float.isNaN(splat)) { // NA vs REST
+        return false;
+      } else {
+        return d >= splat;
+      }
+    }
+    return !naLeft;
+  }
+
+  private double value(int i, int col) {
+    return _data[_rows[i] * _ncols + col];
+  }
+
+  /**
+   * Mirrors the row sampling of {@link hex.tree.Sample}: a row is used to build the tree if the tree's
+   * random generator seeded by the row number yields a value below the sample rate.
+   */
+  static boolean isSampled(Random rand, long treeSeed, long row, double rate) {
+    rand.setSeed(treeSeed + row);
+    return rand.nextFloat() < rate;
+  }
+
+  /**
+   * Draws the subsamples for a batch of trees in a single pass over the data.
+   * The input frame consists of the predictor columns only.
+   */
+  static class SampleRows extends MRTask<SampleRows> {
+    private final long[] _seeds;
+    private final double _rate;
+    // OUT
+    double[][] _data;
+    int[] _nrows;
+
+    SampleRows(long[] seeds, double rate) {
+      _seeds = seeds;
+      _rate = rate;
+    }
+
+    @Override
+    public void map(Chunk[] cs) {
+      final int ncols = cs.length;
+      _data = new double[_seeds.length][];
+      _nrows = new int[_seeds.length];
+      Random rand = RandomUtils.getRNG(0);
+      for (int t = 0; t < _seeds.length; t++) {
+        double[] data = new double[16 * ncols];
+        int n = 0;
+        for (int row = 0; row < cs[0]._len; row++) {
+          if (!isSampled(rand, _seeds[t], cs[0].start() + row, _rate))
+            continue;
+          if ((n + 1) * ncols > data.length)
+            data = Arrays.copyOf(data, data.length * 2);
+          for (int c = 0; c < ncols; c++)
+            data[n * ncols + c] = cs[c].atd(row);
+          n++;
+        }
+        _data[t] = Arrays.copyOf(data, n * ncols);
+        _nrows[t] = n;
+      }
+    }
+
+    @Override
+    public void reduce(SampleRows mrt) {
+      for (int t = 0; t < _seeds.length; t++) {
+        double[] data = Arrays.copyOf(_data[t], _data[t].length + mrt._data[t].length);
+        System.arraycopy(mrt._data[t], 0, data, _data[t].length, mrt._data[t].length);
+        _data[t] = data;
+        _nrows[t] += mrt._nrows[t];
+      }
+    }
+  }
+
+  /**
+   * Builds a batch of trees concurrently, each tree is built by a single thread.
+   */
+  static class BuildTrees extends MrFun<BuildTrees> {
+    private final DTree[] _trees;
+    private final double[][] _data;
+    private final int[] _nrows;
+    private final boolean[] _isCat;
+    private final int _maxDepth;
+    private final double _minRows;
+    // OUT
+    final int[][] _depths;
+
+    BuildTrees(DTree[] trees, double[][] data, int[] nrows, boolean[] isCat, int maxDepth, double minRows) {
+      _trees = trees;
+      _data = data;
+      _nrows = nrows;
+      _isCat = isCat;
+      _maxDepth = maxDepth;
+      _minRows = minRows;
+      _depths = new int[trees.length][];
+    }
+
+    @Override
+    protected void map(int t) {
+      _depths[t] = new IsolationTreeBuilder(_trees[t], _data[t], _nrows[t], _isCat, _maxDepth, _minRows).build();
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+package hex.word2vec;
+
+import water.Key;
+import water.Keyed;
+
+/**
+ * Noise distribution of Negative Sampling: unigram distribution of the vocabulary raised to the power of 3/4,
+ * represented as an alias table (Walker/Vose) - sampling a word takes constant time and a single random number.
+ */
+class UnigramTable extends Keyed<UnigramTable> {
+  private static final double POWER = 0.75;
+
+  float[] _prob;  // probability of keeping the word of the bucket
+  int[] _alias;   // word to use otherwise
+
+  public UnigramTable() {}
+
+  private UnigramTable(Key<UnigramTable> key, int size) {
+    super(key);
+    _prob = new float[size];
+    _alias = new int[size];
+  }
+
+  static UnigramTable buildUnigramTable(long[] wordCounts) {
+    final int size = wordCounts.length;
+    UnigramTable t = new UnigramTable(Key.<UnigramTable>make(), size);
+
+    double[] p = new double[size];
+    double total = 0;
+    for (int i = 0; i < size; i++) total += p[i] = Math.pow(wordCounts[i], POWER);
+    // scaled probabilities, average bucket has 1
+    int[] small = new int[size], large = new int[size];
+    int ns = 0, nl = 0;
+    for (int i = 0; i < size; i++) {
+      p[i] = p[i] * size / total;
+      if (p[i] < 1) small[ns++] = i;
+      else large[nl++] = i;
+    }
+    while (ns > 0 && nl > 0) {
+      int s = small[--ns], l = large[--nl];
+      t._prob[s] = (float) p[s];
+      t._alias[s] = l;
+      p[l] = (p[l] + p[s]) - 1;
+      if (p[l] < 1) small[ns++] = l;
+      else large[nl++] = l;
+    }
+    // leftovers are (up to rounding) full buckets
+    while (nl > 0) { int l = large[--nl]; t._prob[l] = 1; t._alias[l] = l; }
+    while (ns > 0) { int s = small[--ns]; t._prob[s] = 1; t._alias[s] = s; }
+    return t;
+  }
+
+  /**
+   * @param bits 64 random bits
+   * @return index of a word from the noise distribution
+   */
+  int sample(long bits) {
+    final int bucket = (int) (((bits >>> 32) * _prob.length) >>> 32);
+    final float u = (bits & 0xFFFFFF) / (float) (1 << 24);
+    return u < _prob[bucket] ? bucket : _alias[bucket];
+  }
+
+}
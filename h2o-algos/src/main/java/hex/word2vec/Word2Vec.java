@@ -3,6 +3,7 @@ package hex.word2vec;
 import hex.ModelBuilder;
 import hex.ModelCategory;
 import hex.word2vec.Word2VecModel.*;
+import water.H2O;
 import water.Job;
 import water.fvec.Frame;
 import water.fvec.Vec;
@@ -14,7 +15,15 @@ import java.util.List;
 
 public class Word2Vec extends ModelBuilder<Word2VecModel,Word2VecModel.Word2VecParameters,Word2VecModel.Word2VecOutput> {
   public enum WordModel { SkipGram, CBOW }
-  public enum NormModel { HSM }
+  public enum NormModel { HSM, NS }
+
+  /**
+   * Number of rounds an epoch is split into on a multi-node cloud, the nodes synchronize the embeddings
+   * after each round (only the rows touched in the round are exchanged). By default the nodes synchronize
+   * once per epoch, more rounds change the results.
+   */
+  public static final String SYNC_ROUNDS_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "word2vec.syncRounds";
+  static final int DEFAULT_SYNC_ROUNDS = 1;
 
   @Override public ModelCategory[] can_build() { return new ModelCategory[]{ ModelCategory.WordEmbedding, }; }
   @Override public BuilderVisibility builderVisibility() { return BuilderVisibility.Stable; }
@@ -50,6 +59,7 @@ public class Word2Vec extends ModelBuilder<Word2VecModel,Word2VecModel.Word2VecP
     if (_parms._sent_sample_rate < 0.0) error("_sent_sample_rate", "Negative sentence sample rate not allowed for Word2Vec.  Expected a value > 0.0, received " + _parms._sent_sample_rate);
     if (_parms._init_learning_rate < 0.0) error("_init_learning_rate", "Negative learning rate not allowed for Word2Vec.  Expected a value > 0.0, received " + _parms._init_learning_rate);
     if (_parms._epochs < 1) error("_epochs", "Negative epoch count not allowed for Word2Vec.  Expected value > 0, received " + _parms._epochs);
+    if (_parms._norm_model == NormModel.NS && _parms._negative_samples < 1) error("_negative_samples", "Negative Sampling requires at least one negative sample, received " + _parms._negative_samples);
   }
 
   @Override
@@ -85,16 +95,21 @@ public class Word2Vec extends ModelBuilder<Word2VecModel,Word2VecModel.Word2VecP
       // main loop
       Log.info("Word2Vec: Starting to train model, " + _parms._epochs + " epochs.");
       long tstart = System.currentTimeMillis();
+      final int rounds = H2O.CLOUD.size() > 1 ? Math.max(1, Integer.getInteger(SYNC_ROUNDS_PROP, DEFAULT_SYNC_ROUNDS)) : 1;
       for (int i = 0; i < _parms._epochs; i++) {
         long start = System.currentTimeMillis();
-        WordVectorTrainer trainer = new WordVectorTrainer(_job, modelInfo).doAll(_parms.trainVec());
+        long actProcessedWords = 0;
+        long estProcessedWords = 0;
+        for (int round = 0; round < rounds; round++) {
+          WordVectorTrainer trainer = new WordVectorTrainer(_job, modelInfo, round, rounds).doAll(_parms.trainVec());
+          actProcessedWords += trainer._processedWords;
+          estProcessedWords += trainer._nodeProcessedWords._val;
+          trainer.updateModelInfo(modelInfo);
+        }
         long stop = System.currentTimeMillis();
-        long actProcessedWords = trainer._processedWords;
-        long estProcessedWords = trainer._nodeProcessedWords._val;
         if (estProcessedWords < 0.95 * actProcessedWords)
           Log.warn("Estimated number processed words " + estProcessedWords +
                   " is significantly lower than actual number processed words " + actProcessedWords);
-        trainer.updateModelInfo(modelInfo);
         model.update(_job); // Early version of model is visible
         double duration = (stop - start) / 1000.0;
         Log.info("Epoch " + i + " took "  + duration + "s; Words trained/s: " + actProcessedWords / duration);
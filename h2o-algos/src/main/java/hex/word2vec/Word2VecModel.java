@@ -293,6 +293,7 @@ public class Word2VecModel extends Model<Word2VecModel, Word2VecParameters, Word
 
     public Word2Vec.WordModel _word_model = Word2Vec.WordModel.SkipGram;
     public Word2Vec.NormModel _norm_model = Word2Vec.NormModel.HSM;
+    public int _negative_samples = 5; // number of noise words per training pair in Negative Sampling (NS)
     public int _min_word_freq = 5;
     public int _vec_size = 100;
     public int _window_size = 5;
@@ -325,6 +326,7 @@ public class Word2VecModel extends Model<Word2VecModel, Word2VecParameters, Word
 
     float[] _syn0, _syn1;
     Key<HBWTree> _treeKey;
+    Key<UnigramTable> _unigramTableKey;
     Key<Vocabulary> _vocabKey;
     Key<WordCounts> _wordCountsKey;
 
@@ -360,10 +362,11 @@ public class Word2VecModel extends Model<Word2VecModel, Word2VecParameters, Word
         countAry[idx] = wc.getValue()._val;
         vocab._data.put(wc.getKey(), idx++);
       }
-      HBWTree t = HBWTree.buildHuffmanBinaryWordTree(countAry);
-
       _vocabWordCount = vocabWordCount;
-      _treeKey = publish(t);
+      if (_parameters._norm_model == Word2Vec.NormModel.NS)
+        _unigramTableKey = publish(UnigramTable.buildUnigramTable(countAry));
+      else
+        _treeKey = publish(HBWTree.buildHuffmanBinaryWordTree(countAry));
       _vocabKey = publish(vocab);
       _wordCountsKey = publish(wordCounts);
 
@@ -1,6 +1,8 @@
 package hex.word2vec;
 
 import water.DKV;
+import water.H2O;
+import water.Iced;
 import water.Job;
 import water.Key;
 import water.MRTask;
@@ -14,6 +16,15 @@ import water.util.IcedLong;
 
 import java.util.Iterator;
 
+/**
+ * Trains the word vectors on the chunks of a single epoch (or of a round of an epoch, see below).
+ *
+ * All of the chunks of a node update the same node-shared embeddings without any locking (Hogwild!). On a multi-node
+ * cloud the nodes start from the same embeddings, each node sends back only the rows it touched and the driver
+ * computes the average of the nodes weighted by the number of words they processed (same result as averaging the
+ * complete embeddings). The epoch can be split into rounds, each round trains on a different subset of the chunks
+ * and the nodes synchronize after every round.
+ */
 public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   private static final int MAX_SENTENCE_LEN = 1000;
   private static final int EXP_TABLE_SIZE = 1000;
@@ -26,7 +37,8 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
 
   // Params
   private final Word2Vec.WordModel _wordModel;
-  private final int _wordVecSize, _windowSize, _epochs;
+  private final Word2Vec.NormModel _normModel;
+  private final int _wordVecSize, _windowSize, _epochs, _negativeSamples;
   private final float _initLearningRate;
   private final float _sentSampleRate;
   private final long _vocabWordCount;
@@ -35,7 +47,10 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   private final Key<Vocabulary> _vocabKey;
   private final Key<WordCounts> _wordCountsKey;
   private final Key<HBWTree> _treeKey;
+  private final Key<UnigramTable> _unigramTableKey;
   private final long _prevTotalProcessedWords;
+  private final int _round, _rounds; // this task trains on chunks with cidx % _rounds == _round
+  private final boolean _sparseSync;
 
   // Model IN & OUT
   // _syn0 represents the matrix of synaptic weights connecting the input layer of the NN to the hidden layer,
@@ -43,6 +58,11 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   // both matrices are represented in a 1D array, where M[i,j] == array[i * VEC_SIZE + j]
   float[] _syn0, _syn1;
   long _processedWords = 0L;
+  private transient float[] _start0, _start1; // embeddings at the start of the task (driver only, sparse sync)
+  private transient float[] _driverSyn0, _driverSyn1; // embeddings trained by the driver's node, receive the average
+
+  // Node OUT (sparse sync)
+  NodeRows _nodeRows; // shared by the tasks of a node, survives the node-local reduction
 
   // Node-Local (Shared)
   IcedLong _nodeProcessedWords; // mutable long, approximates the total number of words processed by this node
@@ -50,20 +70,37 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   private transient IcedHashMap<BufferedString, IcedLong> _wordCounts;
   private transient int[][] _HBWTCode;
   private transient int[][] _HBWTPoint;
+  private transient UnigramTable _unigramTable;
+  private transient boolean[] _touched0, _touched1; // rows of _syn0/_syn1 updated on this node (sparse sync)
+  private transient float[] _nodeSyn0, _nodeSyn1; // _syn0/_syn1 of this node, kept after the map tasks drop them
 
   private float _curLearningRate;
   private long _seed = System.nanoTime();
 
   public WordVectorTrainer(Job<Word2VecModel> job, Word2VecModelInfo input) {
+    this(job, input, 0, 1);
+  }
+
+  public WordVectorTrainer(Job<Word2VecModel> job, Word2VecModelInfo input, int round, int rounds) {
+    this(job, input, round, rounds, H2O.CLOUD.size() > 1);
+  }
+
+  WordVectorTrainer(Job<Word2VecModel> job, Word2VecModelInfo input, int round, int rounds, boolean sparseSync) {
     super(null);
     _job = job;
+    _round = round;
+    _rounds = rounds;
+    _sparseSync = sparseSync;
 
     _treeKey = input._treeKey;
+    _unigramTableKey = input._unigramTableKey;
     _vocabKey = input._vocabKey;
     _wordCountsKey = input._wordCountsKey;
 
     // Params
     _wordModel = input.getParams()._word_model;
+    _normModel = input.getParams()._norm_model;
+    _negativeSamples = input.getParams()._negative_samples;
     _wordVecSize = input.getParams()._vec_size;
     _windowSize = input.getParams()._window_size;
     _sentSampleRate = input.getParams()._sent_sample_rate;
@@ -75,6 +112,12 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
 
     _syn0 = input._syn0;
     _syn1 = input._syn1;
+    if (_sparseSync) {
+      _start0 = _syn0.clone();
+      _start1 = _syn1.clone();
+      _driverSyn0 = _syn0;
+      _driverSyn1 = _syn1;
+    }
     _curLearningRate = calcLearningRate(_initLearningRate, _epochs, _prevTotalProcessedWords, _vocabWordCount);
   }
 
@@ -82,9 +125,20 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   protected void setupLocal() {
     _vocab = ((Vocabulary) DKV.getGet(_vocabKey))._data;
     _wordCounts = ((WordCounts) DKV.getGet(_wordCountsKey))._data;
-    HBWTree t = DKV.getGet(_treeKey);
-    _HBWTCode = t._code;
-    _HBWTPoint = t._point;
+    if (_normModel == Word2Vec.NormModel.NS) {
+      _unigramTable = DKV.getGet(_unigramTableKey);
+    } else {
+      HBWTree t = DKV.getGet(_treeKey);
+      _HBWTCode = t._code;
+      _HBWTPoint = t._point;
+    }
+    if (_sparseSync) {
+      _touched0 = new boolean[_syn0.length / _wordVecSize];
+      _touched1 = new boolean[_syn1.length / _wordVecSize];
+      _nodeSyn0 = _syn0;
+      _nodeSyn1 = _syn1;
+      _nodeRows = new NodeRows();
+    }
     _nodeProcessedWords = new IcedLong(0L);
   }
 
@@ -99,6 +153,10 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
   }
 
   @Override public void map(Chunk chk) {
+    if (chk.cidx() % _rounds != _round) { // trained in a different round
+      if (_sparseSync) _syn0 = _syn1 = null;
+      return;
+    }
     final int winSize = _windowSize, vecSize = _wordVecSize;
     float[] neu1 = new float[vecSize];
     float[] neu1e = new float[vecSize];
@@ -146,12 +204,27 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
     } // while more sentences
     _processedWords = wordCount;
     _nodeProcessedWords._val += wordCount % 10000;
+    if (_sparseSync) {
+      _nodeRows.addProcessedWords(wordCount);
+      // the node-local result is one of the map tasks, it must not carry the complete embeddings back
+      _syn0 = _syn1 = null;
+    }
     _job.update(1);
   }
 
+  @Override protected void closeLocal() {
+    if (!_sparseSync) return;
+    _nodeRows.add(new TouchedRows(_nodeSyn0, _touched0, _nodeSyn1, _touched1, _wordVecSize, _nodeRows._processedWords));
+  }
+
   @Override public void reduce(WordVectorTrainer other) {
     _processedWords += other._processedWords;
-    if (_syn0 != other._syn0) { // other task worked on a different syn0
+    if (_sparseSync) {
+      if (other._nodeRows != _nodeRows) { // result of a different node
+        _nodeRows.add(other._nodeRows._rows);
+        _nodeProcessedWords._val += other._nodeProcessedWords._val;
+      }
+    } else if (_syn0 != other._syn0) { // other task worked on a different syn0
       float c = (float) other._processedWords / _processedWords;
       ArrayUtils.add(1.0f - c, _syn0, c, other._syn0);
       ArrayUtils.add(1.0f - c, _syn1, c, other._syn1);
@@ -160,15 +233,76 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
     }
   }
 
+  @Override protected void postGlobal() {
+    if (!_sparseSync) return;
+    // average of the nodes = start + sum_i (words_i / words) * (node_i - start)
+    // the touched rows of the driver's node were already copied out, the arrays can be reused
+    _syn0 = _driverSyn0;
+    _syn1 = _driverSyn1;
+    System.arraycopy(_start0, 0, _syn0, 0, _syn0.length);
+    System.arraycopy(_start1, 0, _syn1, 0, _syn1.length);
+    for (TouchedRows rows : _nodeRows._rows) {
+      final float c = _processedWords == 0 ? 0 : (float) rows._processedWords / _processedWords;
+      rows.addDelta(_syn0, _start0, rows._rows0, rows._vals0, c, _wordVecSize);
+      rows.addDelta(_syn1, _start1, rows._rows1, rows._vals1, c, _wordVecSize);
+    }
+    _nodeRows = null;
+  }
+
   private void skipGram(int curWord, int winWord, float[] neu1e) {
     final int vecSize = _wordVecSize;
     final int l1 = winWord * vecSize;
     for (int i = 0; i < vecSize; i++) neu1e[i] = 0;
 
-    hierarchicalSoftmaxSG(curWord, l1, neu1e);
+    if (_normModel == Word2Vec.NormModel.NS)
+      negativeSampling(curWord, _syn0, l1, neu1e);
+    else
+      hierarchicalSoftmaxSG(curWord, l1, neu1e);
 
     // Learned weights input -> hidden
     for (int i = 0; i < vecSize; i++) _syn0[i + l1] += neu1e[i];
+    if (_touched0 != null) _touched0[winWord] = true;
+  }
+
+  /**
+   * Negative Sampling: the target word is a positive example, _negativeSamples words drawn from the unigram
+   * distribution are negative examples.
+   *
+   * @param hidden array holding the hidden layer (input embeddings or the CBOW average)
+   * @param l1 offset of the hidden layer in the array
+   */
+  private void negativeSampling(final int targetWord, final float[] hidden, final int l1, float[] neu1e) {
+    final int vecSize = _wordVecSize;
+    final float alpha = _curLearningRate;
+
+    for (int d = 0; d <= _negativeSamples; d++) {
+      final int target;
+      final int label;
+      if (d == 0) {
+        target = targetWord;
+        label = 1;
+      } else {
+        target = _unigramTable.sample(cheapRandLong());
+        if (target == targetWord) continue;
+        label = 0;
+      }
+      final int l2 = target * vecSize;
+
+      float f = 0;
+      // Propagate hidden -> output (calc sigmoid)
+      for (int j = 0; j < vecSize; j++) f += hidden[j + l1] * _syn1[j + l2];
+
+      if (f > MAX_EXP) f = 1;
+      else if (f < -MAX_EXP) f = 0;
+      else f = _expTable[(int) ((f + MAX_EXP) * (EXP_TABLE_SIZE / MAX_EXP / 2))];
+
+      float gradient = (label - f) * alpha;
+      // Propagate errors output -> hidden
+      for (int j = 0; j < vecSize; j++) neu1e[j] += gradient * _syn1[j + l2];
+      // Learn weights hidden -> output
+      for (int j = 0; j < vecSize; j++) _syn1[j + l2] += gradient * hidden[j + l1];
+      if (_touched1 != null) _touched1[target] = true;
+    }
   }
 
   private void hierarchicalSoftmaxSG(final int targetWord, final int l1, float[] neu1e) {
@@ -191,6 +325,7 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
       for (int j = 0; j < vecSize; j++) neu1e[j] += gradient * _syn1[j + l2];
       // Learn weights hidden -> output
       for (int j = 0; j < vecSize; j++) _syn1[j + l2] += gradient * _syn0[j + l1];
+      if (_touched1 != null) _touched1[_HBWTPoint[targetWord][i]] = true;
     }
   }
 
@@ -209,7 +344,10 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
     final int curWinSize = winSize * 2 + 1 - winSize;
 
     for (int i = 0; i < vecSize; i++) neu1[i] /= bagSize;
-    hierarchicalSoftmaxCBOW(curWord, neu1, neu1e);
+    if (_normModel == Word2Vec.NormModel.NS)
+      negativeSampling(curWord, neu1, 0, neu1e);
+    else
+      hierarchicalSoftmaxCBOW(curWord, neu1, neu1e);
 
     // hidden -> in
     for (int winIdx = winSizeMod; winIdx < curWinSize; winIdx++) {
@@ -218,6 +356,7 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
         if (winWordSentIdx < 0 || winWordSentIdx >= sentLen) continue;
         winWord = sentence[winWordSentIdx];
         for (int i = 0; i < vecSize; i++) _syn0[i + winWord * vecSize] += neu1e[i];
+        if (_touched0 != null) _touched0[winWord] = true;
       }
     }
   }
@@ -243,6 +382,7 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
       for (int j = 0; j < vecSize; j++) neu1e[j] += gradient * _syn1[j + l2];
       // Learn weights hidden -> output
       for (int j = 0; j < vecSize; j++) _syn1[j + l2] += gradient * neu1[j];
+      if (_touched1 != null) _touched1[_HBWTPoint[targetWord][i]] = true;
     }
   }
 
@@ -271,11 +411,65 @@ public class WordVectorTrainer extends MRTask<WordVectorTrainer> {
     * @return int between 0-(max-1).
     */
   private int cheapRandInt(int max) {
+    int r = (int) cheapRandLong() % max;
+    return r > 0 ? r : -r;
+  }
+
+  private long cheapRandLong() {
     _seed ^= ( _seed << 21);
     _seed ^= ( _seed >>> 35);
     _seed ^= ( _seed << 4);
-    int r = (int) _seed % max;
-    return r > 0 ? r : -r;
+    return _seed;
+  }
+
+  /** Touched rows of a node and of the nodes reduced into it. */
+  static final class NodeRows extends Iced<NodeRows> {
+    TouchedRows[] _rows = new TouchedRows[0];
+    long _processedWords; // number of words processed by the node
+
+    synchronized void addProcessedWords(long words) { _processedWords += words; }
+
+    void add(TouchedRows... rows) { _rows = ArrayUtils.append(_rows, rows); }
+  }
+
+  /** Rows of the embeddings updated by a single node, with their values at the end of the task. */
+  static final class TouchedRows extends Iced<TouchedRows> {
+    final int[] _rows0, _rows1;
+    final float[] _vals0, _vals1;
+    final long _processedWords;
+
+    TouchedRows(float[] syn0, boolean[] touched0, float[] syn1, boolean[] touched1, int vecSize, long processedWords) {
+      _rows0 = rows(touched0);
+      _vals0 = values(syn0, _rows0, vecSize);
+      _rows1 = rows(touched1);
+      _vals1 = values(syn1, _rows1, vecSize);
+      _processedWords = processedWords;
+    }
+
+    private static int[] rows(boolean[] touched) {
+      int n = 0;
+      for (boolean t : touched) if (t) n++;
+      int[] rows = new int[n];
+      for (int i = 0, j = 0; i < touched.length; i++)
+        if (touched[i]) rows[j++] = i;
+      return rows;
+    }
+
+    private static float[] values(float[] syn, int[] rows, int vecSize) {
+      float[] vals = new float[rows.length * vecSize];
+      for (int j = 0; j < rows.length; j++)
+        System.arraycopy(syn, rows[j] * vecSize, vals, j * vecSize, vecSize);
+      return vals;
+    }
+
+    // syn += c * (vals - start) for the given rows
+    void addDelta(float[] syn, float[] start, int[] rows, float[] vals, float c, int vecSize) {
+      for (int j = 0; j < rows.length; j++) {
+        final int off = rows[j] * vecSize;
+        for (int i = 0; i < vecSize; i++)
+          syn[off + i] += c * (vals[j * vecSize + i] - start[off + i]);
+      }
+    }
   }
 
   private class ChunkSentenceIterator implements Iterator<int[]> {
@@ -0,0 +1,214 @@
+package hex.coxph;
+
+import hex.DataInfo;
+import hex.coxph.CoxPH.ComputationState;
+import hex.coxph.CoxPH.CoxPHTask;
+import hex.coxph.CoxPHModel.CoxPHParameters.CoxPHTies;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.DKV;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SortedRiskSetsTest extends TestUtil {
+
+  @BeforeClass
+  public static void setup() { stall_till_cloudsize(1); }
+
+  @Test
+  public void testLoglikMatchesGrid() {
+    for (CoxPHTies ties : CoxPHTies.values()) {
+      for (boolean stratified : new boolean[]{false, true}) {
+        Scope.enter();
+        try {
+          checkLoglik(ties, stratified);
+        } finally {
+          Scope.exit();
+        }
+      }
+    }
+  }
+
+  private void checkLoglik(CoxPHTies ties, boolean stratified) {
+    final int nTime = 10;
+    final int nStrata = stratified ? 3 : 1;
+    final int n = 300;
+    final Random rnd = new Random(0xC0C5);
+    final Integer[] order = new Integer[n];
+    final double[] x = new double[n];
+    final String[] c = new String[n];
+    final double[] w = new double[n];
+    final long[] strata = new long[n];
+    final long[] stop = new long[n];
+    final long[] event = new long[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+      x[i] = rnd.nextGaussian();
+      c[i] = "L" + rnd.nextInt(3);
+      w[i] = 0.5 + rnd.nextDouble();
+      strata[i] = rnd.nextInt(nStrata);
+      stop[i] = rnd.nextInt(nTime) + strata[i] * nTime; // discretized stop time, offset by the stratum
+      event[i] = rnd.nextInt(3) == 0 ? 0 : 1;
+    }
+    // descending stop time - what the sort in the driver does
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Long.compare(stop[o2], stop[o1]);
+      }
+    });
+    // chunks of a single row and chunks in the middle of a tie group
+    final long[] layout = new long[]{7, 1, 1, 45, 13, 100, 1, 32, 100};
+    assertEquals(n, sum(layout));
+    TestFrameBuilder builder = new TestFrameBuilder()
+            .withDataForCol(0, permute(x, order))
+            .withDataForCol(1, permute(c, order))
+            .withDataForCol(2, permute(w, order))
+            .withChunkLayout(layout);
+    if (stratified) {
+      builder.withColNames("x", "c", "w", "__strata", "stop", "event")
+              .withVecTypes(Vec.T_NUM, Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+              .withDataForCol(3, permute(strata, order))
+              .withDataForCol(4, permute(stop, order))
+              .withDataForCol(5, permute(event, order));
+    } else {
+      builder.withColNames("x", "c", "w", "stop", "event")
+              .withVecTypes(Vec.T_NUM, Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+              .withDataForCol(3, permute(stop, order))
+              .withDataForCol(4, permute(event, order));
+    }
+    final Frame fr = Scope.track(builder.build());
+    assertEquals(layout.length, fr.anyVec().nChunks());
+
+    final DataInfo dinfo = new DataInfo(fr, null, stratified ? 3 : 2, false, DataInfo.TransformType.DEMEAN,
+            DataInfo.TransformType.NONE, true, false, false, true, false, false, null).disableIntercept();
+    Scope.track_generic(dinfo);
+    DKV.put(dinfo);
+
+    final double[] beta = new double[dinfo.fullN()];
+    for (int j = 0; j < beta.length; j++)
+      beta[j] = 0.3 * (j + 1) * (j % 2 == 0 ? 1 : -1);
+    final double[] time = new double[nTime];
+    final Vec strataVec = stratified ? fr.vec("__strata") : null;
+
+    CoxPHModel.CoxPHParameters parms = new CoxPHModel.CoxPHParameters();
+    parms._ties = ties;
+    CoxPH.CoxPHDriver driver = new CoxPH(parms).new CoxPHDriver();
+    CoxPHTask coxMR = new CoxPHTask(dinfo, beta, time, 0, 0, false, strataVec, true, ties)
+            .doAll(dinfo._adaptedFrame);
+    ComputationState expected = driver.calcLoglik(dinfo, new ComputationState(beta.length), parms, coxMR);
+
+    CoxPHTask params = new CoxPHTask(dinfo, beta, time, 0, 0, false, strataVec, true, ties);
+    ComputationState actual = SortedRiskSets.calcLoglik(dinfo, params, new ComputationState(beta.length), false);
+
+    final String msg = ties + (stratified ? ", stratified" : "");
+    assertEquals(msg, expected._logLik, actual._logLik, 1e-8 * Math.abs(expected._logLik));
+    assertArrayEquals(msg, expected._gradient, actual._gradient, 1e-8);
+    for (int j = 0; j < beta.length; j++)
+      assertArrayEquals(msg, expected._hessian[j], actual._hessian[j], 1e-8);
+  }
+
+  @Test
+  public void testModelMatchesGrid() {
+    for (CoxPHTies ties : CoxPHTies.values()) {
+      Scope.enter();
+      try {
+        final int n = 2000;
+        final Random rnd = new Random(42);
+        final double[] x = new double[n];
+        final String[] c = new String[n];
+        final String[] s = new String[n];
+        final double[] w = new double[n];
+        final double[] stop = new double[n];
+        final long[] event = new long[n];
+        for (int i = 0; i < n; i++) {
+          x[i] = rnd.nextGaussian();
+          c[i] = "L" + rnd.nextInt(4);
+          s[i] = "S" + rnd.nextInt(2);
+          w[i] = 1 + rnd.nextInt(3);
+          final double hazard = Math.exp(0.5 * x[i] + (c[i].equals("L1") ? 0.7 : 0));
+          stop[i] = 1 + Math.floor(-Math.log(rnd.nextDouble()) / hazard * 20); // rounding makes ties
+          event[i] = rnd.nextInt(4) == 0 ? 0 : 1;
+        }
+        final Frame fr = Scope.track(new TestFrameBuilder()
+                .withColNames("x", "c", "s", "w", "stop", "event")
+                .withVecTypes(Vec.T_NUM, Vec.T_CAT, Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+                .withDataForCol(0, x)
+                .withDataForCol(1, c)
+                .withDataForCol(2, s)
+                .withDataForCol(3, w)
+                .withDataForCol(4, stop)
+                .withDataForCol(5, event)
+                .withChunkLayout(700, 300, 1000)
+                .build());
+
+        CoxPHModel.CoxPHParameters parms = new CoxPHModel.CoxPHParameters();
+        parms._train = fr._key;
+        parms._stop_column = "stop";
+        parms._response_column = "event";
+        parms._weights_column = "w";
+        parms._stratify_by = new String[]{"s"};
+        parms._calc_cumhaz = true;
+        parms._ties = ties;
+
+        CoxPHModel grid = new CoxPH(parms).trainModel().get();
+        Scope.track_generic(grid);
+        CoxPHModel sorted;
+        System.setProperty(SortedRiskSets.ENABLED_PROP, "true");
+        try {
+          sorted = new CoxPH(parms).trainModel().get();
+          Scope.track_generic(sorted);
+        } finally {
+          System.clearProperty(SortedRiskSets.ENABLED_PROP);
+        }
+
+        CoxPHModel.CoxPHOutput e = grid._output, a = sorted._output;
+        // the iterations may stop at a different step once the log-likelihood only differs in rounding
+        assertEquals(e._loglik, a._loglik, 1e-8 * Math.abs(e._loglik));
+        assertEquals(e._null_loglik, a._null_loglik, 1e-8 * Math.abs(e._null_loglik));
+        assertArrayEquals(e._coef, a._coef, 1e-6);
+        for (int j = 0; j < e._coef.length; j++)
+          assertArrayEquals(e._var_coef[j], a._var_coef[j], 1e-8);
+        assertEquals(e._n, a._n);
+        assertEquals(e._total_event, a._total_event);
+        assertArrayEquals(e._cumhaz_0, a._cumhaz_0, 1e-6);
+      } finally {
+        Scope.exit();
+      }
+    }
+  }
+
+  private static long sum(long[] a) {
+    long s = 0;
+    for (long v : a) s += v;
+    return s;
+  }
+
+  private static double[] permute(double[] a, Integer[] order) {
+    double[] res = new double[a.length];
+    for (int i = 0; i < a.length; i++) res[i] = a[order[i]];
+    return res;
+  }
+
+  private static long[] permute(long[] a, Integer[] order) {
+    long[] res = new long[a.length];
+    for (int i = 0; i < a.length; i++) res[i] = a[order[i]];
+    return res;
+  }
+
+  private static String[] permute(String[] a, Integer[] order) {
+    String[] res = new String[a.length];
+    for (int i = 0; i < a.length; i++) res[i] = a[order[i]];
+    return res;
+  }
+
+}
@@ -15,6 +15,7 @@ import water.exceptions.H2OModelBuilderIllegalArgumentException;
 import water.fvec.Chunk;
 import water.fvec.Frame;
 import water.fvec.NFSFileVec;
+import water.fvec.TestFrameBuilder;
 import water.fvec.Vec;
 import water.parser.ParseDataset;
 import water.parser.ParseSetup;
@@ -24,6 +25,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -1633,6 +1635,130 @@ public class DeepLearningTest extends TestUtil {
   }
 
 
+  @Test
+  public void testMiniBatchGEMM() {
+    Scope.enter();
+    try {
+      Random rnd = new Random(0xF00D);
+      final int nrows = 1000;
+      double[][] x = new double[5][nrows];
+      double[] y = new double[nrows];
+      for (int r = 0; r < nrows; r++) {
+        for (int c = 0; c < x.length; c++) {
+          x[c][r] = rnd.nextGaussian();
+          y[r] += (c + 1) * x[c][r];
+        }
+        y[r] += 0.1 * rnd.nextGaussian();
+      }
+      Frame tfr = Scope.track(new TestFrameBuilder()
+          .withColNames("x0", "x1", "x2", "x3", "x4", "y")
+          .withVecTypes(Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+          .withDataForCol(0, x[0]).withDataForCol(1, x[1]).withDataForCol(2, x[2])
+          .withDataForCol(3, x[3]).withDataForCol(4, x[4]).withDataForCol(5, y)
+          .build());
+      DeepLearningParameters parms = new DeepLearningParameters();
+      parms._train = tfr._key;
+      parms._response_column = "y";
+      parms._reproducible = true;
+      parms._hidden = new int[]{16, 16};
+      parms._epochs = 20;
+      parms._seed = 0xdecaf;
+      parms._mini_batch_size = 8;
+
+      // without the system property the mini-batch size is reset to 1
+      DeepLearningModel dl1 = new DeepLearning((DeepLearningParameters) parms.clone()).trainModel().get();
+      Scope.track_generic(dl1);
+      assertEquals(1, dl1.model_info().get_params()._mini_batch_size);
+
+      DeepLearningModel dl8;
+      System.setProperty(DeepLearning.MINI_BATCH_ENABLED_PROP, "true");
+      try {
+        dl8 = new DeepLearning((DeepLearningParameters) parms.clone()).trainModel().get();
+      } finally {
+        System.clearProperty(DeepLearning.MINI_BATCH_ENABLED_PROP);
+      }
+      Scope.track_generic(dl8);
+      assertEquals(8, dl8.model_info().get_params()._mini_batch_size);
+      assertFalse(dl8.model_info().isUnstable());
+      // response variance is 55, the mini-batch model has to learn the linear relationship as well
+      assertTrue(dl8._output._training_metrics._MSE < 1);
+      assertTrue(dl1._output._training_metrics._MSE < 1);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testMiniBatchStepIsAveraged() {
+    Scope.enter();
+    try {
+      Random rnd = new Random(0xAB);
+      final int nrows = 100;
+      double[][] x = new double[3][nrows];
+      double[] y = new double[nrows];
+      for (int r = 0; r < nrows; r++) {
+        for (int c = 0; c < x.length; c++) {
+          x[c][r] = rnd.nextGaussian();
+          y[r] += (c + 1) * x[c][r];
+        }
+      }
+      Frame tfr = Scope.track(new TestFrameBuilder()
+          .withColNames("x0", "x1", "x2", "y")
+          .withVecTypes(Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+          .withDataForCol(0, x[0]).withDataForCol(1, x[1]).withDataForCol(2, x[2]).withDataForCol(3, y)
+          .build());
+      DeepLearningParameters parms = new DeepLearningParameters();
+      parms._train = tfr._key;
+      parms._response_column = "y";
+      parms._reproducible = true;
+      parms._hidden = new int[]{8};
+      parms._epochs = 1;
+      parms._seed = 0xdecaf;
+      parms._adaptive_rate = false;
+      parms._rate = 0.01;
+      parms._momentum_start = 0;
+      parms._momentum_stable = 0;
+      parms._mini_batch_size = 4;
+      DeepLearningModel dl;
+      System.setProperty(DeepLearning.MINI_BATCH_ENABLED_PROP, "true");
+      try {
+        dl = new DeepLearning(parms).trainModel().get();
+      } finally {
+        System.clearProperty(DeepLearning.MINI_BATCH_ENABLED_PROP);
+      }
+      Scope.track_generic(dl);
+
+      // a mini-batch of n copies of the same sample makes the same step as the single sample
+      final double[] data = new double[]{x[0][0], x[1][0], x[2][0]};
+      DeepLearningModelInfo single = IcedUtils.deepCopy(dl.model_info());
+      DeepLearningModelInfo batch = IcedUtils.deepCopy(dl.model_info());
+      trainOneMiniBatch(single, data, y[0], 1);
+      trainOneMiniBatch(batch, data, y[0], 4);
+      for (int layer = 0; layer <= parms._hidden.length; layer++) {
+        float[] before = dl.model_info().get_weights(layer).raw();
+        float[] expected = single.get_weights(layer).raw();
+        assertFalse(Arrays.equals(before, expected));
+        float[] actual = batch.get_weights(layer).raw();
+        for (int i = 0; i < expected.length; i++)
+          assertEquals("layer " + layer + ", weight " + i, expected[i], actual[i], 1e-6);
+        assertArrayEquals("layer " + layer, single.get_biases(layer).raw(), batch.get_biases(layer).raw(), 1e-6);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  private static void trainOneMiniBatch(DeepLearningModelInfo minfo, double[] data, double response, int n) {
+    Neurons[] neurons = DeepLearningTask.makeNeuronsForTraining(minfo);
+    double[] responses = new double[n];
+    for (int mb = 0; mb < n; mb++) {
+      ((Neurons.Input) neurons[0]).setInput(-1, data, mb);
+      responses[mb] = response;
+    }
+    DeepLearningTask.fpropMiniBatch(-1, neurons, minfo, null, true, responses, null, n);
+    DeepLearningTask.bpropMiniBatch(neurons, n);
+  }
+
   @Test
   public void testPretrainedAE() {
     Frame tfr = null;
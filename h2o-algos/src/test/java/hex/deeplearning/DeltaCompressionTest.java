@@ -0,0 +1,245 @@
+package hex.deeplearning;
+
+import hex.deeplearning.DeepLearningModel.DeepLearningParameters;
+import hex.deeplearning.DeltaCompression.CompressedArray;
+import hex.deeplearning.DeltaCompression.Mode;
+import hex.ModelMetrics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.H2O;
+import water.IcedUtils;
+import water.Key;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DeltaCompressionTest extends TestUtil {
+
+  @BeforeClass public static void setup() { stall_till_cloudsize(1); }
+
+  @Test
+  public void testQuantizedRoundTrip() {
+    float[] delta = randomDelta(1000, 42);
+    for (Mode mode : new Mode[]{Mode.Int8, Mode.Int16}) {
+      float maxabs = 0;
+      for (float v : delta) maxabs = Math.max(maxabs, Math.abs(v));
+      final float tolerance = maxabs / (mode == Mode.Int8 ? Byte.MAX_VALUE : Short.MAX_VALUE);
+      CompressedArray c = IcedUtils.deepCopy(CompressedArray.compress(delta, mode, 0));
+      assertEquals(mode == Mode.Int8 ? delta.length : 2 * delta.length, c.byteSize());
+      double[] decoded = new double[delta.length];
+      c.addTo(decoded, 1);
+      for (int i = 0; i < delta.length; ++i)
+        assertEquals(delta[i], decoded[i], tolerance);
+      float[] residual = delta.clone();
+      c.subtractFrom(residual);
+      for (int i = 0; i < delta.length; ++i)
+        assertEquals(delta[i] - decoded[i], residual[i], 1e-6);
+    }
+  }
+
+  @Test
+  public void testTopK() {
+    float[] delta = randomDelta(1000, 7);
+    CompressedArray c = CompressedArray.compress(delta, Mode.TopK, 0.05f);
+    assertEquals(50 * 8, c.byteSize());
+    float threshold = DeltaCompression.kthLargestAbs(delta, 50);
+    float[] decoded = new float[delta.length];
+    c.addTo(decoded, 1);
+    int nnz = 0;
+    for (int i = 0; i < delta.length; ++i) {
+      if (Math.abs(delta[i]) >= threshold) {
+        assertEquals(delta[i], decoded[i], 0);
+        nnz++;
+      } else {
+        assertEquals(0, decoded[i], 0);
+      }
+    }
+    assertEquals(50, nnz);
+    // fewer non-zeros than k
+    float[] sparse = new float[100];
+    sparse[3] = 1;
+    sparse[50] = -2;
+    c = CompressedArray.compress(sparse, Mode.TopK, 0.1f);
+    assertEquals(2 * 8, c.byteSize());
+    c.subtractFrom(sparse);
+    assertArrayEquals(new float[100], sparse, 0);
+  }
+
+  @Test
+  public void testKthLargestAbs() {
+    float[] x = randomDelta(501, 3);
+    float[] sorted = new float[x.length];
+    for (int i = 0; i < x.length; ++i) sorted[i] = -Math.abs(x[i]);
+    Arrays.sort(sorted);
+    for (int k : new int[]{1, 2, 17, 250, 500, 501})
+      assertEquals(-sorted[k - 1], DeltaCompression.kthLargestAbs(x, k), 0);
+  }
+
+  @Test
+  public void testAverageOfDeltasWithErrorFeedback() {
+    Scope.enter();
+    try {
+      Random rnd = new Random(0xDE17A);
+      double[] x = new double[200];
+      double[] y = new double[200];
+      for (int i = 0; i < x.length; ++i) {
+        x[i] = rnd.nextGaussian();
+        y[i] = 2 * x[i] + rnd.nextGaussian();
+      }
+      Frame fr = Scope.track(new TestFrameBuilder()
+          .withColNames("x", "y")
+          .withVecTypes(Vec.T_NUM, Vec.T_NUM)
+          .withDataForCol(0, x)
+          .withDataForCol(1, y)
+          .build());
+      DeepLearningParameters parms = new DeepLearningParameters();
+      parms._train = fr._key;
+      parms._response_column = "y";
+      parms._hidden = new int[]{20};
+      parms._epochs = 1;
+      parms._seed = 1234;
+      parms._reproducible = true;
+      DeepLearningModel dl = new DeepLearning(parms).trainModel().get();
+      Scope.track_generic(dl);
+
+      for (Mode mode : new Mode[]{Mode.Int8, Mode.TopK}) {
+        final Key modelKey = Key.make();
+        DeepLearningModelInfo start = IcedUtils.deepCopy(dl.model_info());
+        DeltaCompression.Snapshot snapshot = DeltaCompression.snapshot(start);
+        // two nodes move the model in different directions
+        DeepLearningModelInfo node1 = IcedUtils.deepCopy(start);
+        DeepLearningModelInfo node2 = IcedUtils.deepCopy(start);
+        shift(node1, 1e-2f, 1);
+        shift(node2, -4e-3f, 2);
+        DeepLearningModelInfo expected = IcedUtils.deepCopy(node1);
+        expected.add(node2);
+        expected.div(2);
+
+        DeltaCompression.ModelDelta[] deltas = new DeltaCompression.ModelDelta[]{
+            DeltaCompression.encode(modelKey, node1, snapshot, mode, 0.2f),
+            IcedUtils.deepCopy(DeltaCompression.encode(Key.make(), node2, snapshot, mode, 0.2f))
+        };
+        DeepLearningModelInfo actual = IcedUtils.deepCopy(node1);
+        DeltaCompression.applyAverage(actual, snapshot, deltas);
+        float[][] e = expected.averagedFloatArrays(), a = actual.averagedFloatArrays();
+        for (int i = 0; i < e.length; ++i)
+          for (int j = 0; j < e[i].length; ++j)
+            assertEquals(e[i][j], a[i][j], mode == Mode.Int8 ? 1e-4 : 1e-2);
+
+        // error feedback: the residual of node1 is sent with the next (zero) delta
+        DeltaCompression.Snapshot snapshot2 = DeltaCompression.snapshot(node1);
+        CompressedArray[] next = DeltaCompression.encode(modelKey, node1, snapshot2, mode, 1)._arrays;
+        float[][] start0 = snapshot._floats;
+        float[][] n1 = node1.averagedFloatArrays();
+        for (int i = 0; i < n1.length; ++i) {
+          float[] reconstructed = start0[i].clone();
+          deltas[0]._arrays[i].addTo(reconstructed, 1);
+          next[i].addTo(reconstructed, 1);
+          for (int j = 0; j < n1[i].length; ++j)
+            assertEquals(n1[i][j], reconstructed[j], 1e-5);
+        }
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testReplicatedTrainingWithCompressedDeltas() {
+    Scope.enter();
+    try {
+      Random rnd = new Random(0xC0FFEE);
+      double[] x1 = new double[300];
+      double[] x2 = new double[300];
+      double[] y = new double[300];
+      for (int i = 0; i < y.length; ++i) {
+        x1[i] = rnd.nextGaussian();
+        x2[i] = rnd.nextGaussian();
+        y[i] = 3 * x1[i] - 2 * x2[i] + 0.1 * rnd.nextGaussian();
+      }
+      Frame fr = Scope.track(new TestFrameBuilder()
+          .withColNames("x1", "x2", "y")
+          .withVecTypes(Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+          .withDataForCol(0, x1)
+          .withDataForCol(1, x2)
+          .withDataForCol(2, y)
+          .build());
+      DeepLearningParameters parms = new DeepLearningParameters();
+      parms._train = fr._key;
+      parms._response_column = "y";
+      parms._hidden = new int[]{10};
+      parms._epochs = 0;
+      parms._seed = 1234;
+      parms._reproducible = true;
+      DeepLearningModel dl = new DeepLearning(parms).trainModel().get();
+      Scope.track_generic(dl);
+      final DeepLearningModelInfo initial = IcedUtils.deepCopy(dl.model_info());
+      initial.get_params()._replicate_training_data = true; // turned off on a single node
+      final double initialMSE = mse(dl, fr);
+
+      System.setProperty(DeltaCompression.TOPK_FRACTION_PROP, "0.2");
+      try {
+        for (Mode mode : new Mode[]{Mode.Int8, Mode.Int16, Mode.TopK}) {
+          System.setProperty(DeltaCompression.MODE_PROP, mode.name());
+          try {
+            // same as the main loop of DeepLearning with replicated data, on this node only
+            DeepLearningModelInfo minfo = IcedUtils.deepCopy(initial);
+            for (int iteration = 1; iteration <= 20; ++iteration) {
+              minfo = new DeepLearningTask2(null, fr, minfo, 1, iteration)
+                  .doAll(Key.make(H2O.SELF)).model_info();
+              assertTrue(mode + ": compression errors are kept between iterations", DeltaCompression.hasResiduals(dl._key));
+            }
+            assertFalse(minfo.isUnstable());
+            assertEquals(20 * fr.numRows(), minfo.get_processed_global());
+            dl.set_model_info(minfo);
+            final double trainedMSE = mse(dl, fr);
+            assertTrue(mode + ": MSE " + trainedMSE + " vs initial " + initialMSE, trainedMSE < 0.1 * initialMSE);
+          } finally {
+            DeltaCompression.clearResiduals(dl._key);
+            System.clearProperty(DeltaCompression.MODE_PROP);
+          }
+          assertFalse(DeltaCompression.hasResiduals(dl._key));
+        }
+      } finally {
+        System.clearProperty(DeltaCompression.TOPK_FRACTION_PROP);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  private static double mse(DeepLearningModel dl, Frame fr) {
+    Frame preds = dl.score(fr);
+    try {
+      return ModelMetrics.getFromDKV(dl, fr).mse();
+    } finally {
+      preds.remove();
+    }
+  }
+
+  private static void shift(DeepLearningModelInfo minfo, float step, long seed) {
+    Random rnd = new Random(seed);
+    for (float[] w : minfo.averagedFloatArrays())
+      for (int j = 0; j < w.length; ++j)
+        w[j] += step * rnd.nextFloat();
+    for (double[] b : minfo.averagedDoubleArrays())
+      for (int j = 0; j < b.length; ++j)
+        b[j] += step * rnd.nextFloat();
+  }
+
+  private static float[] randomDelta(int n, long seed) {
+    Random rnd = new Random(seed);
+    float[] delta = new float[n];
+    for (int i = 0; i < n; ++i)
+      delta[i] = (float) (rnd.nextGaussian() * 1e-3);
+    return delta;
+  }
+
+}
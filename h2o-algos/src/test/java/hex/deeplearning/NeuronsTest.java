@@ -6,6 +6,7 @@ import org.junit.*;
 import water.util.ArrayUtils;
 import water.util.Log;
 import water.util.PrettyPrint;
+import java.util.Arrays;
 import java.util.Random;
 
 public class NeuronsTest extends water.TestUtil {
@@ -109,4 +110,36 @@ public class NeuronsTest extends water.TestUtil {
     System.out.println("optimized dense row * dense time: " + PrettyPrint.msecs(System.currentTimeMillis()-start, true));
   }
 
+  @Test
+  public void gemmMatchesGemv() {
+    final int rows = 37;
+    final int cols = 53;
+    Random rng = new Random(0xBEEF);
+    float[] a = new float[rows * cols];
+    for (int i = 0; i < a.length; ++i)
+      a[i] = (float) rng.nextGaussian();
+    double[] y = new double[rows];
+    for (int row = 0; row < rows; ++row)
+      y[row] = rng.nextGaussian();
+    byte[] bits = new byte[(rows + 7) / 8];
+    rng.nextBytes(bits);
+    for (int n : new int[]{1, 2, 3, 4, 5, 8, 11}) {
+      for (byte[] rowBits : new byte[][]{null, bits}) {
+        double[][] x = new double[n][cols];
+        double[][] res = new double[n][rows];
+        for (int mb = 0; mb < n; ++mb) {
+          for (int col = 0; col < cols; ++col)
+            x[mb][col] = rng.nextInt(3) == 0 ? 0 : rng.nextGaussian();
+          Arrays.fill(res[mb], Double.NaN);
+        }
+        gemm(res, a, x, y, rowBits, n);
+        for (int mb = 0; mb < n; ++mb) {
+          double[] expected = new double[rows];
+          gemv_row_optimized(expected, a, x[mb], y, rowBits);
+          Assert.assertArrayEquals("n=" + n + ", mb=" + mb, expected, res[mb], 1e-10);
+        }
+      }
+    }
+  }
+
 }
@@ -2288,4 +2288,276 @@ public class GLMTest  extends TestUtil {
       Scope.exit();
     }
   }
+
+  @Test
+  public void testBlockedGramProducesSameCoefficients() {
+    Scope.enter();
+    try {
+      final int nrows = 1000, nums = 80;
+      Random rnd = new Random(0xB10C);
+      String[] names = new String[nums + 2];
+      byte[] types = new byte[nums + 2];
+      TestFrameBuilder builder = new TestFrameBuilder();
+      String[] cat = new String[nrows];
+      double[] y = new double[nrows];
+      for (int r = 0; r < nrows; r++) {
+        cat[r] = "L" + rnd.nextInt(6);
+        y[r] = rnd.nextInt(2);
+      }
+      names[0] = "c"; types[0] = Vec.T_CAT; builder.withDataForCol(0, cat);
+      for (int i = 0; i < nums; i++) {
+        double[] x = new double[nrows];
+        for (int r = 0; r < nrows; r++)
+          x[r] = rnd.nextGaussian() + (y[r] > 0 && i < 10 ? 0.5 : 0);
+        names[i + 1] = "x" + i; types[i + 1] = Vec.T_NUM; builder.withDataForCol(i + 1, x);
+      }
+      names[nums + 1] = "y"; types[nums + 1] = Vec.T_NUM; builder.withDataForCol(nums + 1, y);
+      Frame fr = Scope.track(builder.withColNames(names).withVecTypes(types).withChunkLayout(300, 300, 400).build());
+
+      for (Family family : new Family[]{Family.gaussian, Family.binomial}) {
+        GLMParameters params = new GLMParameters(family);
+        params._train = fr._key;
+        params._response_column = "y";
+        params._solver = Solver.IRLSM;
+        params._lambda = new double[]{1e-3};
+        params._alpha = new double[]{0};
+        if (family == Family.binomial) {
+          Scope.track(fr.replace(nums + 1, fr.vec("y").toCategoricalVec()));
+          DKV.put(fr);
+        }
+        GLMModel expected = new GLM(params).trainModel().get();
+        Scope.track_generic(expected);
+        GLMModel actual;
+        System.setProperty(hex.gram.Gram.BLOCKED_ENABLED_PROP, "true");
+        try {
+          actual = new GLM(params).trainModel().get();
+        } finally {
+          System.clearProperty(hex.gram.Gram.BLOCKED_ENABLED_PROP);
+        }
+        Scope.track_generic(actual);
+        HashMap<String, Double> expectedCoefs = expected.coefficients();
+        HashMap<String, Double> actualCoefs = actual.coefficients();
+        assertEquals(expectedCoefs.keySet(), actualCoefs.keySet());
+        for (String name : expectedCoefs.keySet())
+          assertEquals(family + " " + name, expectedCoefs.get(name), actualCoefs.get(name), 1e-8);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testCVWithSufficientStatsMatchesRegularCV() {
+    Scope.enter();
+    try {
+      final int nrows = 600;
+      Random rnd = new Random(0x5EED);
+      String[] cat = new String[nrows];
+      double[] x1 = new double[nrows], x2 = new double[nrows], w = new double[nrows], y = new double[nrows];
+      for (int r = 0; r < nrows; r++) {
+        cat[r] = rnd.nextInt(20) == 0 ? null : "L" + rnd.nextInt(4);
+        x1[r] = 10 + 3 * rnd.nextGaussian();
+        x2[r] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextDouble();
+        w[r] = rnd.nextInt(10) == 0 ? 0 : 1 + rnd.nextInt(3);
+        y[r] = 2 * x1[r] - (Double.isNaN(x2[r]) ? 0 : x2[r]) + (cat[r] == null ? 0 : cat[r].charAt(1)) + rnd.nextGaussian();
+      }
+      Frame fr = Scope.track(new TestFrameBuilder()
+          .withColNames("c", "x1", "x2", "w", "y")
+          .withVecTypes(Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+          .withDataForCol(0, cat).withDataForCol(1, x1).withDataForCol(2, x2).withDataForCol(3, w).withDataForCol(4, y)
+          .withChunkLayout(200, 150, 250)
+          .build());
+      for (boolean lambdaSearch : new boolean[]{false, true}) {
+        GLMParameters params = new GLMParameters(Family.gaussian);
+        params._train = fr._key;
+        params._response_column = "y";
+        params._weights_column = "w";
+        params._solver = Solver.IRLSM;
+        params._nfolds = 3;
+        params._seed = 42;
+        params._keep_cross_validation_models = true;
+        params._alpha = new double[]{0.5};
+        if (lambdaSearch) {
+          params._lambda_search = true;
+          params._nlambdas = 10;
+        } else {
+          params._lambda = new double[]{1e-2};
+        }
+        GLMModel actual = new GLM((GLMParameters) params.clone()).trainModel().get();
+        Scope.track_generic(actual);
+        GLMModel expected;
+        System.setProperty(GLM.CV_SUFFICIENT_STATS_DISABLED_PROP, "true");
+        try {
+          expected = new GLM((GLMParameters) params.clone()).trainModel().get();
+        } finally {
+          System.clearProperty(GLM.CV_SUFFICIENT_STATS_DISABLED_PROP);
+        }
+        Scope.track_generic(expected);
+        assertCoefficientsEqual(expected, actual);
+        for (int i = 0; i < params._nfolds; i++) {
+          GLMModel expectedCV = DKV.getGet(expected._output._cross_validation_models[i]);
+          GLMModel actualCV = DKV.getGet(actual._output._cross_validation_models[i]);
+          Scope.track_generic(expectedCV);
+          Scope.track_generic(actualCV);
+          assertCoefficientsEqual(expectedCV, actualCV);
+        }
+        assertEquals(expected._output._cross_validation_metrics.mse(), actual._output._cross_validation_metrics.mse(), 1e-8);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testGramColumnCacheMatchesIterationTask() {
+    Scope.enter();
+    DataInfo dinfo = null;
+    try {
+      Frame fr = Scope.track(makeWideGaussianFrame(400, 10, 0xCAC4E));
+      GLMParameters params = new GLMParameters(Family.gaussian);
+      dinfo = new DataInfo(fr, null, 1, true, TransformType.STANDARDIZE, DataInfo.TransformType.NONE, true, false, false, false, false, false);
+      final int P = dinfo.fullN();
+      GLMWeightsFun glmw = new GLMWeightsFun(params);
+      GramColumnCache cache = new GramColumnCache(dinfo);
+      int[][] activeSets = new int[][]{
+          {0, 6, P},
+          {0, 1, 6, 7, 8, P},
+          {1, 8, 9, P},        // columns 0, 6 and 7 leave, 9 is new
+          {0, 1, 6, 7, 8, P},  // everything is cached
+          null                 // all columns
+      };
+      int[] expectedPasses = new int[]{1, 2, 3, 3, 4};
+      Random rnd = new Random(1);
+      for (int s = 0; s < activeSets.length; s++) {
+        DataInfo activeData = activeSets[s] == null ? dinfo : dinfo.filterExpandedColumns(activeSets[s]);
+        double[] beta = new double[activeData.fullN() + 1];
+        for (int i = 0; i < beta.length; i++)
+          beta[i] = rnd.nextGaussian();
+        GLMSufficientStats.Derived actual = cache.gram(null, glmw, activeData, beta);
+        GLMIterationTask expected = new GLMIterationTask(null, activeData, glmw, beta).doAll(activeData._adaptedFrame);
+        assertEquals(expectedPasses[s], cache._passes);
+        double[][] expectedXX = expected._gram.getXX();
+        double[][] actualXX = actual._gram.getXX();
+        assertEquals(expectedXX.length, actualXX.length);
+        for (int i = 0; i < expectedXX.length; i++)
+          assertArrayEquals("active set " + s + ", row " + i, expectedXX[i], actualXX[i], 1e-8);
+        assertArrayEquals(expected._xy, actual._xy, 1e-8);
+        assertEquals(expected._yy, actual._yy, 1e-8);
+        assertEquals(expected._likelihood, actual._likelihood, 1e-6 * expected._likelihood);
+      }
+    } finally {
+      if (dinfo != null) dinfo.remove();
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testGramColumnCacheStartingWithoutCoefficients() {
+    Scope.enter();
+    DataInfo dinfo = null;
+    try {
+      Frame fr = Scope.track(makeWideGaussianFrame(300, 6, 0xB37A0));
+      GLMParameters params = new GLMParameters(Family.gaussian);
+      dinfo = new DataInfo(fr, null, 1, true, TransformType.STANDARDIZE, DataInfo.TransformType.NONE, true, false, false, false, false, false);
+      final int P = dinfo.fullN();
+      GLMWeightsFun glmw = new GLMWeightsFun(params);
+      GramColumnCache cache = new GramColumnCache(dinfo);
+      // the first lambda step of a lambda search has no coefficients yet
+      DataInfo first = dinfo.filterExpandedColumns(new int[]{0, 5, P});
+      GLMSufficientStats.Derived initial = cache.gram(null, glmw, first, null);
+      assertTrue(Double.isNaN(initial._likelihood));
+      int[][] activeSets = new int[][]{{0, 5, P}, {0, 2, 5, 7, P}};
+      Random rnd = new Random(7);
+      for (int[] activeSet : activeSets) {
+        DataInfo activeData = dinfo.filterExpandedColumns(activeSet);
+        double[] beta = new double[activeData.fullN() + 1];
+        for (int i = 0; i < beta.length; i++)
+          beta[i] = rnd.nextGaussian();
+        GLMSufficientStats.Derived actual = cache.gram(null, glmw, activeData, beta);
+        GLMIterationTask expected = new GLMIterationTask(null, activeData, glmw, beta).doAll(activeData._adaptedFrame);
+        assertArrayEquals(expected._xy, actual._xy, 1e-8);
+        assertEquals(expected._likelihood, actual._likelihood, 1e-6 * expected._likelihood);
+      }
+      assertEquals(2, cache._passes);
+    } finally {
+      if (dinfo != null) dinfo.remove();
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testGramColumnCacheOnLambdaPathMatchesFullGram() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(makeWideGaussianFrame(500, 30, 0x1A3BDA));
+      for (Solver solver : new Solver[]{Solver.IRLSM, Solver.COORDINATE_DESCENT}) {
+        GLMParameters params = new GLMParameters(Family.gaussian);
+        params._train = fr._key;
+        params._response_column = "y";
+        params._solver = solver;
+        params._alpha = new double[]{1};
+        params._lambda_search = true;
+        params._nlambdas = 20;
+        GLMModel actual = new GLM((GLMParameters) params.clone()).trainModel().get();
+        Scope.track_generic(actual);
+        GLMModel expected;
+        System.setProperty(GramColumnCache.DISABLED_PROP, "true");
+        try {
+          expected = new GLM((GLMParameters) params.clone()).trainModel().get();
+        } finally {
+          System.clearProperty(GramColumnCache.DISABLED_PROP);
+        }
+        Scope.track_generic(expected);
+        assertCoefficientsEqual(expected, actual);
+        assertEquals(expected._output._submodels.length, actual._output._submodels.length);
+        for (int i = 0; i < expected._output._submodels.length; i++)
+          assertArrayEquals(solver + " submodel " + i, expected._output._submodels[i].beta, actual._output._submodels[i].beta, 1e-6);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  // a categorical, nnums numeric predictors (only the first few are relevant) and a gaussian response "y"
+  private static Frame makeWideGaussianFrame(int nrows, int nnums, long seed) {
+    Random rnd = new Random(seed);
+    String[] cat = new String[nrows];
+    double[][] nums = new double[nnums][nrows];
+    double[] y = new double[nrows];
+    for (int r = 0; r < nrows; r++) {
+      cat[r] = "L" + rnd.nextInt(5);
+      y[r] = cat[r].charAt(1) + rnd.nextGaussian();
+      for (int c = 0; c < nnums; c++) {
+        nums[c][r] = rnd.nextInt(4) == 0 ? 0 : rnd.nextGaussian() * (c + 1);
+        y[r] += nums[c][r] / (1 + c * c);
+      }
+    }
+    String[] names = new String[nnums + 2];
+    byte[] types = new byte[nnums + 2];
+    names[0] = "c";
+    types[0] = Vec.T_CAT;
+    for (int c = 0; c < nnums; c++) {
+      names[c + 1] = "x" + c;
+      types[c + 1] = Vec.T_NUM;
+    }
+    names[nnums + 1] = "y";
+    types[nnums + 1] = Vec.T_NUM;
+    TestFrameBuilder builder = new TestFrameBuilder()
+        .withColNames(names)
+        .withVecTypes(types)
+        .withDataForCol(0, cat)
+        .withDataForCol(nnums + 1, y)
+        .withChunkLayout(nrows / 2, nrows - nrows / 2);
+    for (int c = 0; c < nnums; c++)
+      builder = builder.withDataForCol(c + 1, nums[c]);
+    return builder.build();
+  }
+
+  private static void assertCoefficientsEqual(GLMModel expected, GLMModel actual) {
+    HashMap<String, Double> expectedCoefs = expected.coefficients();
+    HashMap<String, Double> actualCoefs = actual.coefficients();
+    assertEquals(expectedCoefs.keySet(), actualCoefs.keySet());
+    for (String name : expectedCoefs.keySet())
+      assertEquals(expected._key + " " + name, expectedCoefs.get(name), actualCoefs.get(name), 1e-6);
+  }
 }
@@ -0,0 +1,204 @@
+package hex.gram;
+
+import hex.DataInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.H2O;
+import water.LocalMR;
+import water.MrFun;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GramTest extends TestUtil {
+
+  private static final int[] CATS = {5, 3}; // the first categorical is stored on the diagonal
+  private static final int NUMS = 100;
+
+  private static Frame _fr;
+  private static DataInfo _dinfo; // only used to instantiate rows
+
+  @BeforeClass
+  public static void setup() {
+    stall_till_cloudsize(1);
+    _fr = new TestFrameBuilder()
+        .withColNames("x")
+        .withVecTypes(Vec.T_NUM)
+        .withDataForCol(0, ard(1, 2))
+        .build();
+    _dinfo = new DataInfo(_fr, null, true, DataInfo.TransformType.NONE, false, false, false);
+  }
+
+  @AfterClass
+  public static void cleanup() {
+    if (_dinfo != null) _dinfo.remove();
+    if (_fr != null) _fr.remove();
+  }
+
+  @Test
+  public void testBlockedAccumulationMatchesRowByRow() {
+    for (int nrows : new int[]{1, Gram.BLOCK_ROWS, 3 * Gram.BLOCK_ROWS + 17}) {
+      Random rnd = new Random(0xC0FFEE + nrows);
+      Gram expected = makeGram();
+      Gram actual = makeGram();
+      for (int r = 0; r < nrows; r++) {
+        DataInfo.Row row = makeRow(rnd);
+        double w = rnd.nextInt(4) == 0 ? 0.5 : 1 + rnd.nextDouble();
+        expected.addRow(row, w);
+        actual.addRowBlocked(row, w);
+      }
+      actual.flushRows();
+      assertGramEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testBlockedAccumulationCanBeReduced() {
+    Random rnd = new Random(42);
+    Gram expected = makeGram();
+    Gram actual = makeGram();
+    Gram other = makeGram();
+    for (int r = 0; r < 200; r++) {
+      DataInfo.Row row = makeRow(rnd);
+      expected.addRow(row, 1);
+      (r % 2 == 0 ? actual : other).addRowBlocked(row, 1);
+    }
+    actual.flushRows();
+    other.flushRows();
+    actual.add(other);
+    assertGramEquals(expected, actual);
+  }
+
+  @Test
+  public void testSmallDenseBlockUsesRowByRowPath() {
+    Random rnd = new Random(7);
+    Gram expected = new Gram(10, 0, 10, 0, true);
+    Gram actual = new Gram(10, 0, 10, 0, true);
+    for (int r = 0; r < 10; r++) {
+      DataInfo.Row row = _dinfo.new Row(false, randomNums(rnd, 10), new int[0], new double[1], r, 0);
+      expected.addRow(row, 1);
+      actual.addRowBlocked(row, 1);
+    }
+    // nothing was buffered - no flush needed
+    assertGramEquals(expected, actual);
+  }
+
+  @Test
+  public void testDistributedCholeskyMatchesLocal() {
+    for (int panelSize : new int[]{1, 32, 301, 1000}) {
+      double[][] expected = randomSPD(new Random(panelSize), 301);
+      double[][] actual = new double[expected.length][];
+      for (int i = 0; i < expected.length; i++)
+        actual[i] = expected[i].clone();
+      assertTrue(Gram.InPlaceCholesky.decompose_2(expected, 10, 1).isSPD());
+      assertTrue(DistributedCholesky.decompose(actual, panelSize));
+      assertLowerEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void testDistributedCholeskyDetectsNonSPD() {
+    double[][] xx = randomSPD(new Random(1), 50);
+    xx[40][40] = -1;
+    assertFalse(DistributedCholesky.decompose(xx, 16));
+  }
+
+  @Test
+  public void testCholeskyUsesDistributedPathAboveThreshold() {
+    Random rnd = new Random(0xCAFE);
+    Gram gram = makeGram();
+    for (int r = 0; r < 500; r++)
+      gram.addRow(makeRow(rnd), 1);
+    gram.addDiag(1e-3); // dummy encoded categoricals and the intercept are collinear
+    double[] xy = randomNums(rnd, gram.fullN());
+    Gram.Cholesky expected = choleskyInFJ(gram);
+    double[] expectedSol = xy.clone();
+    expected.solve(expectedSol);
+    Gram.Cholesky actual;
+    try {
+      System.setProperty(DistributedCholesky.ENABLED_PROP, "true");
+      System.setProperty(DistributedCholesky.MIN_SIZE_PROP, String.valueOf(NUMS));
+      System.setProperty(DistributedCholesky.PANEL_SIZE_PROP, "16");
+      assertTrue(DistributedCholesky.useFor(gram.fullN() - CATS[0]));
+      actual = choleskyInFJ(gram);
+    } finally {
+      System.clearProperty(DistributedCholesky.ENABLED_PROP);
+      System.clearProperty(DistributedCholesky.MIN_SIZE_PROP);
+      System.clearProperty(DistributedCholesky.PANEL_SIZE_PROP);
+    }
+    assertEquals(expected.isSPD(), actual.isSPD());
+    assertLowerEquals(expected._xx, actual._xx);
+    double[] actualSol = xy.clone();
+    actual.solve(actualSol);
+    assertArrayEquals(expectedSol, actualSol, 1e-8);
+  }
+
+  // the local decomposition forks tasks, it has to be called from a F/J thread
+  private static Gram.Cholesky choleskyInFJ(final Gram gram) {
+    final Gram.Cholesky[] res = new Gram.Cholesky[1];
+    H2O.submitTask(new LocalMR(new MrFun() {
+      @Override
+      protected void map(int id) {
+        res[0] = gram.cholesky(null);
+      }
+    }, 1)).join();
+    return res[0];
+  }
+
+  private static double[][] randomSPD(Random rnd, int n) {
+    double[][] a = new double[n][n];
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        a[i][j] = rnd.nextGaussian();
+    double[][] xx = new double[n][];
+    for (int i = 0; i < n; i++) {
+      xx[i] = new double[i + 1];
+      for (int j = 0; j <= i; j++) {
+        double s = i == j ? n : 0;
+        for (int k = 0; k < n; k++)
+          s += a[i][k] * a[j][k];
+        xx[i][j] = s;
+      }
+    }
+    return xx;
+  }
+
+  private static void assertLowerEquals(double[][] expected, double[][] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++)
+      for (int j = 0; j <= i && j < expected[i].length; j++)
+        assertEquals("L[" + i + "][" + j + "]", expected[i][j], actual[i][j], 1e-10 * Math.max(1, Math.abs(expected[i][j])));
+  }
+
+  private static Gram makeGram() {
+    return new Gram(CATS[0] + CATS[1] + NUMS, CATS[0], NUMS, CATS.length, true);
+  }
+
+  private static DataInfo.Row makeRow(Random rnd) {
+    int[] bins = new int[]{rnd.nextInt(CATS[0]), CATS[0] + rnd.nextInt(CATS[1])};
+    return _dinfo.new Row(false, randomNums(rnd, NUMS), bins, new double[1], 0, 0);
+  }
+
+  private static double[] randomNums(Random rnd, int n) {
+    double[] nums = new double[n];
+    for (int i = 0; i < n; i++)
+      nums[i] = rnd.nextInt(5) == 0 ? 0 : rnd.nextGaussian();
+    return nums;
+  }
+
+  private static void assertGramEquals(Gram expected, Gram actual) {
+    assertArrayEquals(expected._diag, actual._diag, 0);
+    assertEquals(expected._xx.length, actual._xx.length);
+    for (int i = 0; i < expected._xx.length; i++)
+      for (int j = 0; j < expected._xx[i].length; j++)
+        assertEquals("xx[" + i + "][" + j + "]", expected._xx[i][j], actual._xx[i][j],
+            1e-12 * Math.max(1, Math.abs(expected._xx[i][j])));
+  }
+
+}
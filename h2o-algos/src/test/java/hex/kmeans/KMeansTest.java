@@ -10,8 +10,11 @@ import water.Key;
 import water.Scope;
 import water.TestUtil;
 import water.exceptions.H2OModelBuilderIllegalArgumentException;
+import water.fvec.Chunk;
 import water.fvec.Frame;
 import water.fvec.NFSFileVec;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
 import water.parser.ParseDataset;
 import water.util.*;
 
@@ -684,4 +687,182 @@ public class KMeansTest extends TestUtil {
     }
   }
 
+  @Test public void testTriangleInequalityBoundsGiveSameModel() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(makeBlobsFrame(3000, 40, 4, 0xB10B5));
+      for (boolean estimateK : new boolean[]{false, true}) {
+        KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+        parms._train = fr._key;
+        parms._k = estimateK ? 10 : 60;
+        parms._estimate_k = estimateK;
+        parms._standardize = true;
+        parms._max_iterations = 50;
+        parms._init = KMeans.Initialization.Furthest;
+        parms._seed = 1234;
+
+        KMeansModel withBounds = new KMeans((KMeansModel.KMeansParameters) parms.clone()).trainModel().get();
+        Scope.track_generic(withBounds);
+        KMeansModel noBounds;
+        System.setProperty(KMeans.TRIANGLE_INEQUALITY_DISABLED_PROP, "true");
+        try {
+          noBounds = new KMeans((KMeansModel.KMeansParameters) parms.clone()).trainModel().get();
+          Scope.track_generic(noBounds);
+        } finally {
+          System.clearProperty(KMeans.TRIANGLE_INEQUALITY_DISABLED_PROP);
+        }
+        assertTrue(noBounds._output._iterations > 2);
+        assertEquals(noBounds._output._iterations, withBounds._output._iterations);
+        assertArrayEquals(noBounds._output._k, withBounds._output._k);
+        assertArrayEquals(noBounds._output._size, withBounds._output._size);
+        assertArrayEquals(noBounds._output._reassigned_count, withBounds._output._reassigned_count, 0);
+        assertArrayEquals(noBounds._output._withinss, withBounds._output._withinss, 0);
+        assertEquals(noBounds._output._centers_raw.length, withBounds._output._centers_raw.length);
+        for (int i = 0; i < noBounds._output._centers_raw.length; i++)
+          assertArrayEquals(noBounds._output._centers_raw[i], withBounds._output._centers_raw[i], 0);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testTriangleInequalityBoundsOnlyWrittenOnFullScan() {
+    Vec lowerBounds = Vec.makeCon(9.0, 1);
+    try {
+      final String[][] isCats = new String[2][];
+      final double[][] centers = new double[][]{{0, 0}, {10, 0}};
+      final double[] point = new double[]{1, 0};
+      KMeans.CenterBounds first = new KMeans.CenterBounds(null, centers, isCats, null);
+      KMeans.ClusterDist cd = new KMeans.ClusterDist();
+      Chunk c = lowerBounds.chunkForChunkIdx(0);
+      assertFalse(first.closestAssigned(centers, point, isCats, 0, c, 0, cd));
+
+      // both centers move by 0.5, the bound of the row (9) decreases by 0.5 and still holds
+      final double[][] moved = new double[][]{{0.5, 0}, {10, 0.5}};
+      KMeans.CenterBounds second = new KMeans.CenterBounds(centers, moved, isCats, first);
+      assertArrayEquals(new double[]{0.5, 0.5}, second._offsets, 1e-12);
+      assertTrue(second.closestAssigned(moved, point, isCats, 0, c, 0, cd));
+      assertEquals(0, cd._cluster);
+      assertNull("the bound must not be written if it was not recomputed", c.chk2());
+
+      // full scan stores the new bound plus the offset of the closest center
+      second.closest(moved, point, isCats, c, 0, cd);
+      assertNotNull(c.chk2());
+      assertEquals(Math.sqrt(81 + 0.25) + 0.5, c.atd(0), 1e-12);
+    } finally {
+      lowerBounds.remove();
+    }
+  }
+
+  @Test public void testMiniBatch() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(makeBlobsFrame(20000, 8, 4, 0x5EED));
+      KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+      parms._train = fr._key;
+      parms._k = 8;
+      parms._standardize = true;
+      parms._max_iterations = 50;
+      parms._init = KMeans.Initialization.PlusPlus;
+      parms._seed = 42;
+      KMeansModel full = new KMeans((KMeansModel.KMeansParameters) parms.clone()).trainModel().get();
+      Scope.track_generic(full);
+
+      parms._mini_batch_fraction = 0.02;
+      KMeansModel miniBatch = new KMeans((KMeansModel.KMeansParameters) parms.clone()).trainModel().get();
+      Scope.track_generic(miniBatch);
+      assertEquals(8, miniBatch._output._centers_raw.length);
+      assertEquals(fr.numRows(), ArrayUtils.sum(miniBatch._output._size));
+      assertEquals(full._output._totss, miniBatch._output._totss, 1e-6 * full._output._totss);
+      assertTrue(miniBatch._output._tot_withinss <= 1.1 * full._output._tot_withinss);
+      ModelMetricsClustering mm = (ModelMetricsClustering) miniBatch._output._training_metrics;
+      assertEquals(miniBatch._output._tot_withinss, mm._tot_withinss, 1e-6 * mm._tot_withinss);
+      Frame pred = Scope.track(miniBatch.score(fr));
+      assertTrue(miniBatch.testJavaScoring(fr, pred, 1e-15));
+
+      // statistics estimated from the last mini-batch
+      parms._mini_batch_final_pass = false;
+      KMeansModel estimated = new KMeans((KMeansModel.KMeansParameters) parms.clone()).trainModel().get();
+      Scope.track_generic(estimated);
+      assertEquals(fr.numRows(), ArrayUtils.sum(estimated._output._size), 8);
+      assertEquals(full._output._tot_withinss, estimated._output._tot_withinss, 0.5 * full._output._tot_withinss);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testMiniBatchEmptyBatchesCountAsIterations() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(makeBlobsFrame(30, 2, 2, 0xE3B7));
+      KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+      parms._train = fr._key;
+      parms._k = 2;
+      parms._max_iterations = 20;
+      parms._seed = 42;
+      parms._mini_batch_fraction = 1e-9; // the mini-batches are (almost surely) empty
+      KMeansModel model = new KMeans(parms).trainModel().get();
+      Scope.track_generic(model);
+      assertEquals(parms._max_iterations, model._output._iterations); // the final pass is not an iteration
+      assertEquals(fr.numRows(), ArrayUtils.sum(model._output._size));
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test public void testMiniBatchEmptyBatchesWithoutFinalPass() {
+    Scope.enter();
+    try {
+      Frame fr = Scope.track(makeBlobsFrame(30, 2, 2, 0xE3B7));
+      KMeansModel.KMeansParameters parms = new KMeansModel.KMeansParameters();
+      parms._train = fr._key;
+      parms._k = 2;
+      parms._max_iterations = 5;
+      parms._seed = 42;
+      parms._mini_batch_fraction = 1e-9; // the mini-batches are (almost surely) empty
+      parms._mini_batch_final_pass = false;
+      KMeansModel model = new KMeans(parms).trainModel().get();
+      Scope.track_generic(model);
+      assertEquals(parms._max_iterations, model._output._iterations);
+      // nothing to estimate the statistics from, the final pass is done anyway
+      assertNotNull(model._output._training_metrics);
+      assertEquals(fr.numRows(), ArrayUtils.sum(model._output._size));
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  // Gaussian blobs in numeric columns plus a categorical column correlated with the blob
+  private static Frame makeBlobsFrame(int nrows, int nblobs, int ncols, long seed) {
+    Random rnd = new Random(seed);
+    double[][] blobs = new double[nblobs][ncols];
+    for (double[] blob : blobs)
+      for (int c = 0; c < ncols; c++)
+        blob[c] = 10 * rnd.nextDouble();
+    double[][] data = new double[ncols][nrows];
+    String[] cat = new String[nrows];
+    for (int r = 0; r < nrows; r++) {
+      int b = rnd.nextInt(nblobs);
+      for (int c = 0; c < ncols; c++)
+        data[c][r] = blobs[b][c] + rnd.nextGaussian();
+      cat[r] = "L" + (rnd.nextInt(4) == 0 ? rnd.nextInt(5) : b % 5);
+    }
+    String[] names = new String[ncols + 1];
+    byte[] types = new byte[ncols + 1];
+    for (int c = 0; c < ncols; c++) {
+      names[c] = "x" + c;
+      types[c] = Vec.T_NUM;
+    }
+    names[ncols] = "c";
+    types[ncols] = Vec.T_CAT;
+    TestFrameBuilder builder = new TestFrameBuilder()
+        .withColNames(names)
+        .withVecTypes(types)
+        .withDataForCol(ncols, cat)
+        .withChunkLayout(nrows / 3, nrows / 3, nrows - 2 * (nrows / 3));
+    for (int c = 0; c < ncols; c++)
+      builder = builder.withDataForCol(c, data[c]);
+    return builder.build();
+  }
+
 }
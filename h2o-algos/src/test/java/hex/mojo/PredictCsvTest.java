@@ -1,5 +1,6 @@
 package hex.mojo;
 
+import hex.genmodel.GenModel;
 import hex.genmodel.tools.PredictCsv;
 import hex.tree.gbm.GBM;
 import hex.tree.gbm.GBMModel;
@@ -10,6 +11,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import water.Scope;
 import water.TestUtil;
+import water.util.ArrayUtils;
 import water.fvec.Frame;
 
 
@@ -17,7 +19,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.security.Permission;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -140,6 +145,56 @@ public class PredictCsvTest extends TestUtil{
   }
 
 
+  @Test
+  public void testParallelScoringGivesIdenticalOutput() throws Exception {
+    try {
+      Scope.enter();
+      // several chunks of rows, with missing values and categorical levels unseen in training
+      final File inputFile = folder.newFile("input.csv");
+      Random rnd = new Random(0xC5F);
+      try (PrintWriter w = new PrintWriter(inputFile)) {
+        w.println("x1,x2,cat,y");
+        for (int i = 0; i < 15000; i++) {
+          double x1 = rnd.nextGaussian();
+          int cat = rnd.nextInt(i < 1000 ? 4 : 6);
+          w.print(rnd.nextInt(50) == 0 ? "NA" : String.valueOf(x1));
+          w.print(',');
+          w.print(rnd.nextDouble() * 100);
+          w.print(',');
+          w.print("L" + cat);
+          w.print(',');
+          w.println(x1 + cat + rnd.nextGaussian() > 1.5 ? "yes" : "no");
+        }
+      }
+      Frame train = Scope.track(TestUtil.parse_test_file(inputFile.getAbsolutePath()));
+
+      GBMModel.GBMParameters p = new GBMModel.GBMParameters();
+      p._train = train._key;
+      p._seed = 0xC0DE;
+      p._response_column = "y";
+      p._ntrees = 5;
+
+      GBMModel model = new GBM(p).trainModel().get();
+      Scope.track_generic(model);
+      GenModel mojo = model.toMojo();
+
+      for (String[] format : new String[][]{{"--decimal"}, {}}) {
+        final File serialOutput = folder.newFile();
+        PredictCsv.make(ArrayUtils.append(new String[]{"--embedded", "--input", inputFile.getAbsolutePath(),
+                "--output", serialOutput.getAbsolutePath()}, format), mojo).run();
+        final File parallelOutput = folder.newFile();
+        PredictCsv.make(ArrayUtils.append(new String[]{"--embedded", "--input", inputFile.getAbsolutePath(),
+                "--output", parallelOutput.getAbsolutePath(), "--threads", "3"}, format), mojo).run();
+
+        final byte[] expected = Files.readAllBytes(serialOutput.toPath());
+        assertEquals(train.numRows() + 1, new String(expected).split("\n").length);
+        assertArrayEquals(expected, Files.readAllBytes(parallelOutput.toPath()));
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
   protected static class PreventedExitException extends SecurityException {
     public final int status;
 
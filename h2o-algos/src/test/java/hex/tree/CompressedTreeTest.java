@@ -13,9 +13,11 @@ import water.DKV;
 import water.Scope;
 import water.TestUtil;
 import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
 import water.fvec.Vec;
 
 import java.io.IOException;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -106,6 +108,65 @@ public class CompressedTreeTest extends TestUtil  {
     }
   }
 
+  @Test
+  public void testFlatTreeScoreMatchesByteTree() {
+    try {
+      Scope.enter();
+      Frame f = makeMixedFrame(1000, 0xF1A7);
+      GBMModel.GBMParameters gbmParams = new GBMModel.GBMParameters();
+      gbmParams._seed = 123;
+      gbmParams._train = f._key;
+      gbmParams._response_column = "y";
+      gbmParams._ntrees = 10;
+      gbmParams._max_depth = 6;
+      GBMModel model = (GBMModel) Scope.track_generic(new GBM(gbmParams).trainModel().get());
+
+      double[][] data = frameToMatrix(f);
+      for (int i = 0; i < gbmParams._ntrees; i++) {
+        CompressedTree tree = model._output._treeKeys[i][0].get();
+        assertNotNull(tree);
+        for (double[] row : data) {
+          double expected = SharedTreeMojoModel.scoreTree(tree._bits, row, false, model._output._domains);
+          assertEquals(expected, tree.score(row, model._output._domains), 0);
+        }
+        // unseen categorical level
+        double[] row = data[0].clone();
+        row[0] = 42;
+        assertEquals(SharedTreeMojoModel.scoreTree(tree._bits, row, false, model._output._domains),
+                tree.score(row, model._output._domains), 0);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  // categorical column with many levels (bitset splits), numeric columns with NAs and a numeric response
+  private static Frame makeMixedFrame(int nrows, long seed) {
+    Random rnd = new Random(seed);
+    String[] levels = new String[40];
+    for (int l = 0; l < levels.length; l++)
+      levels[l] = "L" + l;
+    String[] cat = new String[nrows];
+    double[] x1 = new double[nrows];
+    double[] x2 = new double[nrows];
+    double[] y = new double[nrows];
+    for (int r = 0; r < nrows; r++) {
+      int level = rnd.nextInt(levels.length);
+      cat[r] = rnd.nextInt(20) == 0 ? null : levels[level];
+      x1[r] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextGaussian();
+      x2[r] = rnd.nextDouble();
+      y[r] = (level % 7) + (Double.isNaN(x1[r]) ? 5 : x1[r]) + 2 * x2[r] + rnd.nextGaussian() * 0.1;
+    }
+    return new TestFrameBuilder()
+            .withColNames("cat", "x1", "x2", "y")
+            .withVecTypes(Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+            .withDataForCol(0, cat)
+            .withDataForCol(1, x1)
+            .withDataForCol(2, x2)
+            .withDataForCol(3, y)
+            .build();
+  }
+
   private static double[][] frameToMatrix(Frame f) {
     double[][] rows = new double[(int) f.numRows()][];
     for (int r = 0; r < rows.length; r++) {
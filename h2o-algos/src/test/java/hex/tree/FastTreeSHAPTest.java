@@ -0,0 +1,197 @@
+package hex.tree;
+
+import hex.genmodel.MojoModel;
+import hex.genmodel.algos.tree.ContributionsPredictor;
+import hex.genmodel.algos.tree.FastTreeSHAP;
+import hex.genmodel.algos.tree.SharedTreeMojoModelWithContributions;
+import hex.genmodel.algos.tree.SharedTreeNode;
+import hex.genmodel.algos.tree.SharedTreeSubgraph;
+import hex.genmodel.algos.tree.TreeSHAP;
+import hex.tree.gbm.GBM;
+import hex.tree.gbm.GBMModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Key;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FastTreeSHAPTest extends TestUtil {
+
+  private static final int N_FEATURES = 14;
+
+  @BeforeClass
+  public static void setup() {
+    stall_till_cloudsize(1);
+  }
+
+  @Test
+  public void testShallowTreesArePrecomputed() {
+    Scope.enter();
+    try {
+      GBMModel gbm = trainGbm(makeFrame(1000, 0xFA57), 5, 4);
+      double[][] rows = toRows(gbm);
+      for (int t = 0; t < gbm._output._ntrees; t++) {
+        SharedTreeNode[] nodes = treeNodes(gbm, t);
+        FastTreeSHAP<double[], SharedTreeNode, SharedTreeNode> fast = new FastTreeSHAP<>(nodes, nodes, 0);
+        assertEquals(fast.getNumPaths(), fast.getNumPrecomputedPaths());
+        checkSameContributions(nodes, fast, rows, 1e-5);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testPrecomputedWeightsAreLimitedPerModel() {
+    assertEquals(1 << 16, FastTreeSHAP.precomputedWeightsLimit(1));
+    assertEquals((1 << 22) / 1000, FastTreeSHAP.precomputedWeightsLimit(1000));
+    System.setProperty(FastTreeSHAP.MAX_MODEL_PRECOMPUTED_WEIGHTS_PROP, "0");
+    try {
+      assertEquals(0, FastTreeSHAP.precomputedWeightsLimit(10));
+    } finally {
+      System.clearProperty(FastTreeSHAP.MAX_MODEL_PRECOMPUTED_WEIGHTS_PROP);
+    }
+    Scope.enter();
+    try {
+      GBMModel gbm = trainGbm(makeFrame(1000, 0x11A7), 3, 4);
+      double[][] rows = toRows(gbm);
+      for (int t = 0; t < gbm._output._ntrees; t++) {
+        SharedTreeNode[] nodes = treeNodes(gbm, t);
+        FastTreeSHAP<double[], SharedTreeNode, SharedTreeNode> fast = new FastTreeSHAP<>(nodes, nodes, 0, 0);
+        assertEquals(0, fast.getNumPrecomputedPaths());
+        checkSameContributions(nodes, fast, rows, 1e-5);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testDeepTreesAreEvaluatedOnTheFly() {
+    Scope.enter();
+    try {
+      GBMModel gbm = trainGbm(makeFrame(1000, 0xDEE9), 3, 20);
+      double[][] rows = toRows(gbm);
+      boolean hasLongPaths = false;
+      for (int t = 0; t < gbm._output._ntrees; t++) {
+        SharedTreeNode[] nodes = treeNodes(gbm, t);
+        FastTreeSHAP<double[], SharedTreeNode, SharedTreeNode> fast = new FastTreeSHAP<>(nodes, nodes, 0);
+        hasLongPaths |= fast.getNumPrecomputedPaths() < fast.getNumPaths();
+        // deep paths accumulate more floating point rounding differences
+        checkSameContributions(nodes, fast, rows, 1e-4);
+      }
+      assertTrue(hasLongPaths);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testBatchContributionsMatchInClusterContributions() throws Exception {
+    Scope.enter();
+    try {
+      Frame fr = makeFrame(1500, 0xBA7C);
+      GBMModel gbm = trainGbm(fr, 10, 6);
+      Frame contributions = Scope.track(gbm.scoreContributions(fr, Key.<Frame>make()));
+
+      MojoModel mojo = gbm.toMojo();
+      ContributionsPredictor<?> predictor = (ContributionsPredictor<?>)
+              ((SharedTreeMojoModelWithContributions) mojo).makeContributionsPredictor();
+      double[][] rows = toRows(gbm);
+      float[][] batch = predictor.calculateContributions(rows, rows.length, new float[rows.length][N_FEATURES + 1]);
+      for (int r = 0; r < rows.length; r++) {
+        float[] single = predictor.calculateContributions(rows[r]);
+        assertArrayEquals(single, batch[r], 0);
+        for (int c = 0; c < contributions.numCols(); c++) {
+          assertEquals(contributions.vec(c).at(r), batch[r][c], 0);
+        }
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  private static void checkSameContributions(SharedTreeNode[] nodes,
+                                             FastTreeSHAP<double[], SharedTreeNode, SharedTreeNode> fast,
+                                             double[][] rows, double tolerance) {
+    TreeSHAP<double[], SharedTreeNode, SharedTreeNode> reference = new TreeSHAP<>(nodes, nodes, 0);
+    Object fastWs = fast.makeWorkspace();
+    Object refWs = reference.makeWorkspace();
+    for (double[] row : rows) {
+      float[] expected = reference.calculateContributions(row, new float[N_FEATURES + 1], 0, -1, refWs);
+      float[] actual = fast.calculateContributions(row, new float[N_FEATURES + 1], 0, -1, fastWs);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i], actual[i], tolerance * Math.max(1, Math.abs(expected[i])));
+      }
+    }
+  }
+
+  private static SharedTreeNode[] treeNodes(GBMModel gbm, int tree) {
+    SharedTreeSubgraph sg = gbm.getSharedTreeSubgraph(tree, 0);
+    return sg.nodesArray.toArray(new SharedTreeNode[0]);
+  }
+
+  private static GBMModel trainGbm(Frame fr, int ntrees, int maxDepth) {
+    GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+    parms._train = fr._key;
+    parms._response_column = "y";
+    parms._ntrees = ntrees;
+    parms._max_depth = maxDepth;
+    parms._min_rows = 1;
+    parms._seed = 42;
+    return (GBMModel) Scope.track_generic(new GBM(parms).trainModel().get());
+  }
+
+  private static double[][] toRows(GBMModel gbm) {
+    Frame fr = gbm._parms.train();
+    double[][] rows = new double[(int) fr.numRows()][N_FEATURES];
+    for (int c = 0; c < N_FEATURES; c++) {
+      Vec v = fr.vec(c);
+      for (int r = 0; r < rows.length; r++)
+        rows[r][c] = v.at(r);
+    }
+    return rows;
+  }
+
+  // categorical column, numeric columns with NAs and a numeric response depending on all of them
+  private static Frame makeFrame(int nrows, long seed) {
+    Random rnd = new Random(seed);
+    String[] levels = {"a", "b", "c", "d", "e", "f"};
+    String[] names = new String[N_FEATURES + 1];
+    byte[] types = new byte[N_FEATURES + 1];
+    for (int c = 0; c < N_FEATURES; c++) {
+      names[c] = "x" + c;
+      types[c] = c == 0 ? Vec.T_CAT : Vec.T_NUM;
+    }
+    names[N_FEATURES] = "y";
+    types[N_FEATURES] = Vec.T_NUM;
+    String[] cat = new String[nrows];
+    double[][] num = new double[N_FEATURES + 1][nrows];
+    for (int r = 0; r < nrows; r++) {
+      int level = rnd.nextInt(levels.length);
+      cat[r] = levels[level];
+      double y = level;
+      for (int c = 1; c < N_FEATURES; c++) {
+        double x = rnd.nextGaussian();
+        num[c][r] = rnd.nextInt(25) == 0 ? Double.NaN : x;
+        y += c * x * (x > 0 ? 1 : -0.5);
+      }
+      num[N_FEATURES][r] = y + rnd.nextGaussian() * 0.1;
+    }
+    TestFrameBuilder builder = new TestFrameBuilder()
+            .withColNames(names)
+            .withVecTypes(types)
+            .withDataForCol(0, cat);
+    for (int c = 1; c <= N_FEATURES; c++)
+      builder.withDataForCol(c, num[c]);
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,132 @@
+package hex.tree;
+
+import hex.tree.gbm.GBM;
+import hex.tree.gbm.GBMModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FeatureBundlesTest extends TestUtil {
+
+  private static final int N_GROUPS = 3;
+  private static final int N_LEVELS = 25;
+
+  @BeforeClass
+  public static void setup() {
+    stall_till_cloudsize(1);
+  }
+
+  @Test
+  public void testFindBundlesOfOneHotColumns() {
+    Scope.enter();
+    try {
+      Frame fr = makeOneHotFrame(2000, 42);
+      FeatureBundles fb = FeatureBundles.findBundles(fr, fr.numCols() - 1, 0.1, 256);
+      assertNotNull(fb);
+      // columns of each one-hot group are mutually exclusive, columns from different groups are not
+      assertEquals(N_GROUPS, fb.numBundles());
+      for (int b = 0; b < fb.numBundles(); b++) {
+        Set<Integer> groups = new HashSet<>();
+        for (int c : fb.bundle(b))
+          groups.add(c / N_LEVELS);
+        assertEquals(1, groups.size());
+        assertEquals(N_LEVELS, fb.bundle(b).length);
+      }
+      // dense column is never bundled
+      assertEquals(-1, fb.bundleOf(N_GROUPS * N_LEVELS));
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testFindBundlesRespectsMaxBundleSize() {
+    Scope.enter();
+    try {
+      Frame fr = makeOneHotFrame(2000, 42);
+      FeatureBundles fb = FeatureBundles.findBundles(fr, fr.numCols() - 1, 0.1, 10);
+      assertNotNull(fb);
+      for (int b = 0; b < fb.numBundles(); b++)
+        assertTrue(fb.bundle(b).length <= 10);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testGBMWithFeatureBundlesMatchesGBMWithout() {
+    Scope.enter();
+    try {
+      Frame fr = makeOneHotFrame(5000, 0xCAFE);
+
+      GBMModel.GBMParameters parms = new GBMModel.GBMParameters();
+      parms._train = fr._key;
+      parms._response_column = "y";
+      parms._ntrees = 5;
+      parms._max_depth = 4;
+      parms._seed = 1234;
+
+      GBMModel reference = new GBM(parms).trainModel().get();
+      Scope.track_generic(reference);
+
+      GBMModel bundled;
+      System.setProperty(FeatureBundles.ENABLED_PROP, "true");
+      try {
+        bundled = new GBM(parms).trainModel().get();
+        Scope.track_generic(bundled);
+      } finally {
+        System.clearProperty(FeatureBundles.ENABLED_PROP);
+      }
+
+      Frame refPreds = Scope.track(reference.score(fr));
+      Frame bundledPreds = Scope.track(bundled.score(fr));
+      assertVecEquals(refPreds.vec(0), bundledPreds.vec(0), 1e-5);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  // N_GROUPS one-hot encoded categoricals, a dense numeric column and a numeric response
+  private static Frame makeOneHotFrame(int nrows, long seed) {
+    Random rnd = new Random(seed);
+    int ncols = N_GROUPS * N_LEVELS + 1;
+    double[][] data = new double[ncols + 1][nrows];
+    for (int r = 0; r < nrows; r++) {
+      double y = 0;
+      for (int g = 0; g < N_GROUPS; g++) {
+        int level = rnd.nextInt(N_LEVELS);
+        data[g * N_LEVELS + level][r] = 1;
+        y += (g + 1) * (level % 5);
+      }
+      double x = rnd.nextDouble();
+      data[ncols - 1][r] = x;
+      data[ncols][r] = y + 3 * x + rnd.nextGaussian() * 0.1;
+    }
+    String[] names = new String[ncols + 1];
+    byte[] types = new byte[ncols + 1];
+    for (int c = 0; c < ncols; c++) {
+      names[c] = "x" + c;
+      types[c] = Vec.T_NUM;
+    }
+    names[ncols] = "y";
+    types[ncols] = Vec.T_NUM;
+    TestFrameBuilder builder = new TestFrameBuilder()
+            .withColNames(names)
+            .withVecTypes(types)
+            .withChunkLayout(nrows / 4, nrows / 4, nrows / 4, nrows - 3 * (nrows / 4));
+    for (int c = 0; c <= ncols; c++)
+      builder.withDataForCol(c, data[c]);
+    return builder.build();
+  }
+
+}
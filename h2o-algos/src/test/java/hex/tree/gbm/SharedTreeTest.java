@@ -14,7 +14,10 @@ import water.fvec.Frame;
 import water.fvec.TestFrameBuilder;
 import water.fvec.Vec;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
@@ -110,6 +113,67 @@ public class SharedTreeTest extends TestUtil  {
     }
   }
 
+  @Test
+  public void testFlatBigScoreMatchesRowScoring() {
+    Scope.enter();
+    try {
+      final int nrows = 1000;
+      Random rnd = new Random(42);
+      String[] cat = new String[nrows];
+      double[] num1 = new double[nrows];
+      double[] num2 = new double[nrows];
+      String[] binomial = new String[nrows];
+      String[] multinomial = new String[nrows];
+      double[] regression = new double[nrows];
+      for (int i = 0; i < nrows; i++) {
+        cat[i] = rnd.nextInt(10) == 0 ? null : "L" + rnd.nextInt(7);
+        num1[i] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextGaussian();
+        num2[i] = rnd.nextInt(20);
+        binomial[i] = num1[i] > 0 ^ rnd.nextInt(5) == 0 ? "Y" : "N";
+        multinomial[i] = "C" + ((int) num2[i] + rnd.nextInt(3)) % 3;
+        regression[i] = num2[i] + (Double.isNaN(num1[i]) ? 0 : 3 * num1[i]) + rnd.nextGaussian();
+      }
+      Frame frame = Scope.track(new TestFrameBuilder()
+              .withColNames("Cat", "Num1", "Num2", "Binomial", "Multinomial", "Regression")
+              .withVecTypes(Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_CAT, Vec.T_CAT, Vec.T_NUM)
+              .withDataForCol(0, cat)
+              .withDataForCol(1, num1)
+              .withDataForCol(2, num2)
+              .withDataForCol(3, binomial)
+              .withDataForCol(4, multinomial)
+              .withDataForCol(5, regression)
+              .withChunkLayout(300, 300, 300, 100) // chunks span multiple scoring blocks
+              .build());
+
+      List<String> responses = Arrays.asList("Binomial", "Multinomial", "Regression");
+      for (String response : responses) {
+        List<String> ignored = new ArrayList<>(responses);
+        ignored.remove(response);
+        SharedTreeModel.SharedTreeParameters parms = (SharedTreeModel.SharedTreeParameters) _parms.clone();
+        parms._train = frame._key;
+        parms._response_column = response;
+        parms._ignored_columns = ignored.toArray(new String[0]);
+        parms._ntrees = 10;
+        parms._max_depth = 4;
+        parms._seed = 42;
+        SharedTreeModel model = (SharedTreeModel) ModelBuilder.make(parms).trainModel().get();
+        Scope.track_generic(model);
+
+        Frame flatScored = Scope.track(model.score(frame));
+        Frame rowScored;
+        System.setProperty(SharedTreeModel.FLAT_BIG_SCORE_DISABLED_PROP, "true");
+        try {
+          rowScored = Scope.track(model.score(frame));
+        } finally {
+          System.clearProperty(SharedTreeModel.FLAT_BIG_SCORE_DISABLED_PROP);
+        }
+        assertFrameEquals(rowScored, flatScored, 0);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
   private TestFrameBuilder twoVecFrameBuilder() {
     return new TestFrameBuilder()
           .withColNames("F", "Response")
@@ -15,6 +15,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import water.DKV;
+import water.H2O;
 import water.Scope;
 import water.TestUtil;
 import water.exceptions.H2OIllegalArgumentException;
@@ -83,6 +84,132 @@ public class IsolationForestTest extends TestUtil {
     }
   }
 
+  @Test
+  public void testLocalTrees() {
+    try {
+      Scope.enter();
+      Frame train = Scope.track(makeFrameWithOutliers(5000, 50, 0xF00D));
+
+      IsolationForestModel.IsolationForestParameters p = new IsolationForestModel.IsolationForestParameters();
+      p._train = train._key;
+      p._ignored_columns = new String[]{"outlier"};
+      p._seed = 0xDECAF;
+      p._ntrees = 50;
+      p._sample_size = 128;
+
+      IsolationForestModel distributed = new IsolationForest((IsolationForestModel.IsolationForestParameters) p.clone())
+              .trainModel().get();
+      Scope.track_generic(distributed);
+      IsolationForestModel local;
+      System.setProperty(IsolationForest.LOCAL_TREES_ENABLED_PROP, "true");
+      try {
+        local = new IsolationForest(p).trainModel().get();
+        Scope.track_generic(local);
+      } finally {
+        System.clearProperty(IsolationForest.LOCAL_TREES_ENABLED_PROP);
+      }
+      assertEquals(50, local._output._ntrees);
+      assertTrue(local._output._min_path_length < local._output._max_path_length);
+      assertTrue(local._output._treeStats._max_depth <= 8);
+      int nSplits = 0;
+      for (int t = 0; t < local._output._ntrees; t++) {
+        SharedTreeSubgraph tree = local.getSharedTreeSubgraph(t, 0);
+        for (SharedTreeNode node : tree.nodesArray)
+          if (!node.isLeaf()) nSplits++;
+      }
+      assertEquals(nSplits, ArrayUtils.sum(local._output._var_splits._splitCounts));
+
+      Frame localPreds = Scope.track(local.score(train));
+      assertTrue(local.testJavaScoring(train, localPreds, 1e-8));
+      Frame distributedPreds = Scope.track(distributed.score(train));
+      // both models rank the outliers above the regular observations
+      Vec outlier = train.vec("outlier");
+      assertTrue(meanScore(localPreds.vec("predict"), outlier, 1) > meanScore(localPreds.vec("predict"), outlier, 0) + 0.1);
+      assertTrue(meanScore(distributedPreds.vec("predict"), outlier, 1) > meanScore(distributedPreds.vec("predict"), outlier, 0) + 0.1);
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testLocalTreesScoredAtBatchBoundaries() {
+    try {
+      Scope.enter();
+      Frame train = Scope.track(makeFrameWithOutliers(2000, 20, 0xBA7C));
+
+      IsolationForestModel.IsolationForestParameters p = new IsolationForestModel.IsolationForestParameters();
+      p._train = train._key;
+      p._ignored_columns = new String[]{"outlier"};
+      p._seed = 0xDECAF;
+      p._ntrees = 20;
+      p._sample_size = 64;
+      p._score_tree_interval = 5;
+      IsolationForestModel.IsolationForestParameters pEach = (IsolationForestModel.IsolationForestParameters) p.clone();
+      pEach._score_tree_interval = 0;
+      pEach._score_each_iteration = true;
+
+      IsolationForestModel interval, each;
+      System.setProperty(IsolationForest.LOCAL_TREES_ENABLED_PROP, "true");
+      try {
+        interval = new IsolationForest(p).trainModel().get();
+        Scope.track_generic(interval);
+        each = new IsolationForest(pEach).trainModel().get();
+        Scope.track_generic(each);
+      } finally {
+        System.clearProperty(IsolationForest.LOCAL_TREES_ENABLED_PROP);
+      }
+      // batches end where the model is scored
+      for (int t = 5; t <= 20; t += 5)
+        assertFalse(Double.isNaN(interval._output._scored_train[t]._anomaly_score));
+      // the model is only scored once it holds all trees of a batch
+      final int batchSize = 8 * H2O.NUMCPUS;
+      for (int t = 1; t <= 20; t++) {
+        ScoreKeeper sk = each._output._scored_train[t];
+        assertEquals(t % batchSize != 0 && t != 20, Double.isNaN(sk._anomaly_score));
+        if (!Double.isNaN(sk._anomaly_score))
+          assertTrue(sk._anomaly_score_normalized >= 0 && sk._anomaly_score_normalized <= 1);
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  private static double meanScore(Vec score, Vec outlier, int flag) {
+    double sum = 0;
+    int n = 0;
+    for (long i = 0; i < score.length(); i++) {
+      if (outlier.at8(i) != flag) continue;
+      sum += score.at(i);
+      n++;
+    }
+    return sum / n;
+  }
+
+  // regular observations form a cluster, outliers are far away in the numeric columns
+  private static Frame makeFrameWithOutliers(int nrows, int noutliers, long seed) {
+    Random rnd = new Random(seed);
+    String[] cat = new String[nrows];
+    double[] x1 = new double[nrows];
+    double[] x2 = new double[nrows];
+    double[] outlier = new double[nrows];
+    for (int r = 0; r < nrows; r++) {
+      boolean isOutlier = r < noutliers;
+      cat[r] = rnd.nextInt(20) == 0 ? null : "L" + rnd.nextInt(isOutlier ? 10 : 5);
+      x1[r] = rnd.nextGaussian() + (isOutlier ? 8 : 0);
+      x2[r] = rnd.nextInt(20) == 0 ? Double.NaN : rnd.nextGaussian() - (isOutlier ? 8 : 0);
+      outlier[r] = isOutlier ? 1 : 0;
+    }
+    return new TestFrameBuilder()
+            .withColNames("cat", "x1", "x2", "outlier")
+            .withVecTypes(Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+            .withDataForCol(0, cat)
+            .withDataForCol(1, x1)
+            .withDataForCol(2, x2)
+            .withDataForCol(3, outlier)
+            .withChunkLayout(nrows / 2, nrows - nrows / 2)
+            .build();
+  }
+
   @Test
   public void testIFMaximumDepth() {
     try {
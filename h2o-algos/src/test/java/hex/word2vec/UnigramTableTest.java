@@ -0,0 +1,34 @@
+package hex.word2vec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UnigramTableTest {
+
+  @Test
+  public void buildUnigramTable() {
+    long[] counts = new long[]{1, 5, 10, 100, 1000};
+    UnigramTable t = UnigramTable.buildUnigramTable(counts);
+    double total = 0;
+    for (long c : counts) total += Math.pow(c, 0.75);
+
+    Random rnd = new Random(0xA11A5);
+    final int n = 1000000;
+    int[] hist = new int[counts.length];
+    for (int i = 0; i < n; i++)
+      hist[t.sample(rnd.nextLong())]++;
+    for (int i = 0; i < counts.length; i++)
+      assertEquals(Math.pow(counts[i], 0.75) / total, hist[i] / (double) n, 2e-3);
+  }
+
+  @Test
+  public void buildUnigramTable_singleWord() {
+    UnigramTable t = UnigramTable.buildUnigramTable(new long[]{42});
+    assertEquals(0, t.sample(-1L));
+    assertEquals(0, t.sample(0L));
+  }
+
+}
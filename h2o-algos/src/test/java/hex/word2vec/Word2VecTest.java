@@ -5,10 +5,13 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import water.DKV;
+import water.H2O;
+import water.Job;
 import water.Key;
 import water.Scope;
 import water.TestUtil;
 import water.fvec.Frame;
+import water.fvec.RebalanceDataSet;
 import water.fvec.TestFrameBuilder;
 import water.fvec.Vec;
 import water.parser.BufferedString;
@@ -74,6 +77,115 @@ public class Word2VecTest extends TestUtil {
     }
   }
 
+  @Test
+  public void testW2V_NS_small() {
+    // sentences made of words of a single topic, topics separated by sentence boundaries
+    Random rnd = new Random(0x5EED);
+    String[] words = new String[6000];
+    for (int i = 0; i < words.length; i++) {
+      if (i % 6 == 5) continue; // end of sentence
+      words[i] = ((i / 6) % 2 == 0 ? "a" : "b") + rnd.nextInt(5);
+    }
+    Scope.enter();
+    try {
+      Vec v = Scope.track(svec(words));
+      Frame fr = Scope.track(new Frame(Key.<Frame>make(), new String[]{"Words"}, new Vec[]{v}));
+      DKV.put(fr);
+
+      for (Word2Vec.WordModel wordModel : Word2Vec.WordModel.values()) {
+        Word2VecModel.Word2VecParameters p = new Word2VecModel.Word2VecParameters();
+        p._train = fr._key;
+        p._min_word_freq = 5;
+        p._word_model = wordModel;
+        p._norm_model = Word2Vec.NormModel.NS;
+        p._negative_samples = 5;
+        p._vec_size = 10;
+        p._window_size = 3;
+        p._sent_sample_rate = 0;
+        p._init_learning_rate = 0.025f;
+        p._epochs = 10;
+
+        Word2VecModel w2vm = (Word2VecModel) Scope.track_generic(new Word2Vec(p).trainModel().get());
+
+        Map<String, Float> hm = w2vm.findSynonyms("a0", 4);
+        logResults(hm);
+        assertEquals(4, hm.size());
+        for (String synonym : hm.keySet())
+          assertTrue(wordModel + ": " + synonym, synonym.startsWith("a"));
+      }
+    } finally {
+      Scope.exit();
+    }
+  }
+
+  @Test
+  public void testW2V_sparseSync() {
+    // same topics as testW2V_NS_small, the sparse synchronization of a multi-node cloud is forced on this node
+    Random rnd = new Random(0x5EED);
+    String[] words = new String[6000];
+    for (int i = 0; i < words.length; i++) {
+      if (i % 6 == 5) continue; // end of sentence
+      words[i] = ((i / 6) % 2 == 0 ? "a" : "b") + rnd.nextInt(5);
+    }
+    Scope.enter();
+    try {
+      Vec v = Scope.track(svec(words));
+      Frame single = Scope.track(new Frame(Key.<Frame>make(), new String[]{"Words"}, new Vec[]{v}));
+      DKV.put(single);
+      // several chunks make the node-local result a different task than the one finishing the node
+      Key<Frame> rebalanced = Key.make();
+      RebalanceDataSet rb = new RebalanceDataSet(single, rebalanced, 4);
+      H2O.submitTask(rb);
+      rb.join();
+      Frame fr = Scope.track(DKV.get(rebalanced).<Frame>get());
+      assertEquals(4, fr.anyVec().nChunks());
+
+      final Word2VecModel.Word2VecParameters p = new Word2VecModel.Word2VecParameters();
+      p._train = fr._key;
+      p._min_word_freq = 5;
+      p._word_model = Word2Vec.WordModel.SkipGram;
+      p._norm_model = Word2Vec.NormModel.NS;
+      p._negative_samples = 5;
+      p._vec_size = 10;
+      p._window_size = 3;
+      p._sent_sample_rate = 0;
+      p._init_learning_rate = 0.025f;
+      p._epochs = 10;
+
+      final Word2VecModel.Word2VecModelInfo modelInfo = Word2VecModel.Word2VecModelInfo.createInitialModelInfo(p);
+      final Job<Word2VecModel> job = new Job<>(Key.<Word2VecModel>make(), p.javaName(), p.algoName());
+      job.start(new H2O.H2OCountedCompleter() {
+        @Override
+        public void compute2() {
+          for (int i = 0; i < p._epochs; i++) {
+            long processedWords = 0;
+            for (int round = 0; round < 2; round++) {
+              float[] start0 = modelInfo._syn0.clone();
+              WordVectorTrainer trainer = new WordVectorTrainer(job, modelInfo, round, 2, true).doAll(p.trainVec());
+              assertNotNull(trainer._syn0);
+              assertNotNull(trainer._syn1);
+              assertFalse(Arrays.equals(start0, trainer._syn0));
+              processedWords += trainer._processedWords;
+              trainer.updateModelInfo(modelInfo);
+            }
+            assertEquals(words.length - words.length / 6, processedWords);
+          }
+          tryComplete();
+        }
+      }, p._epochs * 2).get();
+
+      Word2VecModel w2vm = new Word2VecModel(Key.<Word2VecModel>make(), p, new Word2VecModel.Word2VecOutput(new Word2Vec(p)));
+      w2vm.buildModelOutput(modelInfo);
+      Map<String, Float> hm = w2vm.findSynonyms("a0", 4);
+      logResults(hm);
+      assertEquals(4, hm.size());
+      for (String synonym : hm.keySet())
+        assertTrue(synonym, synonym.startsWith("a"));
+    } finally {
+      Scope.exit();
+    }
+  }
+
   @Test
   public void testW2V_pretrained() {
     String[] words = new String[1000];
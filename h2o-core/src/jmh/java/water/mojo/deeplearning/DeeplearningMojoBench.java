@@ -0,0 +1,138 @@
+package water.mojo.deeplearning;
+
+import hex.genmodel.InMemoryMojoReaderBackend;
+import hex.genmodel.ModelMojoReader;
+import hex.genmodel.algos.deeplearning.DeeplearningMojoModel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.StackProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeepLearning MOJO scoring benchmark (multinomial, MNIST-shaped network with random weights)
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeeplearningMojoBench {
+
+  private static final int INPUTS = 784;
+  private static final int CLASSES = 10;
+
+  @Param({"1000", "10000"})
+  private int rows;
+
+  @Param({"Rectifier", "Tanh"})
+  private String activation;
+
+  private DeeplearningMojoModel mojo;
+  private double[][] data;
+  private double[][] preds;
+
+  @Benchmark
+  public double[][] score0_nRows() {
+    for (int i = 0; i < data.length; i++)
+      preds[i] = mojo.score0(data[i], preds[i]);
+    return preds;
+  }
+
+  @Benchmark
+  public double[][] score0Batch_nRows() {
+    return mojo.score0Batch(data, data.length, preds);
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    Random rnd = new Random(42);
+    mojo = makeMojo(new int[]{INPUTS, 200, 200, CLASSES}, activation, rnd);
+    data = new double[rows][INPUTS];
+    preds = new double[rows][CLASSES + 1];
+    for (int i = 0; i < rows; i++)
+      for (int c = 0; c < INPUTS; c++)
+        data[i][c] = rnd.nextInt(3) == 0 ? rnd.nextInt(256) : 0;
+  }
+
+  private static DeeplearningMojoModel makeMojo(int[] units, String activation, Random rnd) throws IOException {
+    StringBuilder ini = new StringBuilder();
+    ini.append("[info]\n")
+            .append("algorithm = Deep Learning\n")
+            .append("algo = deeplearning\n")
+            .append("category = Multinomial\n")
+            .append("uuid = 1\n")
+            .append("supervised = true\n")
+            .append("n_features = ").append(INPUTS).append('\n')
+            .append("n_classes = ").append(CLASSES).append('\n')
+            .append("n_columns = ").append(INPUTS + 1).append('\n')
+            .append("n_domains = 1\n")
+            .append("balance_classes = false\n")
+            .append("default_threshold = 0.5\n")
+            .append("prior_class_distrib = null\n")
+            .append("model_class_distrib = null\n")
+            .append("offset_column = null\n")
+            .append("mojo_version = 1.00\n")
+            .append("mini_batch_size = 1\n")
+            .append("nums = ").append(INPUTS).append('\n')
+            .append("cats = 0\n")
+            .append("cat_offsets = [0]\n")
+            .append("norm_mul = ").append(array(INPUTS, 1.0 / 255, 0, rnd)).append('\n')
+            .append("norm_sub = ").append(array(INPUTS, 0.5, 0, rnd)).append('\n')
+            .append("norm_resp_mul = null\n")
+            .append("norm_resp_sub = null\n")
+            .append("use_all_factor_levels = true\n")
+            .append("activation = ").append(activation).append('\n')
+            .append("mean_imputation = true\n")
+            .append("distribution = multinomial\n")
+            .append("neural_network_sizes = ").append(Arrays.toString(units)).append('\n')
+            .append("hidden_dropout_ratios = ").append(array(units.length - 1, 0, 0, rnd)).append('\n');
+    for (int l = 0; l < units.length - 1; l++) {
+      ini.append("bias_layer").append(l).append(" = ").append(array(units[l + 1], 0, 0.1, rnd)).append('\n');
+      ini.append("weight_layer").append(l).append(" = ").append(array(units[l] * units[l + 1], 0, 0.1, rnd)).append('\n');
+    }
+    ini.append("\n[columns]\n");
+    for (int c = 0; c < INPUTS; c++)
+      ini.append('C').append(c + 1).append('\n');
+    ini.append("label\n");
+    ini.append("\n[domains]\n");
+    ini.append(INPUTS).append(": ").append(CLASSES).append(" d000.txt\n");
+    StringBuilder domain = new StringBuilder();
+    for (int k = 0; k < CLASSES; k++)
+      domain.append(k).append('\n');
+    Map<String, byte[]> content = new HashMap<>();
+    content.put("model.ini", ini.toString().getBytes());
+    content.put("domains/d000.txt", domain.toString().getBytes());
+    return (DeeplearningMojoModel) ModelMojoReader.readFrom(new InMemoryMojoReaderBackend(content));
+  }
+
+  // random values with a given mean and standard deviation (non-integer, so that they are parsed as doubles)
+  private static String array(int len, double mean, double sd, Random rnd) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < len; i++) {
+      if (i > 0)
+        sb.append(", ");
+      sb.append(mean + sd * rnd.nextGaussian() + 1e-9);
+    }
+    return sb.append(']').toString();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+            .include(DeeplearningMojoBench.class.getSimpleName())
+            .addProfiler(StackProfiler.class)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+}
@@ -0,0 +1,192 @@
+package water.mojo.ensemble;
+
+import hex.genmodel.InMemoryMojoReaderBackend;
+import hex.genmodel.ModelMojoReader;
+import hex.genmodel.algos.ensemble.StackedEnsembleMojoModel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stacked Ensemble MOJO scoring latency benchmark (AutoML-like ensemble of many GLM base models),
+ * sequential vs. parallel scoring of the base models.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StackedEnsembleMojoBench {
+
+  private static final String BASE_MODEL_DIR = "/water/mojo/glm/airlines/";
+  private static final String[] BASE_MODEL_FILES = {"model.ini", "domains/d000.txt", "domains/d001.txt",
+          "domains/d002.txt", "domains/d003.txt", "domains/d004.txt", "domains/d005.txt", "domains/d006.txt",
+          "domains/d007.txt"};
+  private static final int BATCH_SIZE = 100;
+
+  @Param({"30"})
+  private int baseModels;
+
+  @Param({"0", "4"})
+  private int threads;
+
+  private ExecutorService executor;
+  private StackedEnsembleMojoModel mojo;
+  private double[][] data;
+  private double[][] preds;
+  private int next;
+
+  @Benchmark
+  public double[] score0_row() {
+    next = (next + 1) % data.length;
+    return mojo.score0(data[next].clone(), preds[next]);
+  }
+
+  @Benchmark
+  public double[][] score0Batch_batch() {
+    double[][] batch = new double[BATCH_SIZE][];
+    for (int i = 0; i < BATCH_SIZE; i++)
+      batch[i] = data[i].clone();
+    return mojo.score0Batch(batch, BATCH_SIZE, preds);
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    mojo = makeMojo(baseModels);
+    if (threads > 0) {
+      executor = Executors.newFixedThreadPool(threads);
+      mojo.setExecutor(executor, threads + 1);
+    }
+    Random rnd = new Random(42);
+    data = new double[BATCH_SIZE][mojo.nfeatures()];
+    preds = new double[BATCH_SIZE][mojo.getPredsSize()];
+    for (double[] row : data)
+      for (int c = 0; c < row.length; c++) {
+        String[] domain = mojo.getDomainValues(c);
+        row[c] = domain != null ? rnd.nextInt(domain.length) : rnd.nextInt(3000);
+      }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (executor != null)
+      executor.shutdownNow();
+  }
+
+  private static StackedEnsembleMojoModel makeMojo(int baseModels) throws IOException {
+    Map<String, byte[]> content = new HashMap<>();
+    Map<String, byte[]> baseModelFiles = new HashMap<>();
+    for (String file : BASE_MODEL_FILES)
+      baseModelFiles.put(file, readResource(BASE_MODEL_DIR + file));
+    String baseModelIni = new String(baseModelFiles.get("model.ini"));
+    String columns = baseModelIni.substring(baseModelIni.indexOf("[columns]"));
+
+    StringBuilder ini = new StringBuilder();
+    ini.append("[info]\n")
+            .append("mojo_version = 1.0\n")
+            .append("algo = stackedensemble\n")
+            .append("algorithm = Stacked Ensemble\n")
+            .append("category = Binomial\n")
+            .append("uuid = 1\n")
+            .append("supervised = true\n")
+            .append("n_features = 8\n")
+            .append("n_classes = 2\n")
+            .append("n_columns = 9\n")
+            .append("n_domains = 8\n")
+            .append("balance_classes = false\n")
+            .append("default_threshold = 0.5\n")
+            .append("prior_class_distrib = null\n")
+            .append("model_class_distrib = null\n")
+            .append("submodel_count = ").append(baseModels + 1).append('\n')
+            .append("submodel_key_0 = metalearner\n")
+            .append("submodel_dir_0 = models/metalearner/\n");
+    for (int i = 0; i < baseModels; i++) {
+      ini.append("submodel_key_").append(i + 1).append(" = glm_").append(i).append('\n');
+      ini.append("submodel_dir_").append(i + 1).append(" = models/glm_").append(i).append("/\n");
+      for (Map.Entry<String, byte[]> file : baseModelFiles.entrySet())
+        content.put("models/glm_" + i + "/" + file.getKey(), file.getValue());
+    }
+    ini.append("base_models_num = ").append(baseModels).append('\n')
+            .append("metalearner = metalearner\n");
+    for (int i = 0; i < baseModels; i++)
+      ini.append("base_model").append(i).append(" = glm_").append(i).append('\n');
+    ini.append('\n').append(columns);
+    content.put("model.ini", ini.toString().getBytes());
+    for (Map.Entry<String, byte[]> file : baseModelFiles.entrySet())
+      if (file.getKey().startsWith("domains/"))
+        content.put(file.getKey(), file.getValue());
+
+    StringBuilder metalearner = new StringBuilder();
+    metalearner.append("[info]\n")
+            .append("mojo_version = 1.00\n")
+            .append("algo = glm\n")
+            .append("algorithm = Generalized Linear Modeling\n")
+            .append("category = Binomial\n")
+            .append("uuid = 2\n")
+            .append("supervised = true\n")
+            .append("n_features = ").append(baseModels).append('\n')
+            .append("n_classes = 2\n")
+            .append("n_columns = ").append(baseModels + 1).append('\n')
+            .append("n_domains = 1\n")
+            .append("balance_classes = false\n")
+            .append("default_threshold = 0.5\n")
+            .append("prior_class_distrib = null\n")
+            .append("model_class_distrib = null\n")
+            .append("use_all_factor_levels = true\n")
+            .append("cats = 0\n")
+            .append("cat_offsets = [0]\n")
+            .append("nums = ").append(baseModels).append('\n')
+            .append("mean_imputation = false\n")
+            .append("cat_modes = []\n")
+            .append("beta = [");
+    for (int i = 0; i < baseModels; i++)
+      metalearner.append(1.0 / baseModels).append(", ");
+    metalearner.append("-0.5]\n")
+            .append("family = binomial\n")
+            .append("link = logit\n")
+            .append("\n[columns]\n");
+    for (int i = 0; i < baseModels; i++)
+      metalearner.append("glm_").append(i).append('\n');
+    metalearner.append("IsDepDelayed\n")
+            .append("\n[domains]\n")
+            .append(baseModels).append(": 2 d000.txt\n");
+    content.put("models/metalearner/model.ini", metalearner.toString().getBytes());
+    content.put("models/metalearner/domains/d000.txt", baseModelFiles.get("domains/d007.txt"));
+    return (StackedEnsembleMojoModel) ModelMojoReader.readFrom(new InMemoryMojoReaderBackend(content));
+  }
+
+  private static byte[] readResource(String name) throws IOException {
+    try (InputStream is = StackedEnsembleMojoBench.class.getResourceAsStream(name)) {
+      if (is == null)
+        throw new IOException("Resource not found: " + name);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = is.read(buffer)) > 0)
+        bytes.write(buffer, 0, len);
+      return bytes.toByteArray();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+            .include(StackedEnsembleMojoBench.class.getSimpleName())
+            .build();
+
+    new Runner(opt).run();
+  }
+
+}
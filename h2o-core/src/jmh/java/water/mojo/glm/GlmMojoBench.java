@@ -39,6 +39,11 @@ public class GlmMojoBench {
     return preds;
   }
 
+  @Benchmark
+  public double[][] score0Batch_nRows() {
+    return mojo.score0Batch(data, data.length, preds);
+  }
+
   @Setup
   public void setup() throws IOException {
     File f = getFile("smalldata/airlines/allyears2k.zip");
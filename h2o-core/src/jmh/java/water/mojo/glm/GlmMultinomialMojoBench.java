@@ -40,6 +40,11 @@ public class GlmMultinomialMojoBench {
     return preds;
   }
 
+  @Benchmark
+  public double[][] score0Batch_nRows() {
+    return mojo.score0Batch(data, data.length, preds);
+  }
+
   @Setup
   public void setup() throws IOException {
     File f = getFile("smalldata/flow_examples/mnist/test.csv.gz");
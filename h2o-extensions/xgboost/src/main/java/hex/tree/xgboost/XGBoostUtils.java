@@ -4,6 +4,7 @@ import hex.DataInfo;
 import hex.tree.xgboost.matrix.DenseMatrixFactory;
 import hex.tree.xgboost.matrix.MatrixLoader;
 import hex.tree.xgboost.matrix.SparseMatrixFactory;
+import hex.tree.xgboost.matrix.StreamingMatrixFactory;
 import ml.dmlc.xgboost4j.java.DMatrix;
 import ml.dmlc.xgboost4j.java.XGBoostError;
 import org.apache.log4j.Logger;
@@ -92,7 +93,10 @@ public class XGBoostUtils {
         if (offsetsVec != null) {
             offsets = malloc4f(nRows);
         }
-        if (sparse) {
+        if (StreamingMatrixFactory.isEnabled()) {
+            LOG.debug("Streaming matrix as " + (sparse ? "sparse" : "dense") + ".");
+            trainMat = StreamingMatrixFactory.csr(frame, chunks, weightVec, offsetsVec, responseVec, di, sparse, nRows, resp, weights, offsets);
+        } else if (sparse) {
             LOG.debug("Treating matrix as sparse.");
             trainMat = SparseMatrixFactory.csr(frame, chunks, weightVec, offsetsVec, responseVec, di, resp, weights, offsets);
         } else {
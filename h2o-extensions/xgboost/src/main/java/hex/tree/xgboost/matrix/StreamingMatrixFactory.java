@@ -0,0 +1,316 @@
+package hex.tree.xgboost.matrix;
+
+import hex.DataInfo;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.DataIterWrapper;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+import org.apache.log4j.Logger;
+import water.H2O;
+import water.fvec.Chunk;
+import water.fvec.Frame;
+import water.fvec.Vec;
+import water.util.PrettyPrint;
+import water.util.Timer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static hex.tree.xgboost.matrix.MatrixFactoryUtils.setResponseWeightAndOffset;
+import static water.MemoryManager.*;
+
+/*
+- single pass over the local chunks, rows are converted to CSR blocks of bounded size
+- blocks are handed over to XGBoost one by one (native code copies them), buffers are re-used for the next block
+- produces the same matrix as SparseMatrixFactory (sparse) or DenseMatrixFactory (dense)
+ */
+public class StreamingMatrixFactory {
+
+    private static final Logger LOG = Logger.getLogger(StreamingMatrixFactory.class);
+
+    public static final String ENABLED_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "xgboost.matrix.streaming.enabled";
+    public static final String BUFFER_SIZE_PROP = H2O.OptArgs.SYSTEM_PROP_PREFIX + "xgboost.matrix.streaming.bufferSize";
+
+    static final long DEFAULT_BUFFER_SIZE = 64L << 20; // 64MB
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROP);
+    }
+
+    static long bufferSize() {
+        return Long.getLong(BUFFER_SIZE_PROP, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static StreamingDMatrixProvider csr(
+        Frame frame, int[] chunkIds, Vec weightsVec, Vec offsetsVec, Vec responseVec,
+        DataInfo di, boolean sparse, int actualRows, float[] resp, float[] weights, float[] offsets
+    ) {
+        return new StreamingDMatrixProvider(
+            frame, chunkIds, weightsVec, offsetsVec, responseVec, di, sparse, bufferSize(),
+            actualRows, resp, weights, offsets
+        );
+    }
+
+    public static class StreamingDMatrixProvider extends MatrixLoader.DMatrixProvider {
+
+        private final Frame _frame;
+        private final int[] _chunkIds;
+        private final Vec _weightsVec;
+        private final Vec _offsetsVec;
+        private final Vec _responseVec;
+        private final DataInfo _di;
+        private final boolean _sparse;
+        private final long _bufferSize;
+
+        StreamingDMatrixProvider(
+            Frame frame, int[] chunkIds, Vec weightsVec, Vec offsetsVec, Vec responseVec,
+            DataInfo di, boolean sparse, long bufferSize,
+            int actualRows, float[] response, float[] weights, float[] offsets
+        ) {
+            super(actualRows, response, weights, offsets);
+            _frame = frame;
+            _chunkIds = chunkIds;
+            _weightsVec = weightsVec;
+            _offsetsVec = offsetsVec;
+            _responseVec = responseVec;
+            _di = di;
+            _sparse = sparse;
+            _bufferSize = bufferSize;
+        }
+
+        ChunkBatchIterator makeBatchIterator() {
+            return new ChunkBatchIterator(
+                _frame, _chunkIds, _weightsVec, _offsetsVec, _responseVec, _di, _sparse, _bufferSize,
+                response, weights, offsets
+            );
+        }
+
+        @Override
+        protected DMatrix makeDMatrix() throws XGBoostError {
+            Timer t = new Timer();
+            ChunkBatchIterator it = makeBatchIterator();
+            DMatrix mat = DataIterWrapper.createDMatrix(it, _di.fullN());
+            LOG.info("Streamed " + it._totalRows + " rows (" + it._totalNonZeros + " elements, " + it._batches +
+                " batches) into XGBoost DMatrix in " + t + ", peak buffer size " + PrettyPrint.bytes(it.bufferBytes()) + ".");
+            return mat;
+        }
+
+        @Override
+        public void print(int nrow) {
+            ChunkBatchIterator it = makeBatchIterator();
+            int i = 0;
+            while (it.hasNext() && (nrow <= 0 || i < nrow)) {
+                DataIterWrapper.CSRBatch batch = it.next();
+                for (int r = 0; r < batch.numRows() && (nrow <= 0 || i < nrow); r++, i++) {
+                    System.out.print(i + ":\t");
+                    for (long e = batch.rowOffsets()[r]; e < batch.rowOffsets()[r + 1]; e++) {
+                        System.out.print(batch.indices()[(int) e] + ":" + batch.values()[(int) e] + "\t");
+                    }
+                    System.out.print(response[i]);
+                    System.out.println();
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the local chunks of the frame exactly once and emits the rows in CSR batches. All batches share
+     * the same buffers - a batch is only valid until next() is called again. Response, weights and offsets
+     * are written to the provided arrays as the rows are consumed.
+     */
+    static class ChunkBatchIterator implements Iterator<DataIterWrapper.CSRBatch>, DataIterWrapper.CSRBatch {
+
+        private final Frame _frame;
+        private final int[] _chunkIds;
+        private final Vec _weightsVec;
+        private final Vec _offsetsVec;
+        private final Vec _responseVec;
+        private final DataInfo _di;
+        private final boolean _sparse;
+        private final float[] _resp;
+        private final float[] _weights;
+        private final float[] _offsets;
+        private final int _maxRowWidth;
+
+        // buffers
+        private final long[] _rowOffsets;
+        private final int[] _indices;
+        private final float[] _values;
+        private int _nrows;
+        // arrays of the current batch, exactly numRows() + 1 row offsets and nnz elements (native code infers the
+        // dimensions of the batch from the lengths), they are copies of the buffers if the batch didn't fill them
+        private long[] _batchRowOffsets;
+        private int[] _batchIndices;
+        private float[] _batchValues;
+        private long _peakCopyBytes; // largest copy made for a batch that only partially filled the buffers
+
+        // position in the input
+        private int _chunkIdx = -1;
+        private int _rowInChunk;
+        private Chunk[] _featChunks;
+        private Chunk _weightChunk;
+        private Chunk _offsetChunk;
+        private Chunk _respChunk;
+        private int _rwRow;
+
+        // stats
+        int _batches;
+        long _totalRows;
+        long _totalNonZeros;
+
+        ChunkBatchIterator(
+            Frame frame, int[] chunkIds, Vec weightsVec, Vec offsetsVec, Vec responseVec,
+            DataInfo di, boolean sparse, long bufferSize, float[] resp, float[] weights, float[] offsets
+        ) {
+            _frame = frame;
+            _chunkIds = chunkIds;
+            _weightsVec = weightsVec;
+            _offsetsVec = offsetsVec;
+            _responseVec = responseVec;
+            _di = di;
+            _sparse = sparse;
+            _resp = resp;
+            _weights = weights;
+            _offsets = offsets;
+            _maxRowWidth = sparse ? di._cats + di._nums : di.fullN();
+            // every row has at least one element per categorical column (sparse) or per categorical level (dense)
+            final int minRowWidth = sparse ? di._cats : di._catOffsets[di._catOffsets.length - 1];
+            // row offsets and (index, value) pairs take 8 bytes each, the buffer is split so that both fill up
+            // at the same time when the rows have the minimal width (more row offsets would never be used)
+            final int minWidth = Math.max(1, minRowWidth);
+            final long nonZerosBudget = bufferSize / 8 * minWidth / (minWidth + 1);
+            int maxRows = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 1, nonZerosBudget / minWidth));
+            int maxNonZeros = (int) Math.max(_maxRowWidth, Math.min(Integer.MAX_VALUE, (long) maxRows * minWidth));
+            _rowOffsets = malloc8(maxRows + 1);
+            _indices = malloc4(maxNonZeros);
+            _values = malloc4f(maxNonZeros);
+            advanceToNonEmptyChunk();
+        }
+
+        long bufferBytes() {
+            return 8L * _rowOffsets.length + 4L * _indices.length + 4L * _values.length + _peakCopyBytes;
+        }
+
+        private void advanceToNonEmptyChunk() {
+            while (_featChunks == null || _rowInChunk >= _respChunk._len) {
+                if (++_chunkIdx >= _chunkIds.length) {
+                    _featChunks = null;
+                    return;
+                }
+                int cidx = _chunkIds[_chunkIdx];
+                _featChunks = new Chunk[_di._cats + _di._nums];
+                for (int i = 0; i < _featChunks.length; i++) {
+                    _featChunks[i] = _frame.vec(i).chunkForChunkIdx(cidx);
+                }
+                _weightChunk = _weightsVec != null ? _weightsVec.chunkForChunkIdx(cidx) : null;
+                _offsetChunk = _offsetsVec != null ? _offsetsVec.chunkForChunkIdx(cidx) : null;
+                _respChunk = _responseVec.chunkForChunkIdx(cidx);
+                _rowInChunk = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _featChunks != null;
+        }
+
+        @Override
+        public DataIterWrapper.CSRBatch next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            _nrows = 0;
+            int nnz = 0;
+            _rowOffsets[0] = 0;
+            while (_featChunks != null && _nrows < _rowOffsets.length - 1 && nnz + _maxRowWidth <= _indices.length) {
+                int i = _rowInChunk++;
+                if (_weightChunk == null || _weightChunk.atd(i) != 0) {
+                    nnz = _sparse ? writeSparseRow(i, nnz) : writeDenseRow(i, nnz);
+                    _rowOffsets[++_nrows] = nnz;
+                    _rwRow = setResponseWeightAndOffset(_weightChunk, _offsetChunk, _respChunk, _resp, _weights, _offsets, _rwRow, i);
+                }
+                if (_rowInChunk >= _respChunk._len) {
+                    advanceToNonEmptyChunk();
+                }
+            }
+            long copyBytes = 0;
+            if (_nrows + 1 == _rowOffsets.length) {
+                _batchRowOffsets = _rowOffsets;
+            } else {
+                _batchRowOffsets = arrayCopyOf(_rowOffsets, _nrows + 1);
+                copyBytes += 8L * _batchRowOffsets.length;
+            }
+            if (nnz == _indices.length) {
+                _batchIndices = _indices;
+                _batchValues = _values;
+            } else {
+                _batchIndices = arrayCopyOf(_indices, nnz);
+                _batchValues = arrayCopyOf(_values, nnz);
+                copyBytes += 8L * nnz;
+            }
+            _peakCopyBytes = Math.max(_peakCopyBytes, copyBytes);
+            _batches++;
+            _totalRows += _nrows;
+            _totalNonZeros += nnz;
+            return this;
+        }
+
+        private int writeSparseRow(int i, int nnz) {
+            for (int j = 0; j < _di._cats; j++) {
+                _indices[nnz] = _di.getCategoricalId(j, _featChunks[j].isNA(i) ? Float.NaN : _featChunks[j].at8(i));
+                _values[nnz++] = 1; //one-hot encoding
+            }
+            for (int j = 0; j < _di._nums; j++) {
+                float val = (float) _featChunks[_di._cats + j].atd(i);
+                if (val != 0) {
+                    _indices[nnz] = _di._catOffsets[_di._catOffsets.length - 1] + j;
+                    _values[nnz++] = val;
+                }
+            }
+            return nnz;
+        }
+
+        private int writeDenseRow(int i, int nnz) {
+            for (int j = 0; j < _di._cats; j++) {
+                double val = _featChunks[j].isNA(i) ? Double.NaN : _featChunks[j].at8(i);
+                int hot = _di.getCategoricalId(j, val);
+                for (int cat = _di._catOffsets[j]; cat < _di._catOffsets[j + 1]; cat++) {
+                    _indices[nnz] = cat;
+                    _values[nnz++] = cat == hot ? 1 : 0; // dense matrix keeps explicit zeros
+                }
+            }
+            for (int j = 0; j < _di._nums; j++) {
+                Chunk c = _featChunks[_di._cats + j];
+                if (!c.isNA(i)) { // NAs are missing values in a dense matrix
+                    _indices[nnz] = _di._catOffsets[_di._catOffsets.length - 1] + j;
+                    _values[nnz++] = (float) c.atd(i);
+                }
+            }
+            return nnz;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int numRows() {
+            return _nrows;
+        }
+
+        @Override
+        public long[] rowOffsets() {
+            return _batchRowOffsets;
+        }
+
+        @Override
+        public int[] indices() {
+            return _batchIndices;
+        }
+
+        @Override
+        public float[] values() {
+            return _batchValues;
+        }
+    }
+
+}
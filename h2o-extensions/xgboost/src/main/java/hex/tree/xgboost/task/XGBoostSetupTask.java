@@ -10,6 +10,7 @@ import water.Key;
 import water.fvec.Frame;
 import water.fvec.Vec;
 import water.util.IcedHashMapGeneric;
+import water.util.Timer;
 
 import java.io.File;
 import java.util.Map;
@@ -43,11 +44,13 @@ public class XGBoostSetupTask extends AbstractXGBoostTask<XGBoostSetupTask> {
   @Override
   protected void execute() {
     DMatrix matrix;
+    Timer t = new Timer();
     try {
       matrix = _matrixLoader.makeLocalMatrix().get();
     } catch (XGBoostError e) {
       throw new IllegalStateException("Failed to create XGBoost DMatrix", e);
     }
+    LOG.info("Created node-local XGBoost DMatrix in " + t + ".");
     if (_saveMatrixDirectory != null) {
       File directory = new File(_saveMatrixDirectory);
       if (directory.mkdirs()) {
@@ -0,0 +1,78 @@
+package ml.dmlc.xgboost4j.java;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Wrapper to expose package private methods for creating a DMatrix from an iterator of CSR batches
+ */
+public class DataIterWrapper {
+
+    /**
+     * Block of rows in CSR format, the backing arrays can be re-used between batches.
+     * Labels, weights and offsets are not part of the batch, they are expected to be set on the final DMatrix.
+     */
+    public interface CSRBatch {
+        int numRows();
+        long[] rowOffsets(); // at least numRows() + 1 elements, first element is 0
+        int[] indices(); // at least rowOffsets()[numRows()] elements
+        float[] values(); // at least rowOffsets()[numRows()] elements
+    }
+
+    /**
+     * Creates a DMatrix by consuming the given batches one by one. Native code copies the content
+     * of each batch before asking for the next one, the batches can thus share their buffers.
+     *
+     * @param batches iterator of CSR batches
+     * @param numCols number of columns of the matrix
+     * @return new DMatrix
+     * @throws XGBoostError when the native call fails
+     */
+    public static DMatrix createDMatrix(Iterator<? extends CSRBatch> batches, int numCols) throws XGBoostError {
+        long[] out = new long[1];
+        XGBoostJNI.checkCall(XGBoostJNI.XGDMatrixCreateFromDataIter(new DataBatchIterator(batches, numCols), null, out));
+        return new DMatrix(out[0]);
+    }
+
+    private static class DataBatchIterator implements Iterator<DataBatch> {
+        private final Iterator<? extends CSRBatch> _batches;
+        private final int _numCols;
+
+        DataBatchIterator(Iterator<? extends CSRBatch> batches, int numCols) {
+            _batches = batches;
+            _numCols = numCols;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _batches.hasNext();
+        }
+
+        @Override
+        public DataBatch next() {
+            CSRBatch batch = _batches.next();
+            long[] rowOffsets = batch.rowOffsets();
+            // native code infers the number of rows and elements from the lengths of the arrays,
+            // batches that provide arrays of the exact lengths are passed without copying
+            if (rowOffsets.length != batch.numRows() + 1) {
+                rowOffsets = Arrays.copyOf(rowOffsets, batch.numRows() + 1);
+            }
+            final int nnz = (int) rowOffsets[batch.numRows()];
+            int[] indices = batch.indices();
+            float[] values = batch.values();
+            if (indices.length != nnz) {
+                indices = Arrays.copyOf(indices, nnz);
+            }
+            if (values.length != nnz) {
+                values = Arrays.copyOf(values, nnz);
+            }
+            return new DataBatch(rowOffsets, null, null, indices, values, _numCols);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+package hex.tree.xgboost.matrix;
+
+import hex.DataInfo;
+import hex.tree.xgboost.XGBoost;
+import hex.tree.xgboost.XGBoostModel;
+import hex.tree.xgboost.XGBoostUtils;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.DataIterWrapper;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import water.Scope;
+import water.TestUtil;
+import water.fvec.Frame;
+import water.fvec.TestFrameBuilder;
+import water.fvec.Vec;
+import water.util.VecUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StreamingMatrixFactoryTest extends TestUtil {
+
+    private static final int N_ROWS = 500;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TestUtil.stall_till_cloudsize(1);
+    }
+
+    @Test
+    public void testSparseBatchesMatchExpectedCSR() {
+        checkBatches(true);
+    }
+
+    @Test
+    public void testDenseBatchesMatchExpectedCSR() {
+        checkBatches(false);
+    }
+
+    private void checkBatches(boolean sparse) {
+        Scope.enter();
+        try {
+            Frame fr = makeFrame(0x5EED);
+            Frame features = new Frame(new String[]{"c", "x1", "x2"}, new Vec[]{fr.vec("c"), fr.vec("x1"), fr.vec("x2")});
+            DataInfo di = new DataInfo(features, null, true, DataInfo.TransformType.NONE, false, false, true);
+            Frame adapted = di._adaptedFrame;
+            Vec respVec = fr.vec("y");
+            Vec weightVec = fr.vec("w");
+            int[] chunks = VecUtils.getLocalChunkIds(fr.anyVec());
+            assertTrue(chunks.length > 1);
+
+            List<float[]> expectedRows = new ArrayList<>();
+            List<Float> expectedResp = new ArrayList<>();
+            for (int r = 0; r < N_ROWS; r++) {
+                if (weightVec.at(r) == 0) continue;
+                expectedRows.add(expectedRow(adapted, di, r, sparse));
+                expectedResp.add((float) respVec.at(r));
+            }
+            int actualRows = expectedRows.size();
+
+            float[] resp = new float[actualRows];
+            float[] weights = new float[actualRows];
+            // 256 bytes, split between row offsets and elements by the minimal row width
+            StreamingMatrixFactory.ChunkBatchIterator it = new StreamingMatrixFactory.ChunkBatchIterator(
+                adapted, chunks, weightVec, null, respVec, di, sparse, 256, resp, weights, null
+            );
+            int row = 0;
+            while (it.hasNext()) {
+                DataIterWrapper.CSRBatch batch = it.next();
+                assertTrue(batch.numRows() > 0);
+                assertEquals(0, batch.rowOffsets()[0]);
+                assertEquals(batch.numRows() + 1, batch.rowOffsets().length);
+                assertEquals(batch.rowOffsets()[batch.numRows()], batch.indices().length);
+                assertEquals(batch.indices().length, batch.values().length);
+                for (int r = 0; r < batch.numRows(); r++, row++) {
+                    float[] expected = expectedRows.get(row);
+                    int start = (int) batch.rowOffsets()[r];
+                    int end = (int) batch.rowOffsets()[r + 1];
+                    assertTrue(end <= batch.indices().length);
+                    float[] actual = new float[di.fullN()];
+                    Arrays.fill(actual, Float.NaN);
+                    for (int e = start; e < end; e++) {
+                        actual[batch.indices()[e]] = batch.values()[e];
+                    }
+                    assertArrayEquals("Row " + row, expected, actual, 0);
+                }
+            }
+            assertEquals(actualRows, row);
+            assertEquals(actualRows, it._totalRows);
+            assertTrue(it._batches > 1);
+            for (int r = 0; r < actualRows; r++) {
+                assertEquals(expectedResp.get(r), resp[r], 0);
+                assertTrue(weights[r] > 0);
+            }
+        } finally {
+            Scope.exit();
+        }
+    }
+
+    @Test
+    public void testBuffersFillUpTogetherForRowsOfMinimalWidth() {
+        Scope.enter();
+        try {
+            Random rnd = new Random(0xCA7);
+            String[] c1 = new String[N_ROWS];
+            String[] c2 = new String[N_ROWS];
+            double[] y = new double[N_ROWS];
+            for (int r = 0; r < N_ROWS; r++) {
+                c1[r] = "A" + rnd.nextInt(3);
+                c2[r] = "B" + rnd.nextInt(5);
+                y[r] = rnd.nextDouble();
+            }
+            Frame fr = Scope.track(new TestFrameBuilder()
+                .withColNames("c1", "c2", "y")
+                .withVecTypes(Vec.T_CAT, Vec.T_CAT, Vec.T_NUM)
+                .withDataForCol(0, c1)
+                .withDataForCol(1, c2)
+                .withDataForCol(2, y)
+                .build());
+            Frame features = new Frame(new String[]{"c1", "c2"}, new Vec[]{fr.vec("c1"), fr.vec("c2")});
+            DataInfo di = new DataInfo(features, null, true, DataInfo.TransformType.NONE, false, false, true);
+            int[] chunks = VecUtils.getLocalChunkIds(fr.anyVec());
+            StreamingMatrixFactory.ChunkBatchIterator it = new StreamingMatrixFactory.ChunkBatchIterator(
+                di._adaptedFrame, chunks, null, null, fr.vec("y"), di, true, 256,
+                new float[N_ROWS], new float[N_ROWS], null
+            );
+            // every row has 2 elements: 10 rows (88 bytes of offsets) and 20 elements (160 bytes) per batch
+            long bufferBytes = it.bufferBytes();
+            assertTrue(bufferBytes <= 256);
+            int rows = 0;
+            while (it.hasNext()) {
+                DataIterWrapper.CSRBatch batch = it.next();
+                rows += batch.numRows();
+                assertEquals(batch.numRows() + 1, batch.rowOffsets().length);
+                if (it.hasNext()) {
+                    assertEquals(10, batch.numRows());
+                    assertEquals(bufferBytes, it.bufferBytes()); // full batches are not copied
+                }
+            }
+            assertEquals(N_ROWS, rows);
+        } finally {
+            Scope.exit();
+        }
+    }
+
+    @Test
+    public void testStreamedDMatrixMatchesInMemoryDMatrix() throws XGBoostError {
+        for (boolean sparse : new boolean[]{true, false}) {
+            Scope.enter();
+            try {
+                Frame fr = Scope.track(makeFrame(0xD3A7));
+                Frame features = new Frame(new String[]{"c", "x1", "x2"}, new Vec[]{fr.vec("c"), fr.vec("x1"), fr.vec("x2")});
+                DataInfo di = new DataInfo(features, null, true, DataInfo.TransformType.NONE, false, false, true);
+                Frame adapted = new Frame(di._adaptedFrame).add(new Frame(new String[]{"w", "y"}, new Vec[]{fr.vec("w"), fr.vec("y")}));
+                DMatrix inMemory = XGBoostUtils.convertFrameToDMatrix(di, adapted, "y", "w", null, sparse).get();
+                DMatrix streamed;
+                System.setProperty(StreamingMatrixFactory.ENABLED_PROP, "true");
+                System.setProperty(StreamingMatrixFactory.BUFFER_SIZE_PROP, "256"); // many batches, partially filled
+                try {
+                    streamed = XGBoostUtils.convertFrameToDMatrix(di, adapted, "y", "w", null, sparse).get();
+                } finally {
+                    System.clearProperty(StreamingMatrixFactory.ENABLED_PROP);
+                    System.clearProperty(StreamingMatrixFactory.BUFFER_SIZE_PROP);
+                }
+                try {
+                    assertEquals(inMemory.rowNum(), streamed.rowNum());
+                    assertArrayEquals(inMemory.getLabel(), streamed.getLabel(), 0);
+                    assertArrayEquals(inMemory.getWeight(), streamed.getWeight(), 0);
+                } finally {
+                    inMemory.dispose();
+                    streamed.dispose();
+                }
+            } finally {
+                Scope.exit();
+            }
+        }
+    }
+
+    @Test
+    public void testTrainWithStreamedDMatrix() {
+        Scope.enter();
+        try {
+            Frame fr = Scope.track(makeFrame(0x7EA1));
+            XGBoostModel.XGBoostParameters parms = new XGBoostModel.XGBoostParameters();
+            parms._train = fr._key;
+            parms._response_column = "y";
+            parms._weights_column = "w";
+            parms._ntrees = 5;
+            parms._max_depth = 3;
+            parms._seed = 42;
+            for (XGBoostModel.XGBoostParameters.DMatrixType type : new XGBoostModel.XGBoostParameters.DMatrixType[]{
+                    XGBoostModel.XGBoostParameters.DMatrixType.sparse, XGBoostModel.XGBoostParameters.DMatrixType.dense}) {
+                parms._dmatrix_type = type;
+                XGBoostModel inMemory = new XGBoost((XGBoostModel.XGBoostParameters) parms.clone()).trainModel().get();
+                Scope.track_generic(inMemory);
+                XGBoostModel streamed;
+                System.setProperty(StreamingMatrixFactory.ENABLED_PROP, "true");
+                System.setProperty(StreamingMatrixFactory.BUFFER_SIZE_PROP, "256");
+                try {
+                    streamed = new XGBoost((XGBoostModel.XGBoostParameters) parms.clone()).trainModel().get();
+                    Scope.track_generic(streamed);
+                } finally {
+                    System.clearProperty(StreamingMatrixFactory.ENABLED_PROP);
+                    System.clearProperty(StreamingMatrixFactory.BUFFER_SIZE_PROP);
+                }
+                Frame inMemoryPreds = Scope.track(inMemory.score(fr));
+                Frame streamedPreds = Scope.track(streamed.score(fr));
+                assertVecEquals(inMemoryPreds.vec(0), streamedPreds.vec(0), 1e-6);
+            }
+        } finally {
+            Scope.exit();
+        }
+    }
+
+    // expanded row, NaN represents an element that is not present in the matrix
+    private static float[] expectedRow(Frame adapted, DataInfo di, int r, boolean sparse) {
+        float[] row = new float[di.fullN()];
+        Arrays.fill(row, Float.NaN);
+        for (int j = 0; j < di._cats; j++) {
+            if (!sparse) {
+                for (int c = di._catOffsets[j]; c < di._catOffsets[j + 1]; c++)
+                    row[c] = 0;
+            }
+            row[di.getCategoricalId(j, adapted.vec(j).at(r))] = 1;
+        }
+        for (int j = 0; j < di._nums; j++) {
+            float val = (float) adapted.vec(di._cats + j).at(r);
+            if (sparse ? val != 0 : !Float.isNaN(val))
+                row[di._catOffsets[di._cats] + j] = val;
+        }
+        return row;
+    }
+
+    private static Frame makeFrame(long seed) {
+        Random rnd = new Random(seed);
+        String[] cat = new String[N_ROWS];
+        double[] x1 = new double[N_ROWS];
+        double[] x2 = new double[N_ROWS];
+        double[] w = new double[N_ROWS];
+        double[] y = new double[N_ROWS];
+        for (int r = 0; r < N_ROWS; r++) {
+            cat[r] = rnd.nextInt(10) == 0 ? null : "L" + rnd.nextInt(4);
+            x1[r] = rnd.nextInt(3) == 0 ? 0 : rnd.nextGaussian();
+            x2[r] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextInt(5);
+            w[r] = rnd.nextInt(5) == 0 ? 0 : 1 + rnd.nextInt(3);
+            y[r] = rnd.nextDouble();
+        }
+        return new TestFrameBuilder()
+            .withColNames("c", "x1", "x2", "w", "y")
+            .withVecTypes(Vec.T_CAT, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM, Vec.T_NUM)
+            .withDataForCol(0, cat)
+            .withDataForCol(1, x1)
+            .withDataForCol(2, x2)
+            .withDataForCol(3, w)
+            .withDataForCol(4, y)
+            .withChunkLayout(100, 150, 0, 250)
+            .build();
+    }
+
+}
@@ -0,0 +1,20 @@
+package hex.genmodel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MojoReaderBackend} that can provide binary files without copying them to the heap, see
+ * {@link MappedMojoReaderBackend}. Readers of large models (eg. tree models) use the buffers directly instead
+ * of reading the files into {@code byte[]} arrays.
+ */
+public interface ByteBufferMojoReaderBackend extends MojoReaderBackend {
+
+  /**
+   * @param filename name of the file
+   * @return read-only buffer holding the content of the file, the first byte of the file is at index 0
+   * @throws IOException if the file doesn't exist
+   */
+  ByteBuffer getBinaryFileBuffer(String filename) throws IOException;
+
+}
@@ -327,6 +327,24 @@ public abstract class GenModel implements IGenModel, IGeneratedModel, Serializab
     throw new UnsupportedOperationException("`offset` column is not supported");
   }
 
+  /** Scores a batch of rows, equivalent to calling {@link #score0(double[], double[])} for each of the first
+   *  `nrows` rows. Both the input rows and the prediction arrays are provided by the caller and can be re-used
+   *  between calls (they can be larger than `nrows`). Subclasses can override this method with a vectorized
+   *  implementation. */
+  public double[][] score0Batch(double[][] rows, int nrows, double[][] preds) {
+    for (int r = 0; r < nrows; r++)
+      score0(rows[r], preds[r]);
+    return preds;
+  }
+
+  /** Scores a batch of rows with offsets, equivalent to calling {@link #score0(double[], double, double[])} for
+   *  each of the first `nrows` rows. */
+  public double[][] score0Batch(double[][] rows, double[] offsets, int nrows, double[][] preds) {
+    for (int r = 0; r < nrows; r++)
+      score0(rows[r], offsets[r], preds[r]);
+    return preds;
+  }
+
   /** Subclasses implement calibration of class probabilities. The input is array of
    *  predictions returned by the scoring function (score0). Supports classification
    *  models that were trained with calibration enabled. Original probabilities
@@ -0,0 +1,250 @@
+package hex.genmodel;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reader of a MOJO extracted into an uncompressed, memory-mapped store.
+ *
+ * The content of the MOJO zip file is extracted once (see {@link MojoReaderBackendFactory#createMappedReaderBackend})
+ * into a single file: the uncompressed content of all files of the MOJO followed by an index. Opening an existing
+ * store only reads the index and maps the file into memory, binary files are then handed out as slices of
+ * the mapping ({@link #getBinaryFileBuffer(String)}) without being read or copied. Readers of tree models use
+ * the slices directly: the trees are paged in by the operating system when they are first used and they don't
+ * take any heap. Loading time and heap usage of such models are (almost) independent of the size of the model.
+ *
+ * The mapping stays valid after the backend is closed and as long as the model is in use, the store file should
+ * not be modified while any model loaded from it is in use.
+ */
+public class MappedMojoReaderBackend implements ByteBufferMojoReaderBackend, Closeable {
+
+  private static final long MAGIC = 0x48324f4d4f4a4f31L; // "H2OMOJO1"
+  private static final int FOOTER_SIZE = 4 * 8;
+  /** Size of a single mapping, an entry never spans two mappings */
+  static final int SEGMENT_SIZE = 1 << 30;
+
+  private final ByteBuffer[] _segments;
+  final Map<String, int[]> _entries; // name -> {segment, offset, length}
+  private File _deleteOnClose;
+
+  private MappedMojoReaderBackend(ByteBuffer[] segments, Map<String, int[]> entries) {
+    _segments = segments;
+    _entries = entries;
+  }
+
+  /**
+   * Opens an existing store.
+   * @param store file created by {@link MojoReaderBackendFactory#createMappedReaderBackend}
+   * @return reader backend
+   * @throws IOException if the file is not a valid store
+   */
+  public static MappedMojoReaderBackend open(File store) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(store, "r")) {
+      final Footer footer = readFooter(raf);
+      if (footer == null)
+        throw new IOException("File " + store + " is not an extracted MOJO.");
+      final FileChannel channel = raf.getChannel();
+      final int nsegments = (int) ((footer._indexOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      final ByteBuffer[] segments = new ByteBuffer[nsegments];
+      for (int i = 0; i < nsegments; i++) {
+        final long start = (long) i * SEGMENT_SIZE;
+        final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(SEGMENT_SIZE, footer._indexOffset - start));
+        segments[i] = segment;
+      }
+      channel.position(footer._indexOffset);
+      final DataInputStream index = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      final int nentries = index.readInt();
+      final Map<String, int[]> entries = new HashMap<>(nentries * 2);
+      for (int i = 0; i < nentries; i++) {
+        final String name = index.readUTF();
+        final long offset = index.readLong();
+        final int length = index.readInt();
+        entries.put(name, new int[]{(int) (offset / SEGMENT_SIZE), (int) (offset % SEGMENT_SIZE), length});
+      }
+      return new MappedMojoReaderBackend(segments, entries);
+    }
+  }
+
+  /**
+   * @return true if the store exists and was extracted from a source of the given length and modification time
+   */
+  static boolean isUpToDate(File store, long sourceLength, long sourceLastModified) throws IOException {
+    if (!store.isFile())
+      return false;
+    try (RandomAccessFile raf = new RandomAccessFile(store, "r")) {
+      final Footer footer = readFooter(raf);
+      return footer != null && footer._sourceLength == sourceLength && footer._sourceLastModified == sourceLastModified;
+    }
+  }
+
+  /**
+   * Extracts a MOJO zip file into a store. The store is first written into a temporary file which then replaces
+   * the store, concurrent readers of an existing store are not affected.
+   * @param zipStream content of a MOJO zip file
+   * @param store destination
+   * @param sourceLength length of the source file (stored in the store, see {@link #isUpToDate})
+   * @param sourceLastModified modification time of the source file
+   */
+  static void extract(InputStream zipStream, File store, long sourceLength, long sourceLastModified) throws IOException {
+    extract(zipStream, store, sourceLength, sourceLastModified, SEGMENT_SIZE);
+  }
+
+  /**
+   * The entries are streamed into the store. An entry that ends up spanning two segments of the given size
+   * is moved to the start of the second segment, the gap is filled with zeros.
+   */
+  static void extract(InputStream zipStream, File store, long sourceLength, long sourceLastModified,
+                      int segmentSize) throws IOException {
+    final File dir = store.getAbsoluteFile().getParentFile();
+    final File tmp = File.createTempFile(store.getName(), ".tmp", dir);
+    try {
+      try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+        final FileChannel channel = raf.getChannel();
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        final ZipInputStream zis = new ZipInputStream(zipStream);
+        final Map<String, long[]> entries = new HashMap<>();
+        final byte[] buffer = new byte[8192];
+        long pos = 0;
+        ZipEntry entry;
+        while ((entry = zis.getNextEntry()) != null) {
+          if (entry.isDirectory())
+            continue;
+          long length = 0;
+          for (int len; (len = zis.read(buffer)) != -1; length += len)
+            out.write(buffer, 0, len);
+          if (length > segmentSize)
+            throw new IOException("File too large: " + entry.getName());
+          long start = pos;
+          if (start % segmentSize + length > segmentSize) { // don't let the entry span two segments
+            out.flush();
+            start = start - start % segmentSize + segmentSize;
+            move(channel, pos, start, length);
+            channel.position(start + length);
+          }
+          entries.put(entry.getName(), new long[]{start, length});
+          pos = start + length;
+        }
+        out.writeInt(entries.size());
+        for (Map.Entry<String, long[]> e : entries.entrySet()) {
+          out.writeUTF(e.getKey());
+          out.writeLong(e.getValue()[0]);
+          out.writeInt((int) e.getValue()[1]);
+        }
+        out.writeLong(sourceLength);
+        out.writeLong(sourceLastModified);
+        out.writeLong(pos);
+        out.writeLong(MAGIC);
+        out.flush();
+      }
+      try {
+        Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete())
+        tmp.deleteOnExit();
+    }
+  }
+
+  /**
+   * Moves length bytes of the file to a higher position, the bytes left behind are overwritten with zeros.
+   */
+  private static void move(FileChannel channel, long from, long to, long length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(8192);
+    for (long end = length; end > 0; ) { // from the end, the source and the destination can overlap
+      final int n = (int) Math.min(buffer.capacity(), end);
+      end -= n;
+      buffer.clear();
+      buffer.limit(n);
+      while (buffer.hasRemaining())
+        if (channel.read(buffer, from + buffer.position() + end) < 0)
+          throw new EOFException();
+      buffer.flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer, to + buffer.position() + end);
+    }
+    final ByteBuffer zeros = ByteBuffer.allocate(8192);
+    for (long p = from; p < to; ) {
+      zeros.clear();
+      zeros.limit((int) Math.min(zeros.capacity(), to - p));
+      p += channel.write(zeros, p);
+    }
+  }
+
+  private static Footer readFooter(RandomAccessFile raf) throws IOException {
+    final long length = raf.length();
+    if (length < FOOTER_SIZE)
+      return null;
+    raf.seek(length - FOOTER_SIZE);
+    final Footer footer = new Footer();
+    footer._sourceLength = raf.readLong();
+    footer._sourceLastModified = raf.readLong();
+    footer._indexOffset = raf.readLong();
+    return raf.readLong() == MAGIC ? footer : null;
+  }
+
+  private static class Footer {
+    long _sourceLength;
+    long _sourceLastModified;
+    long _indexOffset;
+  }
+
+  void deleteOnClose(File store) {
+    _deleteOnClose = store;
+  }
+
+  @Override
+  public ByteBuffer getBinaryFileBuffer(String filename) throws IOException {
+    final int[] entry = _entries.get(filename);
+    if (entry == null)
+      throw new IOException("Binary file " + filename + " not found");
+    final ByteBuffer bb = _segments[entry[0]].duplicate();
+    bb.position(entry[1]);
+    bb.limit(entry[1] + entry[2]);
+    return bb.slice();
+  }
+
+  @Override
+  public byte[] getBinaryFile(String filename) throws IOException {
+    final ByteBuffer bb = getBinaryFileBuffer(filename);
+    final byte[] out = new byte[bb.remaining()];
+    bb.get(out);
+    return out;
+  }
+
+  @Override
+  public BufferedReader getTextFile(String filename) throws IOException {
+    return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(getBinaryFile(filename))));
+  }
+
+  @Override
+  public boolean exists(String filename) {
+    return _entries.containsKey(filename);
+  }
+
+  /**
+   * Deletes the store if it was a temporary store, the mappings of the models loaded from it remain valid.
+   */
+  @Override
+  public void close() throws IOException {
+    if (_deleteOnClose != null) {
+      File f = _deleteOnClose;
+      _deleteOnClose = null;
+      if (!f.delete())
+        f.deleteOnExit(); // eg. on Windows a mapped file cannot be deleted
+    }
+  }
+
+}
@@ -25,6 +25,7 @@ public abstract class ModelMojoReader<M extends MojoModel> {
   protected M _model;
 
   protected MojoReaderBackend _reader;
+  protected MojoInterner _interner;
   private Map<String, Object> _lkv;
 
 
@@ -53,6 +54,21 @@ public abstract class ModelMojoReader<M extends MojoModel> {
    * @throws IOException Whenever there is an error reading the {@link MojoModel}'s data.
    */
   public static MojoModel readFrom(MojoReaderBackend reader, final boolean readModelMetadata) throws IOException {
+    return readFrom(reader, readModelMetadata, null);
+  }
+
+  /**
+   * De-serializes a {@link MojoModel}, column names and domains of the model are canonicalized using a given interner.
+   * Models read using the same interner share the instances of identical names and domains.
+   *
+   * @param reader      An instance of {@link MojoReaderBackend} to read from existing MOJO
+   * @param readModelMetadata If true, parses also model metadata (see {@link #readFrom(MojoReaderBackend, boolean)})
+   * @param interner    interner of names and domains, can be null
+   * @return De-serialized {@link MojoModel}
+   * @throws IOException Whenever there is an error reading the {@link MojoModel}'s data.
+   */
+  public static MojoModel readFrom(MojoReaderBackend reader, final boolean readModelMetadata,
+                                   MojoInterner interner) throws IOException {
     try {
       Map<String, Object> info = parseModelInfo(reader);
       if (! info.containsKey("algorithm"))
@@ -61,6 +77,7 @@ public abstract class ModelMojoReader<M extends MojoModel> {
       ModelMojoReader mmr = ModelMojoFactory.INSTANCE.getMojoReader(algo);
       mmr._lkv = info;
       mmr._reader = reader;
+      mmr._interner = interner;
       mmr.readAll(readModelMetadata);
       return mmr._model;
     } finally {
@@ -180,6 +197,10 @@ public abstract class ModelMojoReader<M extends MojoModel> {
   private void readAll(final boolean readModelMetadata) throws IOException {
     String[] columns = (String[]) _lkv.get("[columns]");
     String[][] domains = parseModelDomains(columns.length);
+    if (_interner != null) {
+      columns = _interner.intern(columns);
+      domains = _interner.intern(domains);
+    }
     boolean isSupervised = readkv("supervised");
     _model = makeModel(columns, domains, isSupervised ? columns[columns.length - 1] : null);
     _model._uuid = readkv("uuid");
@@ -0,0 +1,175 @@
+package hex.genmodel;
+
+import hex.genmodel.easy.EnumEncoder;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizes column names and domains of MOJO models.
+ *
+ * Models trained on the same data (eg. models of a grid or of an AutoML run, base models of a Stacked Ensemble)
+ * have identical column names and domains. When the models are read using the same interner
+ * (see {@link ModelMojoReader#readFrom(MojoReaderBackend, boolean, MojoInterner)}) they share a single instance
+ * of each distinct name array, domain and string instead of holding their own copies. Categorical encoders built
+ * from the shared domains share their level indices as well (see {@link hex.genmodel.easy.EnumEncoder}).
+ *
+ * Interned instances are held only weakly: values no longer used by any model are garbage collected. The interned
+ * arrays are shared by the models and must not be modified. All methods are thread-safe.
+ */
+public class MojoInterner {
+
+  // level indices of interned domains (identity keys), built on first use and shared by all encoders of the domain
+  private static final Map<String[], Map<String, Integer>> LEVEL_INDICES = new WeakHashMap<>();
+
+  private final Map<String, WeakReference<String>> _strings = new WeakHashMap<>();
+  private final ArrayTable _arrays = new ArrayTable();
+
+  /**
+   * @return canonical instance of an array of strings (eg. column names or a domain), the array's elements are
+   * canonicalized as well; null if the input is null
+   */
+  public synchronized String[] intern(String[] values) {
+    if (values == null)
+      return null;
+    Object[] canonical = _arrays.get(values);
+    if (canonical == null) {
+      final String[] copy = new String[values.length];
+      for (int i = 0; i < values.length; i++)
+        copy[i] = internString(values[i]);
+      canonical = _arrays.put(copy);
+      synchronized (LEVEL_INDICES) {
+        LEVEL_INDICES.put(copy, null);
+      }
+    }
+    return (String[]) canonical;
+  }
+
+  /**
+   * Level indices (level name to level index) of an interned domain, the instance is shared by all callers and
+   * must not be modified.
+   * @param domain domain
+   * @return map of the level indices or null if the domain wasn't created by an interner
+   */
+  public static Map<String, Integer> levelIndices(String[] domain) {
+    synchronized (LEVEL_INDICES) {
+      if (!LEVEL_INDICES.containsKey(domain))
+        return null;
+      Map<String, Integer> levelIndices = LEVEL_INDICES.get(domain);
+      if (levelIndices == null) {
+        levelIndices = Collections.unmodifiableMap(EnumEncoder.levelIndices(domain));
+        LEVEL_INDICES.put(domain, levelIndices);
+      }
+      return levelIndices;
+    }
+  }
+
+  /**
+   * @return canonical instance of model domains, each of the domains is canonicalized as well
+   */
+  public synchronized String[][] intern(String[][] domains) {
+    if (domains == null)
+      return null;
+    Object[] canonical = _arrays.get(domains);
+    if (canonical == null) {
+      final String[][] copy = new String[domains.length][];
+      for (int i = 0; i < domains.length; i++)
+        copy[i] = intern(domains[i]);
+      canonical = _arrays.put(copy);
+    }
+    return (String[][]) canonical;
+  }
+
+  private String internString(String s) {
+    if (s == null)
+      return null;
+    final WeakReference<String> ref = _strings.get(s);
+    final String canonical = ref != null ? ref.get() : null;
+    if (canonical != null)
+      return canonical;
+    _strings.put(s, new WeakReference<>(s));
+    return s;
+  }
+
+  /**
+   * @return number of distinct arrays currently held by the interner
+   */
+  public synchronized int size() {
+    return _arrays.size();
+  }
+
+  /**
+   * Weak set of arrays, arrays are compared by their (deep) content.
+   */
+  private static class ArrayTable {
+    private final Map<Integer, List<ArrayRef>> _buckets = new HashMap<>();
+    private final ReferenceQueue<Object[]> _queue = new ReferenceQueue<>();
+    private int _size;
+
+    Object[] get(Object[] array) {
+      expunge();
+      final List<ArrayRef> bucket = _buckets.get(Arrays.deepHashCode(array));
+      if (bucket == null)
+        return null;
+      for (ArrayRef ref : bucket) {
+        final Object[] candidate = ref.get();
+        if (candidate != null && candidate.getClass() == array.getClass() && Arrays.deepEquals(candidate, array))
+          return candidate;
+      }
+      return null;
+    }
+
+    Object[] put(Object[] array) {
+      final ArrayRef ref = new ArrayRef(array, _queue);
+      List<ArrayRef> bucket = _buckets.get(ref._hash);
+      if (bucket == null) {
+        bucket = new ArrayList<>(1);
+        _buckets.put(ref._hash, bucket);
+      }
+      bucket.add(ref);
+      _size++;
+      return array;
+    }
+
+    int size() {
+      expunge();
+      return _size;
+    }
+
+    private void expunge() {
+      ArrayRef ref;
+      while ((ref = (ArrayRef) _queue.poll()) != null) {
+        final List<ArrayRef> bucket = _buckets.get(ref._hash);
+        if (bucket == null)
+          continue;
+        for (Iterator<ArrayRef> it = bucket.iterator(); it.hasNext(); ) {
+          if (it.next() == ref) {
+            it.remove();
+            _size--;
+            break;
+          }
+        }
+        if (bucket.isEmpty())
+          _buckets.remove(ref._hash);
+      }
+    }
+  }
+
+  private static class ArrayRef extends WeakReference<Object[]> {
+    final int _hash;
+
+    ArrayRef(Object[] array, ReferenceQueue<Object[]> queue) {
+      super(array, queue);
+      _hash = Arrays.deepHashCode(array);
+    }
+  }
+
+}
@@ -0,0 +1,263 @@
+package hex.genmodel;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of MOJO models for serving many models in a single JVM.
+ *
+ * <ul>
+ *   <li>All models are read using a shared {@link MojoInterner}: models with the same columns and domains (eg. models
+ *   of a grid or of an AutoML run) share a single copy of the column names, domains and categorical level indices.</li>
+ *   <li>A new version of a model can be registered under an existing key at any time. The new version is loaded
+ *   without holding any locks and replaces the old one atomically, predictions in progress finish using the version
+ *   they started with.</li>
+ *   <li>The registry keeps the models under a memory budget. When the budget is exceeded, the least recently used
+ *   models are unloaded and they are transparently loaded again from their source by the next {@link #get}.</li>
+ * </ul>
+ *
+ * Memory usage of a model is estimated as the number of bytes read from the MOJO while loading the model, content
+ * of memory-mapped MOJOs (see {@link MappedMojoReaderBackend}) is not counted.
+ *
+ * <p>Example:</p>
+ * <pre>
+ *   MojoModelRegistry registry = new MojoModelRegistry(4L &lt;&lt; 30);
+ *   registry.register("churn", MojoModelRegistry.fileSource(new File("churn_v1.zip")));
+ *   ...
+ *   MojoModel model = registry.get("churn");
+ *   ...
+ *   registry.register("churn", MojoModelRegistry.fileSource(new File("churn_v2.zip"))); // hot-swap
+ * </pre>
+ */
+public class MojoModelRegistry {
+
+  /**
+   * Source of a model, opened when the model is (re)loaded.
+   */
+  public interface ModelSource {
+    MojoReaderBackend open() throws IOException;
+  }
+
+  private final long _memoryBudget;
+  private final MojoInterner _interner;
+  private final ConcurrentHashMap<String, Entry> _entries = new ConcurrentHashMap<>();
+  private final AtomicLong _memoryUsage = new AtomicLong();
+  private final AtomicLong _clock = new AtomicLong();
+
+  /**
+   * @param memoryBudget estimated memory (in bytes) the loaded models are allowed to use
+   */
+  public MojoModelRegistry(long memoryBudget) {
+    this(memoryBudget, new MojoInterner());
+  }
+
+  public MojoModelRegistry(long memoryBudget, MojoInterner interner) {
+    if (memoryBudget <= 0)
+      throw new IllegalArgumentException("Memory budget needs to be positive, got: " + memoryBudget);
+    _memoryBudget = memoryBudget;
+    _interner = interner;
+  }
+
+  public static ModelSource fileSource(final File mojoFile) {
+    return new ModelSource() {
+      @Override
+      public MojoReaderBackend open() throws IOException {
+        return MojoReaderBackendFactory.createReaderBackend(mojoFile);
+      }
+    };
+  }
+
+  /**
+   * Loads a model and registers it under a given key, a model previously registered under the same key is replaced.
+   * @param key model key
+   * @param source source of the model
+   * @return loaded model
+   * @throws IOException if the model cannot be loaded, the previously registered model (if any) is kept
+   */
+  public MojoModel register(String key, ModelSource source) throws IOException {
+    final Entry entry = new Entry(key, source);
+    final MojoModel model = entry.load();
+    final Entry previous = _entries.put(key, entry);
+    if (previous != null)
+      previous.unload();
+    evict(entry);
+    return model;
+  }
+
+  /**
+   * Returns the current version of a model, the model is loaded again if it was evicted.
+   * @param key model key
+   * @return model or null if there is no model registered under the key
+   * @throws IOException if an evicted model cannot be loaded again
+   */
+  public MojoModel get(String key) throws IOException {
+    final Entry entry = _entries.get(key);
+    if (entry == null)
+      return null;
+    entry._lastAccess = _clock.incrementAndGet();
+    MojoModel model = entry._model;
+    if (model == null) {
+      model = entry.load();
+      if (_entries.get(key) != entry) // replaced or removed in the meantime
+        entry.unload();
+      else
+        evict(entry);
+    }
+    return model;
+  }
+
+  /**
+   * Removes a model from the registry.
+   * @return true if a model was registered under the key
+   */
+  public boolean remove(String key) {
+    final Entry entry = _entries.remove(key);
+    if (entry == null)
+      return false;
+    entry.unload();
+    return true;
+  }
+
+  /**
+   * @return true if a model is registered under the key and it is currently loaded
+   */
+  public boolean isLoaded(String key) {
+    final Entry entry = _entries.get(key);
+    return entry != null && entry._model != null;
+  }
+
+  /**
+   * @return number of registered models (loaded or evicted)
+   */
+  public int size() {
+    return _entries.size();
+  }
+
+  /**
+   * @return estimated memory used by the loaded models
+   */
+  public long getMemoryUsage() {
+    return _memoryUsage.get();
+  }
+
+  public MojoInterner getInterner() {
+    return _interner;
+  }
+
+  // unloads the least recently used models until the registry fits into the budget, the last used model is kept
+  private synchronized void evict(Entry keep) {
+    while (_memoryUsage.get() > _memoryBudget) {
+      Entry victim = null;
+      for (Entry entry : _entries.values()) {
+        if (entry == keep || entry._model == null)
+          continue;
+        if (victim == null || entry._lastAccess < victim._lastAccess)
+          victim = entry;
+      }
+      if (victim == null)
+        break;
+      victim.unload();
+    }
+  }
+
+  private class Entry {
+    private final String _key;
+    private final ModelSource _source;
+    private volatile MojoModel _model;
+    private volatile long _lastAccess;
+    private long _size;
+
+    Entry(String key, ModelSource source) {
+      _key = key;
+      _source = source;
+      _lastAccess = _clock.incrementAndGet();
+    }
+
+    synchronized MojoModel load() throws IOException {
+      if (_model != null)
+        return _model;
+      final CountingReaderBackend reader = CountingReaderBackend.wrap(_source.open());
+      final MojoModel model = ModelMojoReader.readFrom(reader, false, _interner);
+      _size = reader._bytesRead;
+      _memoryUsage.addAndGet(_size);
+      _model = model;
+      return model;
+    }
+
+    synchronized void unload() {
+      if (_model == null)
+        return;
+      _model = null;
+      _memoryUsage.addAndGet(-_size);
+      _size = 0;
+    }
+
+    @Override
+    public String toString() {
+      return _key;
+    }
+  }
+
+  /**
+   * Counts the bytes read from a backend to estimate the memory used by the model.
+   */
+  private static class CountingReaderBackend implements MojoReaderBackend, Closeable {
+    final MojoReaderBackend _reader;
+    long _bytesRead;
+
+    private CountingReaderBackend(MojoReaderBackend reader) {
+      _reader = reader;
+    }
+
+    static CountingReaderBackend wrap(MojoReaderBackend reader) {
+      return reader instanceof ByteBufferMojoReaderBackend ?
+              new CountingByteBufferReaderBackend((ByteBufferMojoReaderBackend) reader) :
+              new CountingReaderBackend(reader);
+    }
+
+    @Override
+    public BufferedReader getTextFile(String filename) throws IOException {
+      final byte[] content = getBinaryFile(filename);
+      return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)));
+    }
+
+    @Override
+    public byte[] getBinaryFile(String filename) throws IOException {
+      final byte[] content = _reader.getBinaryFile(filename);
+      _bytesRead += content.length;
+      return content;
+    }
+
+    @Override
+    public boolean exists(String filename) {
+      return _reader.exists(filename);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (_reader instanceof Closeable)
+        ((Closeable) _reader).close();
+    }
+  }
+
+  private static class CountingByteBufferReaderBackend extends CountingReaderBackend
+          implements ByteBufferMojoReaderBackend {
+
+    private CountingByteBufferReaderBackend(ByteBufferMojoReaderBackend reader) {
+      super(reader);
+    }
+
+    @Override
+    public ByteBuffer getBinaryFileBuffer(String filename) throws IOException {
+      return ((ByteBufferMojoReaderBackend) _reader).getBinaryFileBuffer(filename);
+    }
+  }
+
+}
@@ -20,8 +20,13 @@ import java.util.zip.ZipInputStream;
  *  <li>MEMORY: (decompressed) content of the MOJO will be cached in memory, this should be suitable for most cases
  *  (for very large models please make sure that your application has enough memory to hold the unpacked MOJO)</li>
  *  <li>DISK: MOJO is cached in a temporary file on disk, recommended for very large models</li>
+ *  <li>MAPPED: MOJO is extracted into a temporary memory-mapped store (see {@link MappedMojoReaderBackend}), trees of
+ *  tree-based models are scored directly from the mapping and don't take any heap</li>
  * </ul>
  *
+ * <p>For MOJO files on a local file system, {@link #createMappedReaderBackend(File, File)} extracts the MOJO only once
+ * into a persistent store, loading the model again (eg. after a restart of the application) only maps the store.</p>
+ *
  * <p>Example of using MojoReaderBackendFactory to read a MOJO from a classpath resource:</p>
  *
  * <pre>
@@ -44,7 +49,7 @@ import java.util.zip.ZipInputStream;
  */
 public class MojoReaderBackendFactory {
 
-  public enum CachingStrategy { MEMORY, DISK }
+  public enum CachingStrategy { MEMORY, DISK, MAPPED }
 
   public static MojoReaderBackend createReaderBackend(String filename) throws IOException {
     return createReaderBackend(new File(filename));
@@ -71,6 +76,8 @@ public class MojoReaderBackendFactory {
         return createInMemoryReaderBackend(inputStream);
       case DISK:
         return createTempFileReaderBackend(inputStream);
+      case MAPPED:
+        return createTempMappedReaderBackend(inputStream);
     }
     throw new IllegalStateException("Unexpected caching strategy: " + cachingStrategy);
   }
@@ -112,6 +119,41 @@ public class MojoReaderBackendFactory {
     return new TmpMojoReaderBackend(tmpFile);
   }
 
+  /**
+   * Creates a reader backend of a MOJO extracted into a memory-mapped store. The MOJO is extracted only if the store
+   * doesn't exist yet or if it was extracted from a different version of the MOJO file (based on the size and
+   * the modification time of the file).
+   * @param mojoFile MOJO zip file
+   * @param storeFile location of the extracted MOJO
+   * @return reader backend
+   */
+  public static MappedMojoReaderBackend createMappedReaderBackend(File mojoFile, File storeFile) throws IOException {
+    final long length = mojoFile.length();
+    final long lastModified = mojoFile.lastModified();
+    if (!MappedMojoReaderBackend.isUpToDate(storeFile, length, lastModified)) {
+      try (InputStream is = new FileInputStream(mojoFile)) {
+        MappedMojoReaderBackend.extract(is, storeFile, length, lastModified);
+      }
+    }
+    return MappedMojoReaderBackend.open(storeFile);
+  }
+
+  private static MojoReaderBackend createTempMappedReaderBackend(InputStream inputStream) throws IOException {
+    File tmpFile = File.createTempFile("h2o-mojo", ".mapped");
+    tmpFile.deleteOnExit();
+    MappedMojoReaderBackend backend;
+    try {
+      MappedMojoReaderBackend.extract(inputStream, tmpFile, -1, -1);
+      backend = MappedMojoReaderBackend.open(tmpFile);
+    } catch (IOException e) {
+      if (! tmpFile.delete())
+        e = new IOException(e.getMessage() + " [Note: temp file " + tmpFile + " not deleted]", e);
+      throw e;
+    }
+    backend.deleteOnClose(tmpFile);
+    return backend;
+  }
+
   private static void closeQuietly(Closeable c) {
     if (c != null)
       try {
@@ -17,7 +17,7 @@ public abstract class MultiModelMojoReader<M extends MojoModel> extends ModelMoj
     for (int i = 0; i < subModelCount; i++) {
       String key = readkv("submodel_key_" + i);
       String zipDirectory = readkv("submodel_dir_" + i);
-      MojoModel model = ModelMojoReader.readFrom(new NestedMojoReaderBackend(zipDirectory));
+      MojoModel model = ModelMojoReader.readFrom(new NestedMojoReaderBackend(zipDirectory), false, _interner);
       models.put(key, model);
     }
     _subModels = Collections.unmodifiableMap(models);
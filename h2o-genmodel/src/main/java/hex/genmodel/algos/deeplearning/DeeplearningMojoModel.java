@@ -8,6 +8,9 @@ import hex.genmodel.utils.DistributionFamily;
 import java.io.Serializable;
 
 public class DeeplearningMojoModel extends MojoModel {
+  /** Number of rows propagated through the network together by {@link #score0Batch} */
+  static final int BATCH_BLOCK_SIZE = 8;
+
   public int _mini_batch_size;
   public int _nums; // number of numerical columns
   public int _cats; // number of categorical columns
@@ -82,6 +85,59 @@ public class DeeplearningMojoModel extends MojoModel {
     return modifyOutputs(neuronsInput, preds, dataRow);
   }
 
+  @Override
+  public double[][] score0Batch(double[][] rows, double[] offsets, int nrows, double[][] preds) {
+    return score0Batch(rows, nrows, preds); // offset is not used, see score0
+  }
+
+  /**
+   * Scores the rows in blocks of {@link #BATCH_BLOCK_SIZE} rows, a layer is evaluated for the whole block at once
+   * (see {@link NeuralNetwork#fpropBatch}). The activation buffers are allocated once per call and reused by all
+   * layers and blocks. Predictions are identical to {@link #score0}. Networks with Maxout layers are scored
+   * row by row.
+   */
+  @Override
+  public double[][] score0Batch(double[][] rows, int nrows, double[][] preds) {
+    if (hasMaxoutLayer())
+      return super.score0Batch(rows, nrows, preds);
+    int maxUnits = 0;
+    for (int units : _units)
+      maxUnits = Math.max(maxUnits, units);
+    final int blockSize = Math.min(nrows, BATCH_BLOCK_SIZE);
+    double[] neuronsInput = new double[blockSize * maxUnits];
+    double[] neuronsOutput = new double[blockSize * maxUnits];
+    final double[] rowInput = new double[_units[0]];
+    final double[] numsA = new double[_nums];
+    final int[] catsA = new int[_cats];
+    final double[] out = new double[_units[_numLayers]];
+    for (int from = 0; from < nrows; from += BATCH_BLOCK_SIZE) {
+      final int n = Math.min(nrows - from, BATCH_BLOCK_SIZE);
+      for (int r = 0; r < n; r++) {
+        setInput(rows[from + r], rowInput, numsA, catsA, _nums, _cats, _catoffsets, _normmul, _normsub, _use_all_factor_levels, true);
+        System.arraycopy(rowInput, 0, neuronsInput, r * rowInput.length, rowInput.length);
+      }
+      for (int layer = 0; layer < _numLayers; layer++) {
+        NeuralNetwork.fpropBatch(_allActivations[layer], _all_drop_out_ratios[layer], _weightsAndBias[layer],
+                neuronsInput, _units[layer], neuronsOutput, _units[layer + 1], n);
+        double[] tmp = neuronsInput;
+        neuronsInput = neuronsOutput;
+        neuronsOutput = tmp;
+      }
+      for (int r = 0; r < n; r++) {
+        System.arraycopy(neuronsInput, r * out.length, out, 0, out.length);
+        modifyOutputs(out, preds[from + r], rows[from + r]);
+      }
+    }
+    return preds;
+  }
+
+  private boolean hasMaxoutLayer() {
+    for (String activation : _allActivations)
+      if ("Maxout".equals(activation) || "MaxoutWithDropout".equals(activation))
+        return true;
+    return false;
+  }
+
   public double[] modifyOutputs(double[] out, double[] preds, double[] dataRow) {
     if (this.isAutoEncoder()) { // only perform unscale numerical value if need
       if (_normmul != null && _normmul.length > 0) { // undo the standardization on output
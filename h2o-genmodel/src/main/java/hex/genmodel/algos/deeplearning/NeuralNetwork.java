@@ -75,6 +75,150 @@ public class NeuralNetwork {  // represent one layer of neural network
     return input2ActFun;
   }
 
+  /**
+   * Batch counterpart of {@link #fprop1Layer()} for layers without Maxout activation: propagates a block of rows
+   * through a layer. Each row of weights is applied to all rows of the block before moving to the next output
+   * neuron, the results are identical to {@link #fprop1Layer()}.
+   * @param activation activation function of the layer
+   * @param dropOutRatio drop-out ratio of the layer
+   * @param weightsAndBias weights of the layer
+   * @param inputs layer inputs, row-major {@code nrows x inSize}
+   * @param inSize number of inputs of the layer
+   * @param outputs layer outputs, row-major {@code nrows x outSize}
+   * @param outSize number of neurons of the layer
+   * @param nrows number of rows in the block
+   */
+  static void fpropBatch(String activation, double dropOutRatio, DeeplearningMojoModel.StoreWeightsBias weightsAndBias,
+                         double[] inputs, int inSize, double[] outputs, int outSize, int nrows) {
+    formNNInputsBatch(weightsAndBias._wValues, weightsAndBias._bValues, inputs, inSize, outputs, outSize, nrows);
+    for (int r = 0; r < nrows; r++)
+      activateInPlace(activation, dropOutRatio, outputs, r * outSize, outSize);
+  }
+
+  /*
+  Applies the same operations as formNNInputs (gemv_row_optimized) to each row of the block, two rows at a time
+  to reuse the loaded weights
+   */
+  private static void formNNInputsBatch(float[] w, double[] b, double[] inputs, int cols, double[] outputs,
+                                        int outSize, int nrows) {
+    final int extra = cols - cols % 8;
+    for (int o = 0; o < outSize; o++) {
+      final int idx = o * cols;
+      int r = 0;
+      for (; r + 1 < nrows; r += 2) {
+        final int in0 = r * cols;
+        final int in1 = in0 + cols;
+        double psum0 = 0, psum1 = 0, psum2 = 0, psum3 = 0, psum4 = 0, psum5 = 0, psum6 = 0, psum7 = 0;
+        double qsum0 = 0, qsum1 = 0, qsum2 = 0, qsum3 = 0, qsum4 = 0, qsum5 = 0, qsum6 = 0, qsum7 = 0;
+        for (int col = 0; col < extra; col += 8) {
+          final int off = idx + col;
+          final double w0 = w[off], w1 = w[off + 1], w2 = w[off + 2], w3 = w[off + 3],
+                  w4 = w[off + 4], w5 = w[off + 5], w6 = w[off + 6], w7 = w[off + 7];
+          final int i0 = in0 + col;
+          final int i1 = in1 + col;
+          psum0 += w0 * inputs[i0    ];
+          psum1 += w1 * inputs[i0 + 1];
+          psum2 += w2 * inputs[i0 + 2];
+          psum3 += w3 * inputs[i0 + 3];
+          psum4 += w4 * inputs[i0 + 4];
+          psum5 += w5 * inputs[i0 + 5];
+          psum6 += w6 * inputs[i0 + 6];
+          psum7 += w7 * inputs[i0 + 7];
+          qsum0 += w0 * inputs[i1    ];
+          qsum1 += w1 * inputs[i1 + 1];
+          qsum2 += w2 * inputs[i1 + 2];
+          qsum3 += w3 * inputs[i1 + 3];
+          qsum4 += w4 * inputs[i1 + 4];
+          qsum5 += w5 * inputs[i1 + 5];
+          qsum6 += w6 * inputs[i1 + 6];
+          qsum7 += w7 * inputs[i1 + 7];
+        }
+        outputs[r * outSize + o] = finishDot(psum0, psum1, psum2, psum3, psum4, psum5, psum6, psum7,
+                w, idx, inputs, in0, extra, cols, b[o]);
+        outputs[(r + 1) * outSize + o] = finishDot(qsum0, qsum1, qsum2, qsum3, qsum4, qsum5, qsum6, qsum7,
+                w, idx, inputs, in1, extra, cols, b[o]);
+      }
+      for (; r < nrows; r++) {
+        final int in = r * cols;
+        double psum0 = 0, psum1 = 0, psum2 = 0, psum3 = 0, psum4 = 0, psum5 = 0, psum6 = 0, psum7 = 0;
+        for (int col = 0; col < extra; col += 8) {
+          final int off = idx + col;
+          final int i0 = in + col;
+          psum0 += w[off    ] * inputs[i0    ];
+          psum1 += w[off + 1] * inputs[i0 + 1];
+          psum2 += w[off + 2] * inputs[i0 + 2];
+          psum3 += w[off + 3] * inputs[i0 + 3];
+          psum4 += w[off + 4] * inputs[i0 + 4];
+          psum5 += w[off + 5] * inputs[i0 + 5];
+          psum6 += w[off + 6] * inputs[i0 + 6];
+          psum7 += w[off + 7] * inputs[i0 + 7];
+        }
+        outputs[r * outSize + o] = finishDot(psum0, psum1, psum2, psum3, psum4, psum5, psum6, psum7,
+                w, idx, inputs, in, extra, cols, b[o]);
+      }
+    }
+  }
+
+  // combines the partial sums, adds the remaining columns and the bias in the order of formNNInputs
+  private static double finishDot(double psum0, double psum1, double psum2, double psum3, double psum4, double psum5,
+                                  double psum6, double psum7, float[] w, int idx, double[] inputs, int in,
+                                  int extra, int cols, double bias) {
+    double value = 0;
+    value += psum0 + psum1 + psum2 + psum3;
+    value += psum4 + psum5 + psum6 + psum7;
+    for (int col = extra; col < cols; col++) {
+      value += w[idx + col] * inputs[in + col];
+    }
+    value += bias;
+    return value;
+  }
+
+  /*
+  In-place version of the (non-Maxout) activation functions in ActivationUtils, gives the same results
+   */
+  private static void activateInPlace(String activation, double dropOutRatio, double[] x, int off, int len) {
+    final int end = off + len;
+    switch (activation) {
+      case "Linear":
+        return;
+      case "Softmax": {
+        double max = x[off];
+        for (int i = off; i < end; i++)
+          max = max < x[i] ? x[i] : max;
+        double scaling = 0;
+        for (int i = off; i < end; i++) {
+          x[i] = Math.exp(x[i] - max);
+          scaling += x[i];
+        }
+        for (int i = off; i < end; i++)
+          x[i] /= scaling;
+        return;
+      }
+      case "ExpRectifierWithDropout":
+      case "ExpRectifier":
+        for (int i = off; i < end; i++)
+          x[i] = x[i] >= 0 ? x[i] : Math.exp(x[i]) - 1;
+        break;
+      case "RectifierWithDropout":
+      case "Rectifier":
+        for (int i = off; i < end; i++)
+          x[i] = 0.5f * (x[i] + Math.abs(x[i]));
+        break;
+      case "TanhWithDropout":
+      case "Tanh":
+        for (int i = off; i < end; i++)
+          x[i] = 1. - 2. / (1. + Math.exp(2. * x[i]));
+        break;
+      default:
+        throw new UnsupportedOperationException("Unexpected activation function: " + activation);
+    }
+    if (activation.endsWith("WithDropout") && dropOutRatio > 0) {
+      final double multFact = 1.0 - dropOutRatio;
+      for (int i = off; i < end; i++)
+        x[i] *= multFact;
+    }
+  }
+
   public double[] formNNInputsMaxOut() {
     double[] input2ActFun = new double[_outSize*_maxK];
 
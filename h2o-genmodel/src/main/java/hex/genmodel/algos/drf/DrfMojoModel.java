@@ -58,6 +58,11 @@ public final class DrfMojoModel extends SharedTreeMojoModelWithContributions imp
         return preds;
     }
 
+    @Override
+    protected boolean isDecisionMonotone() {
+        return !_binomial_double_trees;
+    }
+
     @Override
     public double[] score0(double[] row, double[] preds) {
         return score0(row, 0.0, preds);
@@ -3,45 +3,244 @@ package hex.genmodel.algos.ensemble;
 import hex.genmodel.MojoModel;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Stacked Ensemble MOJO. The base models are scored first and their predictions are used as the input
+ * of the metalearner.
+ *
+ * Base models are deduplicated: a model referenced multiple times is scored only once and the input row
+ * is re-mapped only once for all base models sharing the same column order. Optionally, the base models can be
+ * scored in parallel on a caller-provided executor (see {@link #setExecutor(Executor)}), this is useful for
+ * reducing the latency of ensembles with many base models. The calling thread participates in scoring the
+ * base models, the ensemble makes progress even when the executor is saturated.
+ */
 public class StackedEnsembleMojoModel extends MojoModel {
 
     MojoModel _metaLearner; //Currently only a GLM. May change to be DRF, GBM, XGBoost, or DL in the future
     StackedEnsembleMojoSubModel[] _baseModels; //An array of base models
     int _baseModelNum; //Number of base models
 
+    private transient volatile Executor _executor;
+    private transient volatile int _parallelism;
+    private transient volatile ScoringPlan _plan;
+
     public StackedEnsembleMojoModel(String[] columns, String[][] domains, String responseColumn) {
         super(columns, domains, responseColumn);
     }
 
+    /**
+     * Sets an executor used to score the base models in parallel, a single prediction uses at most as many threads
+     * as there are available processors.
+     * @param executor executor or null to score the base models sequentially in the calling thread (default)
+     */
+    public void setExecutor(Executor executor) {
+        setExecutor(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sets an executor used to score the base models in parallel.
+     * @param executor executor or null to score the base models sequentially in the calling thread (default)
+     * @param parallelism maximum number of threads (including the calling thread) used by a single prediction
+     */
+    public void setExecutor(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism needs to be positive, got: " + parallelism);
+        _parallelism = parallelism;
+        _executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return _executor;
+    }
+
+    @Override
+    public double[] score0(final double[] row, double[] preds) {
+        final ScoringPlan plan = plan();
+        final double[][] remappedRows = new double[plan._mappings.length][];
+        for (int m = 0; m < remappedRows.length; m++)
+            remappedRows[m] = plan._mappings[m].remapRow(row);
+        final double[] basePreds = new double[_nclasses > 2 ? _baseModelNum * _nclasses : _baseModelNum];
+        runAll(plan._models.length, new ScoringTask() {
+            @Override
+            public void score(int u) {
+                final BaseModel model = plan._models[u];
+                final double[] remappedRow = remappedRows[model._mapping];
+                // a copy is needed, some models modify the input row (eg. GLM imputes missing values)
+                final double[] modelPreds = model._mojoModel.score0(
+                        Arrays.copyOf(remappedRow, remappedRow.length), new double[model._mojoModel.getPredsSize()]);
+                collectBasePredictions(model, modelPreds, basePreds);
+            }
+        });
+        _metaLearner.score0(basePreds, preds);
+        return preds;
+    }
+
+    /**
+     * Each base model scores the whole batch (using its own {@link MojoModel#score0Batch}) before
+     * the metalearner is invoked on the batch of base model predictions.
+     */
     @Override
-    public double[] score0(double[] row, double[] preds) {
-        double[] basePreds = new double[_baseModelNum]; //Proper allocation for binomial and regression ensemble (one prediction per base model)
-        double[] basePredsRow = new double[preds.length];
-        if(_nclasses > 2) { //Multinomial
-            basePreds = new double[_baseModelNum * _nclasses]; //Proper allocation for multinomial ensemble (class probabilities per base model)
-            for(int i = 0; i < _baseModelNum; ++i){
-                if (_baseModels[i] == null) continue; // skip unused model
-                for(int j = 0; j < _nclasses; ++j){
-                    basePreds[i * _nclasses + j] = _baseModels[i]._mojoModel.score0(_baseModels[i].remapRow(row), basePredsRow)[j + 1];
+    public double[][] score0Batch(final double[][] rows, final int nrows, double[][] preds) {
+        if (nrows == 0)
+            return preds;
+        final ScoringPlan plan = plan();
+        final double[][][] remappedRows = new double[plan._mappings.length][nrows][];
+        for (int m = 0; m < remappedRows.length; m++)
+            for (int r = 0; r < nrows; r++)
+                remappedRows[m][r] = plan._mappings[m].remapRow(rows[r]);
+        final double[][] basePreds = new double[nrows][_nclasses > 2 ? _baseModelNum * _nclasses : _baseModelNum];
+        runAll(plan._models.length, new ScoringTask() {
+            @Override
+            public void score(int u) {
+                final BaseModel model = plan._models[u];
+                final double[][] modelRows = new double[nrows][];
+                for (int r = 0; r < nrows; r++) {
+                    final double[] remappedRow = remappedRows[model._mapping][r];
+                    modelRows[r] = Arrays.copyOf(remappedRow, remappedRow.length);
+                }
+                final double[][] modelPreds = new double[nrows][model._mojoModel.getPredsSize()];
+                model._mojoModel.score0Batch(modelRows, nrows, modelPreds);
+                for (int r = 0; r < nrows; r++)
+                    collectBasePredictions(model, modelPreds[r], basePreds[r]);
+            }
+        });
+        return _metaLearner.score0Batch(basePreds, nrows, preds);
+    }
+
+    private void collectBasePredictions(BaseModel model, double[] modelPreds, double[] basePreds) {
+        for (int i : model._slots) {
+            if (_nclasses > 2) { //Multinomial - class probabilities per base model
+                for (int j = 0; j < _nclasses; ++j)
+                    basePreds[i * _nclasses + j] = modelPreds[j + 1];
+            } else if (_nclasses == 2) { //Binomial
+                basePreds[i] = modelPreds[2];
+            } else { //Regression
+                basePreds[i] = modelPreds[0];
+            }
+        }
+    }
+
+    private ScoringPlan plan() {
+        ScoringPlan plan = _plan;
+        if (plan == null)
+            _plan = plan = new ScoringPlan(_baseModels);
+        return plan;
+    }
+
+    private interface ScoringTask {
+        void score(int i);
+    }
+
+    /**
+     * Runs tasks 0..n-1, tasks are claimed one by one by the calling thread and by helpers submitted to the executor.
+     * Returns when all tasks are finished, the first failure is re-thrown in the calling thread.
+     */
+    private void runAll(final int n, final ScoringTask task) {
+        final Executor executor = _executor;
+        final int helpers = Math.min(n, _parallelism) - 1;
+        if (executor == null || helpers < 1) {
+            for (int i = 0; i < n; i++)
+                task.score(i);
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(n);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < n) {
+                    try {
+                        if (failure.get() == null)
+                            task.score(i);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
                 }
             }
-        }else if(_nclasses == 2){ //Binomial
-            for(int i = 0; i < _baseModelNum; ++i) {
-                if (_baseModels[i] == null) continue; // skip unused model
-                _baseModels[i]._mojoModel.score0(_baseModels[i].remapRow(row), basePredsRow);
-                basePreds[i] = basePredsRow[2];
+        };
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break; // the remaining tasks will be scored by the calling thread
             }
-        }else{ //Regression
-            for(int i = 0; i < _baseModelNum; ++i) { //Regression
-                if (_baseModels[i] == null) continue; // skip unused model
-                _baseModels[i]._mojoModel.score0(_baseModels[i].remapRow(row), basePredsRow);
-                basePreds[i] = basePredsRow[0];
+        }
+        worker.run();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; // the tasks use buffers owned by this call, they need to finish first
             }
         }
-        _metaLearner.score0(basePreds, preds);
-        return preds;
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        final Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t != null)
+            throw new IllegalStateException("Scoring of a base model failed", t);
+    }
+
+    /**
+     * Distinct base models (a single model can be used in multiple base model slots) and distinct column mappings.
+     */
+    private static class ScoringPlan {
+        final StackedEnsembleMojoSubModel[] _mappings;
+        final BaseModel[] _models;
+
+        ScoringPlan(StackedEnsembleMojoSubModel[] baseModels) {
+            final List<StackedEnsembleMojoSubModel> mappings = new ArrayList<>();
+            final List<BaseModel> models = new ArrayList<>();
+            for (int i = 0; i < baseModels.length; i++) {
+                final StackedEnsembleMojoSubModel subModel = baseModels[i];
+                if (subModel == null) continue; // skip unused model
+                int mapping = 0;
+                while (mapping < mappings.size() && !Arrays.equals(mappings.get(mapping)._mapping, subModel._mapping))
+                    mapping++;
+                if (mapping == mappings.size())
+                    mappings.add(subModel);
+                BaseModel model = null;
+                for (BaseModel m : models)
+                    if (m._mojoModel == subModel._mojoModel && m._mapping == mapping)
+                        model = m;
+                if (model == null) {
+                    model = new BaseModel(subModel._mojoModel, mapping);
+                    models.add(model);
+                }
+                model._slots = Arrays.copyOf(model._slots, model._slots.length + 1);
+                model._slots[model._slots.length - 1] = i;
+            }
+            _mappings = mappings.toArray(new StackedEnsembleMojoSubModel[0]);
+            _models = models.toArray(new BaseModel[0]);
+        }
+    }
+
+    private static class BaseModel {
+        final MojoModel _mojoModel;
+        final int _mapping; // index of the column mapping
+        int[] _slots = new int[0]; // indices of the base model in the ensemble
+
+        BaseModel(MojoModel mojoModel, int mapping) {
+            _mojoModel = mojoModel;
+            _mapping = mapping;
+        }
     }
 
     /**
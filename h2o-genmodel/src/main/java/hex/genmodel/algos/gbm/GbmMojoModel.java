@@ -62,6 +62,11 @@ public final class GbmMojoModel extends SharedTreeMojoModelWithContributions imp
         return preds;
     }
     
+    @Override
+    protected boolean isDecisionMonotone() {
+        return _link_function != LinkFunctionType.inverse; // 1/f is not monotone around 0
+    }
+
     /**
      * Calculate inverse link depends on distribution type - every distribution has own link function
      * Be careful if you are changing code here - you have to change it in hex.LinkFunction too
@@ -25,6 +25,17 @@ public class GlmMojoModel extends GlmMojoModelBase {
 
   @Override
   double[] glmScore0(double[] data, double[] preds) {
+    double eta = categoricalTerms(data);
+
+    int noff = _catOffsets[_cats] - _cats;
+    for(int i = _cats; i < _beta.length - 1 - noff; ++i)
+      eta += _beta[noff + i] * data[i];
+    eta += _beta[_beta.length - 1]; // reduce intercept
+
+    return linkPreds(eta, preds);
+  }
+
+  private double categoricalTerms(double[] data) {
     double eta = 0.0;
 
     if (!_useAllFactorLevels) { // skip level 0 of all factors
@@ -44,12 +55,31 @@ public class GlmMojoModel extends GlmMojoModelBase {
           eta += _beta[ival];
       }
     }
+    return eta;
+  }
 
-    int noff = _catOffsets[_cats] - _cats;
-    for(int i = _cats; i < _beta.length - 1 - noff; ++i)
-      eta += _beta[noff + i] * data[i];
-    eta += _beta[_beta.length - 1]; // reduce intercept
+  /**
+   * Same as {@link #glmScore0} for each row, zero values of numerical columns (sparse rows) are skipped.
+   */
+  @Override
+  double[][] glmScoreBatch(double[][] rows, int nrows, double[][] preds) {
+    final int noff = _catOffsets[_cats] - _cats;
+    final int end = _beta.length - 1 - noff;
+    for (int r = 0; r < nrows; r++) {
+      final double[] data = rows[r];
+      double eta = categoricalTerms(data);
+      for (int i = _cats; i < end; ++i) {
+        final double x = data[i];
+        if (x != 0) // adding 0 * beta doesn't change the sum
+          eta += _beta[noff + i] * x;
+      }
+      eta += _beta[_beta.length - 1]; // reduce intercept
+      linkPreds(eta, preds[r]);
+    }
+    return preds;
+  }
 
+  private double[] linkPreds(double eta, double[] preds) {
     double mu = _linkFn.eval(eta);
 
     if (_binomial || _family.equals("fractionalbinomial")) {
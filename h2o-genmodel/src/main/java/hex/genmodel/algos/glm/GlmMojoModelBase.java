@@ -34,6 +34,25 @@ abstract class GlmMojoModelBase extends MojoModel {
 
   abstract double[] glmScore0(double[] data, double[] preds);
 
+  @Override
+  public final double[][] score0Batch(double[][] rows, int nrows, double[][] preds) {
+    if (_meanImputation)
+      for (int r = 0; r < nrows; r++)
+        imputeMissingWithMeans(rows[r]);
+
+    return glmScoreBatch(rows, nrows, preds);
+  }
+
+  /**
+   * Batch counterpart of {@link #glmScore0}, subclasses can override it with an implementation giving
+   * the same results.
+   */
+  double[][] glmScoreBatch(double[][] rows, int nrows, double[][] preds) {
+    for (int r = 0; r < nrows; r++)
+      glmScore0(rows[r], preds[r]);
+    return preds;
+  }
+
   private void imputeMissingWithMeans(double[] data) {
     for (int i = 0; i < _cats; ++i)
       if (Double.isNaN(data[i])) data[i] = _catModes[i];
@@ -1,9 +1,12 @@
 package hex.genmodel.algos.glm;
 
+import java.util.Arrays;
+
 public class GlmMultinomialMojoModel extends GlmMojoModelBase {
 
   private int P;
   private int noff;
+  private transient volatile double[] _numBetaT;
 
   GlmMultinomialMojoModel(String[] columns, String[][] domains, String responseColumn) {
     super(columns, domains, responseColumn);
@@ -45,6 +48,67 @@ public class GlmMultinomialMojoModel extends GlmMojoModelBase {
         preds[c+1] += _beta[noff+i + c*P]*data[i+_cats];
       preds[c+1] += _beta[(P-1) + c*P]; // reduce intercept
     }
+    return softmax(preds);
+  }
+
+  /**
+   * Scores the rows using the coefficients of the numerical columns transposed to class-major order: each value
+   * of a row is read once and applied to all classes, zero values (sparse rows) are skipped. The per-class
+   * sums are accumulated in the same order as in {@link #glmScore0}, the predictions are identical.
+   */
+  @Override
+  double[][] glmScoreBatch(double[][] rows, int nrows, double[][] preds) {
+    final double[] numBetaT = numericBetaTransposed();
+    final int K = _nclasses;
+    for (int r = 0; r < nrows; r++) {
+      final double[] data = rows[r];
+      final double[] p = preds[r];
+      Arrays.fill(p, 0);
+      for (int i = 0; i < _catOffsets.length - 1; ++i) {
+        int ival;
+        if (! _useAllFactorLevels) { // skip level 0 of all factors
+          if (data[i] == 0)
+            continue;
+          ival = (int) data[i] - 1;
+          if (ival != data[i] - 1) throw new IllegalArgumentException("categorical value out of range");
+        } else { // do not skip any levels
+          ival = (int) data[i];
+          if (ival != data[i]) throw new IllegalArgumentException("categorical value out of range");
+        }
+        ival += _catOffsets[i];
+        if (ival < _catOffsets[i + 1])
+          for (int c = 0; c < K; ++c)
+            p[c + 1] += _beta[ival + c*P];
+      }
+      for (int i = 0; i < _nums; ++i) {
+        final double x = data[i + _cats];
+        if (x == 0) // adding 0 * beta doesn't change the sum
+          continue;
+        final int off = i * K;
+        for (int c = 0; c < K; ++c)
+          p[c + 1] += numBetaT[off + c] * x;
+      }
+      for (int c = 0; c < K; ++c)
+        p[c + 1] += _beta[(P-1) + c*P]; // reduce intercept
+      softmax(p);
+    }
+    return preds;
+  }
+
+  // coefficients of the numerical columns, [column][class]
+  private double[] numericBetaTransposed() {
+    double[] numBetaT = _numBetaT;
+    if (numBetaT == null) {
+      numBetaT = new double[_nums * _nclasses];
+      for (int i = 0; i < _nums; ++i)
+        for (int c = 0; c < _nclasses; ++c)
+          numBetaT[i * _nclasses + c] = _beta[noff + i + c*P];
+      _numBetaT = numBetaT;
+    }
+    return numBetaT;
+  }
+
+  private static double[] softmax(double[] preds) {
     double max_row = 0;
     for (int c = 1; c < preds.length; ++c) if (preds[c] > max_row) max_row = preds[c];
     double sum_exp = 0;
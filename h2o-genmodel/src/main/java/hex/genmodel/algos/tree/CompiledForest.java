@@ -0,0 +1,168 @@
+package hex.genmodel.algos.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Random;
+
+/**
+ * Trees of a {@link FlatForest} compiled to JVM bytecode.
+ *
+ * Every tree is turned into a method of a class generated at runtime (see {@link TreeBytecodeCompiler}): the nodes
+ * become nested conditional jumps with the column indices, split thresholds and leaf values inlined as constants,
+ * instead of an interpreter loop reading them from arrays. Large trees are split into several methods to stay
+ * under the size limit of methods compiled by the JIT, trees are grouped into classes to stay under the limits
+ * of the class file format. Trees too large to be compiled are scored using the flat layout.
+ *
+ * The generated classes are defined in a private class loader and are garbage collected together with
+ * the {@code CompiledForest} instance. Instances are not serializable.
+ *
+ * Scoring using the compiled trees gives results identical to {@link FlatForest}.
+ */
+public final class CompiledForest {
+
+  private final FlatForest _flat;
+  private final String[][] _domains;
+  private final CompiledTreeGroup[] _groups;
+  private final int[] _groupOf;   // group of a tree, -1 if the tree was not compiled
+  private final int[] _localIndex; // index of the tree within the group
+
+  CompiledForest(FlatForest flat, String[][] domains, CompiledTreeGroup[] groups, int[] groupOf, int[] localIndex) {
+    _flat = flat;
+    _domains = domains;
+    _groups = groups;
+    _groupOf = groupOf;
+    _localIndex = localIndex;
+  }
+
+  /**
+   * Compiles the trees of a flat forest.
+   * @param flat flattened trees
+   * @param domains model domains (used to detect unseen categorical levels), the domains are inlined in
+   *                the generated code and need to be the same domains as used for scoring with the flat layout
+   * @return compiled trees, tree indices are preserved
+   */
+  public static CompiledForest compile(FlatForest flat, String[][] domains) {
+    return new TreeBytecodeCompiler(flat, domains).compile();
+  }
+
+  public int ntrees() {
+    return _groupOf.length;
+  }
+
+  /**
+   * @return number of trees that were compiled to bytecode (the remaining trees are empty or too large)
+   */
+  public int ncompiled() {
+    int n = 0;
+    for (int g : _groupOf)
+      if (g >= 0)
+        n++;
+    return n;
+  }
+
+  /**
+   * @return number of generated classes
+   */
+  public int nclasses() {
+    return _groups.length;
+  }
+
+  /**
+   * Score a single row by a single tree.
+   * @param tree index of the tree
+   * @param row input row
+   * @return tree prediction (0 for an empty tree)
+   */
+  public double scoreTree(int tree, double[] row) {
+    final int group = _groupOf[tree];
+    return group >= 0 ? _groups[group].scoreTree(_localIndex[tree], row) : _flat.scoreTree(tree, row, _domains);
+  }
+
+  /**
+   * Score a block of rows by a single tree, tree predictions are added to {@code preds[row][predIdx]}.
+   * @see FlatForest#scoreTree(int, double[][], int, int, double[][], int, String[][])
+   */
+  public void scoreTree(int tree, double[][] rows, int fromRow, int toRow, double[][] preds, int predIdx) {
+    final int group = _groupOf[tree];
+    if (group < 0) {
+      _flat.scoreTree(tree, rows, fromRow, toRow, preds, predIdx, _domains);
+      return;
+    }
+    final CompiledTreeGroup code = _groups[group];
+    final int localIndex = _localIndex[tree];
+    for (int r = fromRow; r < toRow; r++) {
+      preds[r][predIdx] += code.scoreTree(localIndex, rows[r]);
+    }
+  }
+
+  /**
+   * Checks that the compiled trees give the same predictions as the flat layout. Rows are randomly generated
+   * from the split points of the trees, NAs and unseen categorical levels to cover all branches of the nodes.
+   * @param nrows number of rows to check
+   * @param seed random seed
+   * @throws IllegalStateException if the predictions differ
+   */
+  public void verify(int nrows, long seed) {
+    final double[][] values = probeValues();
+    final Random rnd = new Random(seed);
+    final double[] row = new double[values.length];
+    for (int r = 0; r < nrows; r++) {
+      for (int c = 0; c < row.length; c++) {
+        row[c] = values[c][rnd.nextInt(values[c].length)];
+      }
+      for (int tree = 0; tree < _groupOf.length; tree++) {
+        if (_groupOf[tree] < 0)
+          continue;
+        final double expected = _flat.scoreTree(tree, row, _domains);
+        final double actual = scoreTree(tree, row);
+        if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual))
+          throw new IllegalStateException("Compiled tree " + tree + " predicted " + actual + " instead of " + expected +
+                  " for row " + Arrays.toString(row));
+      }
+    }
+  }
+
+  // interesting values of every column used by the trees
+  private double[][] probeValues() {
+    final FlatForest ff = _flat;
+    int ncols = 0;
+    for (int col : ff._cols)
+      ncols = Math.max(ncols, col + 1);
+    final List<Set<Double>> values = new ArrayList<>(ncols);
+    for (int c = 0; c < ncols; c++) {
+      Set<Double> colValues = new LinkedHashSet<>();
+      colValues.add(Double.NaN);
+      if (_domains != null && c < _domains.length && _domains[c] != null)
+        colValues.add((double) _domains[c].length); // unseen level
+      values.add(colValues);
+    }
+    for (int node = 0; node < ff._cols.length; node++) {
+      final Set<Double> colValues = values.get(ff._cols[node]);
+      final double split = ff._splits[node];
+      colValues.add(split);
+      colValues.add(Math.nextAfter(split, Double.NEGATIVE_INFINITY));
+      final int bs = ff._bitsets[node];
+      if (bs >= 0) {
+        final int bitOff = ff._bsBitOffs[bs];
+        final int nbits = ff._bsNBits[bs];
+        colValues.add((double) bitOff - 1);
+        for (int b = 0; b < Math.min(nbits, 64); b++)
+          colValues.add((double) bitOff + b);
+        colValues.add((double) bitOff + nbits);
+      }
+    }
+    final double[][] result = new double[ncols][];
+    for (int c = 0; c < ncols; c++) {
+      final Set<Double> colValues = values.get(c);
+      result[c] = new double[colValues.size()];
+      int i = 0;
+      for (double value : colValues)
+        result[c][i++] = value;
+    }
+    return result;
+  }
+
+}
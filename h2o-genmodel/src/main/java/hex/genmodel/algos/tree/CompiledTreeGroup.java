@@ -0,0 +1,28 @@
+package hex.genmodel.algos.tree;
+
+/**
+ * Base class of the classes generated by {@link TreeBytecodeCompiler}. Each generated class holds the code
+ * of a group of trees, trees are referred to by their index within the group.
+ *
+ * Not meant to be extended by hand, it needs to be public to be visible from the class loader of the generated classes.
+ */
+public abstract class CompiledTreeGroup {
+
+  /**
+   * Bytes of all bitsets of the forest (categorical splits), see {@link FlatForest}.
+   */
+  protected final byte[] _bits;
+
+  protected CompiledTreeGroup(byte[] bits) {
+    _bits = bits;
+  }
+
+  /**
+   * Score a single row by a single tree.
+   * @param tree index of the tree within the group
+   * @param row input row
+   * @return tree prediction
+   */
+  public abstract double scoreTree(int tree, double[] row);
+
+}
@@ -3,6 +3,8 @@ package hex.genmodel.algos.tree;
 import hex.genmodel.PredictContributions;
 import hex.genmodel.utils.ArrayUtils;
 
+import java.util.Arrays;
+
 public abstract class ContributionsPredictor<E> implements PredictContributions {
   private final int _ncontribs;
   private final String[] _contribution_names;
@@ -27,8 +29,44 @@ public abstract class ContributionsPredictor<E> implements PredictContributions
     return getContribs(contribs);
   }
 
+  /**
+   * Calculate contributions (SHAP values) for a batch of rows.
+   * @param inputs input rows
+   * @param nrows number of rows to process (inputs and contribs can be larger and reused between calls)
+   * @param contribs output contributions, one array of length {@code getContributionNames().length} per row
+   * @return contribs
+   */
+  @SuppressWarnings("unchecked")
+  public final float[][] calculateContributions(double[][] inputs, int nrows, float[][] contribs) {
+    for (int r = 0; r < nrows; r++) {
+      Arrays.fill(contribs[r], 0);
+    }
+    Object workspace = getWorkspace();
+    if (_treeSHAPPredictor instanceof TreeSHAPEnsemble) {
+      E[] rows = toInputRows(inputs, nrows);
+      ((TreeSHAPEnsemble<E>) _treeSHAPPredictor).calculateContributions(rows, nrows, contribs, workspace);
+    } else {
+      for (int r = 0; r < nrows; r++) {
+        _treeSHAPPredictor.calculateContributions(toInputRow(inputs[r]), contribs[r], 0, -1, workspace);
+      }
+    }
+    for (int r = 0; r < nrows; r++) {
+      contribs[r] = getContribs(contribs[r]);
+    }
+    return contribs;
+  }
+
   protected abstract E toInputRow(double[] input);
 
+  @SuppressWarnings("unchecked")
+  protected E[] toInputRows(double[][] inputs, int nrows) {
+    Object[] rows = new Object[nrows];
+    for (int r = 0; r < nrows; r++) {
+      rows[r] = toInputRow(inputs[r]);
+    }
+    return (E[]) rows;
+  }
+
   public float[] getContribs(float[] contribs) {
     return contribs;
   }
@@ -0,0 +1,418 @@
+package hex.genmodel.algos.tree;
+
+import ai.h2o.algos.tree.INode;
+import ai.h2o.algos.tree.INodeStat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TreeSHAP based on precomputed root-to-leaf paths.
+ *
+ * The recursive algorithm implemented in {@link TreeSHAP} walks the whole tree for every row and re-builds the
+ * decision path (extend/unwind) along the way. {@code FastTreeSHAP} extracts all root-to-leaf paths when the predictor
+ * is created. Each path is reduced to the unique features it splits on, their zero fractions (fraction of
+ * the training data that follows the path) are precomputed. For a given row the only row-dependent part of
+ * a path are the one fractions (does the row follow the path for a given feature?). For shorter paths (the common case
+ * for GBM) the Shapley weights are therefore precomputed for all combinations of the one fractions and scoring a row
+ * becomes a simple table lookup. Longer paths are evaluated on the fly, without recursion and using buffers
+ * of the workspace.
+ *
+ * Results are equivalent to {@link TreeSHAP} (up to floating point rounding). Conditional contributions
+ * (condition != 0, used for SHAP interaction values) follow the reference XGBoost implementation.
+ */
+public class FastTreeSHAP<R, N extends INode<R>, S extends INodeStat> implements TreeSHAPPredictor<R> {
+
+  // paths with up to this many unique features have their weights precomputed
+  static final int MAX_PRECOMPUTED_PATH_LENGTH = 10;
+  // limits the memory used by precomputed weights of a single tree (256kB)
+  static final int MAX_PRECOMPUTED_WEIGHTS = 1 << 16;
+  /**
+   * System property limiting the number of precomputed weights of all trees of a model (4 bytes each),
+   * default is {@link #DEFAULT_MAX_MODEL_PRECOMPUTED_WEIGHTS} (16MB). The limit is split evenly between the trees,
+   * see {@link #precomputedWeightsLimit(int)}.
+   */
+  public static final String MAX_MODEL_PRECOMPUTED_WEIGHTS_PROP = "sys.ai.h2o.treeshap.maxPrecomputedWeights";
+  static final int DEFAULT_MAX_MODEL_PRECOMPUTED_WEIGHTS = 1 << 22;
+
+  private final N[] _nodes;
+  private final int[] _internalNodes;  // ids of all internal nodes reachable from the root
+  private final float _expectedTreeValue;
+  private final int _maxPathLength;
+
+  // Leaves (paths)
+  private final float[] _leafValues;
+  private final int[] _pathOffs;       // offset of the first unique feature of a path
+  private final int[] _pathLengths;    // number of unique features of a path
+  private final int[] _edgeOffs;       // offset of the first edge of a path (edges[leaf] = [edgeOffs[leaf], edgeOffs[leaf+1]) )
+  private final int[] _weightOffs;     // offset of the precomputed weights, -1 if the path is evaluated on the fly
+  // Unique features of the paths
+  private final int[] _features;
+  private final float[] _zeroFractions;
+  // Edges of the paths
+  private final int[] _edgeNodes;      // node on the path
+  private final int[] _edgeChildren;   // child of the node that is on the path
+  private final int[] _edgeFeatures;   // index of the unique feature (relative to pathOff) of the edge
+  // Precomputed contributions: for each path, for each combination of one fractions, for each unique feature
+  private final float[] _weights;
+  private final int _maxPrecomputedWeights;
+
+  public FastTreeSHAP(N[] nodes, S[] stats, int rootNodeId) {
+    this(nodes, stats, rootNodeId, MAX_PRECOMPUTED_WEIGHTS);
+  }
+
+  /**
+   * @param maxPrecomputedWeights limit of the precomputed weights of this tree, paths that don't fit are evaluated
+   *                              on the fly (see {@link #precomputedWeightsLimit(int)} for trees of a model)
+   */
+  public FastTreeSHAP(N[] nodes, S[] stats, int rootNodeId, int maxPrecomputedWeights) {
+    _maxPrecomputedWeights = maxPrecomputedWeights;
+    _nodes = nodes;
+    _expectedTreeValue = TreeSHAP.nodeMeanValue(nodes, stats, rootNodeId);
+
+    PathsBuilder<R, N, S> b = new PathsBuilder<>(nodes, stats);
+    b.addPaths(rootNodeId);
+    _internalNodes = toIntArray(b._internalNodes);
+    int nleaves = b._leafValues.size();
+    _leafValues = new float[nleaves];
+    _pathOffs = new int[nleaves];
+    _pathLengths = new int[nleaves];
+    _edgeOffs = new int[nleaves + 1];
+    for (int l = 0; l < nleaves; l++) {
+      _leafValues[l] = b._leafValues.get(l);
+      _pathOffs[l] = b._pathOffs.get(l);
+      _pathLengths[l] = b._pathLengths.get(l);
+      _edgeOffs[l] = b._edgeOffs.get(l);
+    }
+    _edgeOffs[nleaves] = b._edgeNodes.size();
+    _features = toIntArray(b._features);
+    _zeroFractions = new float[b._zeroFractions.size()];
+    for (int i = 0; i < _zeroFractions.length; i++)
+      _zeroFractions[i] = b._zeroFractions.get(i);
+    _edgeNodes = toIntArray(b._edgeNodes);
+    _edgeChildren = toIntArray(b._edgeChildren);
+    _edgeFeatures = toIntArray(b._edgeFeatures);
+    int maxPathLength = 0;
+    for (int len : _pathLengths)
+      maxPathLength = Math.max(maxPathLength, len);
+    _maxPathLength = maxPathLength;
+
+    _weightOffs = new int[nleaves];
+    _weights = precomputeWeights();
+  }
+
+  /**
+   * Limit of the precomputed weights of a single tree of a model, the model-wide limit
+   * ({@link #MAX_MODEL_PRECOMPUTED_WEIGHTS_PROP}) is split evenly between the trees.
+   * @param ntrees number of trees of the model
+   * @return limit to be passed to {@link #FastTreeSHAP(INode[], INodeStat[], int, int)}
+   */
+  public static int precomputedWeightsLimit(int ntrees) {
+    final long modelLimit = Integer.getInteger(MAX_MODEL_PRECOMPUTED_WEIGHTS_PROP, DEFAULT_MAX_MODEL_PRECOMPUTED_WEIGHTS);
+    return (int) Math.min(MAX_PRECOMPUTED_WEIGHTS, Math.max(0, modelLimit / Math.max(1, ntrees)));
+  }
+
+  private float[] precomputeWeights() {
+    int total = 0;
+    for (int l = 0; l < _leafValues.length; l++) {
+      int len = _pathLengths[l];
+      int size = len <= MAX_PRECOMPUTED_PATH_LENGTH ? (1 << len) * len : Integer.MAX_VALUE;
+      if (size <= _maxPrecomputedWeights - total) {
+        _weightOffs[l] = total;
+        total += size;
+      } else {
+        _weightOffs[l] = -1;
+      }
+    }
+    float[] weights = new float[total];
+    Workspace ws = makeWorkspace();
+    for (int l = 0; l < _leafValues.length; l++) {
+      if (_weightOffs[l] < 0)
+        continue;
+      final int len = _pathLengths[l];
+      try {
+        for (int mask = 0; mask < (1 << len); mask++) {
+          for (int i = 0; i < len; i++)
+            ws._one[i] = (mask & (1 << i)) != 0 ? 1 : 0;
+          pathContributions(l, ws, -1);
+          System.arraycopy(ws._contribs, 0, weights, _weightOffs[l] + mask * len, len);
+        }
+      } catch (IllegalStateException e) {
+        // degenerate path (zero weight nodes), some combinations are not valid - evaluate the path on the fly
+        _weightOffs[l] = -1;
+      }
+    }
+    return weights;
+  }
+
+  @Override
+  public float[] calculateContributions(R feat, float[] out_contribs) {
+    return calculateContributions(feat, out_contribs, 0, -1, makeWorkspace());
+  }
+
+  @Override
+  public float[] calculateContributions(R feat, float[] out_contribs, int condition, int condition_feature,
+                                        Object workspace) {
+    if (condition == 0) {
+      out_contribs[out_contribs.length - 1] += _expectedTreeValue;
+    }
+    final Workspace ws = ((Workspace) workspace).ensureCapacity(_nodes.length, _maxPathLength);
+    final int[] next = ws._next;
+    for (int n : _internalNodes) {
+      next[n] = _nodes[n].next(feat);
+    }
+    for (int l = 0; l < _leafValues.length; l++) {
+      final int pathOff = _pathOffs[l];
+      final int len = _pathLengths[l];
+      if (condition == 0 && _weightOffs[l] >= 0) {
+        int mask = (1 << len) - 1;
+        for (int e = _edgeOffs[l]; e < _edgeOffs[l + 1]; e++) {
+          if (next[_edgeNodes[e]] != _edgeChildren[e])
+            mask &= ~(1 << _edgeFeatures[e]);
+        }
+        final int weightOff = _weightOffs[l] + mask * len;
+        for (int i = 0; i < len; i++) {
+          out_contribs[_features[pathOff + i]] += _weights[weightOff + i];
+        }
+      } else {
+        final float[] one = ws._one;
+        Arrays.fill(one, 0, len, 1);
+        for (int e = _edgeOffs[l]; e < _edgeOffs[l + 1]; e++) {
+          if (next[_edgeNodes[e]] != _edgeChildren[e])
+            one[_edgeFeatures[e]] = 0;
+        }
+        int excluded = -1;
+        float conditionFraction = 1;
+        if (condition != 0) {
+          for (int i = 0; i < len; i++) {
+            if (_features[pathOff + i] == condition_feature) {
+              excluded = i;
+              conditionFraction = condition > 0 ? one[i] : _zeroFractions[pathOff + i];
+              break;
+            }
+          }
+          if (conditionFraction == 0)
+            continue;
+        }
+        pathContributions(l, ws, excluded);
+        for (int i = 0; i < len; i++) {
+          if (i != excluded)
+            out_contribs[_features[pathOff + i]] += ws._contribs[i] * conditionFraction;
+        }
+      }
+    }
+    return out_contribs;
+  }
+
+  /**
+   * Calculates contributions of the unique features of a given path, one fractions are expected to be already
+   * populated in the workspace. Results are stored in {@code ws._contribs}.
+   */
+  private void pathContributions(int leaf, Workspace ws, int excluded) {
+    final int pathOff = _pathOffs[leaf];
+    final int len = _pathLengths[leaf];
+    final float[] pweight = ws._pweight;
+    final float[] zero = ws._zero;
+    final float[] one = ws._oneExt;
+    final int[] elem = ws._elem;
+    // root of the path: zero & one fractions are 1
+    int depth = 0;
+    zero[0] = 1;
+    one[0] = 1;
+    extendPath(pweight, zero, one, 0);
+    for (int i = 0; i < len; i++) {
+      if (i == excluded)
+        continue;
+      depth++;
+      zero[depth] = _zeroFractions[pathOff + i];
+      one[depth] = ws._one[i];
+      elem[depth] = i;
+      extendPath(pweight, zero, one, depth);
+    }
+    final float leafValue = _leafValues[leaf];
+    for (int j = 1; j <= depth; j++) {
+      final float w = unwoundPathSum(pweight, zero, one, depth, j);
+      ws._contribs[elem[j]] = w * (one[j] - zero[j]) * leafValue;
+    }
+  }
+
+  // extend our decision path with a fraction of one and zero extensions (see TreeSHAP#extendPath)
+  private static void extendPath(float[] pweight, float[] zero, float[] one, int unique_depth) {
+    final float zero_fraction = zero[unique_depth];
+    final float one_fraction = one[unique_depth];
+    pweight[unique_depth] = (unique_depth == 0 ? 1.0f : 0.0f);
+    for (int i = unique_depth - 1; i >= 0; i--) {
+      pweight[i + 1] += one_fraction * pweight[i] * (i + 1)
+              / (float) (unique_depth + 1);
+      pweight[i] = zero_fraction * pweight[i] * (unique_depth - i)
+              / (float) (unique_depth + 1);
+    }
+  }
+
+  // determine what the total permutation weight would be if we unwound a previous extension in the decision path
+  // (see TreeSHAP#unwoundPathSum)
+  private static float unwoundPathSum(float[] pweight, float[] zero, float[] one, int unique_depth, int path_index) {
+    final float one_fraction = one[path_index];
+    final float zero_fraction = zero[path_index];
+    float next_one_portion = pweight[unique_depth];
+    float total = 0;
+    for (int i = unique_depth - 1; i >= 0; --i) {
+      if (one_fraction != 0) {
+        final float tmp = next_one_portion * (unique_depth + 1)
+                / ((i + 1) * one_fraction);
+        total += tmp;
+        next_one_portion = pweight[i] - tmp * zero_fraction * ((unique_depth - i)
+                / (float) (unique_depth + 1));
+      } else if (zero_fraction != 0) {
+        total += (pweight[i] / zero_fraction) / ((unique_depth - i)
+                / (float) (unique_depth + 1));
+      } else {
+        if (pweight[i] != 0)
+          throw new IllegalStateException("Unique path " + i + " must have zero getWeight");
+      }
+    }
+    return total;
+  }
+
+  @Override
+  public Workspace makeWorkspace() {
+    return new Workspace(_nodes.length, _maxPathLength);
+  }
+
+  @Override
+  public int getWorkspaceSize() {
+    return _nodes.length + 5 * (_maxPathLength + 1);
+  }
+
+  public int getNumPaths() {
+    return _leafValues.length;
+  }
+
+  public int getNumPrecomputedPaths() {
+    int cnt = 0;
+    for (int off : _weightOffs)
+      if (off >= 0)
+        cnt++;
+    return cnt;
+  }
+
+  private static int[] toIntArray(List<Integer> list) {
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = list.get(i);
+    return result;
+  }
+
+  /**
+   * Reusable buffers, a single workspace can be shared by all trees of an ensemble (it grows as needed).
+   */
+  public static class Workspace {
+    int[] _next;
+    float[] _pweight;
+    float[] _zero;
+    float[] _oneExt;
+    int[] _elem;
+    float[] _one;
+    float[] _contribs;
+
+    Workspace(int nnodes, int maxPathLength) {
+      _next = new int[nnodes];
+      allocPathBuffers(maxPathLength);
+    }
+
+    private void allocPathBuffers(int maxPathLength) {
+      _pweight = new float[maxPathLength + 1];
+      _zero = new float[maxPathLength + 1];
+      _oneExt = new float[maxPathLength + 1];
+      _elem = new int[maxPathLength + 1];
+      _one = new float[maxPathLength];
+      _contribs = new float[maxPathLength];
+    }
+
+    Workspace ensureCapacity(int nnodes, int maxPathLength) {
+      if (_next.length < nnodes)
+        _next = new int[nnodes];
+      if (_one.length < maxPathLength)
+        allocPathBuffers(maxPathLength);
+      return this;
+    }
+  }
+
+  /**
+   * Extracts root-to-leaf paths: features are de-duplicated, only the last occurrence of a feature on the path
+   * is kept (with zero fractions of all occurrences combined) - this corresponds to the unwinding of
+   * repeated features in the recursive algorithm.
+   */
+  private static class PathsBuilder<R, N extends INode<R>, S extends INodeStat> {
+    private final N[] _nodes;
+    private final S[] _stats;
+
+    final List<Integer> _internalNodes = new ArrayList<>();
+    final List<Float> _leafValues = new ArrayList<>();
+    final List<Integer> _pathOffs = new ArrayList<>();
+    final List<Integer> _pathLengths = new ArrayList<>();
+    final List<Integer> _edgeOffs = new ArrayList<>();
+    final List<Integer> _features = new ArrayList<>();
+    final List<Float> _zeroFractions = new ArrayList<>();
+    final List<Integer> _edgeNodes = new ArrayList<>();
+    final List<Integer> _edgeChildren = new ArrayList<>();
+    final List<Integer> _edgeFeatures = new ArrayList<>();
+
+    // current path from the root
+    private final List<Integer> _pathNodes = new ArrayList<>();
+    private final List<Integer> _pathChildren = new ArrayList<>();
+
+    PathsBuilder(N[] nodes, S[] stats) {
+      _nodes = nodes;
+      _stats = stats;
+    }
+
+    void addPaths(int nodeId) {
+      final N node = _nodes[nodeId];
+      if (node.isLeaf()) {
+        addPath(node.getLeafValue());
+        return;
+      }
+      _internalNodes.add(nodeId);
+      for (int child : new int[]{node.getLeftChildIndex(), node.getRightChildIndex()}) {
+        _pathNodes.add(nodeId);
+        _pathChildren.add(child);
+        addPaths(child);
+        _pathNodes.remove(_pathNodes.size() - 1);
+        _pathChildren.remove(_pathChildren.size() - 1);
+      }
+    }
+
+    private void addPath(float leafValue) {
+      // unique features in the order of their last occurrence on the path
+      List<Integer> features = new ArrayList<>();
+      for (int e = 0; e < _pathNodes.size(); e++) {
+        Integer feature = _nodes[_pathNodes.get(e)].getSplitIndex();
+        features.remove(feature);
+        features.add(feature);
+      }
+      float[] zeroFractions = new float[features.size()];
+      Arrays.fill(zeroFractions, 1);
+      final int pathOff = _features.size();
+      _leafValues.add(leafValue);
+      _pathOffs.add(pathOff);
+      _pathLengths.add(features.size());
+      _edgeOffs.add(_edgeNodes.size());
+      for (int e = 0; e < _pathNodes.size(); e++) {
+        final int nodeId = _pathNodes.get(e);
+        final int child = _pathChildren.get(e);
+        final int featureIdx = features.indexOf(_nodes[nodeId].getSplitIndex());
+        zeroFractions[featureIdx] *= _stats[child].getWeight() / _stats[nodeId].getWeight();
+        _edgeNodes.add(nodeId);
+        _edgeChildren.add(child);
+        _edgeFeatures.add(featureIdx);
+      }
+      for (int i = 0; i < zeroFractions.length; i++) {
+        _features.add(features.get(i));
+        _zeroFractions.add(zeroFractions[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,328 @@
+package hex.genmodel.algos.tree;
+
+import hex.genmodel.utils.ByteBufferWrapper;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Flattened ("struct of arrays") representation of a collection of trees.
+ *
+ * The byte-encoded trees (see {@link SharedTreeMojoModel#scoreTree(byte[], double[], boolean, String[][])}) need to be
+ * decoded over and over again for every scored row: node headers, split values and skip offsets. {@code FlatForest}
+ * decodes the trees just once and stores all nodes of all trees in primitive arrays indexed by node id: column ids,
+ * split thresholds, child node references, NA directions and bitset references. Leaf values are stored in a separate
+ * array, a child reference {@code < 0} points to a leaf ({@code ~ref} is the index of the leaf value).
+ *
+ * Scoring using the flat layout gives results identical to the byte-encoded trees of MOJO version 1.2 and newer.
+ * Rows can be scored one by one or in a batch, batch scoring evaluates a block of rows by one tree at a time
+ * (tree-major order) to keep the nodes of the tree in CPU caches.
+ */
+public final class FlatForest implements Serializable {
+
+  public static final int DEFAULT_BLOCK_SIZE = 128;
+
+  static final int EMPTY_TREE = Integer.MIN_VALUE;
+
+  private static final int NsdNaVsRest = NaSplitDir.NAvsREST.value();
+  private static final int NsdNaLeft = NaSplitDir.NALeft.value();
+  private static final int NsdLeft = NaSplitDir.Left.value();
+
+  static final byte FLAG_NA_VS_REST = 1;
+  static final byte FLAG_NA_LEFT = 2;
+  static final byte FLAG_BITSET = 4;
+
+  // Package-private, read by TreeBytecodeCompiler
+  // Trees
+  final int[] _roots;       // node index, leaf reference (tree with a single leaf) or EMPTY_TREE
+  // Nodes
+  final int[] _cols;
+  final float[] _splits;
+  final byte[] _flags;
+  final int[] _left;
+  final int[] _right;
+  final int[] _bitsets;     // bitset used by the node for range checks and group splits, -1 if none
+  // Leaves
+  final float[] _leaves;
+  // Bitsets: all bitsets are stored in a single byte array
+  final int[] _bsByteOffs;
+  final int[] _bsBitOffs;
+  final int[] _bsNBits;
+  final byte[] _bsBytes;
+
+  private FlatForest(Builder b) {
+    _roots = b._roots;
+    _cols = Arrays.copyOf(b._cols, b._nnodes);
+    _splits = Arrays.copyOf(b._splits, b._nnodes);
+    _flags = Arrays.copyOf(b._flags, b._nnodes);
+    _left = Arrays.copyOf(b._left, b._nnodes);
+    _right = Arrays.copyOf(b._right, b._nnodes);
+    _bitsets = Arrays.copyOf(b._bitsets, b._nnodes);
+    _leaves = Arrays.copyOf(b._leaves, b._nleaves);
+    _bsByteOffs = Arrays.copyOf(b._bsByteOffs, b._nbitsets);
+    _bsBitOffs = Arrays.copyOf(b._bsBitOffs, b._nbitsets);
+    _bsNBits = Arrays.copyOf(b._bsNBits, b._nbitsets);
+    _bsBytes = Arrays.copyOf(b._bsBytes, b._nbsBytes);
+  }
+
+  /**
+   * Compiles byte-encoded trees (MOJO version 1.2 and newer) into the flat layout.
+   * @param trees byte-encoded trees, null values represent empty trees
+   * @return flattened trees, tree indices are preserved
+   */
+  public static FlatForest compile(byte[][] trees) {
+    Builder b = new Builder(trees.length);
+    for (int t = 0; t < trees.length; t++) {
+      b._roots[t] = trees[t] == null ? EMPTY_TREE : b.addTree(trees[t]);
+    }
+    return new FlatForest(b);
+  }
+
+  public int ntrees() {
+    return _roots.length;
+  }
+
+  public int nnodes() {
+    return _cols.length;
+  }
+
+  public int nleaves() {
+    return _leaves.length;
+  }
+
+  public boolean isEmpty(int tree) {
+    return _roots[tree] == EMPTY_TREE;
+  }
+
+  /**
+   * Minimum and maximum leaf value of a tree. A NaN leaf widens the bounds to infinity.
+   * @param tree index of the tree
+   * @return {min, max}, {0, 0} for an empty tree
+   */
+  public double[] leafBounds(int tree) {
+    final int root = _roots[tree];
+    if (root == EMPTY_TREE)
+      return new double[]{0, 0};
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    int[] stack = new int[16];
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      final int node = stack[--top];
+      if (node < 0) {
+        final float leaf = _leaves[~node];
+        if (Float.isNaN(leaf))
+          return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        min = Math.min(min, leaf);
+        max = Math.max(max, leaf);
+        continue;
+      }
+      if (top + 2 > stack.length)
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      stack[top++] = _left[node];
+      stack[top++] = _right[node];
+    }
+    return new double[]{min, max};
+  }
+
+  /**
+   * Score a single row by a single tree.
+   * @param tree index of the tree
+   * @param row input row
+   * @param domains model domains (used to detect unseen categorical levels)
+   * @return tree prediction (0 for an empty tree)
+   */
+  public double scoreTree(int tree, double[] row, String[][] domains) {
+    int node = _roots[tree];
+    if (node == EMPTY_TREE)
+      return 0;
+    while (node >= 0) {
+      node = goRight(node, row[_cols[node]], domains) ? _right[node] : _left[node];
+    }
+    return _leaves[~node];
+  }
+
+  /**
+   * Score a block of rows by a single tree, tree predictions are added to {@code preds[row][predIdx]}.
+   * @param tree index of the tree
+   * @param rows input rows
+   * @param fromRow first row of the block (inclusive)
+   * @param toRow last row of the block (exclusive)
+   * @param preds output predictions, one array per row
+   * @param predIdx index of the prediction to update
+   * @param domains model domains (used to detect unseen categorical levels)
+   */
+  public void scoreTree(int tree, double[][] rows, int fromRow, int toRow, double[][] preds, int predIdx, String[][] domains) {
+    final int root = _roots[tree];
+    if (root == EMPTY_TREE)
+      return;
+    for (int r = fromRow; r < toRow; r++) {
+      final double[] row = rows[r];
+      int node = root;
+      while (node >= 0) {
+        node = goRight(node, row[_cols[node]], domains) ? _right[node] : _left[node];
+      }
+      preds[r][predIdx] += _leaves[~node];
+    }
+  }
+
+  // Mirrors the decision logic of SharedTreeMojoModel#scoreTree
+  private boolean goRight(int node, double d, String[][] domains) {
+    final int flags = _flags[node];
+    final int bs = _bitsets[node];
+    if (Double.isNaN(d) || (bs >= 0 && !isInRange(bs, (int) d)) ||
+            (domains != null && domains[_cols[node]] != null && domains[_cols[node]].length <= (int) d))
+      return (flags & FLAG_NA_LEFT) == 0;
+    if ((flags & FLAG_NA_VS_REST) != 0)
+      return false;
+    return (flags & FLAG_BITSET) == 0 ? d >= _splits[node] : contains(bs, (int) d);
+  }
+
+  private boolean isInRange(int bs, int b) {
+    b -= _bsBitOffs[bs];
+    return b >= 0 && b < _bsNBits[bs];
+  }
+
+  private boolean contains(int bs, int idx) {
+    idx -= _bsBitOffs[bs];
+    return (_bsBytes[_bsByteOffs[bs] + (idx >> 3)] & ((byte) 1 << (idx & 7))) != 0;
+  }
+
+  private static class Builder {
+    final int[] _roots;
+    int _nnodes;
+    int[] _cols = new int[64];
+    float[] _splits = new float[64];
+    byte[] _flags = new byte[64];
+    int[] _left = new int[64];
+    int[] _right = new int[64];
+    int[] _bitsets = new int[64];
+    int _nleaves;
+    float[] _leaves = new float[64];
+    int _nbitsets;
+    int[] _bsByteOffs = new int[8];
+    int[] _bsBitOffs = new int[8];
+    int[] _bsNBits = new int[8];
+    int _nbsBytes;
+    byte[] _bsBytes = new byte[64];
+
+    Builder(int ntrees) {
+      _roots = new int[ntrees];
+    }
+
+    int addTree(byte[] tree) {
+      ByteBufferWrapper ab = new ByteBufferWrapper(tree);
+      ab.get1U();
+      int colId = ab.get2();
+      if (colId == 65535) // tree consisting of a single leaf
+        return addLeaf(ab.get4f());
+      return addNode(tree, 0, -1);
+    }
+
+    private int addLeaf(float value) {
+      if (_nleaves == _leaves.length)
+        _leaves = Arrays.copyOf(_leaves, _nleaves * 2);
+      _leaves[_nleaves] = value;
+      return ~(_nleaves++);
+    }
+
+    private int addBitset(byte[] tree, int byteOff, int nbits, int bitOff) {
+      int nbytes = ((nbits - 1) >> 3) + 1;
+      if (_nbitsets == _bsByteOffs.length) {
+        _bsByteOffs = Arrays.copyOf(_bsByteOffs, _nbitsets * 2);
+        _bsBitOffs = Arrays.copyOf(_bsBitOffs, _nbitsets * 2);
+        _bsNBits = Arrays.copyOf(_bsNBits, _nbitsets * 2);
+      }
+      if (_nbsBytes + nbytes > _bsBytes.length)
+        _bsBytes = Arrays.copyOf(_bsBytes, Math.max(_bsBytes.length * 2, _nbsBytes + nbytes));
+      System.arraycopy(tree, byteOff, _bsBytes, _nbsBytes, nbytes);
+      _bsByteOffs[_nbitsets] = _nbsBytes;
+      _bsBitOffs[_nbitsets] = bitOff;
+      _bsNBits[_nbitsets] = nbits;
+      _nbsBytes += nbytes;
+      return _nbitsets++;
+    }
+
+    private int newNode() {
+      if (_nnodes == _cols.length) {
+        int len = _nnodes * 2;
+        _cols = Arrays.copyOf(_cols, len);
+        _splits = Arrays.copyOf(_splits, len);
+        _flags = Arrays.copyOf(_flags, len);
+        _left = Arrays.copyOf(_left, len);
+        _right = Arrays.copyOf(_right, len);
+        _bitsets = Arrays.copyOf(_bitsets, len);
+      }
+      return _nnodes++;
+    }
+
+    /**
+     * Decodes a (non-leaf) node starting at position pos and all its descendants.
+     * @param lastBitset the most recently decoded bitset on the path from the root; the byte-tree scorer re-uses
+     *                   the last bitset for range checks of NA-vs-REST splits on categorical columns
+     */
+    private int addNode(byte[] tree, int pos, int lastBitset) {
+      ByteBufferWrapper ab = new ByteBufferWrapper(tree);
+      ab.skip(pos);
+      int nodeType = ab.get1U();
+      int colId = ab.get2();
+      int naSplitDir = ab.get1U();
+      boolean naVsRest = naSplitDir == NsdNaVsRest;
+      boolean leftward = naSplitDir == NsdNaLeft || naSplitDir == NsdLeft;
+      int lmask = (nodeType & 51);
+      int equal = (nodeType & 12);
+      assert equal != 4;  // no longer supported
+
+      float splitVal = -1;
+      int bitset = -1;
+      if (!naVsRest) {
+        if (equal == 0) {
+          splitVal = ab.get4f();
+        } else if (equal == 8) {
+          bitset = addBitset(tree, ab.position(), 32, 0);
+          ab.skip(4);
+        } else {
+          int bitoff = ab.get2();
+          int nbits = ab.get4();
+          bitset = addBitset(tree, ab.position(), nbits, bitoff);
+          ab.skip(((nbits - 1) >> 3) + 1);
+        }
+      }
+      final int node = newNode();
+      _cols[node] = colId;
+      _splits[node] = splitVal;
+      _flags[node] = (byte) ((naVsRest ? FLAG_NA_VS_REST : 0) | (leftward ? FLAG_NA_LEFT : 0) | (bitset >= 0 ? FLAG_BITSET : 0));
+      if (bitset >= 0)
+        lastBitset = bitset;
+      _bitsets[node] = equal != 0 ? lastBitset : -1;
+
+      // left child: either a leaf (4 bytes) or a subtree prefixed by its size
+      int leftSize;
+      switch (lmask) {
+        case 0: leftSize = ab.get1U(); break;
+        case 1: leftSize = ab.get2(); break;
+        case 2: leftSize = ab.get3(); break;
+        case 3: leftSize = ab.get4(); break;
+        case 48: leftSize = 4; break;
+        default:
+          throw new IllegalStateException("Illegal lmask value " + lmask + " in tree " + Arrays.toString(tree));
+      }
+      final int leftPos = ab.position();
+      final int rightPos = leftPos + leftSize;
+      final int left = (lmask & 16) != 0 ? addLeaf(readFloat(tree, leftPos)) : addNode(tree, leftPos, lastBitset);
+      final int rmask = (nodeType & 0xC0) >> 2;
+      final int right = (rmask & 16) != 0 ? addLeaf(readFloat(tree, rightPos)) : addNode(tree, rightPos, lastBitset);
+      _left[node] = left;
+      _right[node] = right;
+      return node;
+    }
+
+    private static float readFloat(byte[] tree, int pos) {
+      ByteBufferWrapper ab = new ByteBufferWrapper(tree);
+      ab.skip(pos);
+      return ab.get4f();
+    }
+  }
+
+}
@@ -10,6 +10,10 @@ import hex.genmodel.utils.GenmodelBitSet;
 import water.logging.Logger;
 import water.logging.LoggerFactory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,6 +29,22 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
     private static final int NsdLeft = NaSplitDir.Left.value();
 
     private ScoreTree _scoreTree;
+
+    /**
+     * Optional flattened representation of the trees, see {@link #compileFlatTrees()}.
+     */
+    private FlatForest _flatForest;
+
+    /**
+     * Optional bytecode-compiled trees, see {@link #compileBytecode()}. The generated classes are not serializable,
+     * a deserialized model uses the flat layout.
+     */
+    private transient CompiledForest _compiledForest;
+
+    /**
+     * Bounds of the predictions of the trees used by {@link #scoreEarlyExit}, computed on first use.
+     */
+    private transient volatile TreeBounds _treeBounds;
     
     private static Logger logger = LoggerFactory.getLogger(SharedTreeMojoModel.class);
 
@@ -54,6 +74,15 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
      */
     protected byte[][] _compressed_trees_aux;
 
+    /**
+     * Trees of a model loaded from a memory-mapped MOJO (see {@link hex.genmodel.MappedMojoReaderBackend}), slices
+     * of the mapping laid out the same way as {@link #_compressed_trees}. The trees are scored directly from
+     * the mapping and are never copied to the heap. If set, {@link #_compressed_trees} and
+     * {@link #_compressed_trees_aux} are null.
+     */
+    transient ByteBuffer[] _mapped_trees;
+    transient ByteBuffer[] _mapped_trees_aux;
+
     /**
      * GLM's beta used for calibrating output probabilities using Platt Scaling.
      */
@@ -77,6 +106,103 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
         _scoreTree = new ScoreTree2(); // Current version
     }
 
+    /**
+     * Compiles the byte-encoded trees into a flat array-based layout ({@link FlatForest}). Once compiled, all
+     * subsequent scoring calls use the flat layout instead of decoding the trees for every row. The flat layout
+     * takes more memory than the compressed trees.
+     * Only supported for MOJO version 1.2 and newer.
+     *
+     * @return the compiled trees
+     */
+    public final synchronized FlatForest compileFlatTrees() {
+      if (!(_scoreTree instanceof ScoreTree2))
+        throw new UnsupportedOperationException("Flat tree layout is only supported for MOJO version 1.2 and newer, " +
+                "this model has version " + _mojo_version + ".");
+      if (_flatForest == null)
+        _flatForest = FlatForest.compile(_mapped_trees != null ? copyOf(_mapped_trees) : _compressed_trees);
+      return _flatForest;
+    }
+
+    public final boolean hasFlatTrees() {
+      return _flatForest != null;
+    }
+
+    /**
+     * Compiles the trees into JVM bytecode ({@link CompiledForest}), the trees are first compiled to the flat layout
+     * (see {@link #compileFlatTrees()}). Once compiled, all subsequent scoring calls use the generated code, the
+     * predictions are identical to the predictions of the byte-encoded trees. The generated code is checked against
+     * the flat layout before it is used.
+     * Only supported for MOJO version 1.2 and newer.
+     *
+     * @return the compiled trees
+     */
+    public final synchronized CompiledForest compileBytecode() {
+      if (_compiledForest == null) {
+        CompiledForest compiled = CompiledForest.compile(compileFlatTrees(), _domains);
+        compiled.verify(100, 0xC0DE);
+        _compiledForest = compiled;
+      }
+      return _compiledForest;
+    }
+
+    public final boolean hasCompiledTrees() {
+      return _compiledForest != null;
+    }
+
+    /**
+     * @return true if the trees are read from a memory-mapped MOJO
+     */
+    public final boolean hasMappedTrees() {
+      return _mapped_trees != null;
+    }
+
+    private boolean hasTree(int itree) {
+      return _mapped_trees != null ? _mapped_trees[itree] != null : _compressed_trees[itree] != null;
+    }
+
+    /**
+     * @return byte-encoded tree, a copy for memory-mapped trees
+     */
+    protected final byte[] treeBytes(int itree) {
+      return _mapped_trees != null ? copyOf(_mapped_trees[itree]) : _compressed_trees[itree];
+    }
+
+    protected final byte[] treeAuxBytes(int itree) {
+      return _mapped_trees_aux != null ? copyOf(_mapped_trees_aux[itree]) : _compressed_trees_aux[itree];
+    }
+
+    private static byte[] copyOf(ByteBuffer bb) {
+      if (bb == null)
+        return null;
+      byte[] bytes = new byte[bb.remaining()];
+      bb.duplicate().get(bytes);
+      return bytes;
+    }
+
+    private static byte[][] copyOf(ByteBuffer[] bbs) {
+      byte[][] copy = new byte[bbs.length][];
+      for (int i = 0; i < bbs.length; i++)
+        copy[i] = copyOf(bbs[i]);
+      return copy;
+    }
+
+    // Memory-mapped trees are serialized as regular trees, a deserialized model keeps the trees on the heap
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      out.writeObject(_mapped_trees != null ? copyOf(_mapped_trees) : null);
+      out.writeObject(_mapped_trees_aux != null ? copyOf(_mapped_trees_aux) : null);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      byte[][] trees = (byte[][]) in.readObject();
+      byte[][] treesAux = (byte[][]) in.readObject();
+      if (trees != null) {
+        _compressed_trees = trees;
+        _compressed_trees_aux = treesAux;
+      }
+    }
+
     @Override
     public final int getNTreeGroups() {
       return _ntree_groups;
@@ -126,7 +252,21 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
    */
   @SuppressWarnings("ConstantConditions")  // Complains that the code is too complex. Well duh!
     public static double scoreTree(byte[] tree, double[] row, boolean computeLeafAssignment, String[][] domains) {
-        ByteBufferWrapper ab = new ByteBufferWrapper(tree);
+        return scoreTree(new ByteBufferWrapper(tree), tree, null, row, computeLeafAssignment, domains);
+    }
+
+    /**
+     * Same as {@link #scoreTree(byte[], double[], boolean, String[][])} for a tree stored in a ByteBuffer
+     * (eg. a slice of a memory-mapped MOJO, see {@link hex.genmodel.MappedMojoReaderBackend}).
+     * @param tree buffer holding the tree, the tree starts at index 0 of the buffer
+     */
+    public static double scoreTree(ByteBuffer tree, double[] row, boolean computeLeafAssignment, String[][] domains) {
+        return scoreTree(new ByteBufferWrapper(tree), null, tree, row, computeLeafAssignment, domains);
+    }
+
+    // the tree is given either as treeBytes or as treeBuffer
+    private static double scoreTree(ByteBufferWrapper ab, byte[] treeBytes, ByteBuffer treeBuffer, double[] row,
+                                    boolean computeLeafAssignment, String[][] domains) {
         GenmodelBitSet bs = null;
         long bitsRight = 0;
         int level = 0;
@@ -159,10 +299,17 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
                 } else {
                     // Bitset test
                     if (bs == null) bs = new GenmodelBitSet(0);
-                    if (equal == 8)
-                        bs.fill2(tree, ab);
-                    else
-                        bs.fill3(tree, ab);
+                    if (treeBytes != null) {
+                        if (equal == 8)
+                            bs.fill2(treeBytes, ab);
+                        else
+                            bs.fill3(treeBytes, ab);
+                    } else {
+                        if (equal == 8)
+                            bs.fill2(treeBuffer, ab);
+                        else
+                            bs.fill3(treeBuffer, ab);
+                    }
                 }
             }
 
@@ -217,7 +364,7 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
                     case 3:  ab.skip(ab.get4());  break;
                     case 48: ab.skip(4);  break;  // skip the prediction
                     default:
-                        assert false : "illegal lmask value " + lmask + " in tree " + Arrays.toString(tree);
+                        assert false : "illegal lmask value " + lmask + " in tree " + (treeBytes != null ? Arrays.toString(treeBytes) : treeBuffer);
                 }
                 if (computeLeafAssignment) {
                     if (level >= __INTERNAL_MAX_TREE_DEPTH)
@@ -533,7 +680,7 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
                 String[] domainValues = isSupervised() ? getDomainValues(getResponseIdx()) : null;
                 String treeName = treeName(j, i, domainValues);
                 SharedTreeSubgraph sg = g.makeSubgraph(treeName);
-                computeTreeGraph(sg, _compressed_trees[itree], _compressed_trees_aux[itree],
+                computeTreeGraph(sg, treeBytes(itree), treeAuxBytes(itree),
                         getNames(), getDomainValues(), options);
             }
 
@@ -762,6 +909,43 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
         scoreTreeRange(row, 0, _ntree_groups, preds);
     }
 
+    /**
+     * Score all trees for a batch of rows and fill in the `preds` arrays.
+     */
+    protected void scoreAllTrees(double[][] rows, int nrows, double[][] preds) {
+        for (int r = 0; r < nrows; r++)
+            Arrays.fill(preds[r], 0);
+        scoreTreeRange(rows, nrows, 0, _ntree_groups, preds);
+    }
+
+    /**
+     * Scores a batch of rows, equivalent to calling {@code score0(rows[r], preds[r])} for each row.
+     * If the trees were compiled using {@link #compileFlatTrees()} the rows are scored in blocks, one tree at a time.
+     * @param rows input rows
+     * @param nrows number of rows to score (rows and preds can be larger and reused between calls)
+     * @param preds output predictions, one array per row, each with the same structure as of {@link SharedTreeMojoModel#score0}
+     * @return preds
+     */
+    public double[][] scoreBatch(double[][] rows, int nrows, double[][] preds) {
+        scoreAllTrees(rows, nrows, preds);
+        for (int r = 0; r < nrows; r++)
+            unifyPreds(rows[r], 0, preds[r]);
+        return preds;
+    }
+
+    @Override
+    public double[][] score0Batch(double[][] rows, int nrows, double[][] preds) {
+        return scoreBatch(rows, nrows, preds);
+    }
+
+    @Override
+    public double[][] score0Batch(double[][] rows, double[] offsets, int nrows, double[][] preds) {
+        scoreAllTrees(rows, nrows, preds);
+        for (int r = 0; r < nrows; r++)
+            unifyPreds(rows[r], offsets[r], preds[r]);
+        return preds;
+    }
+
     /**
      * Transforms tree predictions into the final model predictions.
      * For classification: converts tree preds into probability distribution and picks predicted class.
@@ -792,33 +976,250 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
      *              To get final predictions pass the result to {@link SharedTreeMojoModel#unifyPreds}.
      */
     public final void scoreTreeRange(double[] row, int fromIndex, int toIndex, double[] preds) {
+        final CompiledForest cf = _compiledForest;
         final int clOffset = _nclasses == 1 ? 0 : 1;
         for (int classIndex = 0; classIndex < _ntrees_per_group; classIndex++) {
             int k = clOffset + classIndex;
             int itree = treeIndex(fromIndex, classIndex);
             for (int groupIndex = fromIndex; groupIndex < toIndex; groupIndex++) {
-                if (_compressed_trees[itree] != null) { // Skip all empty trees
-                  preds[k] += _scoreTree.scoreTree(_compressed_trees[itree], row, false, _domains);
+                if (hasTree(itree)) { // Skip all empty trees
+                  preds[k] += cf != null ? cf.scoreTree(itree, row) : _flatForest != null ?
+                          _flatForest.scoreTree(itree, row, _domains) : _mapped_trees != null ?
+                          scoreTree(_mapped_trees[itree], row, false, _domains) :
+                          _scoreTree.scoreTree(_compressed_trees[itree], row, false, _domains);
                 }
                 itree++;
             }
         }
     }
 
+    /**
+     * Generates (partial, per-class) predictions for a batch of rows using only trees from a given range.
+     * With flat trees the rows are processed in blocks of {@link FlatForest#DEFAULT_BLOCK_SIZE} rows and each block
+     * is scored by one tree at a time, otherwise the rows are scored one by one.
+     * @param rows input rows
+     * @param nrows number of rows to score
+     * @param fromIndex low endpoint (inclusive) of the tree range
+     * @param toIndex high endpoint (exclusive) of the tree range
+     * @param preds arrays of partial predictions, one per row.
+     */
+    public final void scoreTreeRange(double[][] rows, int nrows, int fromIndex, int toIndex, double[][] preds) {
+        final FlatForest ff = _flatForest;
+        final CompiledForest cf = _compiledForest;
+        if (ff == null) {
+            for (int r = 0; r < nrows; r++)
+                scoreTreeRange(rows[r], fromIndex, toIndex, preds[r]);
+            return;
+        }
+        final int clOffset = _nclasses == 1 ? 0 : 1;
+        for (int blockStart = 0; blockStart < nrows; blockStart += FlatForest.DEFAULT_BLOCK_SIZE) {
+            final int blockEnd = Math.min(nrows, blockStart + FlatForest.DEFAULT_BLOCK_SIZE);
+            for (int classIndex = 0; classIndex < _ntrees_per_group; classIndex++) {
+                int k = clOffset + classIndex;
+                int itree = treeIndex(fromIndex, classIndex);
+                for (int groupIndex = fromIndex; groupIndex < toIndex; groupIndex++) {
+                    if (cf != null)
+                        cf.scoreTree(itree, rows, blockStart, blockEnd, preds, k);
+                    else
+                        ff.scoreTree(itree, rows, blockStart, blockEnd, preds, k, _domains);
+                    itree++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores a row by the trees in stages of {@code checkInterval} tree groups and stops as soon as the predicted class
+     * can no longer change. After each stage the sum of the predictions of the remaining trees is bounded using
+     * the minimum and maximum leaf value of each tree, the class is predicted for both ends of the bounds and if
+     * the predictions agree the remaining trees are skipped.
+     * The predicted class ({@code preds[0]}) is always the same as the class predicted by {@link #score0}, the class
+     * probabilities are given only by the evaluated trees when the scoring stops early.
+     * Supported for binomial models of MOJO version 1.2 and newer with the predicted class being a monotone function
+     * of the tree predictions (see {@link #isDecisionMonotone()}), other models are scored by all trees.
+     *
+     * @param row input row
+     * @param offset offset
+     * @param checkInterval number of tree groups scored between two checks of the stopping criterion
+     * @param preds output predictions, same structure as of {@link SharedTreeMojoModel#score0}
+     * @return number of evaluated tree groups
+     */
+    public final int scoreEarlyExit(double[] row, double offset, int checkInterval, double[] preds) {
+        if (checkInterval < 1)
+            throw new IllegalArgumentException("Check interval needs to be positive, got: " + checkInterval);
+        Arrays.fill(preds, 0);
+        if (!supportsEarlyExit()) {
+            scoreTreeRange(row, 0, _ntree_groups, preds);
+            unifyPreds(row, offset, preds);
+            return _ntree_groups;
+        }
+        final TreeBounds bounds = treeBounds();
+        final double[] lower = new double[preds.length];
+        final double[] upper = new double[preds.length];
+        int evaluated = 0;
+        while (evaluated < _ntree_groups) {
+            final int toIndex = Math.min(_ntree_groups, evaluated + checkInterval);
+            scoreTreeRange(row, evaluated, toIndex, preds);
+            evaluated = toIndex;
+            if (evaluated == _ntree_groups)
+                break;
+            final double f = preds[1];
+            final double slack = bounds._slack * (Math.abs(f) + bounds._remainingAbs[evaluated]);
+            System.arraycopy(preds, 0, lower, 0, preds.length);
+            lower[1] = f + bounds._remainingMin[evaluated] - slack;
+            unifyPreds(row, offset, lower);
+            System.arraycopy(preds, 0, upper, 0, preds.length);
+            upper[1] = f + bounds._remainingMax[evaluated] + slack;
+            unifyPreds(row, offset, upper);
+            if (lower[0] == upper[0]) {
+                unifyPreds(row, offset, preds);
+                preds[0] = lower[0];
+                return evaluated;
+            }
+        }
+        unifyPreds(row, offset, preds);
+        return evaluated;
+    }
+
+    /**
+     * @return true if the class predicted by {@link #unifyPreds} of a binomial model is a monotone function
+     * of the sum of the tree predictions, required by {@link #scoreEarlyExit}
+     */
+    protected boolean isDecisionMonotone() {
+        return false;
+    }
+
+    private boolean supportsEarlyExit() {
+        return _nclasses == 2 && _ntrees_per_group == 1 && _scoreTree instanceof ScoreTree2 && isDecisionMonotone();
+    }
+
+    private TreeBounds treeBounds() {
+        TreeBounds bounds = _treeBounds;
+        if (bounds == null) {
+            synchronized (this) {
+                if (_treeBounds == null) {
+                    final FlatForest ff = _flatForest;
+                    final int ntrees = ff != null ? ff.ntrees() :
+                            _mapped_trees != null ? _mapped_trees.length : _compressed_trees.length;
+                    final double[][] leafBounds = new double[ntrees][];
+                    for (int t = 0; t < ntrees; t++) {
+                        if (ff != null)
+                            leafBounds[t] = ff.leafBounds(t);
+                        else if (_mapped_trees != null)
+                            leafBounds[t] = _mapped_trees[t] == null ? new double[]{0, 0} :
+                                    leafBounds(new ByteBufferWrapper(_mapped_trees[t]));
+                        else
+                            leafBounds[t] = _compressed_trees[t] == null ? new double[]{0, 0} :
+                                    leafBounds(new ByteBufferWrapper(_compressed_trees[t]));
+                    }
+                    _treeBounds = new TreeBounds(leafBounds);
+                }
+                bounds = _treeBounds;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Minimum and maximum leaf value of a byte-encoded tree, same as {@link FlatForest#leafBounds(int)}. The tree is
+     * walked in place, a memory-mapped tree is not copied to the heap.
+     */
+    static double[] leafBounds(ByteBufferWrapper ab) {
+        ab.get1U();
+        if (ab.get2() == 65535) { // tree consisting of a single leaf
+            final float leaf = ab.get4f();
+            return Float.isNaN(leaf) ? new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY} :
+                    new double[]{leaf, leaf};
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int[] stack = new int[16]; // positions of the nodes to visit, ~position for leaves
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            final int pos = stack[--top];
+            ab.skip((pos < 0 ? ~pos : pos) - ab.position());
+            if (pos < 0) {
+                final float leaf = ab.get4f();
+                if (Float.isNaN(leaf))
+                    return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+                min = Math.min(min, leaf);
+                max = Math.max(max, leaf);
+                continue;
+            }
+            final int nodeType = ab.get1U();
+            ab.get2(); // column
+            final int naSplitDir = ab.get1U();
+            final int lmask = (nodeType & 51);
+            final int equal = (nodeType & 12);
+            if (naSplitDir != NsdNaVsRest) {
+                if (equal == 0 || equal == 8) {
+                    ab.skip(4); // split value or a 32-bit bitset
+                } else {
+                    ab.get2(); // bitset offset
+                    final int nbits = ab.get4();
+                    ab.skip(((nbits - 1) >> 3) + 1);
+                }
+            }
+            final int leftSize;
+            switch (lmask) {
+                case 0: leftSize = ab.get1U(); break;
+                case 1: leftSize = ab.get2(); break;
+                case 2: leftSize = ab.get3(); break;
+                case 3: leftSize = ab.get4(); break;
+                case 48: leftSize = 4; break;
+                default:
+                    throw new IllegalStateException("Illegal lmask value " + lmask + " at position " + pos);
+            }
+            final int leftPos = ab.position();
+            final int rightPos = leftPos + leftSize;
+            final int rmask = (nodeType & 0xC0) >> 2;
+            if (top + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = (lmask & 16) != 0 ? ~leftPos : leftPos;
+            stack[top++] = (rmask & 16) != 0 ? ~rightPos : rightPos;
+        }
+        return new double[]{min, max};
+    }
+
+    /**
+     * Bounds of the sum of the predictions of trees {@code g..N-1} (suffix sums of the per-tree leaf bounds).
+     */
+    private static class TreeBounds {
+        final double[] _remainingMin;
+        final double[] _remainingMax;
+        final double[] _remainingAbs;
+        // relative bound of the rounding error of summing the tree predictions
+        final double _slack;
+
+        TreeBounds(double[][] leafBounds) {
+            final int ntrees = leafBounds.length;
+            _remainingMin = new double[ntrees + 1];
+            _remainingMax = new double[ntrees + 1];
+            _remainingAbs = new double[ntrees + 1];
+            for (int t = ntrees - 1; t >= 0; t--) {
+                _remainingMin[t] = _remainingMin[t + 1] + leafBounds[t][0];
+                _remainingMax[t] = _remainingMax[t + 1] + leafBounds[t][1];
+                _remainingAbs[t] = _remainingAbs[t + 1] + Math.max(Math.abs(leafBounds[t][0]), Math.abs(leafBounds[t][1]));
+            }
+            _slack = 2 * (ntrees + 1) * Math.ulp(1.0);
+        }
+    }
+
     // note that _ntree_group = _treekeys.length
     // ntrees_per_group = _treeKeys[0].length
     public String[] getDecisionPathNames() {
       int classTrees = 0;
       for (int i = 0; i < _ntrees_per_group; ++i) {
         int itree = treeIndex(0, i);
-        if (_compressed_trees[itree] != null) classTrees++;
+        if (hasTree(itree)) classTrees++;
       }
       final int outputcols = _ntree_groups * classTrees;
       final String[] names = new String[outputcols];
       for (int c = 0; c < _ntrees_per_group; c++) {
         for (int tidx = 0; tidx < _ntree_groups; tidx++) {
           int itree = treeIndex(tidx, c);
-          if (_compressed_trees[itree] != null) {
+          if (hasTree(itree)) {
             names[itree] = "T" + (tidx + 1) + ".C" + (c + 1);
           }
         }
@@ -833,16 +1234,16 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
 
     public LeafNodeAssignments getLeafNodeAssignments(final double[] row) {
       LeafNodeAssignments assignments = new LeafNodeAssignments();
-      assignments._paths = new String[_compressed_trees.length];
-      if (_mojo_version >= 1.3 && _compressed_trees_aux != null) { // enable only for compatible MOJOs
-        assignments._nodeIds = new int[_compressed_trees_aux.length];
+      assignments._paths = new String[_ntree_groups * _ntrees_per_group];
+      if (_mojo_version >= 1.3 && (_compressed_trees_aux != null || _mapped_trees_aux != null)) { // enable only for compatible MOJOs
+        assignments._nodeIds = new int[_ntree_groups * _ntrees_per_group];
       }
       traceDecisions(row, assignments._paths, assignments._nodeIds);
       return assignments;
     }
 
     public String[] getDecisionPath(final double[] row) {
-      String[] paths = new String[_compressed_trees.length];
+      String[] paths = new String[_ntree_groups * _ntrees_per_group];
       traceDecisions(row, paths, null);
       return paths;
     }
@@ -854,12 +1255,14 @@ public abstract class SharedTreeMojoModel extends MojoModel implements TreeBacke
       for (int j = 0; j < _ntree_groups; j++) {
         for (int i = 0; i < _ntrees_per_group; i++) {
           int itree = treeIndex(j, i);
-          double d = scoreTree(_compressed_trees[itree], row, true, _domains);
+          double d = _mapped_trees != null ?
+                  scoreTree(_mapped_trees[itree], row, true, _domains) :
+                  scoreTree(_compressed_trees[itree], row, true, _domains);
           if (paths != null)
             paths[itree] = SharedTreeMojoModel.getDecisionPath(d);
           if (nodeIds != null) {
             assert _mojo_version >= 1.3;
-            nodeIds[itree] = SharedTreeMojoModel.getLeafNodeId(d, _compressed_trees_aux[itree]);
+            nodeIds[itree] = SharedTreeMojoModel.getLeafNodeId(d, treeAuxBytes(itree));
           }
         }
       }
@@ -18,9 +18,10 @@ public abstract class SharedTreeMojoModelWithContributions extends SharedTreeMoj
         SharedTreeGraph graph = computeGraph(-1);
         final SharedTreeNode[] empty = new SharedTreeNode[0];
         List<TreeSHAPPredictor<double[]>> treeSHAPs = new ArrayList<>(graph.subgraphArray.size());
+        final int maxPrecomputedWeights = FastTreeSHAP.precomputedWeightsLimit(graph.subgraphArray.size());
         for (SharedTreeSubgraph tree : graph.subgraphArray) {
             SharedTreeNode[] nodes = tree.nodesArray.toArray(empty);
-            treeSHAPs.add(new TreeSHAP<>(nodes, nodes, 0));
+            treeSHAPs.add(new FastTreeSHAP<>(nodes, nodes, 0, maxPrecomputedWeights));
         }
         TreeSHAPPredictor<double[]> predictor = new TreeSHAPEnsemble<>(treeSHAPs, (float) getInitF());
         
@@ -43,5 +44,10 @@ public abstract class SharedTreeMojoModelWithContributions extends SharedTreeMoj
         protected final double[] toInputRow(double[] input) {
             return input;
         }
+
+        @Override
+        protected final double[][] toInputRows(double[][] inputs, int nrows) {
+            return inputs;
+        }
     }
 }
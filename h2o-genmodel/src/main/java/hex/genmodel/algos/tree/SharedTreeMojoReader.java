@@ -1,10 +1,12 @@
 package hex.genmodel.algos.tree;
 
 import com.google.gson.JsonObject;
+import hex.genmodel.ByteBufferMojoReaderBackend;
 import hex.genmodel.ModelMojoReader;
 import hex.genmodel.attributes.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class SharedTreeMojoReader<M extends SharedTreeMojoModel> extends ModelMojoReader<M> {
 
@@ -20,7 +22,6 @@ public abstract class SharedTreeMojoReader<M extends SharedTreeMojoModel> extend
 
     _model._ntree_groups = readkv("n_trees");
     _model._ntrees_per_group = tpc;
-    _model._compressed_trees = new byte[_model._ntree_groups * tpc][];
     _model._mojo_version = ((Number) readkv("mojo_version")).doubleValue();
     if (_model._mojo_version < 1.40) {
         _model._genmodel_encoding = "AUTO";
@@ -43,6 +44,26 @@ public abstract class SharedTreeMojoReader<M extends SharedTreeMojoModel> extend
         }
     }
 
+    if (getMojoReaderBackend() instanceof ByteBufferMojoReaderBackend && _model._mojo_version >= 1.2) {
+      readMappedTrees((ByteBufferMojoReaderBackend) getMojoReaderBackend(), tpc);
+    } else {
+      readTrees(tpc);
+    }
+
+    // Calibration
+    String calibMethod = readkv("calib_method");
+    if (calibMethod != null) {
+      if (! "platt".equals(calibMethod))
+        throw new IllegalStateException("Unknown calibration method: " + calibMethod);
+      _model._calib_glm_beta = readkv("calib_glm_beta", new double[0]);
+    }
+
+
+    _model.postInit();
+  }
+
+  private void readTrees(int tpc) throws IOException {
+    _model._compressed_trees = new byte[_model._ntree_groups * tpc][];
     if (_model._mojo_version > 1.0) { // In mojos v=1.0 this info wasn't saved
       _model._compressed_trees_aux = new byte[_model._ntree_groups * tpc][];
     }
@@ -56,17 +77,20 @@ public abstract class SharedTreeMojoReader<M extends SharedTreeMojoModel> extend
           _model._compressed_trees_aux[_model.treeIndex(j, i)] = readblob(String.format("trees/t%02d_%03d_aux.bin", i, j));
         }
       }
+  }
 
-    // Calibration
-    String calibMethod = readkv("calib_method");
-    if (calibMethod != null) {
-      if (! "platt".equals(calibMethod))
-        throw new IllegalStateException("Unknown calibration method: " + calibMethod);
-      _model._calib_glm_beta = readkv("calib_glm_beta", new double[0]);
-    }
-
-
-    _model.postInit();
+  // Trees stay in the (memory-mapped) backend, the model only keeps the views of the tree blobs
+  private void readMappedTrees(ByteBufferMojoReaderBackend backend, int tpc) throws IOException {
+    _model._mapped_trees = new ByteBuffer[_model._ntree_groups * tpc];
+    _model._mapped_trees_aux = new ByteBuffer[_model._ntree_groups * tpc];
+    for (int j = 0; j < _model._ntree_groups; j++)
+      for (int i = 0; i < tpc; i++) {
+        String blobName = String.format("trees/t%02d_%03d.bin", i, j);
+        if (!exists(blobName)) continue;
+        _model._mapped_trees[_model.treeIndex(j, i)] = backend.getBinaryFileBuffer(blobName);
+        _model._mapped_trees_aux[_model.treeIndex(j, i)] =
+                backend.getBinaryFileBuffer(String.format("trees/t%02d_%03d_aux.bin", i, j));
+      }
   }
 
   @Override
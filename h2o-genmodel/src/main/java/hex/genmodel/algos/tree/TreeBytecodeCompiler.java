@@ -0,0 +1,614 @@
+package hex.genmodel.algos.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates JVM bytecode for the trees of a {@link FlatForest}, see {@link CompiledForest}.
+ *
+ * h2o-genmodel cannot depend on a bytecode library, the class files are written directly. The classes use class file
+ * version 49 (Java 5) which doesn't require stack map frames, all jumps in the generated code are forward jumps.
+ *
+ * Every tree {@code i} of a class becomes a method {@code double tree<i>(double[] row)}, a node is translated to
+ * <pre>
+ *   double d = row[col];
+ *   if (d != d) goto NA_DIRECTION;
+ *   int i = (int) d;                                    // categorical splits only
+ *   if (i - bitOff &lt; 0 || i - bitOff &gt;= nbits) goto NA_DIRECTION;
+ *   if (i &gt;= domainLength) goto NA_DIRECTION;            // unseen level
+ *   if (d &gt;= split) goto RIGHT;                         // or a bitset lookup for categorical splits
+ *   LEFT: ...
+ *   RIGHT: ...
+ * </pre>
+ * which mirrors the decision logic of {@link FlatForest}. Once a method reaches {@link #MAX_NODES_PER_METHOD} nodes,
+ * the remaining subtrees are moved to separate methods.
+ */
+final class TreeBytecodeCompiler {
+
+  /** JIT doesn't compile methods with more than 8000 bytes of bytecode, a node takes at most ~90 bytes */
+  static final int MAX_NODES_PER_METHOD = 80;
+  static final int MAX_TREES_PER_CLASS = 256;
+  /** Larger trees are not compiled, the constants of a single tree need to fit the constant pool */
+  static final int MAX_NODES_PER_TREE = 6000;
+  /** Size of the constant pool is limited to 65535 entries */
+  private static final int MAX_CONSTANTS = 65535;
+  private static final int CONSTANTS_PER_NODE = 8;
+
+  private static final String BASE_CLASS = CompiledTreeGroup.class.getName().replace('.', '/');
+  private static final String CLASS_NAME_PREFIX = "hex.genmodel.algos.tree.generated.Trees";
+  private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+  private static final String TREE_DESCRIPTOR = "([D)D";
+
+  private final FlatForest _ff;
+  private final String[][] _domains;
+  private final int[] _domainLengths; // -1 for numerical columns
+  private final int _maxNodesPerMethod;
+  private final int _maxTreesPerClass;
+  private final int _maxNodesPerTree;
+
+  TreeBytecodeCompiler(FlatForest ff, String[][] domains) {
+    this(ff, domains, MAX_NODES_PER_METHOD, MAX_TREES_PER_CLASS, MAX_NODES_PER_TREE);
+  }
+
+  TreeBytecodeCompiler(FlatForest ff, String[][] domains, int maxNodesPerMethod, int maxTreesPerClass, int maxNodesPerTree) {
+    _ff = ff;
+    _domains = domains;
+    _maxNodesPerMethod = maxNodesPerMethod;
+    _maxTreesPerClass = maxTreesPerClass;
+    _maxNodesPerTree = Math.min(maxNodesPerTree, (MAX_CONSTANTS - 1000) / CONSTANTS_PER_NODE);
+    int ncols = 0;
+    for (int col : ff._cols)
+      ncols = Math.max(ncols, col + 1);
+    _domainLengths = new int[ncols];
+    for (int c = 0; c < ncols; c++)
+      _domainLengths[c] = domains != null && c < domains.length && domains[c] != null ? domains[c].length : -1;
+  }
+
+  CompiledForest compile() {
+    final int ntrees = _ff.ntrees();
+    final int[] groupOf = new int[ntrees];
+    final int[] localIndex = new int[ntrees];
+    Arrays.fill(groupOf, -1);
+    final GeneratedClassLoader loader = new GeneratedClassLoader(CompiledTreeGroup.class.getClassLoader());
+    final List<CompiledTreeGroup> groups = new ArrayList<>();
+    ClassGen gen = null;
+    for (int tree = 0; tree < ntrees; tree++) {
+      final int root = _ff._roots[tree];
+      if (root == FlatForest.EMPTY_TREE)
+        continue;
+      final int nnodes = countNodes(root);
+      if (nnodes > _maxNodesPerTree)
+        continue;
+      if (gen != null && (gen.ntrees() == _maxTreesPerClass ||
+              gen._cp.size() + CONSTANTS_PER_NODE * (nnodes + 1) > MAX_CONSTANTS - 1000)) {
+        groups.add(gen.define(loader));
+        gen = null;
+      }
+      if (gen == null)
+        gen = new ClassGen(CLASS_NAME_PREFIX + CLASS_COUNTER.incrementAndGet());
+      groupOf[tree] = groups.size();
+      localIndex[tree] = gen.addTree(root);
+    }
+    if (gen != null)
+      groups.add(gen.define(loader));
+    return new CompiledForest(_ff, _domains, groups.toArray(new CompiledTreeGroup[0]), groupOf, localIndex);
+  }
+
+  private int countNodes(int root) {
+    int n = 0;
+    final Deque<Integer> stack = new ArrayDeque<>();
+    if (root >= 0)
+      stack.push(root);
+    while (!stack.isEmpty()) {
+      final int node = stack.pop();
+      n++;
+      if (_ff._left[node] >= 0)
+        stack.push(_ff._left[node]);
+      if (_ff._right[node] >= 0)
+        stack.push(_ff._right[node]);
+    }
+    return n;
+  }
+
+  private static final class GeneratedClassLoader extends ClassLoader {
+    GeneratedClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Generator of a single class, a subclass of {@link CompiledTreeGroup}.
+   */
+  private final class ClassGen {
+    private final String _name;
+    private final String _internalName;
+    private final ConstantPool _cp = new ConstantPool();
+    private final ByteArrayOutputStream _methods = new ByteArrayOutputStream();
+    private int _nmethods;
+    private int _ntrees;
+    private int _nsubtrees;
+    // subtrees waiting to be generated as separate methods
+    private final Deque<Object[]> _pending = new ArrayDeque<>();
+
+    ClassGen(String name) {
+      _name = name;
+      _internalName = name.replace('.', '/');
+    }
+
+    int ntrees() {
+      return _ntrees;
+    }
+
+    int addTree(int root) {
+      final int index = _ntrees++;
+      _pending.add(new Object[]{"tree" + index, root});
+      while (!_pending.isEmpty()) {
+        final Object[] method = _pending.poll();
+        final Code code = new Code();
+        emitNode(code, (Integer) method[1], new int[]{0});
+        addMethod(ACC_PUBLIC | ACC_FINAL, (String) method[0], TREE_DESCRIPTOR, code, 6, 6);
+      }
+      return index;
+    }
+
+    // locals: 0 - this, 1 - row, 2 - double value, 4 - int value, 5 - index in the bitset
+    private void emitNode(Code code, int node, int[] methodNodes) {
+      if (node < 0) {
+        code.pushDouble(_cp, _ff._leaves[~node]);
+        code.op(DRETURN);
+        return;
+      }
+      if (methodNodes[0] >= _maxNodesPerMethod) {
+        final String name = "subtree" + _nsubtrees++;
+        _pending.add(new Object[]{name, node});
+        code.op(ALOAD_0);
+        code.op(ALOAD_1);
+        code.op(INVOKEVIRTUAL);
+        code.u2(_cp.methodRef(_internalName, name, TREE_DESCRIPTOR));
+        code.op(DRETURN);
+        return;
+      }
+      methodNodes[0]++;
+      final int flags = _ff._flags[node];
+      final int col = _ff._cols[node];
+      final int bs = _ff._bitsets[node];
+      final int domainLength = _domainLengths[col];
+      final Label left = new Label();
+      final Label right = new Label();
+      final Label na = (flags & FlatForest.FLAG_NA_LEFT) != 0 ? left : right;
+      // double d = row[col]; if (Double.isNaN(d)) goto na
+      code.op(ALOAD_1);
+      code.pushInt(_cp, col);
+      code.op(DALOAD);
+      code.op(DSTORE_2);
+      code.op(DLOAD_2);
+      code.op(DLOAD_2);
+      code.op(DCMPL);
+      code.jump(IFNE, na);
+      if (bs >= 0 || domainLength >= 0) {
+        code.op(DLOAD_2);
+        code.op(D2I);
+        code.op(ISTORE);
+        code.u1(4);
+      }
+      if (bs >= 0) {
+        // int idx = (int) d - bitOff; if (idx < 0 || idx >= nbits) goto na
+        code.op(ILOAD);
+        code.u1(4);
+        code.pushInt(_cp, _ff._bsBitOffs[bs]);
+        code.op(ISUB);
+        code.op(ISTORE);
+        code.u1(5);
+        code.op(ILOAD);
+        code.u1(5);
+        code.jump(IFLT, na);
+        code.op(ILOAD);
+        code.u1(5);
+        code.pushInt(_cp, _ff._bsNBits[bs]);
+        code.jump(IF_ICMPGE, na);
+      }
+      if (domainLength >= 0) {
+        // unseen categorical level
+        code.op(ILOAD);
+        code.u1(4);
+        code.pushInt(_cp, domainLength);
+        code.jump(IF_ICMPGE, na);
+      }
+      if ((flags & FlatForest.FLAG_NA_VS_REST) != 0) {
+        // all non-NA values go left
+      } else if ((flags & FlatForest.FLAG_BITSET) != 0) {
+        // if ((_bits[byteOff + (idx >> 3)] & (1 << (idx & 7))) != 0) goto right
+        code.op(ALOAD_0);
+        code.op(GETFIELD);
+        code.u2(_cp.fieldRef(BASE_CLASS, "_bits", "[B"));
+        code.pushInt(_cp, _ff._bsByteOffs[bs]);
+        code.op(ILOAD);
+        code.u1(5);
+        code.op(ICONST_3);
+        code.op(ISHR);
+        code.op(IADD);
+        code.op(BALOAD);
+        code.op(ICONST_1);
+        code.op(ILOAD);
+        code.u1(5);
+        code.op(BIPUSH);
+        code.u1(7);
+        code.op(IAND);
+        code.op(ISHL);
+        code.op(IAND);
+        code.jump(IFNE, right);
+      } else {
+        // if (d >= split) goto right
+        code.op(DLOAD_2);
+        code.pushDouble(_cp, _ff._splits[node]);
+        code.op(DCMPL);
+        code.jump(IFGE, right);
+      }
+      code.bind(left);
+      emitNode(code, _ff._left[node], methodNodes);
+      code.bind(right);
+      emitNode(code, _ff._right[node], methodNodes);
+    }
+
+    CompiledTreeGroup define(GeneratedClassLoader loader) {
+      emitConstructor();
+      emitDispatch();
+      final byte[] bytes = toByteArray();
+      try {
+        final Class<?> clazz = loader.define(_name, bytes);
+        return (CompiledTreeGroup) clazz.getConstructor(byte[].class).newInstance((Object) _ff._bsBytes);
+      } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        throw new IllegalStateException("Failed to instantiate generated class " + _name, e);
+      }
+    }
+
+    private void emitConstructor() {
+      final Code code = new Code();
+      code.op(ALOAD_0);
+      code.op(ALOAD_1);
+      code.op(INVOKESPECIAL);
+      code.u2(_cp.methodRef(BASE_CLASS, "<init>", "([B)V"));
+      code.op(RETURN);
+      addMethod(ACC_PUBLIC, "<init>", "([B)V", code, 2, 2);
+    }
+
+    // double scoreTree(int tree, double[] row) { switch (tree) { case i: return tree<i>(row); ... } }
+    private void emitDispatch() {
+      final Code code = new Code();
+      final Label[] cases = new Label[_ntrees];
+      final Label defaultCase = new Label();
+      for (int i = 0; i < cases.length; i++)
+        cases[i] = new Label();
+      code.op(ILOAD_1);
+      code.tableSwitch(defaultCase, cases);
+      for (int i = 0; i < cases.length; i++) {
+        code.bind(cases[i]);
+        code.op(ALOAD_0);
+        code.op(ALOAD_2);
+        code.op(INVOKEVIRTUAL);
+        code.u2(_cp.methodRef(_internalName, "tree" + i, TREE_DESCRIPTOR));
+        code.op(DRETURN);
+      }
+      code.bind(defaultCase);
+      code.op(DCONST_0);
+      code.op(DRETURN);
+      addMethod(ACC_PUBLIC | ACC_FINAL, "scoreTree", "(I[D)D", code, 3, 3);
+    }
+
+    private void addMethod(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) {
+      if (code.size() > 65535)
+        throw new IllegalStateException("Generated method " + name + " is too large: " + code.size() + " bytes");
+      try {
+        final DataOutputStream out = new DataOutputStream(_methods);
+        out.writeShort(access);
+        out.writeShort(_cp.utf8(name));
+        out.writeShort(_cp.utf8(descriptor));
+        out.writeShort(1); // attributes
+        out.writeShort(_cp.utf8("Code"));
+        out.writeInt(12 + code.size());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.size());
+        out.write(code._bytes, 0, code.size());
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+        _nmethods++;
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private byte[] toByteArray() {
+      try {
+        final int thisClass = _cp.classRef(_internalName);
+        final int superClass = _cp.classRef(BASE_CLASS);
+        if (_cp.size() > MAX_CONSTANTS)
+          throw new IllegalStateException("Constant pool of generated class " + _name + " is too large: " + _cp.size());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor version
+        out.writeShort(49); // major version (Java 5)
+        out.writeShort(_cp.size() + 1);
+        _cp._bytes.writeTo(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(_nmethods);
+        _methods.writeTo(out);
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static final class ConstantPool {
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+    private final DataOutputStream _out = new DataOutputStream(_bytes);
+    private final Map<String, Integer> _index = new HashMap<>();
+    private int _size;
+
+    int size() {
+      return _size;
+    }
+
+    int utf8(String s) {
+      final Integer idx = _index.get("U" + s);
+      if (idx != null)
+        return idx;
+      try {
+        _out.writeByte(1);
+        _out.writeUTF(s);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return add("U" + s, 1);
+    }
+
+    int classRef(String internalName) {
+      final String key = "C" + internalName;
+      final Integer idx = _index.get(key);
+      if (idx != null)
+        return idx;
+      final int name = utf8(internalName);
+      write(7, name);
+      return add(key, 1);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+      return memberRef(10, owner, name, descriptor);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+      return memberRef(9, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+      final String key = "M" + tag + owner + "." + name + ":" + descriptor;
+      final Integer idx = _index.get(key);
+      if (idx != null)
+        return idx;
+      final int ownerIdx = classRef(owner);
+      final String natKey = "N" + name + ":" + descriptor;
+      Integer nat = _index.get(natKey);
+      if (nat == null) {
+        final int nameIdx = utf8(name);
+        final int descriptorIdx = utf8(descriptor);
+        write(12, nameIdx, descriptorIdx);
+        nat = add(natKey, 1);
+      }
+      write(tag, ownerIdx, nat);
+      return add(key, 1);
+    }
+
+    int intConstant(int value) {
+      final String key = "I" + value;
+      final Integer idx = _index.get(key);
+      if (idx != null)
+        return idx;
+      try {
+        _out.writeByte(3);
+        _out.writeInt(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return add(key, 1);
+    }
+
+    int doubleConstant(double value) {
+      final long bits = Double.doubleToRawLongBits(value);
+      final String key = "D" + bits;
+      final Integer idx = _index.get(key);
+      if (idx != null)
+        return idx;
+      try {
+        _out.writeByte(6);
+        _out.writeLong(bits);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return add(key, 2); // doubles take two entries
+    }
+
+    private void write(int tag, int... refs) {
+      try {
+        _out.writeByte(tag);
+        for (int ref : refs)
+          _out.writeShort(ref);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private int add(String key, int entries) {
+      final int idx = _size + 1;
+      _size += entries;
+      _index.put(key, idx);
+      return idx;
+    }
+  }
+
+  private static final class Label {
+    // positions of the jump instructions and of their offsets
+    final List<int[]> _fixups = new ArrayList<>();
+  }
+
+  private static final class Code {
+    private byte[] _bytes = new byte[256];
+    private int _size;
+
+    int size() {
+      return _size;
+    }
+
+    void u1(int b) {
+      if (_size == _bytes.length)
+        _bytes = Arrays.copyOf(_bytes, _size * 2);
+      _bytes[_size++] = (byte) b;
+    }
+
+    void u2(int v) {
+      u1(v >> 8);
+      u1(v);
+    }
+
+    void u4(int v) {
+      u2(v >> 16);
+      u2(v);
+    }
+
+    void op(int opcode) {
+      u1(opcode);
+    }
+
+    void pushInt(ConstantPool cp, int value) {
+      if (value >= -1 && value <= 5) {
+        op(ICONST_0 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        op(BIPUSH);
+        u1(value);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        op(SIPUSH);
+        u2(value);
+      } else {
+        op(LDC_W);
+        u2(cp.intConstant(value));
+      }
+    }
+
+    void pushDouble(ConstantPool cp, double value) {
+      final long bits = Double.doubleToRawLongBits(value);
+      if (bits == 0L) {
+        op(DCONST_0);
+      } else if (bits == Double.doubleToRawLongBits(1.0)) {
+        op(DCONST_1);
+      } else {
+        op(LDC2_W);
+        u2(cp.doubleConstant(value));
+      }
+    }
+
+    void jump(int opcode, Label target) {
+      final int pos = _size;
+      op(opcode);
+      target._fixups.add(new int[]{pos, _size});
+      u2(0);
+    }
+
+    void tableSwitch(Label defaultCase, Label[] cases) {
+      final int pos = _size;
+      op(TABLESWITCH);
+      while (_size % 4 != 0)
+        u1(0);
+      defaultCase._fixups.add(new int[]{pos, -_size - 1});
+      u4(0);
+      u4(0);
+      u4(cases.length - 1);
+      for (Label l : cases) {
+        l._fixups.add(new int[]{pos, -_size - 1});
+        u4(0);
+      }
+    }
+
+    void bind(Label label) {
+      for (int[] fixup : label._fixups) {
+        final int offset = _size - fixup[0];
+        if (fixup[1] < 0) { // 4-byte offset
+          final int at = -fixup[1] - 1;
+          _bytes[at] = (byte) (offset >> 24);
+          _bytes[at + 1] = (byte) (offset >> 16);
+          _bytes[at + 2] = (byte) (offset >> 8);
+          _bytes[at + 3] = (byte) offset;
+        } else {
+          if (offset > Short.MAX_VALUE)
+            throw new IllegalStateException("Jump offset too large: " + offset);
+          _bytes[fixup[1]] = (byte) (offset >> 8);
+          _bytes[fixup[1] + 1] = (byte) offset;
+        }
+      }
+      label._fixups.clear();
+    }
+  }
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private static final int ICONST_0 = 0x03;
+  private static final int ICONST_1 = 0x04;
+  private static final int ICONST_3 = 0x06;
+  private static final int DCONST_0 = 0x0e;
+  private static final int DCONST_1 = 0x0f;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int LDC2_W = 0x14;
+  private static final int ILOAD = 0x15;
+  private static final int ILOAD_1 = 0x1b;
+  private static final int DLOAD_2 = 0x28;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ALOAD_2 = 0x2c;
+  private static final int DALOAD = 0x31;
+  private static final int BALOAD = 0x33;
+  private static final int ISTORE = 0x36;
+  private static final int DSTORE_2 = 0x49;
+  private static final int IADD = 0x60;
+  private static final int ISUB = 0x64;
+  private static final int ISHL = 0x78;
+  private static final int ISHR = 0x7a;
+  private static final int IAND = 0x7e;
+  private static final int D2I = 0x8e;
+  private static final int DCMPL = 0x97;
+  private static final int IFNE = 0x9a;
+  private static final int IFLT = 0x9b;
+  private static final int IFGE = 0x9c;
+  private static final int IF_ICMPGE = 0xa2;
+  private static final int TABLESWITCH = 0xaa;
+  private static final int DRETURN = 0xaf;
+  private static final int RETURN = 0xb1;
+  private static final int GETFIELD = 0xb4;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+
+}
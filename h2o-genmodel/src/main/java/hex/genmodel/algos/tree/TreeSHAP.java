@@ -272,7 +272,7 @@ public class TreeSHAP<R, N extends INode<R>, S extends INodeStat> implements Tre
     return nodeMeanValue(nodes, stats, 0);
   }
 
-  private static <N extends INode, S extends INodeStat> float nodeMeanValue(N[] nodes, S[] stats, int node) {
+  static <N extends INode, S extends INodeStat> float nodeMeanValue(N[] nodes, S[] stats, int node) {
     final N n = nodes[node];
     if (n.isLeaf()) {
       return n.getLeafValue();
@@ -31,6 +31,24 @@ public class TreeSHAPEnsemble<R> implements TreeSHAPPredictor<R> {
     return out_contribs; 
   }
 
+  /**
+   * Calculates contributions for a batch of rows. The trees are evaluated one by one for all rows of the batch.
+   * @param feats input rows
+   * @param nrows number of rows to process
+   * @param out_contribs output contributions (one array per row), contributions are added to the existing values
+   * @param workspace workspace created by {@link #makeWorkspace()}
+   */
+  public void calculateContributions(R[] feats, int nrows, float[][] out_contribs, Object workspace) {
+    for (int r = 0; r < nrows; r++) {
+      out_contribs[r][out_contribs[r].length - 1] += _initPred;
+    }
+    for (TreeSHAPPredictor<R> predictor : _predictors) {
+      for (int r = 0; r < nrows; r++) {
+        predictor.calculateContributions(feats[r], out_contribs[r], 0, -1, workspace);
+      }
+    }
+  }
+
   @Override
   public Object makeWorkspace() {
     return _wsMakerIndex >= 0 ? _predictors[_wsMakerIndex].makeWorkspace() : null;
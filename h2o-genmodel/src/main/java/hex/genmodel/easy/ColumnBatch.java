@@ -0,0 +1,110 @@
+package hex.genmodel.easy;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column-oriented input data for batch predictions, see {@link EasyPredictModelWrapper#predictBatch}.
+ *
+ * A batch holds references to caller-owned primitive arrays, one per column, each of them holding the values of
+ * (at least) the rows to predict. Numerical columns are given as double[] (NaN represents a missing value),
+ * categorical columns as String[] with the same levels as seen in the training data (null represents a missing value).
+ *
+ * <p></p>
+ * The arrays are not copied - a batch is meant to be set up once and the arrays refilled with new data before every
+ * predict call. The batch also holds the internal buffers used for scoring, once allocated, predicting the next batch
+ * of rows doesn't allocate any memory. For this reason a ColumnBatch instance should not be shared between threads.
+ *
+ * <p></p>
+ * For missing columns that are in the model, NA will be used. Extra columns that are not in the model are ignored.
+ */
+public class ColumnBatch implements Serializable {
+
+  private final int _capacity;
+  private final List<String> _names = new ArrayList<>();
+  private final List<Object> _columns = new ArrayList<>();
+  private double[] _offsets;
+
+  // scoring buffers, allocated on first use
+  transient double[][] _rawData;
+  transient double[][] _preds;
+
+  /**
+   * @param capacity maximum number of rows in the batch
+   */
+  public ColumnBatch(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("Capacity of a batch needs to be positive, got: " + capacity);
+    _capacity = capacity;
+  }
+
+  public int capacity() {
+    return _capacity;
+  }
+
+  /**
+   * Adds a numerical column.
+   * @param name column name
+   * @param values values of the column, NaN represents a missing value
+   * @return this batch
+   */
+  public ColumnBatch addNumericColumn(String name, double[] values) {
+    return addColumn(name, values, values.length);
+  }
+
+  /**
+   * Adds a categorical column.
+   * @param name column name
+   * @param levels categorical levels, null represents a missing value
+   * @return this batch
+   */
+  public ColumnBatch addCategoricalColumn(String name, String[] levels) {
+    return addColumn(name, levels, levels.length);
+  }
+
+  /**
+   * Sets per-row offsets (for models trained with an offset column).
+   * @param offsets offset values
+   * @return this batch
+   */
+  public ColumnBatch setOffsets(double[] offsets) {
+    checkLength("offset", offsets.length);
+    _offsets = offsets;
+    return this;
+  }
+
+  private ColumnBatch addColumn(String name, Object values, int length) {
+    if (_names.contains(name))
+      throw new IllegalArgumentException("Column '" + name + "' was already added to the batch.");
+    checkLength(name, length);
+    _names.add(name);
+    _columns.add(values);
+    return this;
+  }
+
+  private void checkLength(String name, int length) {
+    if (length < _capacity)
+      throw new IllegalArgumentException("Column '" + name + "' has only " + length + " values, capacity of the batch is " + _capacity);
+  }
+
+  public int numColumns() {
+    return _names.size();
+  }
+
+  public String getColumnName(int i) {
+    return _names.get(i);
+  }
+
+  /**
+   * @return values of the i-th column, either a double[] or a String[]
+   */
+  public Object getColumn(int i) {
+    return _columns.get(i);
+  }
+
+  public double[] getOffsets() {
+    return _offsets;
+  }
+
+}
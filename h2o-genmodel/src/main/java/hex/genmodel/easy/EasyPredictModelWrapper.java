@@ -57,6 +57,7 @@ public class EasyPredictModelWrapper implements Serializable {
   // These private members are read-only after the constructor.
   public final GenModel m;
   private final RowToRawDataConverter rowDataConverter;
+  private final CategoricalEncoding categoricalEncoding;
 
   private final boolean useExtendedOutput;
   private final boolean enableLeafAssignment;
@@ -304,7 +305,7 @@ public class EasyPredictModelWrapper implements Serializable {
       predictContributions = null;
     }
 
-    CategoricalEncoding categoricalEncoding = config.getUseExternalEncoding() ?
+    categoricalEncoding = config.getUseExternalEncoding() ?
             CategoricalEncoding.AUTO : m.getCategoricalEncoding();
     Map<String, Integer> columnMapping = categoricalEncoding.createColumnMapping(m);
     Map<Integer, CategoricalEncoder> domainMap = categoricalEncoding.createCategoricalEncoders(m, columnMapping);
@@ -328,6 +329,71 @@ public class EasyPredictModelWrapper implements Serializable {
   }
 
 
+  /**
+   * Creates a schema for input rows with the given columns. The positions of the columns in the model input and
+   * the encodings of the categorical levels are resolved once, rows created by the schema are then filled by column
+   * index without any lookups of column names and without boxing of the values.
+   *
+   * Typical use in a service: create the schema and a row per thread once, then for every request fill the row
+   * and call a predict method, e.g. {@link #predictBinomial(RowSchema.Row)}.
+   *
+   * @param columnNames names of the input columns (in the order used for filling the rows)
+   * @return a new schema
+   * @throws PredictException if the model doesn't support pre-resolved rows
+   */
+  public RowSchema makeRowSchema(String... columnNames) throws PredictException {
+    if (m instanceof ConverterFactoryProvidingModel)
+      throw new PredictException("Pre-resolved rows are not supported for model " + m.getClass().getName() + ".");
+    String[][] domains = new String[columnNames.length][];
+    for (int i = 0; i < columnNames.length; i++)
+      domains[i] = inputDomainValues(columnNames[i]);
+    return rowDataConverter.makeRowSchema(m.nfeatures(), columnNames, domains);
+  }
+
+  // domain of an input column as seen by the categorical encoders
+  private String[] inputDomainValues(String columnName) {
+    if (categoricalEncoding == CategoricalEncoding.AUTO)
+      return m.getDomainValues(columnName);
+    if (categoricalEncoding == CategoricalEncoding.LabelEncoder) {
+      int colIdx = m.getColIdx(columnName);
+      return colIdx >= 0 && colIdx < m.getNumCols() ? m.getOrigDomainValues()[colIdx] : null;
+    }
+    String[] origNames = m.getOrigNames();
+    if (origNames == null)
+      return m.getDomainValues(columnName);
+    for (int i = 0; i < origNames.length; i++)
+      if (origNames[i].equals(columnName))
+        return m.getOrigDomainValues()[i];
+    return null;
+  }
+
+  /**
+   * Make a prediction on a new data point given as a pre-resolved row, see {@link #makeRowSchema(String...)}.
+   *
+   * @param row A new data point.
+   * @param preds Array for the predictions, can be re-used between calls.
+   * @return preds, in the same format as the output of {@link GenModel#score0(double[], double[])}
+   */
+  public double[] predict(RowSchema.Row row, double[] preds) {
+    return predict(row, 0.0, preds);
+  }
+
+  /**
+   * Make a prediction on a new data point given as a pre-resolved row, see {@link #makeRowSchema(String...)}.
+   *
+   * @param row A new data point.
+   * @param offset An offset for the prediction.
+   * @param preds Array for the predictions, can be re-used between calls.
+   * @return preds, in the same format as the output of {@link GenModel#score0(double[], double[])}
+   */
+  public double[] predict(RowSchema.Row row, double offset, double[] preds) {
+    if (m.requiresOffset() || offset != 0) {
+      return m.score0(row.rawData(), offset, preds);
+    } else {
+      return m.score0(row.rawData(), preds);
+    }
+  }
+
   /**
    * Make a prediction on a new data point.
    *
@@ -606,12 +672,39 @@ public class EasyPredictModelWrapper implements Serializable {
    * @throws PredictException
    */
   public BinomialModelPrediction predictBinomial(RowData data, double offset) throws PredictException {
-
     double[] preds = preamble(ModelCategory.Binomial, data, offset);
+    return toBinomialPrediction(preds, advancedRawData(data));
+  }
 
+  /**
+   * Make a prediction on a new data point using a Binomial model.
+   *
+   * @param row A new data point, see {@link #makeRowSchema(String...)}.
+   * @return The prediction.
+   * @throws PredictException
+   */
+  public BinomialModelPrediction predictBinomial(RowSchema.Row row) throws PredictException {
+    return predictBinomial(row, 0.0);
+  }
+
+  /**
+   * Make a prediction on a new data point using a Binomial model.
+   *
+   * @param row A new data point, see {@link #makeRowSchema(String...)}.
+   * @param offset An offset for the prediction.
+   * @return The prediction.
+   * @throws PredictException
+   */
+  public BinomialModelPrediction predictBinomial(RowSchema.Row row, double offset) throws PredictException {
+    validateModelCategory(ModelCategory.Binomial);
+    double[] preds = predict(row, offset, new double[m.getPredsSize(ModelCategory.Binomial)]);
+    return toBinomialPrediction(preds, row.rawData());
+  }
+
+  private BinomialModelPrediction toBinomialPrediction(double[] preds, double[] rawData) {
     BinomialModelPrediction p = new BinomialModelPrediction();
     if (enableLeafAssignment) { // only get leaf node assignment if enabled
-      SharedTreeMojoModel.LeafNodeAssignments assignments = leafNodeAssignmentExtended(data);
+      SharedTreeMojoModel.LeafNodeAssignments assignments = ((TreeBackedMojoModel) m).getLeafNodeAssignments(rawData);
       p.leafNodeAssignments = assignments._paths;
       p.leafNodeAssignmentIds = assignments._nodeIds;
     }
@@ -628,13 +721,9 @@ public class EasyPredictModelWrapper implements Serializable {
       System.arraycopy(preds, 1, p.calibratedClassProbabilities, 0, p.calibratedClassProbabilities.length);
     }
     if (enableStagedProbabilities) {
-        double[] rawData = nanArray(m.nfeatures());
-        rawData = fillRawData(data, rawData);
         p.stageProbabilities = ((SharedTreeMojoModel) m).scoreStagedPredictions(rawData, preds.length);
     }
     if (enableContributions) {
-      double[] rawData = nanArray(m.nfeatures());
-      rawData = fillRawData(data, rawData);
       p.contributions = predictContributions.calculateContributions(rawData);
     }
     return p;
@@ -827,22 +916,46 @@ public class EasyPredictModelWrapper implements Serializable {
    */
   public RegressionModelPrediction predictRegression(RowData data, double offset) throws PredictException {
     double[] preds = preamble(ModelCategory.Regression, data, offset);
+    return toRegressionPrediction(preds, advancedRawData(data));
+  }
 
+  /**
+   * Make a prediction on a new data point using a Regression model.
+   *
+   * @param row A new data point, see {@link #makeRowSchema(String...)}.
+   * @return The prediction.
+   * @throws PredictException
+   */
+  public RegressionModelPrediction predictRegression(RowSchema.Row row) throws PredictException {
+    return predictRegression(row, 0.0);
+  }
+
+  /**
+   * Make a prediction on a new data point using a Regression model.
+   *
+   * @param row A new data point, see {@link #makeRowSchema(String...)}.
+   * @param offset Prediction offset
+   * @return The prediction.
+   * @throws PredictException
+   */
+  public RegressionModelPrediction predictRegression(RowSchema.Row row, double offset) throws PredictException {
+    validateModelCategory(ModelCategory.Regression);
+    double[] preds = predict(row, offset, new double[m.getPredsSize(ModelCategory.Regression)]);
+    return toRegressionPrediction(preds, row.rawData());
+  }
+
+  private RegressionModelPrediction toRegressionPrediction(double[] preds, double[] rawData) {
     RegressionModelPrediction p = new RegressionModelPrediction();
     if (enableLeafAssignment) { // only get leaf node assignment if enabled
-      SharedTreeMojoModel.LeafNodeAssignments assignments = leafNodeAssignmentExtended(data);
+      SharedTreeMojoModel.LeafNodeAssignments assignments = ((TreeBackedMojoModel) m).getLeafNodeAssignments(rawData);
       p.leafNodeAssignments = assignments._paths;
       p.leafNodeAssignmentIds = assignments._nodeIds;
     }
     p.value = preds[0];
     if (enableStagedProbabilities) {
-        double[] rawData = nanArray(m.nfeatures());
-        rawData = fillRawData(data, rawData);
         p.stageProbabilities = ((SharedTreeMojoModel) m).scoreStagedPredictions(rawData, preds.length);
     }
     if (enableContributions) {
-      double[] rawData = nanArray(m.nfeatures());
-      rawData = fillRawData(data, rawData);
       p.contributions = predictContributions.calculateContributions(rawData);
     }
     return p;
@@ -892,9 +1005,90 @@ public class EasyPredictModelWrapper implements Serializable {
   }
 
   //----------------------------------------------------------------------
+  /**
+   * Make predictions on a batch of new data points given in a column-oriented form.
+   *
+   * Column names and categorical encoders are resolved once per batch column and the rows are scored using
+   * {@link GenModel#score0Batch}, which can be vectorized by the model. Once the buffers of the batch are allocated
+   * (during the first call) there is no allocation per row. Only the raw predictions are produced, advanced scoring
+   * features (leaf node assignment, staged probabilities, contributions) are not available in the batch mode.
+   *
+   * @param batch column-oriented input data
+   * @param nrows number of rows to predict (first `nrows` values of each column)
+   * @param preds arrays for the predictions, one per row, each of size at least {@link GenModel#getPredsSize()},
+   *              can be re-used between calls
+   * @return preds, in the same format as the output of {@link GenModel#score0(double[], double[])}
+   * @throws PredictException
+   */
+  public double[][] predictBatch(ColumnBatch batch, int nrows, double[][] preds) throws PredictException {
+    if (m instanceof ConverterFactoryProvidingModel)
+      throw new PredictException("Batch predictions are not supported for model " + m.getClass().getName() + ".");
+    if (nrows > batch.capacity())
+      throw new IllegalArgumentException("Cannot predict " + nrows + " rows, capacity of the batch is " + batch.capacity());
+    final double[][] rawData = batchRawData(batch);
+    for (int r = 0; r < nrows; r++)
+      Arrays.fill(rawData[r], Double.NaN);
+    rowDataConverter.convertBatch(batch, nrows, rawData);
+    final double[] offsets = batch.getOffsets();
+    if (offsets != null) {
+      m.score0Batch(rawData, offsets, nrows, preds);
+    } else if (m.requiresOffset()) {
+      throw new PredictException("Model " + m.getClass().getName() + " requires an offset, use ColumnBatch.setOffsets.");
+    } else {
+      m.score0Batch(rawData, nrows, preds);
+    }
+    return preds;
+  }
+
+  /**
+   * Make predictions on a batch of new data points using a Binomial model.
+   *
+   * @param batch column-oriented input data
+   * @param nrows number of rows to predict
+   * @param labelIndex output array for the index of the predicted label of each row
+   * @param p1 output array for the probability of the second class (index 1) of each row
+   * @throws PredictException
+   */
+  public void predictBinomialBatch(ColumnBatch batch, int nrows, int[] labelIndex, double[] p1) throws PredictException {
+    validateModelCategory(ModelCategory.Binomial);
+    final double[][] preds = predictBatch(batch, nrows, batchPreds(batch));
+    for (int r = 0; r < nrows; r++) {
+      labelIndex[r] = (int) preds[r][0];
+      p1[r] = preds[r][2];
+    }
+  }
+
+  /**
+   * Make predictions on a batch of new data points using a Regression model.
+   *
+   * @param batch column-oriented input data
+   * @param nrows number of rows to predict
+   * @param predictions output array for the predicted value of each row
+   * @throws PredictException
+   */
+  public void predictRegressionBatch(ColumnBatch batch, int nrows, double[] predictions) throws PredictException {
+    validateModelCategory(ModelCategory.Regression);
+    final double[][] preds = predictBatch(batch, nrows, batchPreds(batch));
+    for (int r = 0; r < nrows; r++)
+      predictions[r] = preds[r][0];
+  }
+
   // Private methods below this line.
   //----------------------------------------------------------------------
 
+  private double[][] batchRawData(ColumnBatch batch) {
+    if (batch._rawData == null || batch._rawData[0].length != m.nfeatures())
+      batch._rawData = new double[batch.capacity()][m.nfeatures()];
+    return batch._rawData;
+  }
+
+  private double[][] batchPreds(ColumnBatch batch) {
+    final int predsSize = m.getPredsSize();
+    if (batch._preds == null || batch._preds[0].length != predsSize)
+      batch._preds = new double[batch.capacity()][predsSize];
+    return batch._preds;
+  }
+
 
 
 
@@ -913,6 +1107,13 @@ public class EasyPredictModelWrapper implements Serializable {
     return predict(data, offset, new double[predsSize]);
   }
 
+  // raw data for the advanced scoring features (only converted when needed)
+  private double[] advancedRawData(RowData data) throws PredictException {
+    if (!enableLeafAssignment && !enableStagedProbabilities && !enableContributions)
+      return null;
+    return fillRawData(data, nanArray(m.nfeatures()));
+  }
+
   protected double[] fillRawData(RowData data, double[] rawData) throws PredictException {
     return rowDataConverter.convert(data, rawData);
   }
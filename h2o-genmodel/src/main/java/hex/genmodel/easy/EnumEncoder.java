@@ -1,5 +1,7 @@
 package hex.genmodel.easy;
 
+import hex.genmodel.MojoInterner;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,11 +14,16 @@ public class EnumEncoder implements CategoricalEncoder {
   public EnumEncoder(String columnName, int targetIndex, String[] domainValues) {
     this.columnName = columnName;
     this.targetIndex = targetIndex;
-    domainMap = new HashMap<>();
+    Map<String, Integer> shared = MojoInterner.levelIndices(domainValues);
+    domainMap = shared != null ? shared : levelIndices(domainValues);
+  }
+
+  public static Map<String, Integer> levelIndices(String[] domainValues) {
+    Map<String, Integer> levelIndices = new HashMap<>();
     for (int j = 0; j < domainValues.length; j++) {
-      domainMap.put(domainValues[j], j);
+      levelIndices.put(domainValues[j], j);
     }
-    
+    return levelIndices;
   }
 
   @Override
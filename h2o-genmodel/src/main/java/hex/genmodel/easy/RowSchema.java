@@ -0,0 +1,231 @@
+package hex.genmodel.easy;
+
+import hex.genmodel.easy.exception.PredictException;
+import hex.genmodel.easy.exception.PredictUnknownCategoricalLevelException;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static hex.genmodel.utils.ArrayUtils.nanArray;
+
+/**
+ * Pre-resolved schema of the input rows of a model, see {@link EasyPredictModelWrapper#makeRowSchema(String...)}.
+ *
+ * The schema is created for a fixed list of input columns. Positions of the columns in the raw data of the model are
+ * resolved when the schema is created and so are the encodings of all known categorical levels (for any categorical
+ * encoding of the model). A {@link Row} is then filled by column index with primitive values: there are no lookups
+ * of column names, no boxing and no parsing; categorical levels given by their index in the domain are copied
+ * from the pre-computed encodings without any hashing.
+ *
+ * <p></p>
+ * The schema is immutable and can be shared between threads, rows are not thread-safe and are meant to be re-used.
+ */
+public class RowSchema implements Serializable {
+
+  private final int _nfeatures;
+  private final String[] _columnNames;
+  private final String[][] _domains;
+  private final int[] _targetIndex; // -1 for columns not used by the model
+  private final int[] _width;
+  private final CategoricalEncoder[] _encoders;
+  private final double[][][] _encodedLevels; // [column][level] -> encoded values, null for a level unknown to the model
+  private final double[][] _encodedNA;
+  private final EasyPredictModelWrapper.ErrorConsumer _errorConsumer;
+  private final boolean _convertUnknownCategoricalLevelsToNa;
+
+  RowSchema(int nfeatures, String[] columnNames, String[][] domains, int[] targetIndex, int[] width,
+            CategoricalEncoder[] encoders, EasyPredictModelWrapper.ErrorConsumer errorConsumer,
+            boolean convertUnknownCategoricalLevelsToNa) {
+    _nfeatures = nfeatures;
+    _columnNames = columnNames;
+    _domains = domains;
+    _targetIndex = targetIndex;
+    _width = width;
+    _encoders = encoders;
+    _errorConsumer = errorConsumer;
+    _convertUnknownCategoricalLevelsToNa = convertUnknownCategoricalLevelsToNa;
+    _encodedLevels = new double[columnNames.length][][];
+    _encodedNA = new double[columnNames.length][];
+    final double[] rawData = new double[nfeatures];
+    for (int i = 0; i < columnNames.length; i++) {
+      final CategoricalEncoder encoder = encoders[i];
+      if (encoder == null)
+        continue;
+      final int from = targetIndex[i], to = from + width[i];
+      final String[] domain = domains[i] != null ? domains[i] : new String[0];
+      _encodedLevels[i] = new double[domain.length][];
+      for (int level = 0; level < domain.length; level++) {
+        if (encoder.encodeCatValue(domain[level], rawData))
+          _encodedLevels[i][level] = Arrays.copyOfRange(rawData, from, to);
+      }
+      encoder.encodeNA(rawData);
+      _encodedNA[i] = Arrays.copyOfRange(rawData, from, to);
+    }
+  }
+
+  public int numColumns() {
+    return _columnNames.length;
+  }
+
+  public String getColumnName(int column) {
+    return _columnNames[column];
+  }
+
+  /**
+   * @return index of the column with the given name in this schema, -1 if the schema doesn't have such column
+   */
+  public int getColumnIndex(String columnName) {
+    for (int i = 0; i < _columnNames.length; i++)
+      if (_columnNames[i].equals(columnName))
+        return i;
+    return -1;
+  }
+
+  /**
+   * @return true if the model uses the given column
+   */
+  public boolean isUsed(int column) {
+    return _targetIndex[column] >= 0;
+  }
+
+  /**
+   * @return domain of a categorical column (level indices used by {@link Row#setCategorical(int, int)} refer
+   * to this array), null for numerical columns
+   */
+  public String[] getDomainValues(int column) {
+    return _domains[column];
+  }
+
+  /**
+   * Creates a new row with all values missing.
+   */
+  public Row newRow() {
+    return new Row();
+  }
+
+  /**
+   * A reusable input row. Values of columns that were not set are missing (NA).
+   */
+  public final class Row implements Serializable {
+
+    private final double[] _rawData = nanArray(_nfeatures);
+
+    private Row() {}
+
+    public RowSchema getSchema() {
+      return RowSchema.this;
+    }
+
+    /**
+     * Sets all values to missing, to be called before a row is re-used.
+     * @return this row
+     */
+    public Row clear() {
+      Arrays.fill(_rawData, Double.NaN);
+      return this;
+    }
+
+    /**
+     * Sets a value of a numerical column.
+     * @param column index of the column in the schema
+     * @param value value, NaN represents a missing value
+     * @return this row
+     */
+    public Row setNumeric(int column, double value) {
+      final int target = _targetIndex[column];
+      if (target < 0)
+        return this;
+      if (_encoders[column] != null)
+        throw new IllegalArgumentException("Column " + _columnNames[column] + " is categorical.");
+      if (Double.isNaN(value))
+        _errorConsumer.dataTransformError(_columnNames[column], value, "Given non-categorical value is unparseable, treating as NaN.");
+      _rawData[target] = value;
+      return this;
+    }
+
+    /**
+     * Sets a value of a categorical column given by the index of the level.
+     * @param column index of the column in the schema
+     * @param level index of the level in {@link #getDomainValues(int)}
+     * @return this row
+     * @throws PredictException if the level is not known to the model
+     */
+    public Row setCategorical(int column, int level) throws PredictException {
+      final int target = _targetIndex[column];
+      if (target < 0)
+        return this;
+      final double[][] encodedLevels = categoricalLevels(column);
+      final double[] encoded = level >= 0 && level < encodedLevels.length ? encodedLevels[level] : null;
+      if (encoded == null) {
+        final String levelName = level >= 0 && level < encodedLevels.length ? _domains[column][level] : String.valueOf(level);
+        unknownLevel(column, levelName);
+      } else {
+        System.arraycopy(encoded, 0, _rawData, target, encoded.length);
+      }
+      return this;
+    }
+
+    /**
+     * Sets a value of a categorical column.
+     * @param column index of the column in the schema
+     * @param level name of the level, null represents a missing value
+     * @return this row
+     * @throws PredictException if the level is not known to the model
+     */
+    public Row setCategorical(int column, String level) throws PredictException {
+      final int target = _targetIndex[column];
+      if (target < 0)
+        return this;
+      categoricalLevels(column);
+      if (level == null) {
+        _errorConsumer.dataTransformError(_columnNames[column], null, "Missing factor value detected, setting to NaN");
+        setMissing(column);
+      } else if (!_encoders[column].encodeCatValue(level, _rawData)) {
+        unknownLevel(column, level);
+      }
+      return this;
+    }
+
+    /**
+     * Sets a missing value.
+     * @param column index of the column in the schema
+     * @return this row
+     */
+    public Row setMissing(int column) {
+      final int target = _targetIndex[column];
+      if (target < 0)
+        return this;
+      if (_encoders[column] == null)
+        _rawData[target] = Double.NaN;
+      else
+        System.arraycopy(_encodedNA[column], 0, _rawData, target, _width[column]);
+      return this;
+    }
+
+    private double[][] categoricalLevels(int column) {
+      if (_encoders[column] == null)
+        throw new IllegalArgumentException("Column " + _columnNames[column] + " is not categorical.");
+      return _encodedLevels[column];
+    }
+
+    private void unknownLevel(int column, String levelName) throws PredictException {
+      final String columnName = _columnNames[column];
+      if (_convertUnknownCategoricalLevelsToNa) {
+        setMissing(column);
+        _errorConsumer.unseenCategorical(columnName, levelName, "Previously unseen categorical level detected, marking as NaN.");
+      } else {
+        _errorConsumer.dataTransformError(columnName, levelName, "Unknown categorical level detected.");
+        throw new PredictUnknownCategoricalLevelException("Unknown categorical level (" + columnName + "," + levelName + ")", columnName, levelName);
+      }
+    }
+
+    /**
+     * @return input of the model (not a copy)
+     */
+    double[] rawData() {
+      return _rawData;
+    }
+
+  }
+
+}
@@ -8,6 +8,7 @@ import hex.genmodel.easy.exception.PredictUnknownTypeException;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * This class is intended to transform a RowData instance - for which we want to get prediction to - into a raw array
@@ -87,16 +88,7 @@ public class RowToRawDataConverter implements Serializable {
     } else {
       // Column has categorical value.
       if (o instanceof String) {
-        String levelName = (String) o;
-        if (! catEncoder.encodeCatValue(levelName, rawData)) {
-          if (_convertUnknownCategoricalLevelsToNa) {
-            catEncoder.encodeNA(rawData);
-            _errorConsumer.unseenCategorical(columnName, o, "Previously unseen categorical level detected, marking as NaN.");
-          } else {
-            _errorConsumer.dataTransformError(columnName, o, "Unknown categorical level detected.");
-            throw new PredictUnknownCategoricalLevelException("Unknown categorical level (" + columnName + "," + levelName + ")", columnName, levelName);
-          }
-        }
+        convertLevel(columnName, (String) o, catEncoder, rawData);
       } else if (o instanceof Double && Double.isNaN((double) o)) {
         _errorConsumer.dataTransformError(columnName, o, "Missing factor value detected, setting to NaN");
         catEncoder.encodeNA(rawData); // Missing factor is the only Double value allowed
@@ -110,6 +102,100 @@ public class RowToRawDataConverter implements Serializable {
     return false;
   }
 
+  private void convertLevel(String columnName, String levelName, CategoricalEncoder catEncoder,
+                            double[] rawData) throws PredictException {
+    if (! catEncoder.encodeCatValue(levelName, rawData)) {
+      if (_convertUnknownCategoricalLevelsToNa) {
+        catEncoder.encodeNA(rawData);
+        _errorConsumer.unseenCategorical(columnName, levelName, "Previously unseen categorical level detected, marking as NaN.");
+      } else {
+        _errorConsumer.dataTransformError(columnName, levelName, "Unknown categorical level detected.");
+        throw new PredictUnknownCategoricalLevelException("Unknown categorical level (" + columnName + "," + levelName + ")", columnName, levelName);
+      }
+    }
+  }
+
+  /**
+   * Batch version of {@link #convert(RowData, double[])}, column names and categorical encoders are resolved once
+   * per column of the batch.
+   * @param batch column-oriented data
+   * @param nrows number of rows to convert
+   * @param rawData arrays that will be filled with the data of the batch (one per row), pre-filled with NAs
+   * @throws PredictException when a value cannot be converted
+   */
+  public void convertBatch(ColumnBatch batch, int nrows, double[][] rawData) throws PredictException {
+    if (nrows == 0)
+      return;
+    final int nfeatures = rawData[0].length;
+    for (int c = 0; c < batch.numColumns(); c++) {
+      final String columnName = batch.getColumnName(c);
+      final Integer index = _modelColumnNameToIndexMap.get(columnName);
+      // Skip unknown columns and the response
+      if (index == null || index >= nfeatures) {
+        continue;
+      }
+      final CategoricalEncoder catEncoder = _domainMap.get(index);
+      final Object column = batch.getColumn(c);
+      if (catEncoder == null) {
+        if (!(column instanceof double[]))
+          throw new PredictUnknownTypeException(
+                  "Unexpected column type " + column.getClass().getSimpleName() + " for numeric column " + columnName);
+        final double[] values = (double[]) column;
+        for (int r = 0; r < nrows; r++) {
+          final double value = values[r];
+          if (Double.isNaN(value))
+            _errorConsumer.dataTransformError(columnName, value, "Given non-categorical value is unparseable, treating as NaN.");
+          rawData[r][index] = value;
+        }
+      } else {
+        if (!(column instanceof String[]))
+          throw new PredictUnknownTypeException(
+                  "Unexpected column type " + column.getClass().getSimpleName() + " for categorical column " + columnName);
+        final String[] levels = (String[]) column;
+        for (int r = 0; r < nrows; r++) {
+          if (levels[r] == null) {
+            _errorConsumer.dataTransformError(columnName, null, "Missing factor value detected, setting to NaN");
+            catEncoder.encodeNA(rawData[r]);
+          } else {
+            convertLevel(columnName, levels[r], catEncoder, rawData[r]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Resolves the positions and the categorical encoders of the given input columns.
+   * @param nfeatures number of features of the model
+   * @param columnNames input columns
+   * @param domains domains of the input columns (null for numerical columns)
+   * @return schema of the input rows
+   */
+  RowSchema makeRowSchema(int nfeatures, String[] columnNames, String[][] domains) {
+    // every categorical encoder writes a contiguous block of the raw data, it ends where the next column starts
+    final TreeSet<Integer> starts = new TreeSet<>();
+    for (Integer index : _modelColumnNameToIndexMap.values())
+      if (index < nfeatures)
+        starts.add(index);
+    starts.add(nfeatures);
+
+    final int[] targetIndex = new int[columnNames.length];
+    final int[] width = new int[columnNames.length];
+    final CategoricalEncoder[] encoders = new CategoricalEncoder[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      Integer index = _modelColumnNameToIndexMap.get(columnNames[i]);
+      if (index == null || index >= nfeatures) {
+        targetIndex[i] = -1; // not used by the model
+        continue;
+      }
+      targetIndex[i] = index;
+      encoders[i] = _domainMap.get(index);
+      width[i] = starts.higher(index) - index;
+    }
+    return new RowSchema(nfeatures, columnNames, domains, targetIndex, width, encoders,
+            _errorConsumer, _convertUnknownCategoricalLevelsToNa);
+  }
+
   EasyPredictModelWrapper.ErrorConsumer getErrorConsumer() {
     return _errorConsumer;
   }
@@ -15,6 +15,8 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple driver program for reading a CSV file and making predictions.  Added support for separators that are
@@ -35,8 +37,11 @@ public class PredictCsv {
   public boolean predictContributions = false; // enable tree models to predict contributions instead of regular predictions
   boolean returnGLRMReconstruct = false; // for GLRM, return x factor by default unless set this to true
   public int glrmIterNumber = -1;  // for GLRM, default to 100.
+  public int threads = 1; // number of scoring threads
+  static final int CHUNK_SIZE = 4096; // number of rows handed over to a scoring thread at once
   // Model instance
   private EasyPredictModelWrapper model;
+  private EasyPredictModelWrapper.Config modelConfig; // used to create a model wrapper for each scoring thread
 
   public static void main(String[] args) {
     // Parse command line arguments
@@ -90,11 +95,49 @@ public class PredictCsv {
     return row;
   }
 
-  private String myDoubleToString(double d) {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private void appendDouble(StringBuilder sb, double d) {
+    appendDouble(sb, d, useDecimalOutput);
+  }
+
+  /**
+   * Appends a number in the output format of PredictCsv without creating intermediate Strings. The output is identical
+   * to {@link Double#toString(double)} (decimal output) or {@link Double#toHexString(double)}, NaN is written as "NA".
+   */
+  static void appendDouble(StringBuilder sb, double d, boolean decimal) {
     if (Double.isNaN(d)) {
-      return "NA";
+      sb.append("NA");
+    } else if (decimal) {
+      sb.append(d);
+    } else {
+      appendHexDouble(sb, d);
+    }
+  }
+
+  private static void appendHexDouble(StringBuilder sb, double d) {
+    if (Double.isInfinite(d)) {
+      sb.append(d > 0 ? "Infinity" : "-Infinity");
+      return;
     }
-    return useDecimalOutput? Double.toString(d) : Double.toHexString(d);
+    final long bits = Double.doubleToRawLongBits(d);
+    if (bits < 0)
+      sb.append('-');
+    final long significand = bits & 0x000FFFFFFFFFFFFFL;
+    final int exponent = (int) ((bits >>> 52) & 0x7FF);
+    if (exponent == 0 && significand == 0) {
+      sb.append("0x0.0p0");
+      return;
+    }
+    final boolean subnormal = exponent == 0;
+    sb.append(subnormal ? "0x0." : "0x1.");
+    // 13 hex digits of the significand without trailing zeros, at least one digit is written
+    int ndigits = 13;
+    while (ndigits > 1 && ((significand >>> (4 * (13 - ndigits))) & 0xF) == 0)
+      ndigits--;
+    for (int i = 0; i < ndigits; i++)
+      sb.append(HEX_DIGITS[(int) ((significand >>> (4 * (12 - i))) & 0xF)]);
+    sb.append('p').append(subnormal ? Double.MIN_EXPONENT : exponent - 1023);
   }
 
   private void writeTreePathNames(BufferedWriter output) throws Exception {
@@ -119,8 +162,6 @@ public class PredictCsv {
     ModelCategory category = model.getModelCategory();
     CSVReader reader = new CSVReader(new FileReader(inputCSVFileName), separator);
     BufferedWriter output = new BufferedWriter(new FileWriter(outputCSVFileName));
-    int lastCommaAutoEn = -1; // for deeplearning model in autoencoder mode
-
     // Emit outputCSV column names.
     switch (category) {
       case Binomial:
@@ -159,12 +200,6 @@ public class PredictCsv {
     }
     output.write("\n");
 
-    // Loop over inputCSV one row at a time.
-    //
-    // TODO: performance of scoring can be considerably improved if instead of scoring each row at a time we passed
-    //       all the rows to the score function, in which case it can evaluate each tree for each row, avoiding
-    //       multiple rounds of fetching each tree from the filesystem.
-    //
     int lineNum=1;    // count number of lines of input dataset file parsed
     try {
       String[] inputColumnNames = null;
@@ -177,131 +212,264 @@ public class PredictCsv {
       else  // file empty, throw an error
         throw new Exception("Input dataset file is empty!");
 
-      while ((splitLine = reader.readNext()) != null) {
-        // Parse the CSV line.  Don't handle quoted commas.  This isn't a parser test.
-        RowData row = formatDataRow(splitLine, inputColumnNames);
-        // Do the prediction.
-        // Emit the result to the output file.
-        switch (category) {
-          case AutoEncoder: { // write the expanded predictions out
-            AutoEncoderModelPrediction p = model.predictAutoEncoder(row);
-            for (int i=0; i < p.reconstructed.length; i++) {
-              output.write(myDoubleToString(p.reconstructed[i]));
-
-              if (i < lastCommaAutoEn)
-                output.write(',');
-            }
-            break;
-          }
-          case Binomial: {
-            BinomialModelPrediction p = model.predictBinomial(row);
-            if (getTreePath) {
-              writeTreePaths(p.leafNodeAssignments, output);
-            } else if (predictContributions) {
-              writeContributions(p.contributions, output);
-            } else {
-              output.write(p.label);
-              output.write(",");
-              for (int i = 0; i < p.classProbabilities.length; i++) {
-                if (i > 0) {
-                  output.write(",");
-                }
-                output.write(myDoubleToString(p.classProbabilities[i]));
-              }
-            }
-            break;
-          }
-          case Multinomial: {
-            MultinomialModelPrediction p = model.predictMultinomial(row);
-            if (getTreePath) {
-              writeTreePaths(p.leafNodeAssignments, output);
-            } else {
-              output.write(p.label);
-              output.write(",");
-              for (int i = 0; i < p.classProbabilities.length; i++) {
-                if (i > 0) {
-                  output.write(",");
-                }
-                output.write(myDoubleToString(p.classProbabilities[i]));
-              }
-            }
-            break;
-          }
-          case Ordinal: {
-            OrdinalModelPrediction p = model.predictOrdinal(row);
-            output.write(p.label);
-            output.write(",");
-            for (int i = 0; i < p.classProbabilities.length; i++) {
-              if (i > 0) {
-                output.write(",");
-              }
-              output.write(myDoubleToString(p.classProbabilities[i]));
-            }
-            break;
-          }
-          case Clustering: {
-            ClusteringModelPrediction p = model.predictClustering(row);
-            output.write(myDoubleToString(p.cluster));
-            break;
+      // GLRM updates the model while scoring (iteration counter), it is always scored by a single thread
+      if (threads > 1 && !(model.m instanceof GlrmMojoModel)) {
+        runParallel(reader, inputColumnNames, output);
+      } else {
+        // Loop over inputCSV one row at a time.
+        StringBuilder sb = new StringBuilder();
+        while ((splitLine = reader.readNext()) != null) {
+          // Parse the CSV line.  Don't handle quoted commas.  This isn't a parser test.
+          RowData row = formatDataRow(splitLine, inputColumnNames);
+          // Do the prediction and emit the result to the output file.
+          sb.setLength(0);
+          predictRow(model, category, row, sb);
+          sb.append('\n');
+          output.append(sb);
+          lineNum++;
+        }
+      }
+    }
+    catch (PredictionFailedException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new PredictionFailedException(lineNum, e);
+    } finally {
+      // Clean up.
+      output.close();
+      reader.close();
+    }
+  }
+
+  /**
+   * Scores the rows using a pool of {@link #threads} threads. The current thread reads the input in chunks of
+   * {@link #CHUNK_SIZE} rows and hands them over to the scoring threads, each scoring thread uses its own instance
+   * of {@link EasyPredictModelWrapper}. Predictions of a chunk are formatted by the scoring thread and written
+   * by the current thread in the order of the input. The number of chunks in flight is bounded and the chunks
+   * (with their buffers) are re-used.
+   */
+  private void runParallel(CSVReader reader, final String[] inputColumnNames, BufferedWriter output) throws Exception {
+    final ModelCategory category = model.getModelCategory();
+    final ThreadLocal<EasyPredictModelWrapper> wrappers = new ThreadLocal<EasyPredictModelWrapper>() {
+      @Override
+      protected EasyPredictModelWrapper initialValue() {
+        return modelConfig != null ? new EasyPredictModelWrapper(modelConfig) : model;
+      }
+    };
+    final ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger _counter = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "PredictCsv-" + _counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+    final Deque<Chunk> free = new ArrayDeque<>();
+    final int maxPending = 2 * threads;
+    int lineNum = 1;
+    boolean eof = false;
+    try {
+      while (true) {
+        while (!eof && pending.size() < maxPending) {
+          Chunk chunk = free.isEmpty() ? new Chunk(wrappers, category, inputColumnNames) : free.poll();
+          chunk._firstLine = lineNum;
+          chunk._nlines = 0;
+          String[] splitLine;
+          try {
+            while (chunk._nlines < CHUNK_SIZE && (splitLine = reader.readNext()) != null)
+              chunk._lines[chunk._nlines++] = splitLine;
+          } catch (IOException e) {
+            throw new PredictionFailedException(lineNum + chunk._nlines, e);
           }
+          eof = chunk._nlines < CHUNK_SIZE;
+          lineNum += chunk._nlines;
+          if (chunk._nlines > 0)
+            pending.add(pool.submit(chunk));
+          else
+            free.add(chunk);
+        }
+        if (pending.isEmpty())
+          break;
+        final Chunk done;
+        try {
+          done = pending.poll().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof PredictionFailedException)
+            throw (PredictionFailedException) e.getCause();
+          throw e;
+        }
+        done.writeTo(output);
+        free.add(done);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 
-          case Regression: {
-              RegressionModelPrediction p = model.predictRegression(row);
-              if (getTreePath) {
-                writeTreePaths(p.leafNodeAssignments, output);
-              } else if (predictContributions) {
-                writeContributions(p.contributions, output);
-              } else
-               output.write(myDoubleToString(p.value));
+  /**
+   * A chunk of input rows, scored by one of the scoring threads.
+   */
+  private final class Chunk implements Callable<Chunk> {
+    private final ThreadLocal<EasyPredictModelWrapper> _wrappers;
+    private final ModelCategory _category;
+    private final String[] _inputColumnNames;
+    private final String[][] _lines = new String[CHUNK_SIZE][];
+    private final StringBuilder _out = new StringBuilder();
+    private char[] _chars = new char[0];
+    private int _nlines;
+    private int _firstLine;
+
+    Chunk(ThreadLocal<EasyPredictModelWrapper> wrappers, ModelCategory category, String[] inputColumnNames) {
+      _wrappers = wrappers;
+      _category = category;
+      _inputColumnNames = inputColumnNames;
+    }
 
-            break;
-          }
+    @Override
+    public Chunk call() throws Exception {
+      final EasyPredictModelWrapper wrapper = _wrappers.get();
+      _out.setLength(0);
+      for (int i = 0; i < _nlines; i++) {
+        try {
+          RowData row = formatDataRow(_lines[i], _inputColumnNames);
+          predictRow(wrapper, _category, row, _out);
+          _out.append('\n');
+        } catch (Exception e) {
+          throw new PredictionFailedException(_firstLine + i, e);
+        }
+        _lines[i] = null;
+      }
+      return this;
+    }
 
-          case DimReduction: {
-            DimReductionModelPrediction p = model.predictDimReduction(row);
-            double[] out;
+    void writeTo(BufferedWriter output) throws IOException {
+      final int len = _out.length();
+      if (_chars.length < len)
+        _chars = new char[len];
+      _out.getChars(0, len, _chars, 0);
+      output.write(_chars, 0, len);
+    }
+  }
 
-            if (returnGLRMReconstruct) {
-              out = p.reconstructed;  // reconstructed A
-            } else {
-              out = p.dimensions; // x factors
-            }
+  private static class PredictionFailedException extends Exception {
+    PredictionFailedException(int lineNum, Throwable cause) {
+      super("Prediction failed on line " + lineNum, cause);
+    }
+  }
 
-            int lastOne = out.length-1;
-            for (int i=0; i < out.length; i++) {
-              output.write(myDoubleToString(out[i]));
+  private void predictRow(EasyPredictModelWrapper model, ModelCategory category, RowData row, StringBuilder output) throws Exception {
+    int lastCommaAutoEn = -1; // for deeplearning model in autoencoder mode
+    switch (category) {
+      case AutoEncoder: { // write the expanded predictions out
+        AutoEncoderModelPrediction p = model.predictAutoEncoder(row);
+        for (int i=0; i < p.reconstructed.length; i++) {
+          appendDouble(output, p.reconstructed[i]);
 
-              if (i < lastOne)
-                output.write(',');
+          if (i < lastCommaAutoEn)
+            output.append(',');
+        }
+        break;
+      }
+      case Binomial: {
+        BinomialModelPrediction p = model.predictBinomial(row);
+        if (getTreePath) {
+          writeTreePaths(p.leafNodeAssignments, output);
+        } else if (predictContributions) {
+          writeContributions(p.contributions, output);
+        } else {
+          output.append(p.label);
+          output.append(',');
+          for (int i = 0; i < p.classProbabilities.length; i++) {
+            if (i > 0) {
+              output.append(',');
             }
-            break;
+            appendDouble(output, p.classProbabilities[i]);
           }
-
-          case AnomalyDetection: {
-            AnomalyDetectionPrediction p = model.predictAnomalyDetection(row);
-            double[] rawPreds = p.toPreds();
-            for (int i = 0; i < rawPreds.length - 1; i++) {
-              output.write(myDoubleToString(rawPreds[i]));
-              output.write(',');
+        }
+        break;
+      }
+      case Multinomial: {
+        MultinomialModelPrediction p = model.predictMultinomial(row);
+        if (getTreePath) {
+          writeTreePaths(p.leafNodeAssignments, output);
+        } else {
+          output.append(p.label);
+          output.append(',');
+          for (int i = 0; i < p.classProbabilities.length; i++) {
+            if (i > 0) {
+              output.append(',');
             }
-            output.write(myDoubleToString(rawPreds[rawPreds.length - 1]));
-            break;
+            appendDouble(output, p.classProbabilities[i]);
+          }
+        }
+        break;
+      }
+      case Ordinal: {
+        OrdinalModelPrediction p = model.predictOrdinal(row);
+        output.append(p.label);
+        output.append(',');
+        for (int i = 0; i < p.classProbabilities.length; i++) {
+          if (i > 0) {
+            output.append(',');
           }
+          appendDouble(output, p.classProbabilities[i]);
+        }
+        break;
+      }
+      case Clustering: {
+        ClusteringModelPrediction p = model.predictClustering(row);
+        appendDouble(output, p.cluster);
+        break;
+      }
+
+      case Regression: {
+          RegressionModelPrediction p = model.predictRegression(row);
+          if (getTreePath) {
+            writeTreePaths(p.leafNodeAssignments, output);
+          } else if (predictContributions) {
+            writeContributions(p.contributions, output);
+          } else
+            appendDouble(output, p.value);
+
+        break;
+      }
+
+      case DimReduction: {
+        DimReductionModelPrediction p = model.predictDimReduction(row);
+        double[] out;
 
-          default:
-            throw new Exception("Unknown model category " + category);
+        if (returnGLRMReconstruct) {
+          out = p.reconstructed;  // reconstructed A
+        } else {
+          out = p.dimensions; // x factors
         }
 
-        output.write("\n");
-        lineNum++;
+        int lastOne = out.length-1;
+        for (int i=0; i < out.length; i++) {
+          appendDouble(output, out[i]);
+
+          if (i < lastOne)
+            output.append(',');
+        }
+        break;
       }
-    }
-    catch (Exception e) {
-      throw new Exception("Prediction failed on line " + lineNum, e);
-    } finally {
-      // Clean up.
-      output.close();
-      reader.close();
+
+      case AnomalyDetection: {
+        AnomalyDetectionPrediction p = model.predictAnomalyDetection(row);
+        double[] rawPreds = p.toPreds();
+        for (int i = 0; i < rawPreds.length - 1; i++) {
+          appendDouble(output, rawPreds[i]);
+          output.append(',');
+        }
+        appendDouble(output, rawPreds[rawPreds.length - 1]);
+        break;
+      }
+
+      default:
+        throw new Exception("Unknown model category " + category);
     }
   }
 
@@ -313,22 +481,22 @@ public class PredictCsv {
     }
   }
 
-  private void writeTreePaths(String[] treePaths, BufferedWriter output) throws Exception {
+  private void writeTreePaths(String[] treePaths, StringBuilder output) {
     int len = treePaths.length-1;
 
     for (int index=0; index<len; index++) {
-      output.write(treePaths[index]);
-      output.write(",");
+      output.append(treePaths[index]);
+      output.append(',');
     }
-    output.write(treePaths[len]);
+    output.append(treePaths[len]);
   }
 
-  private void writeContributions(float[] contributions, BufferedWriter output) throws Exception {
+  private void writeContributions(float[] contributions, StringBuilder output) {
     for (int i = 0; i < contributions.length; i++) {
       if (i > 0) {
-        output.write(",");
+        output.append(',');
       }
-      output.write(myDoubleToString(contributions[i]));
+      appendDouble(output, contributions[i]);
     }
   }
   
@@ -355,6 +523,7 @@ public class PredictCsv {
     if (returnGLRMReconstruct)
       config.setEnableGLRMReconstrut(true);
 
+    modelConfig = config;
     model = new EasyPredictModelWrapper(config);
   } 
 
@@ -379,6 +548,7 @@ public class PredictCsv {
     if (glrmIterNumber > 0)   // set GLRM Mojo iteration number
       config.setGLRMIterNumber(glrmIterNumber);
     
+    modelConfig = config;
     model = new EasyPredictModelWrapper(config);
   }
 
@@ -386,6 +556,7 @@ public class PredictCsv {
     System.out.println();
     System.out.println("Usage:  java [...java args...] hex.genmodel.tools.PredictCsv --mojo mojoName");
     System.out.println("             --pojo pojoName --input inputFile --output outputFile --separator sepStr --decimal --setConvertInvalidNum");
+    System.out.println("             --threads n");
     System.out.println();
     System.out.println("     --mojo    Name of the zip file containing model's MOJO.");
     System.out.println("     --pojo    Name of the java class containing the model's POJO. Either this ");
@@ -401,6 +572,8 @@ public class PredictCsv {
             " models instead of regular model predictions");
     System.out.println("     --glrmReconstruct will return the reconstructed dataset for GLRM mojo instead of X factor derived from the dataset.");
     System.out.println("     --glrmIterNumber integer indicating number of iterations to go through when constructing X factor derived from the dataset.");
+    System.out.println("     --threads number of threads used for scoring (default is 1). Rows are scored in chunks by a pool of");
+    System.out.println("               threads, the order of the output rows is preserved. GLRM models are always scored by a single thread.");
     System.out.println();
     System.exit(1);
   }
@@ -481,6 +654,7 @@ public class PredictCsv {
             case "--output": outputCSVFileName = sarg; break;
             case "--separator": separator=sarg.charAt(sarg.length()-1); break;
             case "--glrmIterNumber": glrmIterNumber=Integer.valueOf(sarg); break;
+            case "--threads": threads=Integer.valueOf(sarg); break;
             default:
               System.out.println("ERROR: Unknown command line argument: " + s);
               usage();
@@ -18,6 +18,13 @@ public final class ByteBufferWrapper {
         _bb = ByteBuffer.wrap(buf, 0, buf.length).order(ByteOrder.nativeOrder());
     }
 
+    /** Read from a (eg. memory-mapped) buffer, starting at index 0 of the buffer; the buffer is not modified. */
+    public ByteBufferWrapper(ByteBuffer buf) {
+        assert buf != null : "null fed to ByteBufferWrapper";
+        _bb = buf.duplicate().order(ByteOrder.nativeOrder());
+        _bb.position(0);
+    }
+
     public int position() {
         return _bb.position();
     }
@@ -1,5 +1,7 @@
 package hex.genmodel.utils;
 
+import java.nio.ByteBuffer;
+
 /**
  * GenmodelBitSet - bitset that "lives" on top of an external byte array. It does not necessarily span the entire
  * byte array, and thus essentially provides a "bitset-view" on the underlying data stream.
@@ -11,6 +13,7 @@ public class GenmodelBitSet {
     private int _byteoff; // Number of bytes skipped before starting to count bits
     private int _nbits;   // Number of bits in this bitset
     private int _bitoff;  // Number of bits discarded from beginning (inclusive min)
+    private byte[] _copy; // Holder of bits copied from a ByteBuffer, reused between fills
 
     public GenmodelBitSet(int nbits) {
         this(nbits, 0);
@@ -66,6 +69,27 @@ public class GenmodelBitSet {
         ab.skip(bytes(nbits));  // Skip inline bitset
     }
 
+    public void fill2(ByteBuffer bits, ByteBufferWrapper ab) {
+        fill(copyBits(bits, ab.position(), 4), 0, 32, 0);
+        ab.skip(4);  // Skip inline bitset
+    }
+
+    public void fill3(ByteBuffer bits, ByteBufferWrapper ab) {
+        int bitoff = ab.get2();
+        int nbits = ab.get4();
+        fill(copyBits(bits, ab.position(), bytes(nbits)), 0, nbits, bitoff);
+        ab.skip(bytes(nbits));  // Skip inline bitset
+    }
+
+    // Bitsets are small, copying them keeps contains() independent of the kind of the backing storage
+    private byte[] copyBits(ByteBuffer bits, int byteoff, int nbytes) {
+        if (_copy == null || _copy.length < nbytes)
+            _copy = new byte[nbytes];
+        for (int i = 0; i < nbytes; i++)
+            _copy[i] = bits.get(byteoff + i);
+        return _copy;
+    }
+
     private static int bytes(int nbits) {
         return ((nbits-1) >> 3) + 1;
     }
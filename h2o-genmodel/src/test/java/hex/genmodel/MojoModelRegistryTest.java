@@ -0,0 +1,171 @@
+package hex.genmodel;
+
+import hex.genmodel.easy.EasyPredictModelWrapper;
+import hex.genmodel.easy.RowData;
+import hex.genmodel.easy.prediction.BinomialModelPrediction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MojoModelRegistryTest {
+
+  private MojoModelRegistry.ModelSource gbmSource;
+  private AtomicInteger loads;
+
+  @Before
+  public void setup() throws Exception {
+    final File gbmDir = new File(MojoModelRegistryTest.class.getResource("algos/gbm/calibrated").toURI());
+    loads = new AtomicInteger();
+    gbmSource = new MojoModelRegistry.ModelSource() {
+      @Override
+      public MojoReaderBackend open() {
+        loads.incrementAndGet();
+        return new FolderMojoReaderBackend(gbmDir.getPath() + File.separator);
+      }
+    };
+  }
+
+  @Test
+  public void testModelsShareNamesAndDomains() throws Exception {
+    MojoModelRegistry registry = new MojoModelRegistry(Long.MAX_VALUE);
+    MojoModel m1 = registry.register("m1", gbmSource);
+    MojoModel m2 = registry.register("m2", gbmSource);
+    assertNotSame(m1, m2);
+    assertSame(m1.getNames(), m2.getNames());
+    assertSame(m1.getDomainValues(), m2.getDomainValues());
+    for (int i = 0; i < m1.getNumCols(); i++) {
+      String[] domain = m1.getDomainValues(i);
+      if (domain != null) {
+        assertNotNull(MojoInterner.levelIndices(domain));
+        assertSame(MojoInterner.levelIndices(domain), MojoInterner.levelIndices(m2.getDomainValues(i)));
+      }
+    }
+    assertEquals(predict(ModelMojoReader.readFrom(gbmSource.open())), predict(m1), 0);
+    assertEquals(predict(m1), predict(m2), 0);
+  }
+
+  @Test
+  public void testLevelIndicesAreOnlySharedForInternedDomains() {
+    assertNull(MojoInterner.levelIndices(new String[]{"a", "b"}));
+    MojoInterner interner = new MojoInterner();
+    String[] domain = interner.intern(new String[]{"a", "b"});
+    assertSame(domain, interner.intern(new String[]{"a", "b"}));
+    assertEquals(Integer.valueOf(1), MojoInterner.levelIndices(domain).get("b"));
+  }
+
+  @Test
+  public void testHotSwap() throws Exception {
+    MojoModelRegistry registry = new MojoModelRegistry(Long.MAX_VALUE);
+    MojoModel v1 = registry.register("model", gbmSource);
+    assertSame(v1, registry.get("model"));
+    long usage = registry.getMemoryUsage();
+    assertTrue(usage > 0);
+
+    MojoModel v2 = registry.register("model", gbmSource);
+    assertNotSame(v1, v2);
+    assertSame(v2, registry.get("model"));
+    assertEquals(usage, registry.getMemoryUsage()); // old version is no longer accounted for
+    assertEquals(predict(v1), predict(v2), 0); // the old version is still usable by in-flight predictions
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testFailedRegistrationKeepsPreviousVersion() throws Exception {
+    MojoModelRegistry registry = new MojoModelRegistry(Long.MAX_VALUE);
+    MojoModel v1 = registry.register("model", gbmSource);
+    try {
+      registry.register("model", new MojoModelRegistry.ModelSource() {
+        @Override
+        public MojoReaderBackend open() throws IOException {
+          throw new IOException("broken");
+        }
+      });
+      fail("Exception expected");
+    } catch (IOException e) {
+      assertEquals("broken", e.getMessage());
+    }
+    assertSame(v1, registry.get("model"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedModelsAreEvicted() throws Exception {
+    MojoModelRegistry sizing = new MojoModelRegistry(Long.MAX_VALUE);
+    sizing.register("model", gbmSource);
+    long modelSize = sizing.getMemoryUsage();
+
+    MojoModelRegistry registry = new MojoModelRegistry(2 * modelSize);
+    registry.register("a", gbmSource);
+    registry.register("b", gbmSource);
+    registry.get("a");
+    loads.set(0);
+    registry.register("c", gbmSource);
+    assertTrue(registry.isLoaded("a"));
+    assertFalse(registry.isLoaded("b"));
+    assertTrue(registry.isLoaded("c"));
+    assertEquals(2 * modelSize, registry.getMemoryUsage());
+    assertEquals(3, registry.size());
+
+    // evicted model is loaded again, "a" is now the least recently used one
+    assertNotNull(registry.get("b"));
+    assertEquals(2, loads.get());
+    assertFalse(registry.isLoaded("a"));
+    assertTrue(registry.isLoaded("b"));
+
+    assertTrue(registry.remove("b"));
+    assertNull(registry.get("b"));
+    assertEquals(modelSize, registry.getMemoryUsage());
+  }
+
+  @Test
+  public void testConcurrentPredictionsDuringHotSwap() throws Exception {
+    final MojoModelRegistry registry = new MojoModelRegistry(Long.MAX_VALUE);
+    registry.register("model", gbmSource);
+    final double expected = predict(registry.get("model"));
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread[] scorers = new Thread[4];
+    for (int t = 0; t < scorers.length; t++) {
+      scorers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 200; i++)
+              assertEquals(expected, predict(registry.get("model")), 0);
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      scorers[t].start();
+    }
+    for (int i = 0; i < 20; i++)
+      registry.register("model", gbmSource);
+    for (Thread t : scorers)
+      t.join();
+    assertNull(failure.get());
+  }
+
+  private static double predict(MojoModel model) throws Exception {
+    EasyPredictModelWrapper wrapper = new EasyPredictModelWrapper(model);
+    BinomialModelPrediction pred = (BinomialModelPrediction) wrapper.predict(new RowData() {{
+      put("SegSumT", 18.7);
+      put("SegTSeas", 1.51);
+      put("SegLowFlow", 1.003);
+      put("DSDist", 132.53);
+      put("DSMaxSlope", 1.15);
+      put("USAvgT", 0.2);
+      put("USRainDays", 1.153);
+      put("USSlope", 8.3);
+      put("USNative", 0.34);
+      put("DSDam", 0.0);
+      put("Method", "electric");
+    }});
+    return pred.classProbabilities[1];
+  }
+
+}
@@ -1,13 +1,15 @@
 package hex.genmodel;
 
+import hex.genmodel.algos.tree.SharedTreeMojoModel;
 import hex.genmodel.easy.EasyPredictModelWrapper;
 import hex.genmodel.easy.RowData;
 import hex.genmodel.easy.prediction.RegressionModelPrediction;
 import org.junit.Test;
 
-import java.io.Closeable;
-import java.io.File;
+import java.io.*;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 import static hex.genmodel.MojoReaderBackendFactory.CachingStrategy;
@@ -57,15 +59,96 @@ public class MojoReaderBackendFactoryTest {
     testMojoE2E(CachingStrategy.DISK);
   }
 
-  private void testMojoE2E(CachingStrategy cachingStrategy) throws Exception {
+  @Test
+  public void testMojoE2E_Mapped() throws Exception {
+    MojoModel model = testMojoE2E(CachingStrategy.MAPPED);
+    assertTrue(((SharedTreeMojoModel) model).hasMappedTrees());
+  }
+
+  @Test
+  public void testCreateMappedReaderBackend_reusesStore() throws Exception {
+    File mojoFile = new File(MojoReaderBackendFactoryTest.class.getResource("mojo.zip").toURI());
+    File dir = Files.createTempDirectory("mapped-mojo").toFile();
+    File store = new File(dir, "mojo.mapped");
+    try {
+      MojoModel model = ModelMojoReader.readFrom(MojoReaderBackendFactory.createMappedReaderBackend(mojoFile, store));
+      assertTrue(store.exists());
+      long lastModified = store.lastModified();
+      Thread.sleep(1000); // make a possible rewrite of the store detectable
+
+      MojoModel reloaded = ModelMojoReader.readFrom(MojoReaderBackendFactory.createMappedReaderBackend(mojoFile, store));
+      assertEquals(lastModified, store.lastModified());
+      assertEquals(predict(model), predict(reloaded), 0);
+      assertEquals(71.085d, predict(reloaded), 0.001d);
+    } finally {
+      if (!store.delete())
+        store.deleteOnExit();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testExtract_entriesDontSpanSegments() throws Exception {
+    File mojoFile = new File(MojoReaderBackendFactoryTest.class.getResource("mojo.zip").toURI());
+    File dir = Files.createTempDirectory("mapped-mojo").toFile();
+    File store = new File(dir, "mojo.mapped");
+    final int segmentSize = 45000; // the largest file of the MOJO has 44035 bytes
+    try {
+      try (InputStream is = new FileInputStream(mojoFile)) {
+        MappedMojoReaderBackend.extract(is, store, mojoFile.length(), mojoFile.lastModified(), segmentSize);
+      }
+      MappedMojoReaderBackend mapped = MappedMojoReaderBackend.open(store);
+      MojoReaderBackend zip = MojoReaderBackendFactory.createReaderBackend(mojoFile.toURI().toURL(), CachingStrategy.MEMORY);
+      int moved = 0;
+      for (Map.Entry<String, int[]> e : mapped._entries.entrySet()) {
+        long offset = (long) e.getValue()[0] * MappedMojoReaderBackend.SEGMENT_SIZE + e.getValue()[1];
+        int length = e.getValue()[2];
+        assertTrue(e.getKey(), offset % segmentSize + length <= segmentSize);
+        if (offset > 0 && offset % segmentSize == 0)
+          moved++;
+        assertArrayEquals(e.getKey(), zip.getBinaryFile(e.getKey()), mapped.getBinaryFile(e.getKey()));
+      }
+      assertEquals(43, mapped._entries.size());
+      assertTrue(moved > 0);
+      assertEquals(71.085d, predict(ModelMojoReader.readFrom(mapped)), 0.001d);
+      mapped.close();
+    } finally {
+      if (!store.delete())
+        store.deleteOnExit();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testMappedModelIsSerializable() throws Exception {
+    URL mojoSource = MojoReaderBackendFactoryTest.class.getResource("mojo.zip");
+    MojoModel model = ModelMojoReader.readFrom(MojoReaderBackendFactory.createReaderBackend(mojoSource, CachingStrategy.MAPPED));
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(model);
+    }
+    MojoModel deserialized;
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      deserialized = (MojoModel) ois.readObject();
+    }
+    assertFalse(((SharedTreeMojoModel) deserialized).hasMappedTrees());
+    assertEquals(predict(model), predict(deserialized), 0);
+  }
+
+  private MojoModel testMojoE2E(CachingStrategy cachingStrategy) throws Exception {
     URL mojoSource = MojoReaderBackendFactoryTest.class.getResource("mojo.zip");
     assertNotNull(mojoSource);
     MojoReaderBackend reader = MojoReaderBackendFactory.createReaderBackend(mojoSource, cachingStrategy);
     MojoModel model = ModelMojoReader.readFrom(reader);
+    assertEquals(71.085d, predict(model), 0.001d);
+    return model;
+  }
+
+  private static double predict(MojoModel model) throws Exception {
     EasyPredictModelWrapper modelWrapper = new EasyPredictModelWrapper(model);
     RowData testRow = makeTestRow();
     RegressionModelPrediction prediction = (RegressionModelPrediction) modelWrapper.predict(testRow);
-    assertEquals(71.085d, prediction.value, 0.001d);
+    return prediction.value;
   }
 
   private static RowData makeTestRow() {
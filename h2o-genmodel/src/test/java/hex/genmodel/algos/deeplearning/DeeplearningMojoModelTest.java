@@ -0,0 +1,92 @@
+package hex.genmodel.algos.deeplearning;
+
+import hex.ModelCategory;
+import hex.genmodel.utils.DistributionFamily;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DeeplearningMojoModelTest {
+
+  private static final String[] ACTIVATIONS = {"Rectifier", "RectifierWithDropout", "Tanh", "TanhWithDropout",
+          "ExpRectifier", "ExpRectifierWithDropout", "Maxout"};
+
+  @Test
+  public void testScore0BatchClassification() {
+    for (String activation : ACTIVATIONS) {
+      DeeplearningMojoModel model = makeModel(activation, ModelCategory.Multinomial, 3, new int[]{23, 11, 3});
+      checkBatchIdenticalToScore0(model, 4);
+    }
+  }
+
+  @Test
+  public void testScore0BatchRegression() {
+    for (String activation : ACTIVATIONS) {
+      DeeplearningMojoModel model = makeModel(activation, ModelCategory.Regression, 1, new int[]{23, 17, 9, 1});
+      checkBatchIdenticalToScore0(model, 2);
+    }
+  }
+
+  private static void checkBatchIdenticalToScore0(DeeplearningMojoModel model, int npreds) {
+    Random rnd = new Random(0xDEE9);
+    int nrows = DeeplearningMojoModel.BATCH_BLOCK_SIZE * 3 + 5;
+    double[][] rows = new double[nrows][];
+    for (int r = 0; r < nrows; r++) {
+      double[] row = new double[model._cats + model._nums];
+      for (int c = 0; c < model._cats; c++)
+        row[c] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextInt(5);
+      for (int c = model._cats; c < row.length; c++)
+        row[c] = rnd.nextInt(10) == 0 ? Double.NaN : rnd.nextGaussian() * 3;
+      rows[r] = row;
+    }
+    double[][] preds = new double[nrows][npreds];
+    model.score0Batch(rows, nrows, preds);
+    for (int r = 0; r < nrows; r++)
+      assertArrayEquals(model._activation, model.score0(rows[r], new double[npreds]), preds[r], 0);
+  }
+
+  private static DeeplearningMojoModel makeModel(String activation, ModelCategory category, int nclasses, int[] units) {
+    Random rnd = new Random(activation.hashCode());
+    DeeplearningMojoModel model = new DeeplearningMojoModel(new String[0], new String[0][], null);
+    model._category = category;
+    model._nclasses = nclasses;
+    model._priorClassDistrib = null;
+    model._defaultThreshold = 0.5;
+    model._family = category == ModelCategory.Regression ? DistributionFamily.gaussian : DistributionFamily.multinomial;
+    model._cats = 2;
+    model._catoffsets = new int[]{0, 5, 9};
+    model._nums = units[0] - model._catoffsets[model._cats];
+    model._normmul = new double[model._nums];
+    model._normsub = new double[model._nums];
+    for (int i = 0; i < model._nums; i++) {
+      model._normmul[i] = 1 / (1 + rnd.nextDouble());
+      model._normsub[i] = rnd.nextGaussian();
+    }
+    if (category == ModelCategory.Regression) {
+      model._normrespmul = new double[]{0.5};
+      model._normrespsub = new double[]{3};
+    }
+    model._use_all_factor_levels = false;
+    model._activation = activation;
+    model._units = units;
+    model._all_drop_out_ratios = new double[units.length - 1];
+    java.util.Arrays.fill(model._all_drop_out_ratios, 0.2);
+    int maxK = activation.startsWith("Maxout") ? 2 : 1;
+    model._weightsAndBias = new DeeplearningMojoModel.StoreWeightsBias[units.length - 1];
+    for (int l = 0; l < units.length - 1; l++) {
+      int k = l < units.length - 2 ? maxK : 1;
+      float[] w = new float[units[l] * units[l + 1] * k];
+      for (int i = 0; i < w.length; i++)
+        w[i] = (float) (rnd.nextGaussian() * 0.3);
+      double[] b = new double[units[l + 1] * k];
+      for (int i = 0; i < b.length; i++)
+        b[i] = rnd.nextGaussian() * 0.1;
+      model._weightsAndBias[l] = new DeeplearningMojoModel.StoreWeightsBias(w, b);
+    }
+    model.init();
+    return model;
+  }
+
+}
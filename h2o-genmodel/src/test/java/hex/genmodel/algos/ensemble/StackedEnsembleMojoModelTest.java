@@ -0,0 +1,201 @@
+package hex.genmodel.algos.ensemble;
+
+import hex.genmodel.ModelMojoReader;
+import hex.genmodel.MojoModel;
+import hex.genmodel.MojoReaderBackendFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class StackedEnsembleMojoModelTest {
+
+    private static final String[] MOJOS = {"binomial.zip", "binomial_titanic.zip", "binomial_without_useless_models.zip",
+            "multinomial.zip", "regression.zip"};
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelScoringGivesIdenticalPredictions() throws Exception {
+        for (String mojo : MOJOS) {
+            StackedEnsembleMojoModel model = readModel(mojo);
+            double[][] rows = makeRows(model, 50);
+            double[][] expected = scoreRows(model, rows);
+
+            model.setExecutor(executor, 4);
+            assertSame(executor, model.getExecutor());
+            double[][] preds = scoreRows(model, rows);
+            for (int r = 0; r < rows.length; r++)
+                assertArrayEquals(mojo, expected[r], preds[r], 0);
+        }
+    }
+
+    @Test
+    public void testScore0BatchGivesIdenticalPredictions() throws Exception {
+        for (String mojo : MOJOS) {
+            StackedEnsembleMojoModel model = readModel(mojo);
+            double[][] rows = makeRows(model, 50);
+            double[][] expected = scoreRows(model, rows);
+            for (Executor e : new Executor[]{null, executor}) {
+                model.setExecutor(e, 4);
+                double[][] preds = new double[rows.length + 3][model.getPredsSize()];
+                assertSame(preds, model.score0Batch(copy(rows), rows.length, preds));
+                for (int r = 0; r < rows.length; r++)
+                    assertArrayEquals(mojo, expected[r], preds[r], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testBaseModelsAreDeduplicated() throws Exception {
+        StackedEnsembleMojoModel model = readModel("binomial.zip");
+        int first = -1, second = -1;
+        for (int i = 0; i < model._baseModelNum; i++) {
+            if (model._baseModels[i] == null)
+                continue;
+            if (first < 0)
+                first = i;
+            else if (second < 0)
+                second = i;
+        }
+        assertTrue(second > first);
+        // the same base model used in two slots of the ensemble is scored only once
+        final CountingModel counting = new CountingModel(model._baseModels[first]._mojoModel);
+        model._baseModels[first] = new StackedEnsembleMojoModel.StackedEnsembleMojoSubModel(counting, null);
+        model._baseModels[second] = new StackedEnsembleMojoModel.StackedEnsembleMojoSubModel(counting, null);
+        final CountingModel metaLearner = new CountingModel(model._metaLearner);
+        model._metaLearner = metaLearner;
+
+        double[][] rows = makeRows(model, 3);
+        for (Executor e : new Executor[]{null, executor}) {
+            model.setExecutor(e, 4);
+            counting._calls = 0;
+            model.score0(rows[0], new double[model.getPredsSize()]);
+            assertEquals(1, counting._calls);
+            assertEquals(metaLearner._lastRow[first], metaLearner._lastRow[second], 0);
+
+            counting._calls = 0;
+            model.score0Batch(copy(rows), rows.length, new double[rows.length][model.getPredsSize()]);
+            assertEquals(rows.length, counting._calls);
+        }
+    }
+
+    @Test
+    public void testFailureOfBaseModelIsPropagated() throws Exception {
+        StackedEnsembleMojoModel model = readModel("multinomial.zip");
+        int last = model._baseModelNum - 1;
+        while (model._baseModels[last] == null)
+            last--;
+        model._baseModels[last] = new StackedEnsembleMojoModel.StackedEnsembleMojoSubModel(
+                new CountingModel(model._baseModels[last]._mojoModel) {
+                    @Override
+                    public double[] score0(double[] row, double[] preds) {
+                        throw new IllegalArgumentException("broken model");
+                    }
+                }, null);
+        double[] row = makeRows(model, 1)[0];
+        for (Executor e : new Executor[]{null, executor}) {
+            model.setExecutor(e, 4);
+            try {
+                model.score0(row, new double[model.getPredsSize()]);
+                fail("Exception expected");
+            } catch (IllegalArgumentException ex) {
+                assertEquals("broken model", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCallingThreadScoresWhenExecutorRejectsTasks() throws Exception {
+        StackedEnsembleMojoModel model = readModel("binomial.zip");
+        double[][] rows = makeRows(model, 10);
+        double[][] expected = scoreRows(model, rows);
+        model.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 4);
+        double[][] preds = scoreRows(model, rows);
+        for (int r = 0; r < rows.length; r++)
+            assertArrayEquals(expected[r], preds[r], 0);
+    }
+
+    private static StackedEnsembleMojoModel readModel(String name) throws Exception {
+        URL mojoSource = StackedEnsembleMojoModelTest.class.getResource(name);
+        assertNotNull(mojoSource);
+        return (StackedEnsembleMojoModel) ModelMojoReader.readFrom(
+                MojoReaderBackendFactory.createReaderBackend(mojoSource, MojoReaderBackendFactory.CachingStrategy.MEMORY));
+    }
+
+    private static double[][] makeRows(StackedEnsembleMojoModel model, int nrows) {
+        Random rnd = new Random(0xE25);
+        double[][] rows = new double[nrows][model.nfeatures()];
+        for (double[] row : rows) {
+            for (int c = 0; c < row.length; c++) {
+                String[] domain = model.getDomainValues(c);
+                if (rnd.nextInt(10) == 0)
+                    row[c] = Double.NaN;
+                else
+                    row[c] = domain != null ? rnd.nextInt(domain.length) : rnd.nextGaussian() * 10;
+            }
+        }
+        return rows;
+    }
+
+    private static double[][] scoreRows(StackedEnsembleMojoModel model, double[][] rows) {
+        double[][] preds = new double[rows.length][];
+        for (int r = 0; r < rows.length; r++)
+            preds[r] = model.score0(rows[r].clone(), new double[model.getPredsSize()]);
+        return preds;
+    }
+
+    private static class CountingModel extends MojoModel {
+        private final MojoModel _delegate;
+        private volatile int _calls;
+        private volatile double[] _lastRow;
+
+        CountingModel(MojoModel delegate) {
+            super(delegate._names, delegate._domains, delegate._responseColumn);
+            _delegate = delegate;
+        }
+
+        @Override
+        public double[] score0(double[] row, double[] preds) {
+            _calls++;
+            _lastRow = row.clone();
+            return _delegate.score0(row, preds);
+        }
+
+        @Override
+        public int getPredsSize() {
+            return _delegate.getPredsSize();
+        }
+    }
+
+    private static double[][] copy(double[][] rows) {
+        double[][] copy = new double[rows.length][];
+        for (int r = 0; r < rows.length; r++)
+            copy[r] = rows[r].clone();
+        return copy;
+    }
+
+}
@@ -3,6 +3,11 @@ package hex.genmodel.algos.gbm;
 import com.google.common.io.ByteStreams;
 import hex.genmodel.ModelMojoReader;
 import hex.genmodel.MojoReaderBackend;
+import hex.genmodel.MojoReaderBackendFactory;
+import hex.genmodel.algos.tree.CompiledForest;
+import hex.genmodel.algos.tree.FlatForest;
+import hex.genmodel.algos.tree.NaSplitDir;
+import hex.genmodel.easy.ColumnBatch;
 import hex.genmodel.easy.EasyPredictModelWrapper;
 import hex.genmodel.easy.RowData;
 import hex.genmodel.easy.exception.PredictException;
@@ -10,10 +15,13 @@ import hex.genmodel.easy.prediction.BinomialModelPrediction;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.*;
 
@@ -104,6 +112,295 @@ public class GbmMojoModelTest {
     );
   }
 
+  @Test
+  public void testFlatTreesGiveIdenticalPredictions() throws Exception {
+    GbmMojoModel flat = (GbmMojoModel) ModelMojoReader.readFrom(new ClasspathReaderBackend());
+    assertFalse(flat.hasFlatTrees());
+    FlatForest forest = flat.compileFlatTrees();
+    assertTrue(flat.hasFlatTrees());
+    assertEquals(10, forest.ntrees());
+
+    double[][] rows = makeRandomRows(500, 0xF1A7);
+    for (double[] row : rows) {
+      double[] expected = mojo12.score0(row, new double[3]);
+      double[] actual = flat.score0(row, new double[3]);
+      assertArrayEquals(expected, actual, 0);
+      for (int tree = 0; tree < 10; tree++) {
+        double[] expectedTree = new double[3];
+        mojo12.scoreSingleTree(row, tree, expectedTree);
+        double[] actualTree = new double[3];
+        flat.scoreSingleTree(row, tree, actualTree);
+        assertArrayEquals(expectedTree, actualTree, 0);
+      }
+    }
+  }
+
+  @Test
+  public void testScoreBatch() throws Exception {
+    double[][] rows = makeRandomRows(FlatForest.DEFAULT_BLOCK_SIZE * 2 + 17, 0xBA7C);
+    double[][] preds = new double[rows.length][3];
+    // without flat trees
+    mojo12.scoreBatch(rows, rows.length, preds);
+    for (int i = 0; i < rows.length; i++)
+      assertArrayEquals(mojo12.score0(rows[i], new double[3]), preds[i], 0);
+    // with flat trees
+    GbmMojoModel flat = (GbmMojoModel) ModelMojoReader.readFrom(new ClasspathReaderBackend());
+    flat.compileFlatTrees();
+    double[][] flatPreds = flat.scoreBatch(rows, rows.length, new double[rows.length][3]);
+    for (int i = 0; i < rows.length; i++)
+      assertArrayEquals(preds[i], flatPreds[i], 0);
+  }
+
+  @Test
+  public void testScoreEarlyExit() throws Exception {
+    double[][] rows = makeRandomRows(500, 0xEE);
+    int stoppedEarly = 0;
+    for (int checkInterval : new int[]{1, 3, 10}) {
+      for (double[] row : rows) {
+        double[] expected = mojo12.score0(row, new double[3]);
+        double[] preds = new double[3];
+        int evaluated = mojo12.scoreEarlyExit(row, 0, checkInterval, preds);
+        assertTrue(evaluated > 0 && evaluated <= 10);
+        assertEquals(expected[0], preds[0], 0);
+        if (evaluated == 10)
+          assertArrayEquals(expected, preds, 0);
+        else {
+          assertEquals(0, evaluated % checkInterval);
+          stoppedEarly++;
+        }
+      }
+    }
+    assertTrue(stoppedEarly > 0);
+  }
+
+  @Test
+  public void testScoreEarlyExit_treeLayouts() throws Exception {
+    // bounds walked on the byte-encoded trees and on the mapped trees have to match the bounds of the flat trees
+    File mojoFile = zipResourceDir(new File(GbmMojoModelTest.class.getResource("calibrated").toURI()));
+    File store = new File(mojoFile.getPath() + ".mapped");
+    try {
+      GbmMojoModel mapped = (GbmMojoModel) ModelMojoReader.readFrom(
+              MojoReaderBackendFactory.createMappedReaderBackend(mojoFile, store));
+      assertTrue(mapped.hasMappedTrees());
+      GbmMojoModel flat = (GbmMojoModel) ModelMojoReader.readFrom(new ClasspathReaderBackend());
+      flat.compileFlatTrees();
+      for (double[] row : makeRandomRows(500, 0xEE)) {
+        double[] expected = new double[3];
+        int expectedEvaluated = flat.scoreEarlyExit(row, 0, 1, expected);
+        double[] preds = new double[3];
+        assertEquals(expectedEvaluated, mojo12.scoreEarlyExit(row, 0, 1, preds));
+        assertArrayEquals(expected, preds, 0);
+        preds = new double[3];
+        assertEquals(expectedEvaluated, mapped.scoreEarlyExit(row, 0, 1, preds));
+        assertArrayEquals(expected, preds, 0);
+      }
+      assertFalse(mapped.hasFlatTrees());
+    } finally {
+      if (!store.delete())
+        store.deleteOnExit();
+      mojoFile.delete();
+    }
+  }
+
+  @Test
+  public void testCompiledTreesGiveIdenticalPredictions() throws Exception {
+    GbmMojoModel compiled = (GbmMojoModel) ModelMojoReader.readFrom(new ClasspathReaderBackend());
+    assertFalse(compiled.hasCompiledTrees());
+    CompiledForest forest = compiled.compileBytecode();
+    assertTrue(compiled.hasCompiledTrees());
+    assertTrue(compiled.hasFlatTrees());
+    assertEquals(10, forest.ntrees());
+    assertEquals(10, forest.ncompiled());
+
+    double[][] rows = makeRandomRows(FlatForest.DEFAULT_BLOCK_SIZE + 100, 0xB17E);
+    for (double[] row : rows) {
+      assertArrayEquals(mojo12.score0(row, new double[3]), compiled.score0(row, new double[3]), 0);
+      for (int tree = 0; tree < 10; tree++) {
+        double[] expectedTree = new double[3];
+        mojo12.scoreSingleTree(row, tree, expectedTree);
+        double[] actualTree = new double[3];
+        compiled.scoreSingleTree(row, tree, actualTree);
+        assertArrayEquals(expectedTree, actualTree, 0);
+      }
+    }
+    double[][] preds = compiled.scoreBatch(rows, rows.length, new double[rows.length][3]);
+    for (int i = 0; i < rows.length; i++)
+      assertArrayEquals(mojo12.score0(rows[i], new double[3]), preds[i], 0);
+  }
+
+  @Test
+  public void testMappedTreesGiveIdenticalPredictions() throws Exception {
+    File mojoFile = zipResourceDir(new File(GbmMojoModelTest.class.getResource("calibrated").toURI()));
+    File store = new File(mojoFile.getPath() + ".mapped");
+    try {
+      GbmMojoModel mapped = (GbmMojoModel) ModelMojoReader.readFrom(
+              MojoReaderBackendFactory.createMappedReaderBackend(mojoFile, store));
+      assertTrue(mapped.hasMappedTrees());
+      double[][] rows = makeRandomRows(500, 0x3A99);
+      for (double[] row : rows) {
+        assertArrayEquals(mojo12.score0(row, new double[3]), mapped.score0(row, new double[3]), 0);
+        assertArrayEquals(mojo12.getDecisionPath(row), mapped.getDecisionPath(row));
+        assertArrayEquals(mojo12.getLeafNodeAssignments(row)._nodeIds, mapped.getLeafNodeAssignments(row)._nodeIds);
+      }
+      mapped.compileBytecode(); // flat & compiled trees are built from the mapped trees
+      for (double[] row : rows)
+        assertArrayEquals(mojo12.score0(row, new double[3]), mapped.score0(row, new double[3]), 0);
+    } finally {
+      if (!store.delete())
+        store.deleteOnExit();
+      mojoFile.delete();
+    }
+  }
+
+  @Test
+  public void testMappedBackendLoadsMojo11Eagerly() throws Exception {
+    File dir = new File(GbmMojoModelTest.class.getResource("calibrated").toURI());
+    File mojoFile = File.createTempFile("gbm-mojo11", ".zip");
+    File store = new File(mojoFile.getPath() + ".mapped");
+    try {
+      try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(mojoFile))) {
+        String ini = new String(Files.readAllBytes(new File(dir, "model.ini").toPath()))
+                .replace("mojo_version = 1.20", "mojo_version = 1.10")
+                .replace("n_trees = 10", "n_trees = 1");
+        addZipEntry(zos, "model.ini", ini.getBytes());
+        for (File domain : new File(dir, "domains").listFiles())
+          addZipEntry(zos, "domains/" + domain.getName(), Files.readAllBytes(domain.toPath()));
+        addZipEntry(zos, "trees/t00_000.bin", makeMojo11CategoricalTree());
+        addZipEntry(zos, "trees/t00_000_aux.bin", new byte[0]);
+      }
+      GbmMojoModel eager = (GbmMojoModel) ModelMojoReader.readFrom(MojoReaderBackendFactory.createReaderBackend(mojoFile));
+      GbmMojoModel mapped = (GbmMojoModel) ModelMojoReader.readFrom(
+              MojoReaderBackendFactory.createMappedReaderBackend(mojoFile, store));
+      assertFalse(mapped.hasMappedTrees());
+      double[] row = {18.7, 1.51, 1.003, 132.53, 1.15, 0.2, 1.153, 8.3, 0.34, 0.0, 0.0};
+      for (int level = 0; level < 5; level++) {
+        row[10] = level;
+        assertArrayEquals(eager.score0(row, new double[3]), mapped.score0(row, new double[3]), 0);
+        double[] treePreds = new double[3];
+        mapped.scoreTreeRange(row, 0, 1, treePreds);
+        assertEquals(level == 1 || level == 3 ? 2.0 : -1.0, treePreds[1], 0);
+      }
+    } finally {
+      if (!store.delete())
+        store.deleteOnExit();
+      mojoFile.delete();
+    }
+  }
+
+  // single split on "Method" using a v1.1 bitset (levels 1 and 3 go right), see SharedTreeMojoModel#scoreTree1
+  private static byte[] makeMojo11CategoricalTree() {
+    ByteBuffer bb = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+    bb.put((byte) (192 | 48 | 12)); // both children are leaves, 1.1 bitset split
+    bb.putShort((short) 10); // column "Method"
+    bb.put((byte) NaSplitDir.NALeft.value());
+    bb.putShort((short) 0); // bit offset
+    bb.putShort((short) 1); // number of bytes of the bitset (a 4-byte number of bits since v1.2)
+    bb.put((byte) 0x0A);
+    bb.putFloat(-1.0f);
+    bb.putFloat(2.0f);
+    return bb.array();
+  }
+
+  private static void addZipEntry(ZipOutputStream zos, String name, byte[] content) throws IOException {
+    zos.putNextEntry(new ZipEntry(name));
+    zos.write(content);
+    zos.closeEntry();
+  }
+
+  private static File zipResourceDir(File dir) throws IOException {
+    File zip = File.createTempFile("gbm-mojo", ".zip");
+    try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+      addToZip(zos, dir, "");
+    }
+    return zip;
+  }
+
+  private static void addToZip(ZipOutputStream zos, File dir, String prefix) throws IOException {
+    for (File f : dir.listFiles()) {
+      if (f.isDirectory()) {
+        addToZip(zos, f, prefix + f.getName() + "/");
+      } else {
+        zos.putNextEntry(new ZipEntry(prefix + f.getName()));
+        zos.write(Files.readAllBytes(f.toPath()));
+        zos.closeEntry();
+      }
+    }
+  }
+
+  @Test
+  public void testScore0BatchWithOffsets() throws Exception {
+    double[][] rows = makeRandomRows(300, 0x0FF5);
+    double[] offsets = new double[rows.length];
+    Random rnd = new Random(1);
+    for (int i = 0; i < offsets.length; i++)
+      offsets[i] = rnd.nextGaussian();
+    double[][] preds = mojo12.score0Batch(rows, offsets, rows.length, new double[rows.length][3]);
+    for (int i = 0; i < rows.length; i++)
+      assertArrayEquals(mojo12.score0(rows[i], offsets[i], new double[3]), preds[i], 0);
+  }
+
+  @Test
+  public void testPredictBatch() throws Exception {
+    EasyPredictModelWrapper wrapper = new EasyPredictModelWrapper(mojo12);
+    final int n = 150;
+    final String[] names = mojo12.getNames();
+    final String[] methods = mojo12.getDomainValues(10);
+    double[][] rows = makeRandomRows(n, 0xC01);
+    ColumnBatch batch = new ColumnBatch(n + 10);
+    double[][] numCols = new double[10][n + 10];
+    for (int c = 0; c < 10; c++)
+      batch.addNumericColumn(names[c], numCols[c]);
+    String[] methodCol = new String[n + 10];
+    batch.addCategoricalColumn("Method", methodCol);
+    batch.addNumericColumn("NotInTheModel", new double[n + 10]);
+    for (int r = 0; r < n; r++) {
+      for (int c = 0; c < 10; c++)
+        numCols[c][r] = rows[r][c];
+      final int level = Double.isNaN(rows[r][10]) ? -1 : (int) rows[r][10];
+      methodCol[r] = level >= 0 && level < methods.length ? methods[level] : null;
+    }
+
+    double[][] preds = wrapper.predictBatch(batch, n, new double[n][3]);
+    int[] labels = new int[n];
+    double[] p1 = new double[n];
+    wrapper.predictBinomialBatch(batch, n, labels, p1);
+    for (int r = 0; r < n; r++) {
+      RowData row = new RowData();
+      for (int c = 0; c < 10; c++)
+        row.put(names[c], rows[r][c]);
+      if (methodCol[r] != null)
+        row.put("Method", methodCol[r]);
+      BinomialModelPrediction expected = wrapper.predictBinomial(row);
+      assertEquals(expected.labelIndex, (int) preds[r][0]);
+      assertArrayEquals(expected.classProbabilities, new double[]{preds[r][1], preds[r][2]}, 0);
+      assertEquals(expected.labelIndex, labels[r]);
+      assertEquals(expected.classProbabilities[1], p1[r], 0);
+    }
+  }
+
+  @Test(expected = PredictException.class)
+  public void testPredictBatchUnknownLevel() throws Exception {
+    EasyPredictModelWrapper wrapper = new EasyPredictModelWrapper(mojo12);
+    ColumnBatch batch = new ColumnBatch(2)
+            .addCategoricalColumn("Method", new String[]{"electric", "unknown-level"});
+    wrapper.predictBatch(batch, 2, new double[2][3]);
+  }
+
+  // random rows covering NAs and unseen categorical levels
+  private static double[][] makeRandomRows(int n, long seed) {
+    Random rnd = new Random(seed);
+    double[][] rows = new double[n][];
+    for (int i = 0; i < n; i++) {
+      double[] row = {18.7, 1.51, 1.003, 132.53, 1.15, 0.2, 1.153, 8.3, 0.34, 0.0, 0.0};
+      for (int c = 0; c < 10; c++)
+        row[c] = rnd.nextInt(20) == 0 ? Double.NaN : row[c] * (0.5 + rnd.nextDouble()) + rnd.nextGaussian();
+      int level = rnd.nextInt(7);
+      row[10] = level == 6 ? Double.NaN : level;
+      rows[i] = row;
+    }
+    return rows;
+  }
+
   private static class ClasspathReaderBackend implements MojoReaderBackend {
     @Override
     public BufferedReader getTextFile(String filename) throws IOException {
@@ -8,6 +8,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -53,6 +54,31 @@ public class GlmMojoModelTest {
     }
   }
 
+  @Test
+  public void testScore0Batch() throws Exception {
+    GlmMojoModel mojo = (GlmMojoModel) ModelMojoReader.readFrom(new ClasspathReaderBackend());
+    Random rnd = new Random(0xBA7C);
+    int nrows = 600;
+    double[][] rows = new double[nrows][];
+    for (int r = 0; r < nrows; r++) {
+      rows[r] = new double[mojo.nfeatures()];
+      for (int c = 0; c < rows[r].length; c++) {
+        if (c < mojo._cats)
+          rows[r][c] = rnd.nextInt(mojo._catOffsets[c + 1] - mojo._catOffsets[c] + 1);
+        else
+          rows[r][c] = rnd.nextInt(4) == 0 ? 0 : rnd.nextGaussian() * 100;
+      }
+    }
+    rows[3][mojo._cats] = Double.NaN;
+    rows[4][rows[4].length - 1] = Double.POSITIVE_INFINITY;
+    double[][] expected = new double[nrows][];
+    for (int r = 0; r < nrows; r++)
+      expected[r] = mojo.score0(rows[r].clone(), new double[3]);
+    double[][] preds = mojo.score0Batch(rows, nrows, new double[nrows][3]);
+    for (int r = 0; r < nrows; r++)
+      assertArrayEquals("Predictions for row #" + r, expected[r], preds[r], 0);
+  }
+
   private static class ClasspathReaderBackend implements MojoReaderBackend {
     @Override
     public BufferedReader getTextFile(String filename) throws IOException {
@@ -0,0 +1,79 @@
+package hex.genmodel.algos.tree;
+
+import com.google.common.io.ByteStreams;
+import hex.genmodel.ModelMojoReader;
+import hex.genmodel.MojoReaderBackend;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TreeBytecodeCompilerTest {
+
+  private SharedTreeMojoModel mojo;
+  private FlatForest flat;
+
+  @Before
+  public void setup() throws Exception {
+    mojo = (SharedTreeMojoModel) ModelMojoReader.readFrom(new GbmReaderBackend());
+    flat = FlatForest.compile(mojo._compressed_trees);
+  }
+
+  @Test
+  public void testSplitIntoMethodsAndClasses() {
+    // every node in its own method, 3 trees per class
+    CompiledForest compiled = new TreeBytecodeCompiler(flat, mojo._domains, 1, 3, Integer.MAX_VALUE).compile();
+    assertEquals(10, compiled.ncompiled());
+    assertEquals(4, compiled.nclasses());
+    compiled.verify(500, 42);
+    checkIdenticalToFlat(compiled);
+  }
+
+  @Test
+  public void testLargeTreesAreNotCompiled() {
+    CompiledForest compiled = new TreeBytecodeCompiler(flat, mojo._domains, 80, 256, 3).compile();
+    assertTrue(compiled.ncompiled() < 10);
+    compiled.verify(100, 42);
+    checkIdenticalToFlat(compiled);
+  }
+
+  private void checkIdenticalToFlat(CompiledForest compiled) {
+    Random rnd = new Random(0xF00D);
+    for (int i = 0; i < 500; i++) {
+      double[] row = new double[11];
+      for (int c = 0; c < 10; c++)
+        row[c] = rnd.nextInt(20) == 0 ? Double.NaN : rnd.nextGaussian() * 50;
+      row[10] = rnd.nextInt(8) - 1; // includes negative and unseen levels
+      for (int tree = 0; tree < flat.ntrees(); tree++)
+        assertEquals(flat.scoreTree(tree, row, mojo._domains), compiled.scoreTree(tree, row), 0);
+    }
+  }
+
+  private static class GbmReaderBackend implements MojoReaderBackend {
+    private static final String PATH = "/hex/genmodel/algos/gbm/calibrated/";
+
+    @Override
+    public BufferedReader getTextFile(String filename) throws IOException {
+      InputStream is = TreeBytecodeCompilerTest.class.getResourceAsStream(PATH + filename);
+      return new BufferedReader(new InputStreamReader(is));
+    }
+
+    @Override
+    public byte[] getBinaryFile(String filename) throws IOException {
+      InputStream is = TreeBytecodeCompilerTest.class.getResourceAsStream(PATH + filename);
+      return ByteStreams.toByteArray(is);
+    }
+
+    @Override
+    public boolean exists(String name) {
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+package hex.genmodel.easy;
+
+import hex.ModelCategory;
+import hex.genmodel.CategoricalEncoding;
+import hex.genmodel.GenModel;
+import hex.genmodel.easy.error.CountingErrorConsumer;
+import hex.genmodel.easy.exception.PredictUnknownCategoricalLevelException;
+import hex.genmodel.easy.prediction.BinomialModelPrediction;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RowSchemaTest {
+
+  private static final String[] ORIG_NAMES = {"num", "cat", "cat2", "resp"};
+  private static final String[][] ORIG_DOMAINS = {null, {"a", "b", "c"}, {"x", "y"}, {"NO", "YES"}};
+
+  /**
+   * Binomial model that remembers the last scored row.
+   */
+  private static class EchoModel extends GenModel {
+    private final CategoricalEncoding _encoding;
+    double[] _lastRow;
+
+    EchoModel(CategoricalEncoding encoding, String[] names, String[][] domains) {
+      super(names, domains, "resp");
+      _encoding = encoding;
+    }
+
+    static EchoModel make(CategoricalEncoding encoding, int nEncodedFeatures) {
+      // label encoding is applied by the wrapper to the columns of the model
+      if (encoding == CategoricalEncoding.AUTO || encoding == CategoricalEncoding.LabelEncoder)
+        return new EchoModel(encoding, new String[]{"num", "cat", "cat2"}, ORIG_DOMAINS);
+      String[] names = new String[nEncodedFeatures];
+      String[][] domains = new String[nEncodedFeatures + 1][];
+      for (int i = 0; i < names.length; i++)
+        names[i] = "f" + i;
+      domains[nEncodedFeatures] = ORIG_DOMAINS[3];
+      return new EchoModel(encoding, names, domains);
+    }
+
+    @Override
+    public double[] score0(double[] row, double[] preds) {
+      _lastRow = row.clone();
+      preds[0] = 1;
+      preds[1] = 0.25;
+      preds[2] = 0.75;
+      return preds;
+    }
+
+    @Override public int nclasses() { return 2; }
+    @Override public boolean isSupervised() { return true; }
+    @Override public ModelCategory getModelCategory() { return ModelCategory.Binomial; }
+    @Override public String getUUID() { return null; }
+    @Override public CategoricalEncoding getCategoricalEncoding() { return _encoding; }
+    @Override public String[] getOrigNames() { return _encoding == CategoricalEncoding.AUTO ? null : ORIG_NAMES; }
+    @Override public String[][] getOrigDomainValues() { return _encoding == CategoricalEncoding.AUTO ? null : ORIG_DOMAINS; }
+  }
+
+  @Test
+  public void testRowMatchesRowData() throws Exception {
+    checkRowMatchesRowData(EchoModel.make(CategoricalEncoding.AUTO, 0));
+    checkRowMatchesRowData(EchoModel.make(CategoricalEncoding.OneHotExplicit, 1 + 4 + 3));
+    checkRowMatchesRowData(EchoModel.make(CategoricalEncoding.Binary, 1 + 2 + 2));
+    checkRowMatchesRowData(EchoModel.make(CategoricalEncoding.LabelEncoder, 0));
+  }
+
+  private void checkRowMatchesRowData(EchoModel model) throws Exception {
+    EasyPredictModelWrapper wrapper = new EasyPredictModelWrapper(new EasyPredictModelWrapper.Config()
+            .setModel(model)
+            .setConvertUnknownCategoricalLevelsToNa(true));
+    // different order than in the model and a column the model doesn't know
+    RowSchema schema = wrapper.makeRowSchema("cat2", "other", "num", "cat");
+    assertFalse(schema.isUsed(1));
+    assertArrayEquals(model.getCategoricalEncoding().toString(), ORIG_DOMAINS[1], schema.getDomainValues(3));
+    RowSchema.Row row = schema.newRow();
+    RowSchema.Row rowByIndex = schema.newRow();
+    Random rnd = new Random(0xAB);
+    String message = model.getCategoricalEncoding().toString();
+    for (int i = 0; i < 50; i++) {
+      RowData data = new RowData();
+      row.clear();
+      rowByIndex.clear();
+      if (rnd.nextInt(5) > 0) {
+        double num = rnd.nextGaussian();
+        data.put("num", num);
+        row.setNumeric(2, num);
+        rowByIndex.setNumeric(2, num);
+      }
+      int cat = rnd.nextInt(5); // 3 - NA, 4 - unseen level
+      if (cat < 4) {
+        String level = cat < 3 ? ORIG_DOMAINS[1][cat] : null;
+        if (level != null) {
+          data.put("cat", level);
+          rowByIndex.setCategorical(3, cat);
+        } else {
+          data.put("cat", Double.NaN);
+          rowByIndex.setMissing(3);
+        }
+        row.setCategorical(3, level);
+      } else {
+        data.put("cat", "unseen");
+        row.setCategorical(3, "unseen");
+        rowByIndex.setCategorical(3, 7);
+      }
+      int cat2 = rnd.nextInt(3); // 2 - not set
+      if (cat2 < 2) {
+        data.put("cat2", ORIG_DOMAINS[2][cat2]);
+        row.setCategorical(0, ORIG_DOMAINS[2][cat2]);
+        rowByIndex.setCategorical(0, cat2);
+      }
+      row.setNumeric(1, 42); // ignored
+
+      BinomialModelPrediction expected = wrapper.predictBinomial(data);
+      double[] expectedRow = model._lastRow;
+      BinomialModelPrediction actual = wrapper.predictBinomial(row);
+      assertArrayEquals(message, expectedRow, model._lastRow, 0);
+      assertEquals(expected.labelIndex, actual.labelIndex);
+      assertEquals(expected.label, actual.label);
+      assertArrayEquals(expected.classProbabilities, actual.classProbabilities, 0);
+      double[] preds = wrapper.predict(rowByIndex, new double[3]);
+      assertArrayEquals(message, expectedRow, model._lastRow, 0);
+      assertArrayEquals(new double[]{1, 0.25, 0.75}, preds, 0);
+    }
+  }
+
+  @Test
+  public void testUnknownLevels() throws Exception {
+    EchoModel model = EchoModel.make(CategoricalEncoding.AUTO, 0);
+    CountingErrorConsumer errorConsumer = new CountingErrorConsumer(model);
+    EasyPredictModelWrapper wrapper = new EasyPredictModelWrapper(new EasyPredictModelWrapper.Config()
+            .setModel(model)
+            .setErrorConsumer(errorConsumer));
+    RowSchema schema = wrapper.makeRowSchema("cat", "num");
+    RowSchema.Row row = schema.newRow();
+    try {
+      row.setCategorical(0, "d");
+      fail("Unknown level expected");
+    } catch (PredictUnknownCategoricalLevelException e) {
+      assertEquals("cat", e.columnName);
+      assertEquals("d", e.unknownLevel);
+    }
+    try {
+      row.setCategorical(0, 3);
+      fail("Unknown level expected");
+    } catch (PredictUnknownCategoricalLevelException e) {
+      assertEquals("3", e.unknownLevel);
+    }
+    assertEquals(2, errorConsumer.getDataTransformationErrorsCountPerColumn().get("cat").get());
+    try {
+      row.setNumeric(0, 1);
+      fail("Numeric value for a categorical column");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("categorical"));
+    }
+  }
+
+}
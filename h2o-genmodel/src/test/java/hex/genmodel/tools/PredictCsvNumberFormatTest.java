@@ -0,0 +1,45 @@
+package hex.genmodel.tools;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PredictCsvNumberFormatTest {
+
+  @Test
+  public void testAppendDoubleMatchesJdkFormatting() {
+    double[] special = {0.0, -0.0, 1.0, -1.0, 0.5, 1e-300, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL,
+            Math.nextAfter(Double.MIN_NORMAL, 0), Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            0.1f, 3.0, 1024, 1.0 / 3};
+    for (double d : special)
+      checkFormat(d);
+    Random rnd = new Random(0xF0F0);
+    for (int i = 0; i < 100000; i++) {
+      checkFormat(Double.longBitsToDouble(rnd.nextLong()));
+      checkFormat(rnd.nextGaussian());
+      checkFormat(rnd.nextFloat());
+    }
+  }
+
+  @Test
+  public void testAppendNA() {
+    StringBuilder sb = new StringBuilder("x");
+    PredictCsv.appendDouble(sb, Double.NaN, true);
+    PredictCsv.appendDouble(sb, Double.NaN, false);
+    assertEquals("xNANA", sb.toString());
+  }
+
+  private static void checkFormat(double d) {
+    if (Double.isNaN(d))
+      return;
+    StringBuilder sb = new StringBuilder();
+    PredictCsv.appendDouble(sb, d, false);
+    assertEquals(Double.toHexString(d), sb.toString());
+    sb.setLength(0);
+    PredictCsv.appendDouble(sb, d, true);
+    assertEquals(Double.toString(d), sb.toString());
+  }
+
+}
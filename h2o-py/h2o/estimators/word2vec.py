@@ -123,9 +123,9 @@ class H2OWord2vecEstimator(H2OEstimator):
     @property
     def norm_model(self):
         """
-        Use Hierarchical Softmax
+        Use Hierarchical Softmax (HSM) or Negative Sampling (NS)
 
-        One of: ``"hsm"``  (default: ``"hsm"``).
+        One of: ``"hsm"``, ``"ns"``  (default: ``"hsm"``).
 
         :examples:
 
@@ -143,7 +143,7 @@ class H2OWord2vecEstimator(H2OEstimator):
 
     @norm_model.setter
     def norm_model(self, norm_model):
-        assert_is_type(norm_model, None, Enum("hsm"))
+        assert_is_type(norm_model, None, Enum("hsm", "ns"))
         self._parms["norm_model"] = norm_model
 
 